@@ -35,6 +35,89 @@ class TableAndIndexTest;
 namespace voltdb {
 class UndoLog;
 
+/**
+ * Append-only list of the undo actions of one quantum. Like the actions themselves, it is
+ * stored in the quantum's data pool, in chunks that double in size as the list grows, so
+ * registering an action for each row of a large DML statement never goes to the heap, and
+ * the whole list is dropped when the pool is purged to be recycled for another quantum.
+ */
+class UndoActionList {
+    struct Chunk {
+        Chunk* m_prev;
+        Chunk* m_next;
+        size_t m_capacity;
+        size_t m_count;
+        UndoReleaseAction* m_actions[1];
+    };
+
+public:
+    static const size_t FIRST_CHUNK_CAPACITY = 8;
+    static const size_t MAX_CHUNK_CAPACITY = 4096;
+
+    explicit UndoActionList(Pool& pool) : m_pool(pool) { }
+
+    void push_back(UndoReleaseAction* action) {
+        if (m_tail == NULL || m_tail->m_count == m_tail->m_capacity) {
+            addChunk();
+        }
+        m_tail->m_actions[m_tail->m_count++] = action;
+        ++m_size;
+    }
+
+    UndoReleaseAction* back() const {
+        vassert(m_size > 0);
+        return m_tail->m_actions[m_tail->m_count - 1];
+    }
+
+    size_t size() const { return m_size; }
+    bool empty() const { return m_size == 0; }
+
+    /** Call f on each action, in the order they were added */
+    template<typename F>
+    void forEach(F f) const {
+        for (Chunk* chunk = m_head; chunk != NULL; chunk = chunk->m_next) {
+            for (size_t i = 0; i < chunk->m_count; ++i) {
+                f(chunk->m_actions[i]);
+            }
+        }
+    }
+
+    /** Call f on each action, most recently added first */
+    template<typename F>
+    void forEachReverse(F f) const {
+        for (Chunk* chunk = m_tail; chunk != NULL; chunk = chunk->m_prev) {
+            for (size_t i = chunk->m_count; i > 0; --i) {
+                f(chunk->m_actions[i - 1]);
+            }
+        }
+    }
+
+private:
+    void addChunk() {
+        size_t capacity = FIRST_CHUNK_CAPACITY;
+        if (m_tail != NULL) {
+            capacity = m_tail->m_capacity < MAX_CHUNK_CAPACITY ? m_tail->m_capacity * 2 : MAX_CHUNK_CAPACITY;
+        }
+        Chunk* chunk = static_cast<Chunk*>(m_pool.allocate(
+                sizeof(Chunk) + (capacity - 1) * sizeof(UndoReleaseAction*)));
+        chunk->m_prev = m_tail;
+        chunk->m_next = NULL;
+        chunk->m_capacity = capacity;
+        chunk->m_count = 0;
+        if (m_tail == NULL) {
+            m_head = chunk;
+        } else {
+            m_tail->m_next = chunk;
+        }
+        m_tail = chunk;
+    }
+
+    Pool& m_pool;
+    Chunk* m_head = NULL;
+    Chunk* m_tail = NULL;
+    size_t m_size = 0;
+};
+
 
 class UndoQuantum {
     // UndoQuantum has a very limited public API that allows UndoAction registration
@@ -49,7 +132,7 @@ protected:
 
 public:
     inline UndoQuantum(int64_t undoToken, Pool *dataPool)
-        : m_undoToken(undoToken), m_dataPool(dataPool) {}
+        : m_undoToken(undoToken), m_undoActions(*dataPool), m_dataPool(dataPool) {}
     inline virtual ~UndoQuantum() {}
 
     /**
@@ -90,10 +173,10 @@ public:
      * but their no-op delete operator leaves them to be purged in one go with the data pool.
      */
     static Pool* undo(UndoQuantum&& quantum) {
-        for (auto i = quantum.m_undoActions.rbegin(); i != quantum.m_undoActions.rend(); ++i) {
-            (*i)->undo();
-            delete *i;
-        }
+        quantum.m_undoActions.forEachReverse([](UndoReleaseAction* action) {
+            action->undo();
+            delete action;
+        });
         Pool * result = quantum.m_dataPool;
         quantum.~UndoQuantum();
         // return the pool for recycling.
@@ -113,11 +196,10 @@ public:
      * table before all the inserts and deletes are released.
      */
     static Pool* release(UndoQuantum&& quantum) {
-        for (auto i = quantum.m_undoActions.begin();
-             i != quantum.m_undoActions.end(); ++i) {
-            (*i)->release();
-            delete *i;
-        }
+        quantum.m_undoActions.forEach([](UndoReleaseAction* action) {
+            action->release();
+            delete action;
+        });
         for(auto cur = quantum.m_interests.begin(); cur != quantum.m_interests.end(); ++cur) {
            (*cur)->notifyQuantumRelease();
         }
@@ -144,7 +226,7 @@ public:
     void* allocateAction(size_t sz) { return m_dataPool->allocate(sz); }
 private:
     const int64_t m_undoToken;
-    std::deque<UndoReleaseAction*> m_undoActions;
+    UndoActionList m_undoActions;
     std::list<UndoQuantumReleaseInterest*> m_interests;
 protected:
     Pool *m_dataPool;
@@ -368,8 +368,9 @@ enum QuantifierType {
 enum TableIndexType {
     BALANCED_TREE_INDEX     = 1,
     HASH_TABLE_INDEX        = 2,
-    BTREE_INDEX             = 3, // unused
-    COVERING_CELL_INDEX     = 4
+    BTREE_INDEX             = 3,
+    COVERING_CELL_INDEX     = 4,
+    FLAT_HASH_TABLE_INDEX   = 5
 };
 
 // ------------------------------------------------------------------
@@ -448,9 +449,11 @@ inline bool tableStreamTypeIsStreamIndexing(TableStreamType streamType) {
 // ------------------------------------------------------------------
 // Statistics Selector Types
 // ------------------------------------------------------------------
+// These match the ordinals of the corresponding selectors in StatsSelector.java
 enum StatisticsSelectorType {
     STATISTICS_SELECTOR_TYPE_TABLE,
-    STATISTICS_SELECTOR_TYPE_INDEX
+    STATISTICS_SELECTOR_TYPE_INDEX,
+    STATISTICS_SELECTOR_TYPE_PLAN_FRAGMENT_CACHE
 };
 
 // ------------------------------------------------------------------
@@ -0,0 +1,155 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#pragma once
+
+#include "common/debuglog.h"
+
+#include <boost/shared_ptr.hpp>
+// The next #define limits the number of features pulled into the build
+// We don't use those features.
+#define BOOST_MULTI_INDEX_DISABLE_SERIALIZATION
+#include <boost/multi_index_container.hpp>
+#include <boost/multi_index/hashed_index.hpp>
+#include <boost/multi_index/member.hpp>
+#include <boost/multi_index/sequenced_index.hpp>
+
+#include <cstddef>
+#include <cstdint>
+
+namespace voltdb {
+
+// Estimated bytes of plan fragments a site keeps built and ready to run
+const size_t DEFAULT_PLAN_CACHE_MEMORY_LIMIT = 32 * 1024 * 1024;
+
+/**
+ * LRU cache of built plan fragments (for the engine, ExecutorVectors), keyed by fragment id.
+ *
+ * The cache is bounded by the estimated memory of its entries rather than by their number,
+ * so a site can keep many more small fragments than large ones before it has to throw one
+ * away and rebuild it from its JSON plan on the next use. The most recently inserted
+ * fragment is never evicted, even if it alone is over the limit, since the caller is about
+ * to run it.
+ *
+ * Hits, misses and evictions are counted for the PLANFRAGMENTCACHE statistics.
+ */
+template<typename V>
+class PlanFragmentCache {
+    struct Entry {
+        Entry(int64_t fragId, boost::shared_ptr<V> const& value, size_t memoryEstimate)
+            : m_fragId(fragId), m_value(value), m_memoryEstimate(memoryEstimate) { }
+
+        int64_t m_fragId;
+        boost::shared_ptr<V> m_value;
+        size_t m_memoryEstimate;
+    };
+
+    /**
+     * The entries are explicitly maintained in MRU-first order,
+     * while also indexed by their fragment ids.
+     */
+    using EntrySet = boost::multi_index::multi_index_container<
+        Entry,
+        boost::multi_index::indexed_by<
+            boost::multi_index::sequenced<>,
+            boost::multi_index::hashed_unique<
+                boost::multi_index::member<Entry, int64_t, &Entry::m_fragId>>>>;
+
+public:
+    explicit PlanFragmentCache(size_t memoryLimit = DEFAULT_PLAN_CACHE_MEMORY_LIMIT)
+        : m_memoryLimit(memoryLimit) { }
+
+    PlanFragmentCache(const PlanFragmentCache&) = delete;
+    PlanFragmentCache& operator=(const PlanFragmentCache&) = delete;
+
+    /**
+     * Look up a fragment and, if it is cached, make it the most recently used one.
+     * Returns nullptr on a miss, in which case the caller is expected to build the
+     * fragment and insert() it.
+     */
+    V* find(int64_t fragId) {
+        auto& byFragId = m_entries.template get<1>();
+        auto iter = byFragId.find(fragId);
+        if (iter == byFragId.end()) {
+            ++m_misses;
+            return nullptr;
+        }
+        ++m_hits;
+        m_entries.relocate(m_entries.begin(), m_entries.template project<0>(iter));
+        return iter->m_value.get();
+    }
+
+    /**
+     * Add a fragment which was just built as the most recently used one, then evict
+     * least recently used fragments until the cache is back within its memory limit.
+     */
+    V* insert(int64_t fragId, boost::shared_ptr<V> const& value, size_t memoryEstimate) {
+        vassert(value);
+        std::pair<typename EntrySet::iterator, bool> inserted =
+                m_entries.push_front(Entry(fragId, value, memoryEstimate));
+        vassert(inserted.second);
+        if (! inserted.second) {
+            return inserted.first->m_value.get();
+        }
+        m_memoryEstimate += memoryEstimate;
+        while (m_memoryEstimate > m_memoryLimit && m_entries.size() > 1) {
+            m_memoryEstimate -= m_entries.back().m_memoryEstimate;
+            m_entries.pop_back();
+            ++m_evictions;
+        }
+        return value.get();
+    }
+
+    /**
+     * Drop all fragments, for instance because the tables they refer to have changed.
+     * These are not counted as evictions.
+     */
+    void clear() {
+        m_entries.clear();
+        m_memoryEstimate = 0;
+    }
+
+    /** Change the memory limit. Takes effect on the next insert(). */
+    void setMemoryLimit(size_t memoryLimit) {
+        m_memoryLimit = memoryLimit;
+    }
+
+    /** Call f on each cached fragment, most recently used first */
+    template<typename F>
+    void forEach(F f) const {
+        for (Entry const& entry : m_entries) {
+            f(*entry.m_value);
+        }
+    }
+
+    size_t size() const { return m_entries.size(); }
+    size_t memoryEstimate() const { return m_memoryEstimate; }
+    size_t memoryLimit() const { return m_memoryLimit; }
+    int64_t hits() const { return m_hits; }
+    int64_t misses() const { return m_misses; }
+    int64_t evictions() const { return m_evictions; }
+
+private:
+    EntrySet m_entries;
+    size_t m_memoryLimit;
+    size_t m_memoryEstimate = 0;
+    int64_t m_hits = 0;
+    int64_t m_misses = 0;
+    int64_t m_evictions = 0;
+};
+
+}
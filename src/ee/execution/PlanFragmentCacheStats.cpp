@@ -0,0 +1,122 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "execution/PlanFragmentCacheStats.h"
+#include "common/TupleSchema.h"
+#include "common/ValueFactory.hpp"
+#include "common/tabletuple.h"
+#include "storage/tablefactory.h"
+#include "storage/temptable.h"
+
+#include <string>
+#include <vector>
+
+using namespace voltdb;
+using namespace std;
+
+vector<string> PlanFragmentCacheStats::generatePlanFragmentCacheStatsColumnNames() {
+    vector<string> columnNames = StatsSource::generateBaseStatsColumnNames();
+    columnNames.push_back("ENTRIES");
+    columnNames.push_back("MEMORY_ESTIMATE");
+    columnNames.push_back("MEMORY_LIMIT");
+    columnNames.push_back("HITS");
+    columnNames.push_back("MISSES");
+    columnNames.push_back("EVICTIONS");
+    return columnNames;
+}
+
+// make sure to update schema in frontend sources (PlanFragmentCacheStats.java) when updating
+// the plan fragment cache stats schema in here.
+void PlanFragmentCacheStats::populatePlanFragmentCacheStatsSchema(vector<ValueType> &types,
+        vector<int32_t> &columnLengths, vector<bool> &allowNull, vector<bool> &inBytes) {
+    StatsSource::populateBaseSchema(types, columnLengths, allowNull, inBytes);
+
+    // entries
+    types.push_back(ValueType::tINTEGER);
+    columnLengths.push_back(NValue::getTupleStorageSize(ValueType::tINTEGER));
+    allowNull.push_back(false);
+    inBytes.push_back(false);
+
+    // memory estimate, memory limit, hits, misses and evictions
+    for (int ii = 0; ii < 5; ii++) {
+        types.push_back(ValueType::tBIGINT);
+        columnLengths.push_back(NValue::getTupleStorageSize(ValueType::tBIGINT));
+        allowNull.push_back(false);
+        inBytes.push_back(false);
+    }
+}
+
+TempTable* PlanFragmentCacheStats::generateEmptyPlanFragmentCacheStatsTable() {
+    string name = "Plan fragment cache stats temp table";
+    vector<string> columnNames = PlanFragmentCacheStats::generatePlanFragmentCacheStatsColumnNames();
+    vector<ValueType> columnTypes;
+    vector<int32_t> columnLengths;
+    vector<bool> columnAllowNull;
+    vector<bool> columnInBytes;
+    PlanFragmentCacheStats::populatePlanFragmentCacheStatsSchema(columnTypes, columnLengths,
+            columnAllowNull, columnInBytes);
+    TupleSchema *schema = TupleSchema::createTupleSchema(columnTypes, columnLengths,
+            columnAllowNull, columnInBytes);
+    return TableFactory::buildTempTable(name, schema, columnNames, NULL);
+}
+
+/*
+ * Constructor caches reference to the cache that will be generating the statistics
+ */
+PlanFragmentCacheStats::PlanFragmentCacheStats(PlanFragmentCache<ExecutorVector> const* cache)
+    : StatsSource(), m_cache(cache), m_lastHits(0), m_lastMisses(0), m_lastEvictions(0) { }
+
+vector<string> PlanFragmentCacheStats::generateStatsColumnNames() {
+    return PlanFragmentCacheStats::generatePlanFragmentCacheStatsColumnNames();
+}
+
+/**
+ * Update the stats tuple with the latest statistics available to this StatsSource.
+ */
+void PlanFragmentCacheStats::updateStatsTuple(TableTuple *tuple) {
+    int64_t hits = m_cache->hits();
+    int64_t misses = m_cache->misses();
+    int64_t evictions = m_cache->evictions();
+
+    if (interval()) {
+        hits = hits - m_lastHits;
+        m_lastHits = m_cache->hits();
+        misses = misses - m_lastMisses;
+        m_lastMisses = m_cache->misses();
+        evictions = evictions - m_lastEvictions;
+        m_lastEvictions = m_cache->evictions();
+    }
+
+    tuple->setNValue(StatsSource::m_columnName2Index["ENTRIES"],
+            ValueFactory::getIntegerValue(static_cast<int32_t>(m_cache->size())));
+    tuple->setNValue(StatsSource::m_columnName2Index["MEMORY_ESTIMATE"],
+            ValueFactory::getBigIntValue(static_cast<int64_t>(m_cache->memoryEstimate() / 1024)));
+    tuple->setNValue(StatsSource::m_columnName2Index["MEMORY_LIMIT"],
+            ValueFactory::getBigIntValue(static_cast<int64_t>(m_cache->memoryLimit() / 1024)));
+    tuple->setNValue(StatsSource::m_columnName2Index["HITS"], ValueFactory::getBigIntValue(hits));
+    tuple->setNValue(StatsSource::m_columnName2Index["MISSES"], ValueFactory::getBigIntValue(misses));
+    tuple->setNValue(StatsSource::m_columnName2Index["EVICTIONS"], ValueFactory::getBigIntValue(evictions));
+}
+
+/**
+ * Same pattern as generateStatsColumnNames except the return value is used as an offset into the tuple schema instead of appending to
+ * end of a list.
+ */
+void PlanFragmentCacheStats::populateSchema(vector<ValueType> &types, vector<int32_t> &columnLengths,
+        vector<bool> &allowNull, vector<bool> &inBytes) {
+    PlanFragmentCacheStats::populatePlanFragmentCacheStatsSchema(types, columnLengths, allowNull, inBytes);
+}
@@ -0,0 +1,82 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#pragma once
+
+#include "stats/StatsSource.h"
+#include "execution/PlanFragmentCache.h"
+
+namespace voltdb {
+class ExecutorVector;
+class TableTuple;
+class TempTable;
+
+/**
+ * StatsSource extension for a site's cache of built plan fragments.
+ */
+class PlanFragmentCacheStats : public StatsSource {
+public:
+    /**
+     * Static method to generate the column names for the tables which
+     * contain plan fragment cache stats.
+     */
+    static std::vector<std::string> generatePlanFragmentCacheStatsColumnNames();
+
+    /**
+     * Static method to generate the remaining schema information for
+     * the tables which contain plan fragment cache stats.
+     */
+    static void populatePlanFragmentCacheStatsSchema(std::vector<voltdb::ValueType>& types,
+            std::vector<int32_t>& columnLengths, std::vector<bool>& allowNull, std::vector<bool>& inBytes);
+
+    static TempTable* generateEmptyPlanFragmentCacheStatsTable();
+
+    /*
+     * Constructor caches reference to the cache that will be generating the statistics
+     */
+    PlanFragmentCacheStats(PlanFragmentCache<ExecutorVector> const* cache);
+
+protected:
+
+    /**
+     * Update the stats tuple with the latest statistics available to this StatsSource.
+     */
+    virtual void updateStatsTuple(TableTuple *tuple);
+
+    /**
+     * Generates the list of column names that will be in the statTable_. Derived classes must override this method and call
+     * the parent class's version to obtain the list of columns contributed by ancestors and then append the columns they will be
+     * contributing to the end of the list.
+     */
+    virtual std::vector<std::string> generateStatsColumnNames();
+
+    /**
+     * Same pattern as generateStatsColumnNames except the return value is used as an offset into the tuple schema instead of appending to
+     * end of a list.
+     */
+    virtual void populateSchema(std::vector<voltdb::ValueType> &types, std::vector<int32_t> &columnLengths,
+            std::vector<bool> &allowNull, std::vector<bool> &inBytes);
+
+private:
+    PlanFragmentCache<ExecutorVector> const* m_cache;
+
+    int64_t m_lastHits;
+    int64_t m_lastMisses;
+    int64_t m_lastEvictions;
+};
+
+}
@@ -46,6 +46,8 @@
 #include "VoltDBEngine.h"
 
 #include "ExecutorVector.h"
+#include "PlanFragmentCache.h"
+#include "PlanFragmentCacheStats.h"
 
 #include "catalog/cluster.h"
 #include "catalog/column.h"
@@ -97,15 +99,6 @@
 
 #include "org_voltdb_jni_ExecutionEngine.h" // to use static values
 
-// The next #define limits the number of features pulled into the build
-// We don't use those features.
-#define BOOST_MULTI_INDEX_DISABLE_SERIALIZATION
-#include <boost/multi_index_container.hpp>
-#include <boost/multi_index/hashed_index.hpp>
-#include <boost/multi_index/member.hpp>
-#include <boost/multi_index/mem_fun.hpp>
-#include <boost/multi_index/sequenced_index.hpp>
-
 #include <chrono> // For measuring the execution time of each fragment.
 #if __cplusplus >= 201103L
 #include <atomic>
@@ -119,7 +112,6 @@ ENABLE_BOOST_FOREACH_ON_CONST_MAP(MaterializedViewInfo);
 ENABLE_BOOST_FOREACH_ON_CONST_MAP(Table);
 ENABLE_BOOST_FOREACH_ON_CONST_MAP(Function);
 
-static const size_t PLAN_CACHE_SIZE = 1000;
 // table name prefix of DR conflict table
 const std::string DR_REPLICATED_CONFLICT_TABLE_NAME = "VOLTDB_AUTOGEN_XDCR_CONFLICTS_REPLICATED";
 const std::string DR_PARTITIONED_CONFLICT_TABLE_NAME = "VOLTDB_AUTOGEN_XDCR_CONFLICTS_PARTITIONED";
@@ -136,21 +128,10 @@ typedef std::pair<std::string, catalog::Function*> LabeledFunction;
 typedef std::pair<std::string, StreamedTable*> LabeledStream;
 typedef std::pair<std::string, ExportTupleStream*> LabeledStreamWrapper;
 
-/**
- * The set of plan bytes is explicitly maintained in MRU-first order,
- * while also indexed by the plans' bytes. Here lie boost-related dragons.
- */
-using PlanSet = boost::multi_index::multi_index_container<
-    boost::shared_ptr<ExecutorVector>,
-    boost::multi_index::indexed_by<
-        boost::multi_index::sequenced<>,
-        boost::multi_index::hashed_unique<
-            boost::multi_index::const_mem_fun<ExecutorVector,int64_t,&ExecutorVector::getFragId>>>>;
-
 int32_t s_exportFlushTimeout=4000;  // export/tuple flush interval ms setting
 
 /// This class wrapper around a typedef allows forward declaration as in scoped_ptr<EnginePlanSet>.
-class EnginePlanSet : public PlanSet { };
+class EnginePlanSet : public PlanFragmentCache<ExecutorVector> { };
 
 VoltEEExceptionType VoltDBEngine::s_loadTableException =
     VoltEEExceptionType::VOLT_EE_EXCEPTION_TYPE_NONE;
@@ -174,7 +155,8 @@ VoltDBEngine::initialize(
         int32_t defaultDrBufferSize,
         int64_t tempTableMemoryLimit,
         bool isLowestSite,
-        int32_t compactionThreshold) {
+        int32_t compactionThreshold,
+        int64_t planCacheMemoryLimit) {
     m_clusterIndex = clusterIndex;
     m_siteId = siteId;
     m_isLowestSite = isLowestSite;
@@ -216,6 +198,13 @@ VoltDBEngine::initialize(
     SynchronizedThreadLock::init(sitesPerHost, newLocals);
     SynchronizedThreadLock::unlockReplicatedResourceForInit();
     m_groupStore.reset(new topics::GroupStore());
+
+    // Create the plan fragment cache up front so that its stats can be registered
+    m_plans.reset(new EnginePlanSet());
+    m_plans->setMemoryLimit(static_cast<size_t>(planCacheMemoryLimit));
+    m_planCacheStats.reset(new PlanFragmentCacheStats(m_plans.get()));
+    m_planCacheStats->configure("Plan fragment cache stats");
+    getStatsManager().registerStatsSource(STATISTICS_SELECTOR_TYPE_PLAN_FRAGMENT_CACHE, 0, m_planCacheStats.get());
 }
 
 VoltDBEngine::~VoltDBEngine() {
@@ -336,8 +325,10 @@ bool VoltDBEngine::decommission(bool remove, bool promote, int newSitePerHost) {
 }
 
 void VoltDBEngine::cleanup() {
-    // clean up execution plans
-    m_plans.reset();
+    // clean up execution plans, but keep the (now empty) cache for its stats source
+    if (m_plans) {
+        m_plans->clear();
+    }
 
     // Clear the undo log before deleting the persistent tables so
     // that the persistent table schema are still around so we can
@@ -2087,25 +2078,17 @@ void VoltDBEngine::resetDRConflictStreamedTables() {
 }
 
 void VoltDBEngine::setExecutorVectorForFragmentId(int64_t fragId) {
-    if (m_plans) {
-        PlanSet& existing_plans = *m_plans;
-        PlanSet::nth_index<1>::type::iterator iter = existing_plans.get<1>().find(fragId);
-
-        // found it, move it to the front
-        if (iter != existing_plans.get<1>().end()) {
-            // move it to the front of the list
-            PlanSet::iterator iter2 = existing_plans.project<0>(iter);
-            existing_plans.get<0>().relocate(existing_plans.begin(), iter2);
-            m_currExecutorVec = (*iter).get();
-            // update the context
-            m_currExecutorVec->setupContext(m_executorContext);
-            return;
-        }
-    } else {
+    if ( ! m_plans) {
         m_plans.reset(new EnginePlanSet());
     }
 
-    PlanSet& plans = *m_plans;
+    m_currExecutorVec = m_plans->find(fragId);
+    if (m_currExecutorVec) {
+        // update the context
+        m_currExecutorVec->setupContext(m_executorContext);
+        return;
+    }
+
     std::string plan = m_topend->planForFragmentId(fragId);
     if (plan.empty()) {
         throwSerializableEEException(
@@ -2114,19 +2097,9 @@ void VoltDBEngine::setExecutorVectorForFragmentId(int64_t fragId) {
 
     boost::shared_ptr<ExecutorVector> ev_guard = ExecutorVector::fromJsonPlan(this, plan, fragId);
 
-    // add the plan to the back
-    //
-    // (Why to the back?  Shouldn't it be at the front with the
-    // most recently used items?  See ENG-7244)
-    plans.get<0>().push_back(ev_guard);
-
-    // remove a plan from the front if the cache is full
-    if (plans.size() > PLAN_CACHE_SIZE) {
-        PlanSet::iterator iter = plans.get<0>().begin();
-        plans.erase(iter);
-    }
-
-    m_currExecutorVec = ev_guard.get();
+    // The plan node graph and executors are built from the JSON plan, so charge the
+    // cache for them in proportion to the size of the plan.
+    m_currExecutorVec = m_plans->insert(fragId, ev_guard, sizeof(ExecutorVector) + plan.size());
     vassert(m_currExecutorVec);
 }
 
@@ -2401,12 +2374,9 @@ std::string VoltDBEngine::debug(void) const {
     if ( ! m_plans) {
         return "";
     }
-    PlanSet& plans = *m_plans;
     std::ostringstream output;
 
-    for (boost::shared_ptr<ExecutorVector> ev_guard : plans) {
-        ev_guard->debug();
-    }
+    m_plans->forEach([](ExecutorVector const& ev) { ev.debug(); });
 
     return output.str();
 }
@@ -2462,6 +2432,13 @@ int VoltDBEngine::getStats(int selector, int locators[], int numLocators,
                         m_siteId, m_partitionId,
                         locatorIds, interval, now);
                 break;
+            case STATISTICS_SELECTOR_TYPE_PLAN_FRAGMENT_CACHE:
+                // There is a single plan fragment cache per site, registered at locator 0
+                resultTable = m_statsManager.getStats(
+                        (StatisticsSelectorType) selector,
+                        m_siteId, m_partitionId,
+                        std::vector<CatalogId>(1, 0), interval, now);
+                break;
             default:
                 throwSerializableEEException(
                         "getStats() called with an unrecognized selector %d", selector);
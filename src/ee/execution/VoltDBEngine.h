@@ -53,6 +53,8 @@
 #include "common/UndoLog.h"
 #include "common/valuevector.h"
 
+#include "execution/PlanFragmentCache.h"
+
 #include "logging/LogManager.h"
 #include "logging/LogProxy.h"
 #include "logging/StdoutLogProxy.h"
@@ -98,6 +100,7 @@ class EnginePlanSet;  // Locally defined in VoltDBEngine.cpp
 class ExecutorContext;
 class ExecutorVector;
 class PersistentTable;
+class PlanFragmentCacheStats;
 class StreamedTable;
 class Table;
 class TableCatalogDelegate;
@@ -153,7 +156,8 @@ class __attribute__((visibility("default"))) VoltDBEngine {
                         int32_t defaultDrBufferSize,
                         int64_t tempTableMemoryLimit,
                         bool isLowestSiteId,
-                        int32_t compactionThreshold = 95);
+                        int32_t compactionThreshold = 95,
+                        int64_t planCacheMemoryLimit = DEFAULT_PLAN_CACHE_MEMORY_LIMIT);
         virtual ~VoltDBEngine();
 
         bool decommission(bool remove, bool promote, int newSitePerHost);
@@ -725,6 +729,7 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         int m_currentIndexInBatch = -1;
 
         boost::scoped_ptr<EnginePlanSet> m_plans;
+        boost::scoped_ptr<PlanFragmentCacheStats> m_planCacheStats;
 
         voltdb::UndoLog m_undoLog;
 
@@ -508,6 +508,7 @@ bool AggregateExecutorBase::p_init(AbstractPlanNode*, const ExecutorVector& exec
     if (!node->isInline()) {
         setTempOutputTable(executorVector);
     }
+    m_tempTableLimits = const_cast<TempTableLimits*>(executorVector.limits());
     m_partialSerialGroupByColumns = node->getPartialGroupByColumns();
 
     m_aggTypes = node->getAggregates();
@@ -726,7 +727,9 @@ TableTuple AggregateHashExecutor::p_execute_init(
         const TupleSchema * schema, AbstractTempTable* newTempTable,
         CountingPostfilter* parentPostfilter) {
     VOLT_TRACE("hash aggregate executor init..");
-    m_hash.clear();
+    // The previous execution's table (if any) went away with the pool purge
+    m_hash.reset();
+    m_hash.setLimits(m_tempTableLimits);
     return AggregateExecutorBase::p_execute_init(params, pmp, schema, newTempTable, parentPostfilter);
 }
 
@@ -758,14 +761,14 @@ void AggregateHashExecutor::p_execute_tuple(const TableTuple& nextTuple) {
     initGroupByKeyTuple(nextTuple);
     AggregateRow* aggregateRow;
     TableTuple& nextGroupByKeyTuple = m_nextGroupByKeyStorage;
-    // Search for the matching group.
-    HashAggregateMapType::const_iterator keyIter = m_hash.find(nextGroupByKeyTuple);
+    // Search for the matching group, adding an entry for it if it is new.
+    auto const entry = m_hash.insert(nextGroupByKeyTuple);
 
-    // Group not found. Make a new entry in the hash for this new group.
-    if (keyIter == m_hash.end()) {
+    // Group not found. Fill in the new entry in the hash for this new group.
+    if (entry.second) {
         VOLT_TRACE("hash aggregate: new group..");
         aggregateRow = new (m_memoryPool, m_aggTypes.size()) AggregateRow();
-        m_hash.insert(HashAggregateMapType::value_type(nextGroupByKeyTuple, aggregateRow));
+        entry.first->m_value = aggregateRow;
 
         initAggInstances(aggregateRow);
 
@@ -783,8 +786,8 @@ void AggregateHashExecutor::p_execute_tuple(const TableTuple& nextTuple) {
             return;
         }
     } else {
-        // otherwise, the agg row is the second item of the pair...
-        aggregateRow = keyIter->second;
+        // otherwise, the agg row is the value of the existing entry...
+        aggregateRow = entry.first->m_value;
     }
     // update the aggregation calculation.
     advanceAggs(aggregateRow, nextTuple);
@@ -795,8 +798,8 @@ void AggregateHashExecutor::p_execute_finish() {
 
     // If there is no aggregation, results are already inserted already
     if (! m_aggTypes.empty()) {
-        for (auto iter : m_hash) {
-            AggregateRow* aggregateRow = iter.second;
+        for (auto const& entry : m_hash) {
+            AggregateRow* aggregateRow = entry.m_value;
             if (insertOutputTuple(aggregateRow)) {
                 m_pmp->countdownProgress();
             }
@@ -804,8 +807,8 @@ void AggregateHashExecutor::p_execute_finish() {
         }
     }
 
-    // Clean up
-    m_hash.clear();
+    // Clean up, the hash table lives in the pool that is about to be purged
+    m_hash.reset();
     AggregateExecutorBase::p_execute_finish();
 }
 
@@ -938,7 +941,9 @@ TableTuple AggregatePartialExecutor::p_execute_init(
     TableTuple& nextPartialGroupByKeyTuple = m_nextGroupByKeyStorage;
     nextPartialGroupByKeyTuple.move(nullptr);
 
-    m_hash.clear();
+    // The previous execution's table (if any) went away with the pool purge
+    m_hash.reset();
+    m_hash.setLimits(m_tempTableLimits);
 
     // for next input tuple
     return nextInputTuple;
@@ -989,15 +994,15 @@ void AggregatePartialExecutor::p_execute_tuple(const TableTuple& nextTuple) {
             m_atTheFirstRow = false;
 
             // Output old group rows.
-            for (auto& iter : m_hash) {
-                AggregateRow *aggregateRow = iter.second;
+            for (auto const& entry : m_hash) {
+                AggregateRow *aggregateRow = entry.m_value;
                 if (insertOutputTuple(aggregateRow)) {
                     m_pmp->countdownProgress();
                 }
                 delete aggregateRow;
             }
 
-            // clean up the partial hash aggregate.
+            // clean up the partial hash aggregate, keeping its table for the next group.
             m_hash.clear();
             break;
         }
@@ -1007,13 +1012,13 @@ void AggregatePartialExecutor::p_execute_tuple(const TableTuple& nextTuple) {
     initPartialHashGroupByKeyTuple(nextTuple);
     AggregateRow* aggregateRow;
     TableTuple& nextPartialGroupByKeyTuple = m_nextPartialGroupByKeyStorage;
-    auto const keyIter = m_hash.find(nextPartialGroupByKeyTuple);
+    auto const entry = m_hash.insert(nextPartialGroupByKeyTuple);
 
-    // Group not found. Make a new entry in the hash for this new group.
-    if (keyIter == m_hash.end()) {
+    // Group not found. Fill in the new entry in the hash for this new group.
+    if (entry.second) {
         VOLT_TRACE("partial hash aggregate: new sub group..");
         aggregateRow = new (m_memoryPool, m_aggTypes.size()) AggregateRow();
-        m_hash.insert(HashAggregateMapType::value_type(nextPartialGroupByKeyTuple, aggregateRow));
+        entry.first->m_value = aggregateRow;
         initAggInstances(aggregateRow);
 
         char* storage = reinterpret_cast<char*>(
@@ -1024,8 +1029,8 @@ void AggregatePartialExecutor::p_execute_tuple(const TableTuple& nextTuple) {
         // so force a new tuple allocation to hold the next candidate key.
         nextPartialGroupByKeyTuple.move(nullptr);
     } else {
-        // otherwise, the agg row is the second item of the pair...
-        aggregateRow = keyIter->second;
+        // otherwise, the agg row is the value of the existing entry...
+        aggregateRow = entry.first->m_value;
     }
 
     // update the aggregation calculation.
@@ -1035,15 +1040,15 @@ void AggregatePartialExecutor::p_execute_tuple(const TableTuple& nextTuple) {
 
 void AggregatePartialExecutor::p_execute_finish() {
     VOLT_TRACE("finalizing..");
-    for (auto const iter : m_hash) {
-        AggregateRow *aggregateRow = iter.second;
+    for (auto const& entry : m_hash) {
+        AggregateRow *aggregateRow = entry.m_value;
         if (insertOutputTuple(aggregateRow)) {
             m_pmp->countdownProgress();
         }
         delete aggregateRow;
     }
-    // Clean up
-    m_hash.clear();
+    // Clean up, the hash table lives in the pool that is about to be purged
+    m_hash.reset();
     TableTuple& nextGroupByKeyTuple = m_nextPartialGroupByKeyStorage;
     nextGroupByKeyTuple.move(nullptr);
     AggregateExecutorBase::p_execute_finish();
@@ -54,6 +54,7 @@
 #include "expressions/abstractexpression.h"
 #include "execution/ProgressMonitorProxy.h"
 #include "executors/executorutil.h"
+#include "structures/TupleHashMap.h"
 
 namespace voltdb {
 
@@ -232,10 +233,12 @@ protected:
 
     // used for inline limit for serial/partial aggregate
     CountingPostfilter m_postfilter;
+
+    // temp memory accounting for the group hash tables of hash/partial aggregation
+    TempTableLimits* m_tempTableLimits = nullptr;
 };
 
-using HashAggregateMapType =
-std::unordered_map<TableTuple, AggregateRow*, TableTupleHasher, TableTupleEqualityChecker>;
+using HashAggregateMapType = TupleHashMap<AggregateRow*>;
 
 
 /**
@@ -247,7 +250,7 @@ class AggregateHashExecutor : public AggregateExecutorBase {
     bool p_execute(const NValueArray& params) override;
 public:
     AggregateHashExecutor(VoltDBEngine* engine, AbstractPlanNode* abstract_node) :
-        AggregateExecutorBase(engine, abstract_node) { }
+        AggregateExecutorBase(engine, abstract_node), m_hash(&m_memoryPool) { }
 
     // empty destructor defined in .cpp file because of it is called virtually (not inline)
     // same reason for serial and partial
@@ -295,7 +298,7 @@ class AggregatePartialExecutor : public AggregateExecutorBase {
     void initPartialHashGroupByKeyTuple(const TableTuple& nextTuple);
 public:
     AggregatePartialExecutor(VoltDBEngine* engine, AbstractPlanNode* abstract_node) :
-        AggregateExecutorBase(engine, abstract_node) { }
+        AggregateExecutorBase(engine, abstract_node), m_hash(&m_memoryPool) { }
     ~AggregatePartialExecutor();
     TableTuple p_execute_init(const NValueArray& params, ProgressMonitorProxy* pmp,
             const TupleSchema * schema, AbstractTempTable* newTempTable  = nullptr,
@@ -214,6 +214,79 @@ namespace functionexpression {
             const std::vector<AbstractExpression *> m_args;
       };
 
+   /*
+    * REGEXP_POSITION with a constant pattern (and constant or no match flags) compiles
+    * its pattern once, when the plan is loaded, instead of on every row. Anything else,
+    * including a pattern which fails to compile, falls back to the general evaluation
+    * so that errors are still raised per row, and only if there is a row.
+    */
+   class RegexpPositionFunctionExpression : public GeneralFunctionExpression<FUNC_VOLT_REGEXP_POSITION> {
+      public:
+         RegexpPositionFunctionExpression(const std::vector<AbstractExpression *>& args)
+            : GeneralFunctionExpression<FUNC_VOLT_REGEXP_POSITION>(args), m_source(args[0]) {
+            vassert(args.size() == 2 || args.size() == 3);
+            uint32_t syntaxOpts = PCRE2_UTF;
+            NValue pattern;
+            if ( ! constantVarchar(args[1], pattern)) {
+               return;
+            }
+            if (args.size() == 3) {
+               NValue flags;
+               if ( ! constantVarchar(args[2], flags)) {
+                  return;
+               }
+               if ( ! flags.isNull()) {
+                  int32_t lenFlags;
+                  const char* flagChars = ValuePeeker::peekObject_withoutNull(flags, &lenFlags);
+                  try {
+                     syntaxOpts = regexpCompileOptions(flagChars, lenFlags);
+                  } catch (const SQLException&) {
+                     return;
+                  }
+               }
+            }
+            if (pattern.isNull()) {
+               return;
+            }
+            int32_t lenPat;
+            const char* patChars = ValuePeeker::peekObject_withoutNull(pattern, &lenPat);
+            try {
+               m_regex = regexpCompile(patChars, lenPat, syntaxOpts);
+            } catch (const SQLException&) {
+               return;
+            }
+            // This pattern is going to be used for every row, so do not wait to see that it is hot.
+            m_regex->jitCompile();
+         }
+
+         NValue eval(const TableTuple *tuple1, const TableTuple *tuple2) const override {
+            if ( ! m_regex) {
+               return GeneralFunctionExpression<FUNC_VOLT_REGEXP_POSITION>::eval(tuple1, tuple2);
+            }
+            NValue source = m_source->eval(tuple1, tuple2);
+            if (source.isNull() || ValuePeeker::peekValueType(source) != ValueType::tVARCHAR) {
+               // Let the general evaluation produce the null result or the cast error
+               return GeneralFunctionExpression<FUNC_VOLT_REGEXP_POSITION>::eval(tuple1, tuple2);
+            }
+            int32_t lenSource;
+            const char* sourceChars = ValuePeeker::peekObject_withoutNull(source, &lenSource);
+            return ValueFactory::getBigIntValue(regexpPosition(*m_regex, sourceChars, lenSource));
+         }
+
+      private:
+         /** True if expr is a constant which is either null or a VARCHAR, with its value in result */
+         static bool constantVarchar(const AbstractExpression* expr, NValue& result) {
+            if (expr->getExpressionType() != EXPRESSION_TYPE_VALUE_CONSTANT) {
+               return false;
+            }
+            result = expr->eval(nullptr, nullptr);
+            return result.isNull() || ValuePeeker::peekValueType(result) == ValueType::tVARCHAR;
+         }
+
+         AbstractExpression* const m_source;
+         boost::shared_ptr<CompiledRegex> m_regex;
+   };
+
    /*
     * User-defined scalar function.
     */
@@ -623,7 +696,7 @@ AbstractExpression* functionFactory(int functionId, const std::vector<AbstractEx
             ret = new GeneralFunctionExpression<FUNC_VOLT_ROUND>(arguments);
             break;
          case FUNC_VOLT_REGEXP_POSITION:
-            ret = new GeneralFunctionExpression<FUNC_VOLT_REGEXP_POSITION>(arguments);
+            ret = new RegexpPositionFunctionExpression(arguments);
             break;
          case FUNC_VOLT_SET_FIELD:
             ret = new GeneralFunctionExpression<FUNC_VOLT_SET_FIELD>(arguments);
@@ -22,12 +22,79 @@
 #include <string>
 #include <sstream>
 #include <algorithm>
+#include <vector>
+
+#include <boost/make_shared.hpp>
+#include <boost/shared_ptr.hpp>
 
 #include <json/json.h>
 #include <json/forwards.h>
 
 namespace voltdb {
 
+inline void throwJsonFormattingError(const Json::Reader& reader) {
+    // getFormatedErrorMessages returns concise message about location
+    // of the error rather than the malformed document itself
+    throwSQLException(SQLException::data_exception_invalid_parameter,
+            "Invalid JSON %s", reader.getFormatedErrorMessages().c_str());
+}
+
+/**
+ * The last few JSON documents parsed on this thread, i.e. on this site. Queries typically
+ * apply several FIELD() or ARRAY_ELEMENT() calls to the same column of the same row, and
+ * comparing a document with the one parsed a moment ago is much cheaper than parsing it
+ * again. Parsed documents are shared and must not be modified.
+ */
+class JsonDocumentCache {
+    struct Entry {
+        std::string m_text;
+        boost::shared_ptr<const Json::Value> m_root;
+    };
+
+public:
+    static const size_t MAX_ENTRIES = 4;
+
+    /** The cache of the calling thread */
+    static JsonDocumentCache& forThisThread() {
+        static thread_local JsonDocumentCache cache;
+        return cache;
+    }
+
+    /** Parse a document, or get it already parsed. Throws an SQLException if it is not valid JSON. */
+    boost::shared_ptr<const Json::Value> parse(const char* docChars, int32_t lenDoc) {
+        for (auto iter = m_entries.begin(); iter != m_entries.end(); ++iter) {
+            if (iter->m_text.size() == static_cast<size_t>(lenDoc) && ::memcmp(iter->m_text.data(), docChars, lenDoc) == 0) {
+                ++m_hits;
+                // keep the entries in MRU-first order
+                std::rotate(m_entries.begin(), iter, iter + 1);
+                return m_entries.front().m_root;
+            }
+        }
+        ++m_misses;
+        boost::shared_ptr<Json::Value> root = boost::make_shared<Json::Value>();
+        Json::Reader reader;
+        if (!reader.parse(docChars, docChars + lenDoc, *root)) {
+            throwJsonFormattingError(reader);
+        }
+        if (m_entries.size() == MAX_ENTRIES) {
+            m_entries.pop_back();
+        }
+        m_entries.insert(m_entries.begin(), Entry{std::string(docChars, lenDoc), root});
+        return root;
+    }
+
+    void clear() { m_entries.clear(); }
+
+    size_t size() const { return m_entries.size(); }
+    int64_t hits() const { return m_hits; }
+    int64_t misses() const { return m_misses; }
+
+private:
+    std::vector<Entry> m_entries;
+    int64_t m_hits = 0;
+    int64_t m_misses = 0;
+};
+
 /** a path node is either a field name or an array index */
 struct JsonPathNode {
     JsonPathNode(int32_t arrayIndex) : m_arrayIndex(arrayIndex) {}
@@ -45,23 +112,23 @@ public:
         if (docChars == NULL) {
             // null documents have null everything, but they turn into objects/arrays
             // if we try to set their properties
-            m_doc = Json::Value::null;
-        } else if (!m_reader.parse(docChars, docChars + lenDoc, m_doc)) {
-            // we have something real, but it isn't JSON
-            throwJsonFormattingError();
+            m_root = boost::make_shared<const Json::Value>();
+        } else {
+            // throws if we have something real, but it isn't JSON
+            m_root = JsonDocumentCache::forThisThread().parse(docChars, lenDoc);
         }
     }
 
-    std::string value() { return m_writer.write(m_doc); }
+    std::string value() { return m_writer.write(*m_root); }
 
     bool get(const char* pathChars, int32_t lenPath, std::string& serializedValue) {
-        if (m_doc.isNull()) {
+        if (m_root->isNull()) {
             return false;
         }
 
         // get and traverse the path
         std::vector<JsonPathNode> path = resolveJsonPath(pathChars, lenPath);
-        const Json::Value* node = &m_doc;
+        const Json::Value* node = m_root.get();
         for (std::vector<JsonPathNode>::const_iterator cit = path.begin(); cit != path.end(); ++cit) {
             const JsonPathNode& pathNode = *cit;
             if (pathNode.m_arrayIndex != -1) {
@@ -108,13 +175,17 @@ public:
         if (lenValue <= 0) {
             value = Json::Value::null;
         } else if (!m_reader.parse(valueChars, valueChars + lenValue, value)) {
-            throwJsonFormattingError();
+            throwJsonFormattingError(m_reader);
         }
 
         std::vector<JsonPathNode> path = resolveJsonPath(pathChars, lenPath, true /*enforceArrayIndexLimitForSet*/);
         // the non-const version of the Json::Value [] operator creates a new, null node on attempted
-        // access if none already exists
-        Json::Value* node = &m_doc;
+        // access if none already exists, so update a copy of the (possibly shared) document
+        if ( ! m_doc) {
+            m_doc = boost::make_shared<Json::Value>(*m_root);
+            m_root = m_doc;
+        }
+        Json::Value* node = m_doc.get();
         for (std::vector<JsonPathNode>::const_iterator cit = path.begin(); cit != path.end(); ++cit) {
             const JsonPathNode& pathNode = *cit;
             if (pathNode.m_arrayIndex != -1) {
@@ -139,7 +210,9 @@ public:
     }
 
 private:
-    Json::Value m_doc;
+    boost::shared_ptr<const Json::Value> m_root;
+    // m_root once set() has made its own copy of it
+    boost::shared_ptr<Json::Value> m_doc;
     Json::Reader m_reader;
     Json::FastWriter m_writer;
 
@@ -291,13 +364,6 @@ private:
         throwSQLException(SQLException::data_exception_invalid_parameter,
                 "Invalid JSON path: %s [position %d]", err, m_pos);
     }
-
-    void throwJsonFormattingError() const {
-        // getFormatedErrorMessages returns concise message about location
-        // of the error rather than the malformed document itself
-        throwSQLException(SQLException::data_exception_invalid_parameter,
-                "Invalid JSON %s", m_reader.getFormatedErrorMessages().c_str());
-    }
 };
 
 /** implement the 2-argument SQL FIELD function */
@@ -348,19 +414,12 @@ template<> inline NValue NValue::call<FUNC_VOLT_ARRAY_ELEMENT>(const std::vector
     }
     int32_t lenDoc;
     const char* docChars = docNVal.getObject_withoutNull(lenDoc);
-    const std::string doc(docChars, lenDoc);
 
     int32_t index = indexNVal.castAsIntegerAndGetValue();
 
-    Json::Value root;
-    Json::Reader reader;
-
-    if (! reader.parse(doc, root)) {
-        // getFormatedErrorMessages returns concise message about location
-        // of the error rather than the malformed document itself
-        throwSQLException(SQLException::data_exception_invalid_parameter,
-                "Invalid JSON %s", reader.getFormatedErrorMessages().c_str());
-    }
+    // shared with other calls on the same document, so only use its const accessors
+    boost::shared_ptr<const Json::Value> doc = JsonDocumentCache::forThisThread().parse(docChars, lenDoc);
+    const Json::Value& root = *doc;
 
     // only array type contains elements. objects, primitives do not
     if ( ! root.isArray()) {
@@ -376,7 +435,7 @@ template<> inline NValue NValue::call<FUNC_VOLT_ARRAY_ELEMENT>(const std::vector
         return getNullStringValue();
     }
 
-    Json::Value fieldValue = root[index];
+    const Json::Value& fieldValue = root[index];
 
     if (fieldValue.isNull()) {
         return getNullStringValue();
@@ -405,17 +464,9 @@ template<> inline NValue NValue::callUnary<FUNC_VOLT_ARRAY_LENGTH>() const {
 
     int32_t lenDoc;
     const char* docChars = getObject_withoutNull(lenDoc);
-    const std::string doc(docChars, lenDoc);
 
-    Json::Value root;
-    Json::Reader reader;
-
-    if (! reader.parse(doc, root)) {
-        // getFormatedErrorMessages returns concise message about location
-        // of the error rather than the malformed document itself
-        throwSQLException(SQLException::data_exception_invalid_parameter,
-                "Invalid JSON %s", reader.getFormatedErrorMessages().c_str());
-    }
+    boost::shared_ptr<const Json::Value> doc = JsonDocumentCache::forThisThread().parse(docChars, lenDoc);
+    const Json::Value& root = *doc;
 
     // only array type contains indexed elements. objects, primitives do not
     if ( ! root.isArray()) {
@@ -0,0 +1,200 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#pragma once
+
+#define PCRE2_CODE_UNIT_WIDTH 8
+#include <pcre2.h>
+
+#include "common/debuglog.h"
+
+#include <boost/shared_ptr.hpp>
+#define BOOST_MULTI_INDEX_DISABLE_SERIALIZATION
+#include <boost/multi_index_container.hpp>
+#include <boost/multi_index/hashed_index.hpp>
+#include <boost/multi_index/member.hpp>
+#include <boost/multi_index/sequenced_index.hpp>
+
+#include <cstdint>
+#include <cstring>
+#include <string>
+
+namespace voltdb {
+
+/**
+ * A compiled regular expression with the match data to run it, which is reused
+ * from one match to the next. Not thread safe, like everything else on a site.
+ */
+class CompiledRegex {
+public:
+    // Matches after which a pattern is considered hot enough to JIT compile
+    static const int64_t JIT_THRESHOLD = 16;
+
+    /**
+     * Compile pattern with the given PCRE2 options. On failure, this returns null
+     * and sets errorCode for pcre2_get_error_message().
+     */
+    static boost::shared_ptr<CompiledRegex> compile(const char *pattern, size_t length,
+                                                    uint32_t options, int &errorCode) {
+        PCRE2_SIZE errorOffset = 0;
+        pcre2_code *code = pcre2_compile(reinterpret_cast<PCRE2_SPTR>(pattern), length, options,
+                                         &errorCode, &errorOffset, NULL);
+        if (code == NULL) {
+            return boost::shared_ptr<CompiledRegex>();
+        }
+        pcre2_match_data *matchData = pcre2_match_data_create_from_pattern(code, NULL);
+        if (matchData == NULL) {
+            pcre2_code_free(code);
+            errorCode = PCRE2_ERROR_NOMEMORY;
+            return boost::shared_ptr<CompiledRegex>();
+        }
+        return boost::shared_ptr<CompiledRegex>(new CompiledRegex(code, matchData));
+    }
+
+    ~CompiledRegex() {
+        pcre2_match_data_free(m_matchData);
+        pcre2_code_free(m_code);
+    }
+
+    CompiledRegex(const CompiledRegex&) = delete;
+    CompiledRegex& operator=(const CompiledRegex&) = delete;
+
+    /**
+     * JIT compile the pattern now rather than once it has been used often enough.
+     * Does nothing where PCRE2 has no JIT support.
+     */
+    void jitCompile() {
+        if ( ! m_jitAttempted) {
+            m_jitAttempted = true;
+            m_jitCompiled = pcre2_jit_compile(m_code, PCRE2_JIT_COMPLETE) == 0;
+        }
+    }
+
+    /**
+     * Match subject from its start. Returns the PCRE2 result code, which is negative if
+     * there was no match or an error, and sets offset to where the match begins on success.
+     */
+    int match(const char *subject, size_t length, size_t &offset) {
+        if (++m_matches == JIT_THRESHOLD) {
+            jitCompile();
+        }
+        int rc = pcre2_match(m_code, reinterpret_cast<PCRE2_SPTR>(subject), length,
+                             0, 0, m_matchData, NULL);
+        if (rc == PCRE2_ERROR_JIT_STACKLIMIT) {
+            // The JIT stack is smaller than what the interpreter can use, so try again without it
+            rc = pcre2_match(m_code, reinterpret_cast<PCRE2_SPTR>(subject), length,
+                             0, PCRE2_NO_JIT, m_matchData, NULL);
+        }
+        if (rc >= 0) {
+            offset = pcre2_get_ovector_pointer(m_matchData)[0];
+        }
+        return rc;
+    }
+
+    bool isJitCompiled() const { return m_jitCompiled; }
+    int64_t matches() const { return m_matches; }
+
+private:
+    CompiledRegex(pcre2_code *code, pcre2_match_data *matchData)
+        : m_code(code), m_matchData(matchData) { }
+
+    pcre2_code *const m_code;
+    pcre2_match_data *const m_matchData;
+    int64_t m_matches = 0;
+    bool m_jitAttempted = false;
+    bool m_jitCompiled = false;
+};
+
+/**
+ * LRU cache of compiled regular expressions keyed by pattern and compile options, so that
+ * a function applying the same pattern to many rows only compiles it once. There is one
+ * cache per thread, i.e. per site, so it needs no locking.
+ *
+ * Entries are shared pointers: an expression holding on to a pattern keeps it usable
+ * even after the cache evicts it.
+ */
+class RegexCache {
+    struct Entry {
+        Entry(std::string const& key, boost::shared_ptr<CompiledRegex> const& regex)
+            : m_key(key), m_regex(regex) { }
+
+        std::string m_key;
+        boost::shared_ptr<CompiledRegex> m_regex;
+    };
+
+    // MRU-first order, also indexed by key
+    using EntrySet = boost::multi_index::multi_index_container<
+        Entry,
+        boost::multi_index::indexed_by<
+            boost::multi_index::sequenced<>,
+            boost::multi_index::hashed_unique<
+                boost::multi_index::member<Entry, std::string, &Entry::m_key>>>>;
+
+public:
+    static const size_t DEFAULT_MAX_ENTRIES = 128;
+
+    explicit RegexCache(size_t maxEntries = DEFAULT_MAX_ENTRIES) : m_maxEntries(maxEntries) { }
+
+    RegexCache(const RegexCache&) = delete;
+    RegexCache& operator=(const RegexCache&) = delete;
+
+    /** The cache of the calling thread */
+    static RegexCache& forThisThread() {
+        static thread_local RegexCache cache;
+        return cache;
+    }
+
+    /**
+     * Get the compiled pattern from the cache, or compile and add it. Returns null and
+     * sets errorCode if the pattern does not compile; failures are not cached.
+     */
+    boost::shared_ptr<CompiledRegex> get(const char *pattern, size_t length, uint32_t options,
+                                         int &errorCode) {
+        std::string key(reinterpret_cast<const char*>(&options), sizeof(options));
+        key.append(pattern, length);
+        auto& byKey = m_entries.get<1>();
+        auto iter = byKey.find(key);
+        if (iter != byKey.end()) {
+            ++m_hits;
+            m_entries.relocate(m_entries.begin(), m_entries.project<0>(iter));
+            return iter->m_regex;
+        }
+        ++m_misses;
+        boost::shared_ptr<CompiledRegex> regex = CompiledRegex::compile(pattern, length, options, errorCode);
+        if (regex) {
+            m_entries.push_front(Entry(key, regex));
+            while (m_entries.size() > m_maxEntries) {
+                m_entries.pop_back();
+            }
+        }
+        return regex;
+    }
+
+    void clear() { m_entries.clear(); }
+
+    size_t size() const { return m_entries.size(); }
+    int64_t hits() const { return m_hits; }
+    int64_t misses() const { return m_misses; }
+
+private:
+    EntrySet m_entries;
+    const size_t m_maxEntries;
+    int64_t m_hits = 0;
+    int64_t m_misses = 0;
+};
+
+}
@@ -23,10 +23,10 @@
 #include <boost/locale.hpp>
 #include <boost/scoped_array.hpp>
 
-#define PCRE2_CODE_UNIT_WIDTH 8
+#include "expressions/regexcache.h"
+
 #include <string.h>
 #include <boost/shared_ptr.hpp>
-#include <pcre2.h>
 
 #include <iostream>
 #include <sstream>
@@ -854,6 +854,56 @@ static std::string pcre2_error_code_message(int error_code, std::string prefix)
     return std::string("Regular Expression Compilation Error: ") + reinterpret_cast<char *>(buffer);
 }
 
+/** Translate the match flags of regexp_position into PCRE2 compile options */
+inline uint32_t regexpCompileOptions(const char* flagChars, int32_t lenFlags) {
+    uint32_t syntaxOpts = PCRE2_UTF;
+    for (int32_t i = 0; i < lenFlags; ++i) {
+        switch (flagChars[i]) {
+            case 'c':
+                syntaxOpts &= ~PCRE2_CASELESS;
+                break;
+            case 'i':
+                syntaxOpts |= PCRE2_CASELESS;
+                break;
+            default:
+                throw SQLException(SQLException::data_exception_invalid_parameter, "Regular Expression Compilation Error: Illegal Match Flags");
+        }
+    }
+    return syntaxOpts;
+}
+
+/**
+ * Compile a pattern for regexp_position. Compilation is the expensive part, so patterns
+ * are kept compiled in the site's RegexCache and only compiled the first time they are seen.
+ */
+inline boost::shared_ptr<CompiledRegex> regexpCompile(const char* patChars, int32_t lenPat, uint32_t syntaxOpts) {
+    int error_code = 0;
+    boost::shared_ptr<CompiledRegex> regex =
+            RegexCache::forThisThread().get(patChars, lenPat, syntaxOpts, error_code);
+    if ( ! regex) {
+        if (error_code == PCRE2_ERROR_NOMEMORY) {
+            throw SQLException(SQLException::data_exception_invalid_parameter, "Internal error: Cannot create PCRE2 match data.");
+        }
+        std::string emsg = pcre2_error_code_message(error_code, "Regular Expression Compilation Error: ");
+        throw SQLException(SQLException::data_exception_invalid_parameter, emsg.c_str());
+    }
+    return regex;
+}
+
+/** The 1-based character position of the first match of regex in source, or 0 if there is none */
+inline int64_t regexpPosition(CompiledRegex& regex, const char* sourceChars, int32_t lenSource) {
+    size_t position = 0;
+    int error_code = regex.match(sourceChars, lenSource, position);
+    if (error_code < 0) {
+        if (error_code == PCRE2_ERROR_NOMATCH) {
+            return 0;
+        }
+        std::string emsg = pcre2_error_code_message(error_code, "Regular Expression Matching Error: ");
+        throw SQLException(SQLException::data_exception_invalid_parameter, emsg.c_str());
+    }
+    return NValue::getCharLength(sourceChars, position) + 1;
+}
+
 /** Implement the VoltDB SQL function regexp_position for re-based pattern matching */
 template<> inline NValue NValue::call<FUNC_VOLT_REGEXP_POSITION>(const std::vector<NValue>& arguments) {
     vassert(arguments.size() == 2 || arguments.size() == 3);
@@ -884,84 +934,18 @@ template<> inline NValue NValue::call<FUNC_VOLT_REGEXP_POSITION>(const std::vect
             }
 
             int32_t lenFlags;
-            const char* flagChars = reinterpret_cast<const char*>
-                (flags.getObject_withoutNull(lenFlags));
-            // temporary workaround to make sure the string we are operating on is null terminated
-            std::string flagStr(flagChars, lenFlags);
-
-            for(std::string::iterator it = flagStr.begin(); it != flagStr.end(); ++it) {
-                switch (*it) {
-                    case 'c':
-                        syntaxOpts &= ~PCRE2_CASELESS;
-                        break;
-                    case 'i':
-                        syntaxOpts |= PCRE2_CASELESS;
-                        break;
-                    default:
-                        throw SQLException(SQLException::data_exception_invalid_parameter, "Regular Expression Compilation Error: Illegal Match Flags");
-                }
-            }
+            const char* flagChars = flags.getObject_withoutNull(lenFlags);
+            syntaxOpts = regexpCompileOptions(flagChars, lenFlags);
         }
     }
 
     int32_t lenSource;
-    const unsigned char* sourceChars = reinterpret_cast<const unsigned char*>
-        (source.getObject_withoutNull(lenSource));
+    const char* sourceChars = source.getObject_withoutNull(lenSource);
     int32_t lenPat;
-    const unsigned char* patChars = reinterpret_cast<const unsigned char*>
-        (pat.getObject_withoutNull(lenPat));
-    // Compile the pattern.
+    const char* patChars = pat.getObject_withoutNull(lenPat);
 
-    int error_code = 0;
-    PCRE2_SIZE error_offset = 0;
-    /*
-     * Note: We use a shared_ptr here, even though nothing is really shared.
-     *       We want to make sure the deleter, pcre2_code_free, is called when
-     *       this goes out of scope.  Scoped_ptr is a better choice here,
-     *       but it will not allow a custom deleter.  Unique_ptr is an even
-     *       better choice, but without C++11 move semantics this is not
-     *       really implementable, and this is a C++03 code.  So we are
-     *       stuck with shared_ptr.  The overhead is a reference count,
-     *       and an increment and decrement.  This is pretty small
-     *       compared with regular expression compilation and matching,
-     *       so it's not likely to be expensive.
-     */
-    boost::shared_ptr<pcre2_code> pattern ( pcre2_compile(patChars,
-                                                          lenPat,
-                                                          syntaxOpts,
-                                                          &error_code,
-                                                          &error_offset,
-                                                          NULL), pcre2_code_free );
-    if (pattern.get() == NULL) {
-        std::string emsg = pcre2_error_code_message(error_code, "Regular Expression Compilation Error: ");
-        throw SQLException(SQLException::data_exception_invalid_parameter, emsg.c_str());
-    }
-    /*
-     * We use a shared_ptr for the same reasons as above.
-     */
-    boost::shared_ptr<pcre2_match_data> match_data(pcre2_match_data_create_from_pattern(pattern.get(), NULL),
-                                                   pcre2_match_data_free);
-    if (match_data.get() == NULL) {
-        throw SQLException(SQLException::data_exception_invalid_parameter, "Internal error: Cannot create PCRE2 match data.");
-    }
-    unsigned int matchFlags = 0;
-    error_code = pcre2_match(pattern.get(),
-                      sourceChars,
-                      lenSource,
-                      0ul,
-                      matchFlags,
-                      match_data.get(),
-                      NULL);
-    if (error_code < 0) {
-        if (error_code == PCRE2_ERROR_NOMATCH) {
-            return getBigIntValue(0);
-        }
-        std::string emsg = pcre2_error_code_message(error_code, "Regular Expression Matching Error: ");
-        throw SQLException(SQLException::data_exception_invalid_parameter, emsg.c_str());
-    }
-    PCRE2_SIZE *ovector = pcre2_get_ovector_pointer(match_data.get());
-    unsigned long position = ovector[0];
-    return getBigIntValue(getCharLength(reinterpret_cast<const char *>(sourceChars), position) + 1);
+    boost::shared_ptr<CompiledRegex> regex = regexpCompile(patChars, lenPat, syntaxOpts);
+    return getBigIntValue(regexpPosition(*regex, sourceChars, lenSource));
 }
 }
 
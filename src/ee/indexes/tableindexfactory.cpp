@@ -52,6 +52,7 @@
 #include "indexes/CompactingTreeMultiMapIndex.h"
 #include "indexes/CompactingHashUniqueIndex.h"
 #include "indexes/CompactingHashMultiMapIndex.h"
+#include "indexes/FlatHashUniqueIndex.h"
 #include "indexes/CoveringCellIndex.h"
 
 namespace voltdb {
@@ -62,7 +63,14 @@ class TableIndexPicker
     TableIndex *getInstanceForKeyType() const
     {
         if (m_scheme.unique) {
-            if (m_type != BALANCED_TREE_INDEX) {
+            if (m_type == FLAT_HASH_TABLE_INDEX) {
+                return new FlatHashUniqueIndex<TKeyType >(m_keySchema, m_scheme);
+            } else if (m_type == BTREE_INDEX) {
+                if (m_scheme.countable) {
+                    return new CompactingTreeUniqueIndex<NormalKeyValuePair<TKeyType>, true, BTreeMap>(m_keySchema, m_scheme);
+                }
+                return new CompactingTreeUniqueIndex<NormalKeyValuePair<TKeyType>, false, BTreeMap>(m_keySchema, m_scheme);
+            } else if (m_type != BALANCED_TREE_INDEX) {
                 return new CompactingHashUniqueIndex<TKeyType >(m_keySchema, m_scheme);
             } else if (m_scheme.countable) {
                 return new CompactingTreeUniqueIndex<NormalKeyValuePair<TKeyType>, true>(m_keySchema, m_scheme);
@@ -70,6 +78,13 @@ class TableIndexPicker
                 return new CompactingTreeUniqueIndex<NormalKeyValuePair<TKeyType>, false>(m_keySchema, m_scheme);
             }
         } else {
+            if (m_type == BTREE_INDEX) {
+                if (m_scheme.countable) {
+                    return new CompactingTreeMultiMapIndex<PointerKeyValuePair<TKeyType>, true, BTreeMap>(m_keySchema, m_scheme);
+                }
+                return new CompactingTreeMultiMapIndex<PointerKeyValuePair<TKeyType>, false, BTreeMap>(m_keySchema, m_scheme);
+            }
+            // There is no flat multimap, the DDL compiler makes non-unique FLATHASH indexes HASH indexes
             if (m_type != BALANCED_TREE_INDEX) {
                 return new CompactingHashMultiMapIndex<TKeyType >(m_keySchema, m_scheme);
             } else if (m_scheme.countable) {
@@ -92,7 +107,7 @@ class TableIndexPicker
             return getInstanceForKeyType<IntsKey<(KeySize-1)/8 + 1> >();
         }
         // Generic Key
-        if (m_type == HASH_TABLE_INDEX) {
+        if (m_type == HASH_TABLE_INDEX || m_type == FLAT_HASH_TABLE_INDEX) {
             VOLT_INFO("Producing a tree index for %s: "
                       "hash index not currently supported for this index key.\n",
                       m_scheme.name.c_str());
@@ -106,6 +121,14 @@ class TableIndexPicker
         if (m_inlinesOrColumnsOnly) {
             return getInstanceForKeyType<GenericKey<KeySize> >();
         }
+        // The BTreeMap copies keys into its inner nodes, which a GenericPersistentKey,
+        // owning its non-inline values, does not allow.
+        if (m_type == BTREE_INDEX) {
+            VOLT_INFO("Producing a red-black tree index for %s: "
+                      "B+tree index not currently supported for this index key.\n",
+                      m_scheme.name.c_str());
+            m_type = BALANCED_TREE_INDEX;
+        }
         return getInstanceForKeyType<GenericPersistentKey<KeySize> >();
     }
 
@@ -178,6 +201,18 @@ public:
             return result;
         }
 
+        if (m_type == BTREE_INDEX) {
+            if (m_scheme.unique) {
+                if (m_scheme.countable) {
+                    return new CompactingTreeUniqueIndex<NormalKeyValuePair<TupleKey>, true, BTreeMap>(m_keySchema, m_scheme);
+                }
+                return new CompactingTreeUniqueIndex<NormalKeyValuePair<TupleKey>, false, BTreeMap>(m_keySchema, m_scheme);
+            }
+            if (m_scheme.countable) {
+                return new CompactingTreeMultiMapIndex<PointerKeyValuePair<TupleKey>, true, BTreeMap>(m_keySchema, m_scheme);
+            }
+            return new CompactingTreeMultiMapIndex<PointerKeyValuePair<TupleKey>, false, BTreeMap>(m_keySchema, m_scheme);
+        }
         if (m_scheme.unique) {
             if (m_scheme.countable) {
                 return new CompactingTreeUniqueIndex<NormalKeyValuePair<TupleKey>, true >(m_keySchema, m_scheme);
@@ -17,6 +17,7 @@
 #include "StatsAgent.h"
 
 #include "StatsSource.h"
+#include "execution/PlanFragmentCacheStats.h"
 #include "indexes/IndexStats.h"
 #include "storage/TableStats.h"
 #include "storage/temptable.h"
@@ -38,6 +39,8 @@ namespace
             return TableStats::generateEmptyTableStatsTable();
         case STATISTICS_SELECTOR_TYPE_INDEX:
             return IndexStats::generateEmptyIndexStatsTable();
+        case STATISTICS_SELECTOR_TYPE_PLAN_FRAGMENT_CACHE:
+            return PlanFragmentCacheStats::generateEmptyPlanFragmentCacheStatsTable();
         default:
             throwFatalException("Attempted to get unsupported stats type");
         }
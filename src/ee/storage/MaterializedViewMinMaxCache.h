@@ -0,0 +1,291 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#pragma once
+
+#include "common/NValue.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/serializeio.h"
+#include "common/UndoReleaseAction.h"
+
+#include <boost/shared_ptr.hpp>
+// The next #define limits the number of features pulled into the build
+// We don't use those features.
+#define BOOST_MULTI_INDEX_DISABLE_SERIALIZATION
+#include <boost/multi_index_container.hpp>
+#include <boost/multi_index/hashed_index.hpp>
+#include <boost/multi_index/member.hpp>
+#include <boost/multi_index/sequenced_index.hpp>
+
+#include <cmath>
+#include <limits>
+#include <string>
+#include <vector>
+
+namespace voltdb {
+
+/**
+ * The best few values of the MIN and MAX columns of a materialized view, for the groups
+ * whose MIN or MAX most recently had to be recomputed after the row holding it was deleted.
+ *
+ * Recomputing a MIN or MAX without an index on the aggregated column means scanning the
+ * whole group. The scan keeps the best MAX_CANDIDATES values it sees, and as long as the
+ * group's inserts and deletes are applied to them, the next deletes of the group's MIN or
+ * MAX take the new one from here instead of scanning again.
+ *
+ * Only values which are complete in themselves (no out-of-line storage) are kept, and
+ * everything is dropped when a transaction that changed the cache rolls back, since undo
+ * restores the source table without going through the view.
+ */
+class MaterializedViewMinMaxCache {
+public:
+    static const size_t MAX_CANDIDATES = 16;
+    static const size_t MAX_GROUPS = 64;
+
+    /**
+     * The best values of one MIN or MAX column in one group, best first. They are always
+     * the first values of the group's sorted multiset of non-null values; if m_complete,
+     * they are all of them.
+     */
+    class Candidates {
+    public:
+        /** negate is -1 for MIN, so that a better value always compares greater */
+        explicit Candidates(int negate = 1) : m_negate(negate) { }
+
+        bool isKnown() const { return m_known; }
+
+        /**
+         * If the best remaining value is known, set best to it (or to null for an empty
+         * group) and return true. Otherwise the group needs to be scanned.
+         */
+        bool best(NValue& best) const {
+            if ( ! m_known || (m_values.empty() && ! m_complete)) {
+                return false;
+            }
+            if ( ! m_values.empty()) {
+                best = m_values.front();
+            }
+            return true;
+        }
+
+        /** Start collecting the values of a scan of the whole group */
+        void startScan() {
+            m_values.clear();
+            m_complete = true;
+            m_known = true;
+        }
+
+        /** Add a non-null value of the group, found by a scan or newly inserted */
+        void add(const NValue& value) {
+            if ( ! m_known) {
+                return;
+            }
+            // the position after any values which are at least as good
+            auto iter = m_values.begin();
+            while (iter != m_values.end() && m_negate * iter->compare(value) >= 0) {
+                ++iter;
+            }
+            if (iter == m_values.end() && ! m_complete) {
+                // worse than everything known about, so it does not belong among the best values
+                return;
+            }
+            m_values.insert(iter, value);
+            if (m_values.size() > MAX_CANDIDATES) {
+                m_values.pop_back();
+                m_complete = false;
+            }
+        }
+
+        /** Remove a non-null value which was deleted from the group */
+        void remove(const NValue& value) {
+            if ( ! m_known) {
+                return;
+            }
+            for (auto iter = m_values.begin(); iter != m_values.end(); ++iter) {
+                int cmp = m_negate * iter->compare(value);
+                if (cmp == 0) {
+                    m_values.erase(iter);
+                    return;
+                }
+                if (cmp < 0) {
+                    // the value is better than one we have, so we should have had it too
+                    m_known = false;
+                    return;
+                }
+            }
+            // Worse than all the values we have, which is only expected if those are not all
+            // the values of the group. Then the best values are not affected.
+            if (m_complete) {
+                m_known = false;
+            }
+        }
+
+        size_t size() const { return m_values.size(); }
+
+    private:
+        int m_negate;
+        bool m_known = false;
+        bool m_complete = false;
+        std::vector<NValue> m_values;
+    };
+
+    explicit MaterializedViewMinMaxCache(std::vector<int> const& negates = std::vector<int>())
+        : m_negates(negates) { }
+
+    MaterializedViewMinMaxCache(const MaterializedViewMinMaxCache&) = delete;
+    MaterializedViewMinMaxCache& operator=(const MaterializedViewMinMaxCache&) = delete;
+
+    /** Drop everything and track columns with the given negates from now on */
+    void reset(std::vector<int> const& negates) {
+        m_negates = negates;
+        clear();
+    }
+
+    /** The candidates of each MIN or MAX column of a group, or NULL if it is not cached */
+    std::vector<Candidates>* find(std::string const& groupKey) {
+        auto& byKey = m_entries.get<1>();
+        auto iter = byKey.find(groupKey);
+        if (iter == byKey.end()) {
+            return NULL;
+        }
+        m_entries.relocate(m_entries.begin(), m_entries.project<0>(iter));
+        return &iter->m_candidates;
+    }
+
+    /** Get the candidates of a group, adding it (with nothing known) if it is not cached */
+    std::vector<Candidates>& findOrAdd(std::string const& groupKey) {
+        std::vector<Candidates>* found = find(groupKey);
+        if (found) {
+            return *found;
+        }
+        m_entries.push_front(Entry(groupKey, m_negates));
+        while (m_entries.size() > MAX_GROUPS) {
+            m_entries.pop_back();
+        }
+        return m_entries.front().m_candidates;
+    }
+
+    void erase(std::string const& groupKey) {
+        m_entries.get<1>().erase(groupKey);
+    }
+
+    void clear() {
+        m_entries.clear();
+    }
+
+    bool empty() const { return m_entries.empty(); }
+    size_t size() const { return m_entries.size(); }
+
+    /**
+     * The undo token of the quantum which will clear the cache if it is undone, or INT64_MIN
+     * if there is none. It is reset once that quantum is undone or released, since a
+     * transaction which is restarted runs again with the same undo token.
+     */
+    int64_t protectingUndoToken() const { return m_protectingUndoToken; }
+    void setProtectingUndoToken(int64_t undoToken) { m_protectingUndoToken = undoToken; }
+
+    /**
+     * Whether values of the given type can be kept here, i.e. whether a copy of an NValue
+     * of that type stays valid after the tuple it came from is gone.
+     */
+    static bool canCache(ValueType type) {
+        return ! isVariableLengthType(type);
+    }
+
+    /**
+     * Whether groups can be told apart by the key strings of their group by values of the
+     * given type. Points compare equal within an epsilon, so values of the same group may
+     * have different keys.
+     */
+    static bool canKeyGroupBy(ValueType type) {
+        return type != ValueType::tPOINT && type != ValueType::tGEOGRAPHY;
+    }
+
+    /**
+     * Append a value of a group key to the key's string form. Values which NValue::compare
+     * finds equal, and so belong to the same view group, get the same key.
+     */
+    static void appendToGroupKey(std::string& key, const NValue& value) {
+        ValueType type = ValuePeeker::peekValueType(value);
+        key.push_back(static_cast<char>(type));
+        if (value.isNull()) {
+            key.push_back('N');
+        } else if (type == ValueType::tDOUBLE) {
+            // all NaNs are equal, and so are 0.0 and -0.0
+            double doubleValue = ValuePeeker::peekDouble(value);
+            if (std::isnan(doubleValue)) {
+                doubleValue = std::numeric_limits<double>::quiet_NaN();
+            } else if (doubleValue == 0.0) {
+                doubleValue = 0.0;
+            }
+            key.append(reinterpret_cast<const char*>(&doubleValue), sizeof(doubleValue));
+        } else if (isVariableLengthType(type)) {
+            int32_t length;
+            const char* data = ValuePeeker::peekObject_withoutNull(value, &length);
+            key.append(reinterpret_cast<const char*>(&length), sizeof(length));
+            key.append(data, length);
+        } else {
+            char buffer[64];
+            ReferenceSerializeOutput out(buffer, sizeof(buffer));
+            value.serializeTo(out);
+            key.append(buffer, out.position());
+        }
+    }
+
+private:
+    struct Entry {
+        Entry(std::string const& groupKey, std::vector<int> const& negates)
+            : m_groupKey(groupKey), m_candidates(negates.begin(), negates.end()) { }
+
+        std::string m_groupKey;
+        // Changing these does not change the key, so it is safe despite the index
+        mutable std::vector<Candidates> m_candidates;
+    };
+
+    // MRU-first order, also indexed by group key
+    using EntrySet = boost::multi_index::multi_index_container<
+        Entry,
+        boost::multi_index::indexed_by<
+            boost::multi_index::sequenced<>,
+            boost::multi_index::hashed_unique<
+                boost::multi_index::member<Entry, std::string, &Entry::m_groupKey>>>>;
+
+    std::vector<int> m_negates;
+    EntrySet m_entries;
+    int64_t m_protectingUndoToken = INT64_MIN;
+};
+
+/** Forget all cached MIN and MAX values when a transaction which changed them rolls back */
+class MaterializedViewMinMaxCacheUndoAction : public UndoReleaseAction {
+public:
+    MaterializedViewMinMaxCacheUndoAction(boost::shared_ptr<MaterializedViewMinMaxCache> const& cache)
+        : m_cache(cache) { }
+
+    void undo() {
+        m_cache->clear();
+        m_cache->setProtectingUndoToken(INT64_MIN);
+    }
+
+    void release() {
+        m_cache->setProtectingUndoToken(INT64_MIN);
+    }
+
+private:
+    boost::shared_ptr<MaterializedViewMinMaxCache> m_cache;
+};
+
+}
@@ -26,6 +26,10 @@
 #include "indexes/CoveringCellIndex.h"
 #include "indexes/tableindex.h"
 #include "plannodes/indexscannode.h"
+#include "common/SynchronizedThreadLock.h"
+#include "common/UndoQuantum.h"
+
+#include <algorithm>
 
 ENABLE_BOOST_FOREACH_ON_CONST_MAP(Statement);
 typedef std::pair<std::string, catalog::Statement*> LabeledStatement;
@@ -39,6 +43,8 @@ MaterializedViewTriggerForWrite::MaterializedViewTriggerForWrite(PersistentTable
     : MaterializedViewTriggerForInsert(destTbl, mvInfo)
     , m_srcPersistentTable(srcTbl)
     , m_minMaxSearchKeyBackingStoreSize(0)
+    , m_minMaxCache(new MaterializedViewMinMaxCache())
+    , m_useMinMaxCache(false)
 {
     // set up mechanisms for min/max recalculation
     setupMinMaxRecalculation(mvInfo->indexForMinMax(), mvInfo->fallbackQueryStmts());
@@ -80,6 +86,11 @@ void MaterializedViewTriggerForWrite::build(PersistentTable *srcTbl,
 
 MaterializedViewTriggerForWrite::~MaterializedViewTriggerForWrite() { }
 
+// See if the index is just built on group by columns or it also includes min/max agg (ENG-6511)
+static bool minMaxIndexIncludesAggCol(TableIndex * index, size_t groupByColumnCount) {
+    return index && index->getColumnIndices().size() > groupByColumnCount;
+}
+
 void MaterializedViewTriggerForWrite::setupMinMaxRecalculation(const catalog::CatalogMap<catalog::IndexRef> &indexForMinOrMax,
                                                                const catalog::CatalogMap<catalog::Statement> &fallbackQueryStmts) {
     std::vector<TableIndex*> candidates = m_srcPersistentTable->allIndexes();
@@ -165,11 +176,40 @@ void MaterializedViewTriggerForWrite::setupMinMaxRecalculation(const catalog::Ca
 #endif
         ++ idx;
     }
-}
 
-// See if the index is just built on group by columns or it also includes min/max agg (ENG-6511)
-static bool minMaxIndexIncludesAggCol(TableIndex * index, size_t groupByColumnCount) {
-    return index && index->getColumnIndices().size() > groupByColumnCount;
+    // Only cache for the columns recalculated by scanning the whole group, i.e. not by a
+    // plan or by an index which can jump straight to the next best value.
+    std::vector<int> negates;
+    m_cacheMinMax.clear();
+    auto destTbl = destTable();
+    int minMaxAggIdx = 0;
+    for (int aggIndex = 0; aggIndex < m_aggColumnCount; aggIndex++) {
+        if (m_aggTypes[aggIndex] != EXPRESSION_TYPE_AGGREGATE_MIN &&
+            m_aggTypes[aggIndex] != EXPRESSION_TYPE_AGGREGATE_MAX) {
+            continue;
+        }
+        negates.push_back(m_aggTypes[aggIndex] == EXPRESSION_TYPE_AGGREGATE_MIN ? -1 : 1);
+        TableIndex *index = minMaxAggIdx < m_indexForMinMax.size() ? m_indexForMinMax[minMaxAggIdx] : NULL;
+        bool usesIndexOnAggCol = index &&
+                                 dynamic_cast<CoveringCellIndex *>(index) == NULL &&
+                                 minMaxIndexIncludesAggCol(index, m_groupByColumnCount);
+        bool usesPlan = minMaxAggIdx < m_usePlanForAgg.size() && m_usePlanForAgg[minMaxAggIdx];
+        ValueType type = destTbl->schema()->columnType((int)m_groupByColumnCount + aggIndex);
+        m_cacheMinMax.push_back( ! usesIndexOnAggCol && ! usesPlan &&
+                                MaterializedViewMinMaxCache::canCache(type));
+        ++minMaxAggIdx;
+    }
+    m_useMinMaxCache = std::find(m_cacheMinMax.begin(), m_cacheMinMax.end(), true) != m_cacheMinMax.end();
+    for (int colindex = 0; colindex < m_groupByColumnCount; colindex++) {
+        if ( ! MaterializedViewMinMaxCache::canKeyGroupBy(destTbl->schema()->columnType(colindex))) {
+            m_useMinMaxCache = false;
+            break;
+        }
+    }
+    if ( ! m_useMinMaxCache) {
+        m_cacheMinMax.assign(m_cacheMinMax.size(), false);
+    }
+    m_minMaxCache->reset(negates);
 }
 
 void MaterializedViewTriggerForWrite::allocateMinMaxSearchKeyTuple() {
@@ -204,7 +244,8 @@ NValue MaterializedViewTriggerForWrite::findMinMaxFallbackValueIndexed(const Tab
                                                                        int negate_for_min,
                                                                        int aggIndex,
                                                                        int minMaxAggIdx,
-                                                                       int numCountStar) {
+                                                                       int numCountStar,
+                                                                       MaterializedViewMinMaxCache::Candidates *scanned) {
     AbstractExpression *aggExpr = NULL;
     int srcColIdx = -1;
     if (m_aggExprs.size() != 0) {
@@ -267,6 +308,7 @@ NValue MaterializedViewTriggerForWrite::findMinMaxFallbackValueIndexed(const Tab
     }
     else {
         // Use sub-optimal index (only group-by columns).
+        // When its best values are to be cached, the whole group has to be scanned.
         selectedIndex->moveToKey(&m_minMaxSearchKeyTuple, minMaxCursor);
         VOLT_TRACE("Starting to scan tuples using index %s\n", selectedIndex->debug().c_str());
         TableTuple tuple;
@@ -280,7 +322,10 @@ NValue MaterializedViewTriggerForWrite::findMinMaxFallbackValueIndexed(const Tab
             if (current.isNull()) {
                 continue;
             }
-            if (current.compare(existingValue) == 0) {
+            if (scanned) {
+                scanned->add(current);
+            }
+            else if (current.compare(existingValue) == 0) {
                 newVal = current;
                 VOLT_TRACE("Found another tuple with same min / max value, breaking the loop.\n");
                 break;
@@ -300,7 +345,8 @@ NValue MaterializedViewTriggerForWrite::findMinMaxFallbackValueSequential(const
                                                                           const NValue &initialNull,
                                                                           int negate_for_min,
                                                                           int aggIndex,
-                                                                          int numCountStar) {
+                                                                          int numCountStar,
+                                                                          MaterializedViewMinMaxCache::Candidates *scanned) {
     AbstractExpression *aggExpr = NULL;
     int srcColIdx = -1;
     if (m_aggExprs.size() != 0) {
@@ -336,7 +382,10 @@ NValue MaterializedViewTriggerForWrite::findMinMaxFallbackValueSequential(const
         if (current.isNull()) {
             continue;
         }
-        if (current.compare(existingValue) == 0) {
+        if (scanned) {
+            scanned->add(current);
+        }
+        else if (current.compare(existingValue) == 0) {
             VOLT_TRACE("Found another tuple with same min / max value, breaking the loop.\n");
             newVal = current;
             break;
@@ -409,6 +458,15 @@ void MaterializedViewTriggerForWrite::processTupleDelete(
                             " expected to find it but didn't", name.c_str());
     }
 
+    // the cached MIN / MAX candidates of the group, if any
+    std::vector<MaterializedViewMinMaxCache::Candidates> *cachedGroup = NULL;
+    bool builtGroupKey = false;
+    if (m_useMinMaxCache && ! m_minMaxCache->empty()) {
+        buildMinMaxCacheGroupKey();
+        builtGroupKey = true;
+        cachedGroup = m_minMaxCache->find(m_minMaxCacheGroupKey);
+    }
+
     // clear the tuple that will be built to insert or overwrite
     memset(m_updatedTuple.address(), 0, destTbl->getTupleLength());
 
@@ -423,6 +481,10 @@ void MaterializedViewTriggerForWrite::processTupleDelete(
 
     // check if we should remove the tuple
     if (count.isZero()) {
+        if (cachedGroup) {
+            // Nothing is lost if the delete is rolled back, the group will just be scanned again.
+            m_minMaxCache->erase(m_minMaxCacheGroupKey);
+        }
         destTbl->deleteTuple(m_existingTuple, fallible);
         // If there is no group by column, the count() should remain 0 and other functions should
         // have value null. See ENG-7872.
@@ -483,30 +545,59 @@ void MaterializedViewTriggerForWrite::processTupleDelete(
                 case EXPRESSION_TYPE_AGGREGATE_MIN:
                     reversedForMin = -1; // fall through...
                     // no break
-                case EXPRESSION_TYPE_AGGREGATE_MAX:
+                case EXPRESSION_TYPE_AGGREGATE_MAX: {
+                    MaterializedViewMinMaxCache::Candidates *candidates = NULL;
+                    if (cachedGroup && m_cacheMinMax[minMaxAggIdx]) {
+                        candidates = &(*cachedGroup)[minMaxAggIdx];
+                        protectMinMaxCache(fallible);
+                        candidates->remove(oldValue);
+                    }
                     if (oldValue.compare(existingValue) == 0) {
                         // re-calculate MIN / MAX
                         newValue = NValue::getNullValue(destTbl->schema()->columnType(aggOffset+aggIndex));
-                        if (m_usePlanForAgg[minMaxAggIdx] && allowUsingPlanForMinMax) {
-                            newValue = findFallbackValueUsingPlan(oldTuple, newValue, aggIndex, minMaxAggIdx, numCountStar);
+                        if (candidates && candidates->best(newValue)) {
+                            VOLT_TRACE("found the new min / max value among the cached candidates\n");
                         }
-                        // indexscan if an index is available, otherwise tablescan
-                        else if (m_indexForMinMax[minMaxAggIdx] &&
-                                 // CoveringCellIndex is to accelerate queries that use the
-                                 // CONTAINS function which tests to see if a point is contained by a polygon.
-                                 // But NOT for value comparison, so we can't use it here.
-                                 dynamic_cast<CoveringCellIndex *>(m_indexForMinMax[minMaxAggIdx]) == NULL) {
-                            newValue = findMinMaxFallbackValueIndexed(oldTuple, existingValue, newValue,
-                                                                      reversedForMin, aggIndex, minMaxAggIdx, numCountStar);
+                        else if (minMaxAggIdx < m_usePlanForAgg.size() && m_usePlanForAgg[minMaxAggIdx] &&
+                                 allowUsingPlanForMinMax) {
+                            newValue = findFallbackValueUsingPlan(oldTuple, newValue, aggIndex, minMaxAggIdx, numCountStar);
                         }
                         else {
-                            VOLT_TRACE("before findMinMaxFallbackValueSequential\n");
-                            newValue = findMinMaxFallbackValueSequential(oldTuple, existingValue, newValue,
-                                                                         reversedForMin, aggIndex, numCountStar);
-                            VOLT_TRACE("after findMinMaxFallbackValueSequential\n");
+                            // Keep the best values seen by the scan for the next recalculations.
+                            MaterializedViewMinMaxCache::Candidates *scanned = NULL;
+                            if (m_cacheMinMax[minMaxAggIdx]) {
+                                if ( ! cachedGroup) {
+                                    if ( ! builtGroupKey) {
+                                        buildMinMaxCacheGroupKey();
+                                        builtGroupKey = true;
+                                    }
+                                    cachedGroup = &m_minMaxCache->findOrAdd(m_minMaxCacheGroupKey);
+                                }
+                                scanned = &(*cachedGroup)[minMaxAggIdx];
+                                protectMinMaxCache(fallible);
+                                scanned->startScan();
+                            }
+                            // indexscan if an index is available, otherwise tablescan
+                            if (m_indexForMinMax[minMaxAggIdx] &&
+                                // CoveringCellIndex is to accelerate queries that use the
+                                // CONTAINS function which tests to see if a point is contained by a polygon.
+                                // But NOT for value comparison, so we can't use it here.
+                                dynamic_cast<CoveringCellIndex *>(m_indexForMinMax[minMaxAggIdx]) == NULL) {
+                                newValue = findMinMaxFallbackValueIndexed(oldTuple, existingValue, newValue,
+                                                                          reversedForMin, aggIndex, minMaxAggIdx,
+                                                                          numCountStar, scanned);
+                            }
+                            else {
+                                VOLT_TRACE("before findMinMaxFallbackValueSequential\n");
+                                newValue = findMinMaxFallbackValueSequential(oldTuple, existingValue, newValue,
+                                                                             reversedForMin, aggIndex, numCountStar,
+                                                                             scanned);
+                                VOLT_TRACE("after findMinMaxFallbackValueSequential\n");
+                            }
                         }
                     }
                     break;
+                }
                 default:
                     vassert(false); // Should have been caught when the matview was loaded.
                     // no break
@@ -530,4 +621,67 @@ void MaterializedViewTriggerForWrite::processTupleDelete(
                                              m_updatableIndexList, fallible);
 }
 
+void MaterializedViewTriggerForWrite::processTupleInsert(const TableTuple &newTuple, bool fallible) {
+    MaterializedViewTriggerForInsert::processTupleInsert(newTuple, fallible);
+    // Only the views whose MIN or MAX are recalculated by scans pay for looking up the group
+    if ( ! m_useMinMaxCache || m_minMaxCache->empty()) {
+        return;
+    }
+    if ( ! m_enabled) {
+        // The view is not kept up to date, so neither can the cache be.
+        m_minMaxCache->clear();
+        return;
+    }
+    if (failsPredicate(newTuple)) {
+        return;
+    }
+    // m_searchKeyValue was set up for newTuple by the insert
+    buildMinMaxCacheGroupKey();
+    std::vector<MaterializedViewMinMaxCache::Candidates> *cachedGroup =
+            m_minMaxCache->find(m_minMaxCacheGroupKey);
+    if ( ! cachedGroup) {
+        return;
+    }
+    protectMinMaxCache(fallible);
+    int minMaxAggIdx = 0;
+    int numCountStar = 0;
+    for (int aggIndex = 0; aggIndex < m_aggColumnCount; aggIndex++) {
+        if (m_aggTypes[aggIndex] == EXPRESSION_TYPE_AGGREGATE_COUNT_STAR) {
+            numCountStar++;
+            continue;
+        }
+        if (m_aggTypes[aggIndex] != EXPRESSION_TYPE_AGGREGATE_MIN &&
+            m_aggTypes[aggIndex] != EXPRESSION_TYPE_AGGREGATE_MAX) {
+            continue;
+        }
+        if (m_cacheMinMax[minMaxAggIdx]) {
+            NValue newValue = getAggInputFromSrcTuple(aggIndex, numCountStar, newTuple);
+            if ( ! newValue.isNull()) {
+                (*cachedGroup)[minMaxAggIdx].add(newValue);
+            }
+        }
+        minMaxAggIdx++;
+    }
+}
+
+void MaterializedViewTriggerForWrite::buildMinMaxCacheGroupKey() {
+    m_minMaxCacheGroupKey.clear();
+    for (int colindex = 0; colindex < m_groupByColumnCount; colindex++) {
+        MaterializedViewMinMaxCache::appendToGroupKey(m_minMaxCacheGroupKey, m_searchKeyValue[colindex]);
+    }
+}
+
+void MaterializedViewTriggerForWrite::protectMinMaxCache(bool fallible) {
+    if ( ! fallible) {
+        return;
+    }
+    UndoQuantum *uq = ExecutorContext::currentUndoQuantum();
+    if (uq == NULL || uq->getUndoToken() == m_minMaxCache->protectingUndoToken()) {
+        return;
+    }
+    m_minMaxCache->setProtectingUndoToken(uq->getUndoToken());
+    SynchronizedThreadLock::addUndoAction(m_srcPersistentTable->isReplicatedTable(), uq,
+            new (*uq) MaterializedViewMinMaxCacheUndoAction(m_minMaxCache));
+}
+
 } // namespace voltdb
@@ -19,6 +19,7 @@
 #define MATERIALIZEDVIEWTRIGGERFORWRITE_H_
 
 #include "MaterializedViewTriggerForInsert.h"
+#include "MaterializedViewMinMaxCache.h"
 
 namespace voltdb {
 
@@ -45,6 +46,12 @@ public:
      */
     void processTupleDelete(const TableTuple &oldTuple, bool fallible);
 
+    /**
+     * Same as MaterializedViewTriggerForInsert::processTupleInsert,
+     * but also keeps the cached MIN / MAX candidates of the tuple's group up to date.
+     */
+    void processTupleInsert(const TableTuple &newTuple, bool fallible);
+
     void updateDefinition(PersistentTable *destTable,
                           catalog::MaterializedViewInfo *mvInfo) {
         MaterializedViewTriggerForInsert::updateDefinition(destTable, mvInfo);
@@ -69,14 +76,16 @@ private:
                                           int negate_for_min,
                                           int aggIndex,
                                           int minMaxAggIdx,
-                                          int aggExprOffset);
+                                          int aggExprOffset,
+                                          MaterializedViewMinMaxCache::Candidates *scanned);
 
     NValue findMinMaxFallbackValueSequential(const TableTuple& oldTuple,
                                              const NValue &existingValue,
                                              const NValue &initialNull,
                                              int negate_for_min,
                                              int aggIndex,
-                                             int aggExprOffset);
+                                             int aggExprOffset,
+                                             MaterializedViewMinMaxCache::Candidates *scanned);
 
     NValue findFallbackValueUsingPlan(const TableTuple& oldTuple,
                                       const NValue &initialNull,
@@ -84,6 +93,12 @@ private:
                                       int minMaxAggIdx,
                                       int aggExprOffset);
 
+    // Build m_minMaxCacheGroupKey from m_searchKeyValue, as set up by findExistingTuple
+    void buildMinMaxCacheGroupKey();
+
+    // Arrange for the MIN / MAX cache to be dropped if the current transaction rolls back
+    void protectMinMaxCache(bool fallible);
+
     // the source persistent table
     PersistentTable *m_srcPersistentTable;
     TableTuple m_minMaxSearchKeyTuple;
@@ -94,6 +109,14 @@ private:
     // Executor vectors to be executed when fallback on min/max value is needed (ENG-8641).
     std::vector<boost::shared_ptr<ExecutorVector> > m_fallbackExecutorVectors;
     std::vector<bool> m_usePlanForAgg;
+    // The best values of each min/max column of the groups whose min or max were recently
+    // recalculated by scanning the group, so that the next recalculations can skip the scan.
+    boost::shared_ptr<MaterializedViewMinMaxCache> m_minMaxCache;
+    // whether each min/max column is recalculated by a scan whose results are worth caching
+    std::vector<bool> m_cacheMinMax;
+    // whether any min/max column is cached and the group by columns can be keyed
+    bool m_useMinMaxCache;
+    std::string m_minMaxCacheGroupKey;
 
 };
 
@@ -0,0 +1,1013 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#pragma once
+
+#include "structures/CompactingMap.h"
+#include "common/debuglog.h"
+
+#include <cstddef>
+#include <cstdint>
+#include <utility>
+
+namespace voltdb {
+
+/**
+ * B+tree with the same interface and semantics as CompactingMap, so that it can back the
+ * same tree indexes (see CompactingTreeUniqueIndex and CompactingTreeMultiMapIndex).
+ *
+ * The red-black tree spends three pointers, a color and a count on every entry and
+ * visits one node, usually in a different cache line, per level of a search. Here the
+ * entries are kept sorted in leaf arrays of a few cache lines each, and the inner nodes
+ * hold only separator keys, child pointers and per-child entry counts. A search touches
+ * a handful of nodes and a range scan walks adjacent memory, with leaves linked both ways
+ * for reverse scans.
+ *
+ * The per-child entry counts give the rank (IndexCountExecutor) and select by rank
+ * (moveToRankTuple) support of the counting tree in O(height) node visits.
+ *
+ * Separator keys in the inner nodes are always copies of the first key of the subtree to
+ * their right, and are rewritten whenever that key goes away. This matters for key types
+ * which point into the table, like TupleKey, since the copy must never outlive the
+ * tuple. GenericPersistentKey, whose copies transfer ownership of the key's memory, cannot
+ * be used with this map at all.
+ *
+ * As with CompactingMap, iterators are invalidated by any mutation of the map.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank=false>
+class BTreeMap {
+    typedef typename KeyValuePair::first_type Key;
+    typedef typename KeyValuePair::second_type Data;
+
+    // Aim for nodes of about 8 cache lines, but always have a useful fan-out.
+    static const size_t NODE_TARGET_BYTES = 512;
+    static const int MIN_CAPACITY = 8;
+    static const int LEAF_CAPACITY =
+        NODE_TARGET_BYTES / sizeof(KeyValuePair) > MIN_CAPACITY ?
+        static_cast<int>(NODE_TARGET_BYTES / sizeof(KeyValuePair)) : MIN_CAPACITY;
+    static const int INNER_CAPACITY =
+        NODE_TARGET_BYTES / (sizeof(Key) + sizeof(void*) + sizeof(int64_t)) > MIN_CAPACITY ?
+        static_cast<int>(NODE_TARGET_BYTES / (sizeof(Key) + sizeof(void*) + sizeof(int64_t))) : MIN_CAPACITY;
+    // Non-root nodes with fewer entries than this borrow from or merge with a sibling.
+    static const int LEAF_MIN = LEAF_CAPACITY / 2;
+    static const int INNER_MIN = INNER_CAPACITY / 2;
+
+    struct InnerNode;
+
+    struct Node {
+        Node(bool leaf) : parent(NULL), count(0), isLeaf(leaf) { }
+        InnerNode *parent;
+        // number of entries in a leaf, number of children of an inner node
+        int count;
+        bool isLeaf;
+    };
+
+    struct LeafNode : public Node {
+        LeafNode() : Node(true), prev(NULL), next(NULL) { }
+        LeafNode *prev;
+        LeafNode *next;
+        KeyValuePair kvs[LEAF_CAPACITY];
+    };
+
+    struct InnerNode : public Node {
+        InnerNode() : Node(false) { }
+        // keys[i] is a copy of the first key under children[i + 1]
+        Key keys[INNER_CAPACITY - 1];
+        Node *children[INNER_CAPACITY];
+        // number of entries under each child
+        int64_t counts[INNER_CAPACITY];
+    };
+
+public:
+    class iterator {
+        friend class BTreeMap<KeyValuePair, Compare, hasRank>;
+    protected:
+        LeafNode *m_leaf;
+        int m_pos;
+        iterator(LeafNode *leaf, int pos) : m_leaf(leaf), m_pos(pos) {}
+    public:
+        iterator() : m_leaf(NULL), m_pos(0) {}
+        // The end iterator has the key of a default constructed entry, as the NIL node of
+        // CompactingMap does, since some callers peek at it before checking isEnd().
+        const Key &key() const { return m_leaf ? m_leaf->kvs[m_pos].getKey() : endPair().getKey(); }
+        const Data &value() const { return m_leaf->kvs[m_pos].getValue(); }
+        void setValue(const Data &value) { m_leaf->kvs[m_pos].setValue(value); }
+        void moveNext() {
+            if (++m_pos == m_leaf->count) {
+                m_leaf = m_leaf->next;
+                m_pos = 0;
+            }
+        }
+        void movePrev() {
+            if (m_leaf == NULL) {
+                return;
+            }
+            if (m_pos == 0) {
+                m_leaf = m_leaf->prev;
+                m_pos = m_leaf ? m_leaf->count - 1 : 0;
+            }
+            else {
+                --m_pos;
+            }
+        }
+        bool isEnd() const { return m_leaf == NULL; }
+        bool equals(const iterator &iter) const {
+            return m_leaf == iter.m_leaf && m_pos == iter.m_pos;
+        }
+    };
+
+    BTreeMap(bool unique, Compare comper);
+    ~BTreeMap();
+
+    const Data *insert(const Key &key, const Data &data);
+    bool erase(const Key &key);
+    bool erase(iterator &iter);
+
+    iterator find(const Key &key) const;
+    iterator findRank(int64_t ith) const;
+    int64_t size() const { return m_count; }
+    iterator begin() const;
+    iterator rbegin() const;
+
+    iterator lowerBound(const Key &key) const { return lowerPosition(key, m_comper); }
+    iterator upperBound(const Key &key) const
+    {
+        Key tmpKey(key);
+        setPointerValue(tmpKey, MAXPOINTER);
+        return upperPosition(tmpKey, m_comper);
+    }
+    // do upperBound(key) but treat null values in key as maximum
+    iterator upperBoundNullAsMax(const Key &key) const
+    {
+        Key tmpKey(key);
+        setPointerValue(tmpKey, MAXPOINTER);
+        return upperPosition(tmpKey, m_comper.getNullAsMaxComparator());
+    }
+
+    std::pair<iterator, iterator> equalRange(const Key &key) const
+    {
+        return std::pair<iterator, iterator>(lowerBound(key), upperBound(key));
+    }
+
+    size_t bytesAllocated() const
+    {
+        return m_leafCount * sizeof(LeafNode) + m_innerCount * sizeof(InnerNode);
+    }
+
+    // Must pass a key that already in map, or else return -1
+    int64_t rankLower(const Key& key) const;
+    int64_t rankUpper(const Key& key) const;
+
+    /**
+     * For debugging: verify the ordering, separator, count and fill invariants. SLOW.
+     */
+    bool verify() const;
+    bool verifyRank() const;
+
+    static_assert(sizeof(iterator) <= 16, "Index iterators must fit in an IndexCursor");
+
+private:
+    // Adapts the comparator's compareWithoutPointer to the two argument form
+    struct WithoutPointerComparator {
+        WithoutPointerComparator(const Compare &comper) : m_comper(comper) { }
+        int operator()(const Key &lhs, const Key &rhs) const { return m_comper.compareWithoutPointer(lhs, rhs); }
+        const Compare &m_comper;
+    };
+
+    static const KeyValuePair &endPair()
+    {
+        static const KeyValuePair kv;
+        return kv;
+    }
+
+    static int64_t subtreeCount(const Node *node);
+    static int indexInParent(const Node *node);
+    static const Key &firstKey(const Node *node);
+    static LeafNode *leftmostLeaf(Node *node);
+    static LeafNode *rightmostLeaf(Node *node);
+
+    template<typename Cmp> iterator lowerPosition(const Key &key, const Cmp &cmp) const;
+    template<typename Cmp> iterator upperPosition(const Key &key, const Cmp &cmp) const;
+    int64_t rankOf(const iterator &iter) const;
+
+    void addToCounts(Node *node, int64_t delta);
+    void updateSeparator(Node *node);
+    LeafNode *splitLeaf(LeafNode *leaf);
+    void splitInner(InnerNode *node);
+    void insertChild(Node *left, Node *right, int64_t rightCount);
+    void removeChild(InnerNode *parent, int idx);
+    void eraseAt(LeafNode *leaf, int pos);
+    void rebalanceLeaf(LeafNode *leaf);
+    void rebalanceInner(InnerNode *node);
+    void destroy(Node *node);
+
+    int verify(const Node *node, int depth, int &leafDepth, int64_t &total) const;
+
+    Node *m_root;
+    int64_t m_count;
+    size_t m_leafCount;
+    size_t m_innerCount;
+    bool m_unique;
+    Compare m_comper;
+};
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+BTreeMap<KeyValuePair, Compare, hasRank>::BTreeMap(bool unique, Compare comper)
+    : m_root(NULL),
+      m_count(0),
+      m_leafCount(0),
+      m_innerCount(0),
+      m_unique(unique),
+      m_comper(comper)
+{ }
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+BTreeMap<KeyValuePair, Compare, hasRank>::~BTreeMap()
+{
+    if (m_root != NULL) {
+        destroy(m_root);
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::destroy(Node *node)
+{
+    if (node->isLeaf) {
+        delete static_cast<LeafNode*>(node);
+        return;
+    }
+    InnerNode *inner = static_cast<InnerNode*>(node);
+    for (int i = 0; i < inner->count; ++i) {
+        destroy(inner->children[i]);
+    }
+    delete inner;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t BTreeMap<KeyValuePair, Compare, hasRank>::subtreeCount(const Node *node)
+{
+    if (node->isLeaf) {
+        return node->count;
+    }
+    const InnerNode *inner = static_cast<const InnerNode*>(node);
+    int64_t total = 0;
+    for (int i = 0; i < inner->count; ++i) {
+        total += inner->counts[i];
+    }
+    return total;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int BTreeMap<KeyValuePair, Compare, hasRank>::indexInParent(const Node *node)
+{
+    const InnerNode *parent = node->parent;
+    for (int i = 0; i < parent->count; ++i) {
+        if (parent->children[i] == node) {
+            return i;
+        }
+    }
+    vassert(false);
+    return -1;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+const typename BTreeMap<KeyValuePair, Compare, hasRank>::Key &
+BTreeMap<KeyValuePair, Compare, hasRank>::firstKey(const Node *node)
+{
+    while (! node->isLeaf) {
+        node = static_cast<const InnerNode*>(node)->children[0];
+    }
+    vassert(node->count > 0);
+    return static_cast<const LeafNode*>(node)->kvs[0].getKey();
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::LeafNode *
+BTreeMap<KeyValuePair, Compare, hasRank>::leftmostLeaf(Node *node)
+{
+    while (! node->isLeaf) {
+        node = static_cast<InnerNode*>(node)->children[0];
+    }
+    return static_cast<LeafNode*>(node);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::LeafNode *
+BTreeMap<KeyValuePair, Compare, hasRank>::rightmostLeaf(Node *node)
+{
+    while (! node->isLeaf) {
+        InnerNode *inner = static_cast<InnerNode*>(node);
+        node = inner->children[inner->count - 1];
+    }
+    return static_cast<LeafNode*>(node);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::begin() const
+{
+    if (m_count == 0) {
+        return iterator();
+    }
+    return iterator(leftmostLeaf(m_root), 0);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::rbegin() const
+{
+    if (m_count == 0) {
+        return iterator();
+    }
+    LeafNode *leaf = rightmostLeaf(m_root);
+    return iterator(leaf, leaf->count - 1);
+}
+
+/**
+ * Position of the first entry not less than key according to cmp.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank>
+template<typename Cmp>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::lowerPosition(const Key &key, const Cmp &cmp) const
+{
+    if (m_count == 0) {
+        return iterator();
+    }
+    const Node *node = m_root;
+    while (! node->isLeaf) {
+        const InnerNode *inner = static_cast<const InnerNode*>(node);
+        // Keys equal to a separator may also end the child to its left.
+        int i = 0;
+        while (i < inner->count - 1 && cmp(inner->keys[i], key) < 0) {
+            ++i;
+        }
+        node = inner->children[i];
+    }
+    LeafNode *leaf = const_cast<LeafNode*>(static_cast<const LeafNode*>(node));
+    int lo = 0;
+    int hi = leaf->count;
+    while (lo < hi) {
+        int mid = (lo + hi) / 2;
+        if (cmp(leaf->kvs[mid].getKey(), key) < 0) {
+            lo = mid + 1;
+        }
+        else {
+            hi = mid;
+        }
+    }
+    if (lo == leaf->count) {
+        return iterator(leaf->next, 0);
+    }
+    return iterator(leaf, lo);
+}
+
+/**
+ * Position of the first entry greater than key according to cmp.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank>
+template<typename Cmp>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::upperPosition(const Key &key, const Cmp &cmp) const
+{
+    if (m_count == 0) {
+        return iterator();
+    }
+    const Node *node = m_root;
+    while (! node->isLeaf) {
+        const InnerNode *inner = static_cast<const InnerNode*>(node);
+        int i = 0;
+        while (i < inner->count - 1 && cmp(inner->keys[i], key) <= 0) {
+            ++i;
+        }
+        node = inner->children[i];
+    }
+    LeafNode *leaf = const_cast<LeafNode*>(static_cast<const LeafNode*>(node));
+    int lo = 0;
+    int hi = leaf->count;
+    while (lo < hi) {
+        int mid = (lo + hi) / 2;
+        if (cmp(leaf->kvs[mid].getKey(), key) <= 0) {
+            lo = mid + 1;
+        }
+        else {
+            hi = mid;
+        }
+    }
+    if (lo == leaf->count) {
+        return iterator(leaf->next, 0);
+    }
+    return iterator(leaf, lo);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::find(const Key &key) const
+{
+    iterator iter = lowerPosition(key, m_comper);
+    if (iter.isEnd() || m_comper(iter.key(), key) != 0) {
+        return iterator();
+    }
+    return iter;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::iterator
+BTreeMap<KeyValuePair, Compare, hasRank>::findRank(int64_t ith) const
+{
+    if ((!hasRank) || ith < 1 || ith > m_count) {
+        return iterator();
+    }
+    Node *node = m_root;
+    while (! node->isLeaf) {
+        InnerNode *inner = static_cast<InnerNode*>(node);
+        int i = 0;
+        while (ith > inner->counts[i]) {
+            ith -= inner->counts[i];
+            ++i;
+        }
+        vassert(i < inner->count);
+        node = inner->children[i];
+    }
+    return iterator(static_cast<LeafNode*>(node), static_cast<int>(ith - 1));
+}
+
+/**
+ * One-based position of the entry at iter in the whole map.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t BTreeMap<KeyValuePair, Compare, hasRank>::rankOf(const iterator &iter) const
+{
+    int64_t rank = iter.m_pos + 1;
+    for (const Node *node = iter.m_leaf; node->parent != NULL; node = node->parent) {
+        const InnerNode *parent = node->parent;
+        for (int i = 0; parent->children[i] != node; ++i) {
+            rank += parent->counts[i];
+        }
+    }
+    return rank;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t BTreeMap<KeyValuePair, Compare, hasRank>::rankLower(const Key& key) const
+{
+    if (!hasRank) {
+        return -1;
+    }
+    // return -1 if the key passed in is not in the map
+    if (find(key).isEnd()) {
+        return -1;
+    }
+    // only compare the "data" part of the key
+    return rankOf(lowerPosition(key, WithoutPointerComparator(m_comper)));
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int64_t BTreeMap<KeyValuePair, Compare, hasRank>::rankUpper(const Key& key) const
+{
+    if (!hasRank) {
+        return -1;
+    }
+    if (m_unique) {
+        return rankLower(key);
+    }
+    if (find(key).isEnd()) {
+        return -1;
+    }
+    iterator iter = upperPosition(key, WithoutPointerComparator(m_comper));
+    if (iter.isEnd()) {
+        return m_count;
+    }
+    return rankOf(iter) - 1;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::addToCounts(Node *node, int64_t delta)
+{
+    for (; node->parent != NULL; node = node->parent) {
+        node->parent->counts[indexInParent(node)] += delta;
+    }
+}
+
+/**
+ * The first key under node has changed: rewrite the one separator which copies it.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::updateSeparator(Node *node)
+{
+    for (Node *child = node; child->parent != NULL; child = child->parent) {
+        int idx = indexInParent(child);
+        if (idx > 0) {
+            child->parent->keys[idx - 1] = firstKey(node);
+            return;
+        }
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+const typename BTreeMap<KeyValuePair, Compare, hasRank>::Data *
+BTreeMap<KeyValuePair, Compare, hasRank>::insert(const Key &key, const Data &value)
+{
+    if (m_root == NULL) {
+        m_root = new LeafNode();
+        ++m_leafCount;
+    }
+
+    // Find the leaf and the position after any existing duplicates. This never lands in
+    // front of the first entry of a leaf other than the leftmost one, since that entry is
+    // also a separator not greater than key, so no separator needs to change.
+    Node *node = m_root;
+    while (! node->isLeaf) {
+        InnerNode *inner = static_cast<InnerNode*>(node);
+        int i = 0;
+        while (i < inner->count - 1 && m_comper(inner->keys[i], key) <= 0) {
+            ++i;
+        }
+        node = inner->children[i];
+    }
+    LeafNode *leaf = static_cast<LeafNode*>(node);
+    int lo = 0;
+    int hi = leaf->count;
+    while (lo < hi) {
+        int mid = (lo + hi) / 2;
+        if (m_comper(leaf->kvs[mid].getKey(), key) <= 0) {
+            lo = mid + 1;
+        }
+        else {
+            hi = mid;
+        }
+    }
+    int pos = lo;
+
+    if (m_unique) {
+        // Inserting exact matches fails for unique indexes.
+        KeyValuePair *prior = NULL;
+        if (pos > 0) {
+            prior = &leaf->kvs[pos - 1];
+        }
+        else if (leaf->prev != NULL) {
+            prior = &leaf->prev->kvs[leaf->prev->count - 1];
+        }
+        if (prior != NULL && m_comper(prior->getKey(), key) == 0) {
+            return &prior->getValue();
+        }
+    }
+
+    if (leaf->count == LEAF_CAPACITY) {
+        LeafNode *right = splitLeaf(leaf);
+        if (pos > leaf->count) {
+            pos -= leaf->count;
+            leaf = right;
+        }
+    }
+
+    for (int i = leaf->count; i > pos; --i) {
+        leaf->kvs[i] = leaf->kvs[i - 1];
+    }
+    leaf->kvs[pos].setKeyValuePair(key, value);
+    ++leaf->count;
+    addToCounts(leaf, 1);
+    ++m_count;
+    return NULL;
+}
+
+/**
+ * Move the upper half of a full leaf to a new leaf to its right.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank>
+typename BTreeMap<KeyValuePair, Compare, hasRank>::LeafNode *
+BTreeMap<KeyValuePair, Compare, hasRank>::splitLeaf(LeafNode *leaf)
+{
+    LeafNode *right = new LeafNode();
+    ++m_leafCount;
+    int keep = leaf->count / 2;
+    for (int i = keep; i < leaf->count; ++i) {
+        // Assignment leaves any owned memory with the new leaf.
+        right->kvs[i - keep] = leaf->kvs[i];
+        leaf->kvs[i] = KeyValuePair();
+    }
+    right->count = leaf->count - keep;
+    leaf->count = keep;
+
+    right->prev = leaf;
+    right->next = leaf->next;
+    if (leaf->next != NULL) {
+        leaf->next->prev = right;
+    }
+    leaf->next = right;
+
+    insertChild(leaf, right, right->count);
+    return right;
+}
+
+/**
+ * Move the upper half of the children of a full inner node to a new node to its right.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::splitInner(InnerNode *node)
+{
+    InnerNode *right = new InnerNode();
+    ++m_innerCount;
+    int keep = node->count / 2;
+    int64_t rightCount = 0;
+    for (int i = keep; i < node->count; ++i) {
+        right->children[i - keep] = node->children[i];
+        right->counts[i - keep] = node->counts[i];
+        right->children[i - keep]->parent = right;
+        rightCount += node->counts[i];
+        if (i > keep) {
+            right->keys[i - keep - 1] = node->keys[i - 1];
+        }
+    }
+    right->count = node->count - keep;
+    node->count = keep;
+    insertChild(node, right, rightCount);
+}
+
+/**
+ * Add right to the parent of left, just after it. rightCount entries of the parent's
+ * count for left have moved to right.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::insertChild(Node *left, Node *right, int64_t rightCount)
+{
+    if (left->parent == NULL) {
+        InnerNode *root = new InnerNode();
+        ++m_innerCount;
+        root->children[0] = left;
+        root->counts[0] = subtreeCount(left) + rightCount;
+        root->count = 1;
+        left->parent = root;
+        m_root = root;
+    }
+    else if (left->parent->count == INNER_CAPACITY) {
+        // left may move to the new sibling of its parent
+        splitInner(left->parent);
+    }
+    InnerNode *parent = left->parent;
+    int idx = indexInParent(left);
+    for (int i = parent->count; i > idx + 1; --i) {
+        parent->children[i] = parent->children[i - 1];
+        parent->counts[i] = parent->counts[i - 1];
+        parent->keys[i - 1] = parent->keys[i - 2];
+    }
+    parent->children[idx + 1] = right;
+    parent->counts[idx + 1] = rightCount;
+    parent->counts[idx] -= rightCount;
+    parent->keys[idx] = firstKey(right);
+    right->parent = parent;
+    ++parent->count;
+}
+
+/**
+ * Drop the child at idx, whose entries have already been moved to the child before it.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::removeChild(InnerNode *parent, int idx)
+{
+    vassert(idx > 0);
+    parent->counts[idx - 1] += parent->counts[idx];
+    for (int i = idx; i < parent->count - 1; ++i) {
+        parent->children[i] = parent->children[i + 1];
+        parent->counts[i] = parent->counts[i + 1];
+        parent->keys[i - 1] = parent->keys[i];
+    }
+    --parent->count;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+bool BTreeMap<KeyValuePair, Compare, hasRank>::erase(const Key &key)
+{
+    iterator iter = find(key);
+    if (iter.isEnd()) {
+        return false;
+    }
+    eraseAt(iter.m_leaf, iter.m_pos);
+    return true;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+bool BTreeMap<KeyValuePair, Compare, hasRank>::erase(iterator &iter)
+{
+    vassert(! iter.isEnd());
+    eraseAt(iter.m_leaf, iter.m_pos);
+    return true;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::eraseAt(LeafNode *leaf, int pos)
+{
+    // Shift the erased entry to the end of the leaf, then overwrite it with an empty
+    // entry, which frees anything the key owns.
+    for (int i = pos; i < leaf->count - 1; ++i) {
+        leaf->kvs[i] = leaf->kvs[i + 1];
+    }
+    leaf->kvs[leaf->count - 1] = KeyValuePair();
+    --leaf->count;
+    addToCounts(leaf, -1);
+    --m_count;
+    if (pos == 0 && leaf->count > 0) {
+        updateSeparator(leaf);
+    }
+    rebalanceLeaf(leaf);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::rebalanceLeaf(LeafNode *leaf)
+{
+    InnerNode *parent = leaf->parent;
+    if (parent == NULL) {
+        if (leaf->count == 0) {
+            delete leaf;
+            --m_leafCount;
+            m_root = NULL;
+        }
+        return;
+    }
+    if (leaf->count >= LEAF_MIN) {
+        return;
+    }
+
+    int idx = indexInParent(leaf);
+    if (idx + 1 < parent->count) {
+        LeafNode *right = static_cast<LeafNode*>(parent->children[idx + 1]);
+        if (right->count > LEAF_MIN) {
+            // borrow the first entry of the right sibling
+            leaf->kvs[leaf->count++] = right->kvs[0];
+            for (int i = 0; i < right->count - 1; ++i) {
+                right->kvs[i] = right->kvs[i + 1];
+            }
+            right->kvs[--right->count] = KeyValuePair();
+            ++parent->counts[idx];
+            --parent->counts[idx + 1];
+            parent->keys[idx] = right->kvs[0].getKey();
+            if (leaf->count == 1) {
+                updateSeparator(leaf);
+            }
+            return;
+        }
+        // merge the right sibling into this leaf
+        int first = leaf->count;
+        for (int i = 0; i < right->count; ++i) {
+            leaf->kvs[leaf->count++] = right->kvs[i];
+        }
+        leaf->next = right->next;
+        if (right->next != NULL) {
+            right->next->prev = leaf;
+        }
+        removeChild(parent, idx + 1);
+        delete right;
+        --m_leafCount;
+        if (first == 0) {
+            updateSeparator(leaf);
+        }
+    }
+    else {
+        LeafNode *left = static_cast<LeafNode*>(parent->children[idx - 1]);
+        if (left->count > LEAF_MIN) {
+            // borrow the last entry of the left sibling
+            for (int i = leaf->count; i > 0; --i) {
+                leaf->kvs[i] = leaf->kvs[i - 1];
+            }
+            leaf->kvs[0] = left->kvs[left->count - 1];
+            left->kvs[--left->count] = KeyValuePair();
+            ++leaf->count;
+            --parent->counts[idx - 1];
+            ++parent->counts[idx];
+            parent->keys[idx - 1] = leaf->kvs[0].getKey();
+            return;
+        }
+        // merge this leaf into the left sibling
+        for (int i = 0; i < leaf->count; ++i) {
+            left->kvs[left->count++] = leaf->kvs[i];
+        }
+        left->next = leaf->next;
+        if (leaf->next != NULL) {
+            leaf->next->prev = left;
+        }
+        removeChild(parent, idx);
+        delete leaf;
+        --m_leafCount;
+    }
+    rebalanceInner(parent);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+void BTreeMap<KeyValuePair, Compare, hasRank>::rebalanceInner(InnerNode *node)
+{
+    InnerNode *parent = node->parent;
+    if (parent == NULL) {
+        if (node->count == 1) {
+            // the tree shrinks by one level
+            m_root = node->children[0];
+            m_root->parent = NULL;
+            delete node;
+            --m_innerCount;
+        }
+        return;
+    }
+    if (node->count >= INNER_MIN) {
+        return;
+    }
+
+    int idx = indexInParent(node);
+    if (idx + 1 < parent->count) {
+        InnerNode *right = static_cast<InnerNode*>(parent->children[idx + 1]);
+        if (right->count > INNER_MIN) {
+            // borrow the first child of the right sibling
+            Node *moved = right->children[0];
+            int64_t movedCount = right->counts[0];
+            node->keys[node->count - 1] = parent->keys[idx];
+            node->children[node->count] = moved;
+            node->counts[node->count] = movedCount;
+            ++node->count;
+            moved->parent = node;
+            parent->keys[idx] = right->keys[0];
+            for (int i = 0; i < right->count - 1; ++i) {
+                right->children[i] = right->children[i + 1];
+                right->counts[i] = right->counts[i + 1];
+                if (i < right->count - 2) {
+                    right->keys[i] = right->keys[i + 1];
+                }
+            }
+            --right->count;
+            parent->counts[idx] += movedCount;
+            parent->counts[idx + 1] -= movedCount;
+            return;
+        }
+        // merge the right sibling into this node
+        node->keys[node->count - 1] = parent->keys[idx];
+        for (int i = 0; i < right->count; ++i) {
+            node->children[node->count + i] = right->children[i];
+            node->counts[node->count + i] = right->counts[i];
+            right->children[i]->parent = node;
+            if (i > 0) {
+                node->keys[node->count + i - 1] = right->keys[i - 1];
+            }
+        }
+        node->count += right->count;
+        removeChild(parent, idx + 1);
+        delete right;
+        --m_innerCount;
+    }
+    else {
+        InnerNode *left = static_cast<InnerNode*>(parent->children[idx - 1]);
+        if (left->count > INNER_MIN) {
+            // borrow the last child of the left sibling
+            Node *moved = left->children[left->count - 1];
+            int64_t movedCount = left->counts[left->count - 1];
+            for (int i = node->count; i > 0; --i) {
+                node->children[i] = node->children[i - 1];
+                node->counts[i] = node->counts[i - 1];
+                if (i > 1) {
+                    node->keys[i - 1] = node->keys[i - 2];
+                }
+            }
+            node->keys[0] = parent->keys[idx - 1];
+            node->children[0] = moved;
+            node->counts[0] = movedCount;
+            ++node->count;
+            moved->parent = node;
+            parent->keys[idx - 1] = left->keys[left->count - 2];
+            --left->count;
+            parent->counts[idx - 1] -= movedCount;
+            parent->counts[idx] += movedCount;
+            return;
+        }
+        // merge this node into the left sibling
+        left->keys[left->count - 1] = parent->keys[idx - 1];
+        for (int i = 0; i < node->count; ++i) {
+            left->children[left->count + i] = node->children[i];
+            left->counts[left->count + i] = node->counts[i];
+            node->children[i]->parent = left;
+            if (i > 0) {
+                left->keys[left->count + i - 1] = node->keys[i - 1];
+            }
+        }
+        left->count += node->count;
+        removeChild(parent, idx);
+        delete node;
+        --m_innerCount;
+    }
+    rebalanceInner(parent);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+bool BTreeMap<KeyValuePair, Compare, hasRank>::verify() const
+{
+    if (m_root == NULL) {
+        return m_count == 0;
+    }
+    if (m_root->parent != NULL) {
+        return false;
+    }
+    int leafDepth = -1;
+    int64_t total = 0;
+    if (verify(m_root, 0, leafDepth, total) != 0 || total != m_count) {
+        return false;
+    }
+    // the leaves, followed in both directions, hold every entry in order
+    int64_t forward = 0;
+    const LeafNode *last = NULL;
+    for (const LeafNode *leaf = leftmostLeaf(m_root); leaf != NULL; leaf = leaf->next) {
+        if (leaf->prev != last) {
+            return false;
+        }
+        if (last != NULL && m_comper(last->kvs[last->count - 1].getKey(), leaf->kvs[0].getKey()) > 0) {
+            return false;
+        }
+        forward += leaf->count;
+        last = leaf;
+    }
+    if (forward != m_count || last != rightmostLeaf(m_root)) {
+        return false;
+    }
+    return true;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+int BTreeMap<KeyValuePair, Compare, hasRank>::verify(const Node *node, int depth, int &leafDepth, int64_t &total) const
+{
+    if (node->isLeaf) {
+        const LeafNode *leaf = static_cast<const LeafNode*>(node);
+        if (leafDepth == -1) {
+            leafDepth = depth;
+        }
+        if (depth != leafDepth) {
+            VOLT_ERROR("BTreeMap leaves at different depths");
+            return -1;
+        }
+        if (leaf->count < (node == m_root ? 1 : LEAF_MIN) || leaf->count > LEAF_CAPACITY) {
+            VOLT_ERROR("BTreeMap leaf holds %d entries", leaf->count);
+            return -1;
+        }
+        for (int i = 1; i < leaf->count; ++i) {
+            int cmp = m_comper(leaf->kvs[i - 1].getKey(), leaf->kvs[i].getKey());
+            if (cmp > 0 || (m_unique && cmp == 0)) {
+                VOLT_ERROR("BTreeMap leaf out of order");
+                return -1;
+            }
+        }
+        total += leaf->count;
+        return 0;
+    }
+    const InnerNode *inner = static_cast<const InnerNode*>(node);
+    if (inner->count < (node == m_root ? 2 : INNER_MIN) || inner->count > INNER_CAPACITY) {
+        VOLT_ERROR("BTreeMap inner node holds %d children", inner->count);
+        return -1;
+    }
+    for (int i = 0; i < inner->count; ++i) {
+        const Node *child = inner->children[i];
+        if (child->parent != inner) {
+            VOLT_ERROR("BTreeMap bad parent pointer");
+            return -1;
+        }
+        if (i > 0 && m_comper(inner->keys[i - 1], firstKey(child)) != 0) {
+            VOLT_ERROR("BTreeMap separator is not the first key of its subtree");
+            return -1;
+        }
+        int64_t childTotal = 0;
+        if (verify(child, depth + 1, leafDepth, childTotal) != 0) {
+            return -1;
+        }
+        if (childTotal != inner->counts[i]) {
+            VOLT_ERROR("BTreeMap count %jd does not match the %jd entries below",
+                       (intmax_t)inner->counts[i], (intmax_t)childTotal);
+            return -1;
+        }
+        total += childTotal;
+    }
+    return 0;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank>
+bool BTreeMap<KeyValuePair, Compare, hasRank>::verifyRank() const
+{
+    if (!hasRank) {
+        return true;
+    }
+    int64_t rank = 1;
+    for (iterator iter = begin(); ! iter.isEnd(); iter.moveNext(), ++rank) {
+        if (rankOf(iter) != rank || ! findRank(rank).equals(iter)) {
+            VOLT_ERROR("BTreeMap rank %jd does not round trip", (intmax_t)rank);
+            return false;
+        }
+    }
+    return rank == m_count + 1;
+}
+
+}
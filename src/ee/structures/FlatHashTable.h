@@ -0,0 +1,349 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#pragma once
+
+#include "common/debuglog.h"
+
+#include <cstddef>
+#include <cstdint>
+#include <cstring>
+#include <new>
+#include <sys/mman.h>
+
+#ifdef __SSE2__
+#include <emmintrin.h>
+#endif
+
+namespace voltdb {
+
+/**
+ * FlatHashTable is an open-addressing unique hash map in the style of the "Swiss table":
+ * a flat array of key/value slots plus one control byte per slot. A control byte says whether
+ * its slot is empty, deleted or full, and for full slots holds 7 bits of the key's hash.
+ *
+ * Compared to CompactingHashTable it:
+ * 1. Stores no bucket array, chain pointer or hash per entry, just the key, the value and one
+ *    control byte, which makes a unique index on integer keys roughly half the size.
+ * 2. Looks a key up by scanning the control bytes of a group of 16 slots at a time (with SSE2
+ *    when it is available), so most probes touch one cache line of control bytes and compare
+ *    exactly one key.
+ * 3. Like CompactingHashTable, releases memory as entries are removed: the slot array is
+ *    reallocated at half its size once it is less than 1/8 full, and it is mmap'ed so the
+ *    memory goes straight back to the OS.
+ * 4. Only supports unique keys, and iterators (which point at a slot) are invalidated by any
+ *    insert or erase.
+ *
+ * The slots are grouped in aligned groups of GROUP_WIDTH and probed group by group
+ * (quadratically), stopping at the first group which has an empty slot. An erased slot is
+ * marked empty when its group already has an empty slot, since no probe can have gone past
+ * that group, and deleted otherwise. Deleted slots are reused by inserts and purged when
+ * the table is resized.
+ */
+template<class K, class T, class H, class EK>
+class FlatHashTable {
+public:
+    typedef K Key;
+    typedef T Data;
+    typedef H Hasher;
+    typedef EK KeyEqChecker;
+
+    static const size_t GROUP_WIDTH = 16;
+    // grow (or purge deleted slots) when 7/8 of the slots are used
+    static const size_t MAX_LOAD_NUMERATOR = 7;
+    static const size_t MAX_LOAD_DENOMINATOR = 8;
+    // shrink when less than 1/8 of the slots are full
+    static const size_t MIN_LOAD_DENOMINATOR = 8;
+    static const size_t MIN_CAPACITY = GROUP_WIDTH;
+
+private:
+    static const int8_t CTRL_EMPTY = -128;  // 0b10000000
+    static const int8_t CTRL_DELETED = -2;  // 0b11111110
+    // a full slot holds the low 7 bits of the hash, 0b0xxxxxxx
+
+    struct Slot {
+        Key key;
+        Data value;
+    };
+
+public:
+    /**
+     * Iterator pointing at one entry, or at nothing (isEnd()), matching the
+     * CompactingHashTable iterator for unique keys.
+     */
+    class iterator {
+        friend class FlatHashTable;
+        Slot *m_slot;
+        explicit iterator(Slot *slot) : m_slot(slot) {}
+    public:
+        iterator() : m_slot(NULL) {}
+
+        Key &key() const { return m_slot->key; }
+        Data &value() const { return m_slot->value; }
+        void setValue(const Data &value) { m_slot->value = value; }
+        bool isEnd() const { return m_slot == NULL; }
+        bool equals(iterator &iter) const { return m_slot == iter.m_slot; }
+    };
+
+    FlatHashTable(Hasher hasher, KeyEqChecker keyEq) : m_hasher(hasher), m_keyEq(keyEq) {
+        allocate(MIN_CAPACITY);
+    }
+
+    ~FlatHashTable() {
+        destroySlots();
+        release();
+    }
+
+    FlatHashTable(const FlatHashTable&) = delete;
+    FlatHashTable& operator=(const FlatHashTable&) = delete;
+
+    iterator find(const Key &key) const {
+        const size_t hash = hashOf(key);
+        return iterator(findSlot(key, hash));
+    }
+
+    /**
+     * Insert a new key. If the key is already present, nothing is changed and a pointer
+     * to the existing value is returned. Returns NULL on success.
+     */
+    const Data *insert(const Key &key, const Data &value) {
+        const size_t hash = hashOf(key);
+        Slot *existing = findSlot(key, hash);
+        if (existing != NULL) {
+            return &existing->value;
+        }
+        if ((m_size + m_deleted + 1) * MAX_LOAD_DENOMINATOR > m_capacity * MAX_LOAD_NUMERATOR) {
+            // Double if the table is really filling up, otherwise just purge the deleted slots
+            resize((m_size + 1) * MAX_LOAD_DENOMINATOR * 2 > m_capacity * MAX_LOAD_NUMERATOR ?
+                    m_capacity * 2 : m_capacity);
+        }
+        const size_t pos = findFreePosition(hash);
+        if (m_ctrl[pos] == CTRL_DELETED) {
+            --m_deleted;
+        }
+        m_ctrl[pos] = h2(hash);
+        ::new (m_slots + pos) Slot();
+        m_slots[pos].key = key;
+        m_slots[pos].value = value;
+        ++m_size;
+        return NULL;
+    }
+
+    /** Remove a key. Returns false if the key was not found. */
+    bool erase(const Key &key) {
+        Slot *slot = findSlot(key, hashOf(key));
+        if (slot == NULL) {
+            return false;
+        }
+        const size_t pos = slot - m_slots;
+        slot->~Slot();
+        const size_t groupStart = pos & ~(GROUP_WIDTH - 1);
+        if (matchEmpty(m_ctrl + groupStart) != 0) {
+            m_ctrl[pos] = CTRL_EMPTY;
+        }
+        else {
+            m_ctrl[pos] = CTRL_DELETED;
+            ++m_deleted;
+        }
+        --m_size;
+        if (m_capacity > MIN_CAPACITY && m_size * MIN_LOAD_DENOMINATOR < m_capacity) {
+            resize(m_capacity / 2);
+        }
+        return true;
+    }
+
+    bool erase(iterator &iter) {
+        return erase(iter.key());
+    }
+
+    size_t size() const { return m_size; }
+    size_t capacity() const { return m_capacity; }
+
+    /** Return bytes used for this table */
+    size_t bytesAllocated() const { return allocationSize(m_capacity); }
+
+    /** verification for debugging and testing */
+    bool verify() const {
+        size_t full = 0;
+        size_t deleted = 0;
+        for (size_t pos = 0; pos < m_capacity; ++pos) {
+            if (m_ctrl[pos] == CTRL_DELETED) {
+                ++deleted;
+            }
+            else if (m_ctrl[pos] != CTRL_EMPTY) {
+                ++full;
+                const size_t hash = hashOf(m_slots[pos].key);
+                if (m_ctrl[pos] != h2(hash) || findSlot(m_slots[pos].key, hash) != m_slots + pos) {
+                    return false;
+                }
+            }
+        }
+        return full == m_size && deleted == m_deleted;
+    }
+
+private:
+    size_t hashOf(const Key &key) const {
+        // The key hashers combine the column values with little mixing, so sequential
+        // integer keys would share their high bits. Mix them (the murmur3 finalizer)
+        // before splitting the hash into the group position and the control byte.
+        uint64_t hash = m_hasher(key);
+        hash ^= hash >> 33;
+        hash *= 0xff51afd7ed558ccdULL;
+        hash ^= hash >> 33;
+        hash *= 0xc4ceb9fe1a85ec53ULL;
+        hash ^= hash >> 33;
+        return static_cast<size_t>(hash);
+    }
+
+    static int8_t h2(size_t hash) {
+        return static_cast<int8_t>(hash & 0x7F);
+    }
+
+    size_t firstGroup(size_t hash) const {
+        return (hash >> 7) & (m_capacity / GROUP_WIDTH - 1);
+    }
+
+    /** Bit i is set if control byte i of the group equals ctrl */
+    static uint32_t match(const int8_t *group, int8_t ctrl) {
+#ifdef __SSE2__
+        const __m128i bytes = _mm_loadu_si128(reinterpret_cast<const __m128i*>(group));
+        return static_cast<uint32_t>(_mm_movemask_epi8(_mm_cmpeq_epi8(bytes, _mm_set1_epi8(ctrl))));
+#else
+        uint32_t mask = 0;
+        for (size_t i = 0; i < GROUP_WIDTH; ++i) {
+            if (group[i] == ctrl) {
+                mask |= 1U << i;
+            }
+        }
+        return mask;
+#endif
+    }
+
+    static uint32_t matchEmpty(const int8_t *group) {
+        return match(group, CTRL_EMPTY);
+    }
+
+    /** Bit i is set if slot i of the group is empty or deleted */
+    static uint32_t matchFree(const int8_t *group) {
+#ifdef __SSE2__
+        // empty and deleted are the only control bytes with the sign bit set
+        const __m128i bytes = _mm_loadu_si128(reinterpret_cast<const __m128i*>(group));
+        return static_cast<uint32_t>(_mm_movemask_epi8(bytes));
+#else
+        uint32_t mask = 0;
+        for (size_t i = 0; i < GROUP_WIDTH; ++i) {
+            if (group[i] < 0) {
+                mask |= 1U << i;
+            }
+        }
+        return mask;
+#endif
+    }
+
+    Slot *findSlot(const Key &key, size_t hash) const {
+        const size_t groupMask = m_capacity / GROUP_WIDTH - 1;
+        const int8_t tag = h2(hash);
+        size_t group = firstGroup(hash);
+        // Triangular probing visits every group once when the group count is a power of 2
+        for (size_t step = 1; ; ++step) {
+            const int8_t *ctrl = m_ctrl + group * GROUP_WIDTH;
+            for (uint32_t mask = match(ctrl, tag); mask != 0; mask &= mask - 1) {
+                Slot *slot = m_slots + group * GROUP_WIDTH + __builtin_ctz(mask);
+                if (m_keyEq(slot->key, key)) {
+                    return slot;
+                }
+            }
+            if (matchEmpty(ctrl) != 0 || step > groupMask) {
+                return NULL;
+            }
+            group = (group + step) & groupMask;
+        }
+    }
+
+    size_t findFreePosition(size_t hash) const {
+        const size_t groupMask = m_capacity / GROUP_WIDTH - 1;
+        size_t group = firstGroup(hash);
+        for (size_t step = 1; ; ++step) {
+            const uint32_t mask = matchFree(m_ctrl + group * GROUP_WIDTH);
+            if (mask != 0) {
+                return group * GROUP_WIDTH + __builtin_ctz(mask);
+            }
+            vassert(step <= groupMask);
+            group = (group + step) & groupMask;
+        }
+    }
+
+    static size_t allocationSize(size_t capacity) {
+        return capacity * (sizeof(Slot) + 1);
+    }
+
+    void allocate(size_t capacity) {
+        vassert(capacity >= MIN_CAPACITY && (capacity & (capacity - 1)) == 0);
+        void *memory = mmap(NULL, allocationSize(capacity), PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANON, -1, 0);
+        if (memory == MAP_FAILED) {
+            throw std::bad_alloc();
+        }
+        // Slots first to keep them aligned, the control bytes follow
+        m_slots = reinterpret_cast<Slot*>(memory);
+        m_ctrl = reinterpret_cast<int8_t*>(m_slots + capacity);
+        ::memset(m_ctrl, CTRL_EMPTY, capacity);
+        m_capacity = capacity;
+        m_size = 0;
+        m_deleted = 0;
+    }
+
+    void release() {
+        munmap(m_slots, allocationSize(m_capacity));
+    }
+
+    void destroySlots() {
+        for (size_t pos = 0; pos < m_capacity; ++pos) {
+            if (m_ctrl[pos] >= 0) {
+                m_slots[pos].~Slot();
+            }
+        }
+    }
+
+    void resize(size_t newCapacity) {
+        Slot *oldSlots = m_slots;
+        int8_t *oldCtrl = m_ctrl;
+        const size_t oldCapacity = m_capacity;
+        const size_t size = m_size;
+        allocate(newCapacity);
+        for (size_t pos = 0; pos < oldCapacity; ++pos) {
+            if (oldCtrl[pos] >= 0) {
+                const size_t hash = hashOf(oldSlots[pos].key);
+                const size_t newPos = findFreePosition(hash);
+                m_ctrl[newPos] = h2(hash);
+                ::new (m_slots + newPos) Slot(oldSlots[pos]);
+                oldSlots[pos].~Slot();
+            }
+        }
+        m_size = size;
+        munmap(oldSlots, allocationSize(oldCapacity));
+    }
+
+    Slot *m_slots = NULL;
+    int8_t *m_ctrl = NULL;
+    size_t m_capacity = 0;
+    size_t m_size = 0;
+    size_t m_deleted = 0;
+    Hasher m_hasher;
+    KeyEqChecker m_keyEq;
+};
+
+}
@@ -0,0 +1,250 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#pragma once
+
+#include "common/Pool.hpp"
+#include "common/debuglog.h"
+#include "common/tabletuple.h"
+#include "storage/TempTableLimits.h"
+
+#include <cstddef>
+#include <cstdint>
+#include <iterator>
+#include <new>
+#include <utility>
+
+namespace voltdb {
+
+/**
+ * TupleHashMap is an open-addressing hash map from TableTuple keys to small, trivially copyable
+ * values (typically a pointer to per-group state), built for the hash aggregation executors.
+ *
+ * It differs from std::unordered_map in that:
+ * 1. All entries live in one flat array carved out of the caller's Pool, so there is no
+ *    allocation per key and a probe walks adjacent memory (linear probing).
+ * 2. The full hash of every key is stored next to it. Probes compare hashes before doing the
+ *    (comparatively expensive) column-by-column tuple comparison, and growing the table never
+ *    re-hashes a key.
+ * 3. Growth is charged to the plan fragment's TempTableLimits, so a GROUP BY with too many
+ *    groups fails with the usual temp table memory error instead of growing without bound.
+ * 4. It supports only insertion, lookup and iteration. There is no erase.
+ *
+ * The map neither owns its keys nor its entry array. Key tuples must stay valid for as long
+ * as they are in the map, and once the Pool has been purged the map must be reset() before
+ * it is used again.
+ */
+template<typename V>
+class TupleHashMap {
+public:
+    struct Entry {
+        size_t m_hash;
+        TableTuple m_key;
+        V m_value;
+
+        bool isEmpty() const {
+            return m_key.isNullTuple();
+        }
+    };
+
+    class const_iterator : public std::iterator<std::forward_iterator_tag, Entry> {
+        friend class TupleHashMap;
+        const Entry* m_entry;
+        const Entry* m_end;
+
+        const_iterator(const Entry* entry, const Entry* end) : m_entry(entry), m_end(end) {
+            skipEmpty();
+        }
+
+        void skipEmpty() {
+            while (m_entry != m_end && m_entry->isEmpty()) {
+                ++m_entry;
+            }
+        }
+    public:
+        const Entry& operator*() const { return *m_entry; }
+        const Entry* operator->() const { return m_entry; }
+        const_iterator& operator++() {
+            ++m_entry;
+            skipEmpty();
+            return *this;
+        }
+        bool operator==(const const_iterator& other) const { return m_entry == other.m_entry; }
+        bool operator!=(const const_iterator& other) const { return m_entry != other.m_entry; }
+    };
+
+    explicit TupleHashMap(Pool* pool, TempTableLimits* limits = nullptr) : m_pool(pool), m_limits(limits) { }
+
+    TupleHashMap(const TupleHashMap&) = delete;
+    TupleHashMap& operator=(const TupleHashMap&) = delete;
+
+    void setLimits(TempTableLimits* limits) {
+        vassert(m_entries == nullptr);
+        m_limits = limits;
+    }
+
+    size_t size() const { return m_size; }
+    bool empty() const { return m_size == 0; }
+    size_t capacity() const { return m_capacity; }
+
+    /**
+     * Look up the entry for key. Returns nullptr if the key is not in the map.
+     */
+    const Entry* find(const TableTuple& key) const {
+        if (m_size == 0) {
+            return nullptr;
+        }
+        const size_t hash = hashOf(key);
+        const Entry* entry = probe(m_entries, m_capacity, key, hash);
+        return entry->isEmpty() ? nullptr : entry;
+    }
+
+    /**
+     * Find the entry for key, adding one if the key is not in the map yet.
+     * The second member of the result is true if the entry was added, in which case
+     * the caller is expected to fill in its value. The returned pointer is only valid
+     * until the next call to insert().
+     */
+    std::pair<Entry*, bool> insert(const TableTuple& key) {
+        if ((m_size + 1) * MAX_LOAD_DENOMINATOR > m_capacity * MAX_LOAD_NUMERATOR) {
+            grow();
+        }
+        const size_t hash = hashOf(key);
+        Entry* entry = probe(m_entries, m_capacity, key, hash);
+        if (! entry->isEmpty()) {
+            return std::make_pair(entry, false);
+        }
+        entry->m_hash = hash;
+        entry->m_key = key;
+        entry->m_value = V();
+        ++m_size;
+        return std::make_pair(entry, true);
+    }
+
+    const_iterator begin() const {
+        return const_iterator(m_entries, m_entries + m_capacity);
+    }
+
+    const_iterator end() const {
+        return const_iterator(m_entries + m_capacity, m_entries + m_capacity);
+    }
+
+    /**
+     * Remove all keys but keep the entry array for reuse.
+     */
+    void clear() {
+        if (m_size != 0) {
+            initEntries(m_entries, m_capacity);
+            m_size = 0;
+        }
+    }
+
+    /**
+     * Forget the entry array. Must be called before the Pool it was allocated from is purged,
+     * or before the map is used again after such a purge.
+     */
+    void reset() {
+        releaseAllocation();
+        m_entries = nullptr;
+        m_capacity = 0;
+        m_size = 0;
+    }
+
+private:
+    // grow when the table is 75% full (the new table will be 37.5% full)
+    static const size_t MAX_LOAD_NUMERATOR = 3;
+    static const size_t MAX_LOAD_DENOMINATOR = 4;
+    static const size_t INITIAL_CAPACITY = 64;
+
+    static size_t hashOf(const TableTuple& key) {
+        // TableTuple::hashCode() combines the column hashes, which leaves the low bits poorly
+        // distributed for small integer keys. Mix it (the murmur3 finalizer) before masking.
+        uint64_t hash = key.hashCode();
+        hash ^= hash >> 33;
+        hash *= 0xff51afd7ed558ccdULL;
+        hash ^= hash >> 33;
+        hash *= 0xc4ceb9fe1a85ec53ULL;
+        hash ^= hash >> 33;
+        return static_cast<size_t>(hash);
+    }
+
+    /**
+     * Return the entry holding key, or the empty entry where it belongs.
+     * The table always has at least one empty entry, so this terminates.
+     */
+    static Entry* probe(Entry* entries, size_t capacity, const TableTuple& key, size_t hash) {
+        const size_t mask = capacity - 1;
+        for (size_t pos = hash & mask; ; pos = (pos + 1) & mask) {
+            Entry* entry = entries + pos;
+            if (entry->isEmpty() ||
+                    (entry->m_hash == hash && entry->m_key.equalsNoSchemaCheck(key))) {
+                return entry;
+            }
+        }
+    }
+
+    static void initEntries(Entry* entries, size_t capacity) {
+        for (size_t ii = 0; ii < capacity; ++ii) {
+            ::new (entries + ii) Entry();
+        }
+    }
+
+    void grow() {
+        const size_t newCapacity = m_capacity == 0 ? INITIAL_CAPACITY : m_capacity * 2;
+        const size_t newBytes = newCapacity * sizeof(Entry);
+        // Charge the limits first: this throws if the fragment is out of temp memory.
+        // The limits count the bytes even when they throw, so track them before calling.
+        m_allocatedBytes += newBytes;
+        if (m_limits != nullptr) {
+            m_limits->increaseAllocated(static_cast<int>(newBytes));
+        }
+        Entry* newEntries = reinterpret_cast<Entry*>(m_pool->allocate(newBytes));
+        initEntries(newEntries, newCapacity);
+        for (size_t ii = 0; ii < m_capacity; ++ii) {
+            const Entry& entry = m_entries[ii];
+            if (! entry.isEmpty()) {
+                // Keys are unique, so just find the first free entry for the stored hash.
+                const size_t mask = newCapacity - 1;
+                size_t pos = entry.m_hash & mask;
+                while (! newEntries[pos].isEmpty()) {
+                    pos = (pos + 1) & mask;
+                }
+                newEntries[pos] = entry;
+            }
+        }
+        // The old array stays in the pool until it is purged, so it stays charged until reset().
+        m_entries = newEntries;
+        m_capacity = newCapacity;
+    }
+
+    void releaseAllocation() {
+        if (m_limits != nullptr && m_allocatedBytes != 0) {
+            m_limits->reduceAllocated(static_cast<int>(m_allocatedBytes));
+        }
+        m_allocatedBytes = 0;
+    }
+
+    Pool* const m_pool;
+    TempTableLimits* m_limits;
+    Entry* m_entries = nullptr;
+    size_t m_capacity = 0;
+    size_t m_size = 0;
+    // Bytes charged to m_limits for entry arrays, including ones outgrown but not yet purged
+    size_t m_allocatedBytes = 0;
+};
+
+}
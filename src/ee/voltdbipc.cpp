@@ -22,8 +22,11 @@
  and executes commands from Java synchronously.
  */
 
+#include <fcntl.h>
 #include <signal.h>
+#include <sys/mman.h>
 #include <sys/socket.h>
+#include <sys/stat.h>
 #include <netinet/tcp.h> // for TCP_NODELAY
 
 #include "common/LargeTempTableBlockId.hpp"
@@ -45,6 +48,204 @@
 // if IPC and JNI are matched.
 #define MAX_MSG_SZ (1024*1024*10)
 
+/*
+ * The byte stream to and from Java. It starts out on the socket. If Java sends
+ * AttachSharedMemory, data moves through two single producer, single consumer ring
+ * buffers in a shared memory file instead, and the socket only carries a wakeup byte
+ * for a side which found the ring it needs empty (or full) for long enough to block.
+ * See SharedMemoryChannel.java for the protocol; the layout here must match it.
+ */
+class IpcChannel {
+public:
+    explicit IpcChannel(int fd)
+        : m_fd(fd)
+          // spinning only helps if Java can run on another CPU meanwhile
+        , m_spinTries(sysconf(_SC_NPROCESSORS_ONLN) > 1 ? kSpinTries : 0)
+    { }
+
+    ~IpcChannel() {
+        if (m_base != NULL) {
+            munmap(m_base, m_mappedSize);
+        }
+    }
+
+    int fd() const { return m_fd; }
+
+    /** Map the shared memory file created by Java. Returns false if it can not be used. */
+    bool attach(const char *path) {
+        int shmFd = open(path, O_RDWR);
+        if (shmFd < 0) {
+            return false;
+        }
+        struct stat st;
+        if (fstat(shmFd, &st) != 0 || st.st_size < kHeaderSize) {
+            close(shmFd);
+            return false;
+        }
+        void *base = mmap(NULL, st.st_size, PROT_READ | PROT_WRITE, MAP_SHARED, shmFd, 0);
+        close(shmFd);
+        if (base == MAP_FAILED) {
+            return false;
+        }
+        char *header = static_cast<char*>(base);
+        int32_t capacity = *reinterpret_cast<int32_t*>(header + kOffsetCapacity);
+        if (__atomic_load_n(reinterpret_cast<int32_t*>(header + kOffsetMagic), __ATOMIC_ACQUIRE) != kMagic ||
+                capacity <= 0 || (capacity & (capacity - 1)) != 0 ||
+                st.st_size < kHeaderSize + 2 * static_cast<off_t>(capacity)) {
+            munmap(base, st.st_size);
+            return false;
+        }
+        m_base = header;
+        m_mappedSize = st.st_size;
+        m_capacity = capacity;
+        m_readPosition = __atomic_load_n(position(kOffsetToEERead), __ATOMIC_ACQUIRE);
+        m_writePosition = __atomic_load_n(position(kOffsetFromEEWritten), __ATOMIC_ACQUIRE);
+        return true;
+    }
+
+    /**
+     * Like read(2) on the socket. On shared memory, blocks until all sz bytes are read,
+     * which is what every caller wants. Returns 0 if Java closed the connection.
+     */
+    ssize_t read(void *buf, size_t sz) {
+        if (m_base == NULL) {
+            return ::read(m_fd, buf, sz);
+        }
+        char *dst = static_cast<char*>(buf);
+        size_t done = 0;
+        while (done < sz) {
+            int64_t written = __atomic_load_n(position(kOffsetToEEWritten), __ATOMIC_ACQUIRE);
+            if (written == m_readPosition) {
+                if ( ! await(kOffsetToEEWritten, m_readPosition)) {
+                    return 0;
+                }
+                continue;
+            }
+            size_t index = m_readPosition & (m_capacity - 1);
+            size_t length = std::min(std::min(static_cast<size_t>(written - m_readPosition), sz - done),
+                                     m_capacity - index);
+            ::memcpy(dst + done, m_base + kHeaderSize + index, length);
+            done += length;
+            m_readPosition += length;
+            publish(kOffsetToEERead, m_readPosition);
+        }
+        return done;
+    }
+
+    /** Like write(2) on the socket. On shared memory, blocks until all sz bytes are in the ring. */
+    ssize_t write(const void *buf, size_t sz) {
+        if (m_base == NULL) {
+            return ::write(m_fd, buf, sz);
+        }
+        const char *src = static_cast<const char*>(buf);
+        size_t done = 0;
+        while (done < sz) {
+            int64_t read = __atomic_load_n(position(kOffsetFromEERead), __ATOMIC_ACQUIRE);
+            size_t free = m_capacity - static_cast<size_t>(m_writePosition - read);
+            if (free == 0) {
+                if ( ! await(kOffsetFromEERead, read)) {
+                    return -1;
+                }
+                continue;
+            }
+            size_t index = m_writePosition & (m_capacity - 1);
+            size_t length = std::min(std::min(free, sz - done), m_capacity - index);
+            ::memcpy(m_base + kHeaderSize + m_capacity + index, src + done, length);
+            done += length;
+            m_writePosition += length;
+            publish(kOffsetFromEEWritten, m_writePosition);
+        }
+        return done;
+    }
+
+private:
+    static const int32_t kMagic = 0x56444249;
+    static const off_t kHeaderSize = 4096;
+    static const size_t kOffsetMagic = 0;
+    static const size_t kOffsetCapacity = 4;
+    static const size_t kOffsetJavaWaiting = 64;
+    static const size_t kOffsetEEWaiting = 128;
+    static const size_t kOffsetToEEWritten = 192;
+    static const size_t kOffsetToEERead = 256;
+    static const size_t kOffsetFromEEWritten = 320;
+    static const size_t kOffsetFromEERead = 384;
+    // How many times to check a ring before blocking on the socket
+    static const int kSpinTries = 10000;
+
+    int64_t *position(size_t offset) const {
+        return reinterpret_cast<int64_t*>(m_base + offset);
+    }
+
+    int32_t *flag(size_t offset) const {
+        return reinterpret_cast<int32_t*>(m_base + offset);
+    }
+
+    // Store a new ring position, then wake Java if it is blocked waiting
+    void publish(size_t offset, int64_t value) {
+        __atomic_store_n(position(offset), value, __ATOMIC_SEQ_CST);
+        int32_t expected = 1;
+        if (__atomic_load_n(flag(kOffsetJavaWaiting), __ATOMIC_SEQ_CST) != 0 &&
+                __atomic_compare_exchange_n(flag(kOffsetJavaWaiting), &expected, 0, false,
+                                            __ATOMIC_SEQ_CST, __ATOMIC_SEQ_CST)) {
+            char wakeup = 0;
+            while (::write(m_fd, &wakeup, 1) != 1) {
+                if (errno != EINTR) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Wait until the position at offset moves off value. Returns false if Java went away.
+    bool await(size_t offset, int64_t value) {
+        for (int i = 0; i < m_spinTries; ++i) {
+            if (__atomic_load_n(position(offset), __ATOMIC_ACQUIRE) != value) {
+                return true;
+            }
+        }
+        int32_t *waiting = flag(kOffsetEEWaiting);
+        while (true) {
+            __atomic_store_n(waiting, 1, __ATOMIC_SEQ_CST);
+            if (__atomic_load_n(position(offset), __ATOMIC_SEQ_CST) != value) {
+                int32_t expected = 1;
+                if (__atomic_compare_exchange_n(waiting, &expected, 0, false,
+                                                __ATOMIC_SEQ_CST, __ATOMIC_SEQ_CST)) {
+                    return true;
+                }
+                // Java already cleared the flag, so its wakeup byte is on the way
+                return readWakeup();
+            }
+            if ( ! readWakeup()) {
+                return false;
+            }
+            if (__atomic_load_n(position(offset), __ATOMIC_ACQUIRE) != value) {
+                return true;
+            }
+        }
+    }
+
+    bool readWakeup() {
+        char wakeup;
+        while (true) {
+            ssize_t bytes = ::read(m_fd, &wakeup, 1);
+            if (bytes == 1) {
+                return true;
+            }
+            if (bytes == 0 || errno != EINTR) {
+                return false;
+            }
+        }
+    }
+
+    const int m_fd;
+    const int m_spinTries;
+    char *m_base = NULL;
+    size_t m_mappedSize = 0;
+    size_t m_capacity = 0;
+    int64_t m_readPosition = 0;
+    int64_t m_writePosition = 0;
+};
+
 static int g_cleanUpCountdownLatch = -1;
 static pthread_mutex_t g_cleanUpMutex = PTHREAD_MUTEX_INITIALIZER;
 static pthread_cond_t g_cleanUpCondition = PTHREAD_COND_INITIALIZER;
@@ -94,6 +295,10 @@ public:
         return m_engine;
     }
 
+    IpcChannel& channel() {
+        return m_channel;
+    }
+
     int loadNextDependency(int32_t dependencyId, voltdb::Pool *stringPool, voltdb::Table* destination);
     void fallbackToEEAllocatedBuffer(char *buffer, size_t length) { }
 
@@ -168,6 +373,8 @@ private:
 
     int8_t stub(struct ipc_command *cmd);
 
+    int8_t attachSharedMemory(struct ipc_command *cmd);
+
     int8_t loadCatalog(struct ipc_command *cmd);
 
     int8_t updateCatalog(struct ipc_command *cmd);
@@ -259,7 +466,7 @@ private:
     voltdb::VoltDBEngine *m_engine;
     long int m_counter;
 
-    int m_fd;
+    IpcChannel m_channel;
     char *m_perFragmentStatsBuffer;
     char *m_reusedResultBuffer;
     char *m_exceptionBuffer;
@@ -500,14 +707,14 @@ static bool staticDebugVerbose = false;
 // file static help function to do a blocking write.
 // exit on a -1.. otherwise return when all bytes
 // written.
-static void writeOrDie(int fd, const unsigned char *data, ssize_t sz) {
+static void writeOrDie(IpcChannel &channel, const unsigned char *data, ssize_t sz) {
     ssize_t written = 0;
     ssize_t last = 0;
     while (written < sz) {
         if (staticDebugVerbose) {
             std::cout << "Trying to write " << (sz - written) << " bytes" << std::endl;
         }
-        last = write(fd, data + written, sz - written);
+        last = channel.write(data + written, sz - written);
         if (last < 0) {
             printf("\n\nIPC write to JNI returned -1. Exiting\n\n");
             fflush(stdout);
@@ -534,7 +741,7 @@ void deserializeParameterSetCommon(int cnt, ReferenceSerializeInputBE &serialize
 VoltDBIPC::VoltDBIPC(int fd)
     : m_engine(NULL)
     , m_counter(0)
-    , m_fd(fd)
+    , m_channel(fd)
     , m_perFragmentStatsBuffer(NULL)
     , m_reusedResultBuffer(NULL)
     , m_exceptionBuffer(NULL)
@@ -676,6 +883,9 @@ bool VoltDBIPC::execute(struct ipc_command *cmd) {
        case 40:
            deleteExpiredTopicsOffsets(cmd);
            break;
+      case 41:
+          result = attachSharedMemory(cmd);
+          break;
       default:
         result = stub(cmd);
     }
@@ -688,14 +898,35 @@ bool VoltDBIPC::execute(struct ipc_command *cmd) {
             char msg[5];
             msg[0] = result;
             *reinterpret_cast<int32_t*>(&msg[1]) = 0;//exception length 0
-            writeOrDie(m_fd, (unsigned char*)msg, sizeof(int8_t) + sizeof(int32_t));
+            writeOrDie(m_channel, (unsigned char*)msg, sizeof(int8_t) + sizeof(int32_t));
         } else {
-            writeOrDie(m_fd, (unsigned char*)&result, sizeof(int8_t));
+            writeOrDie(m_channel, (unsigned char*)&result, sizeof(int8_t));
         }
     }
     return m_terminate;
 }
 
+/*
+ * Move the connection to the shared memory file Java created. The response goes out
+ * on the socket, as Java only switches over once it has read it.
+ */
+int8_t VoltDBIPC::attachSharedMemory(struct ipc_command *cmd) {
+    int32_t pathLength = ntohl(*reinterpret_cast<int32_t*>(cmd->data));
+    std::string path(cmd->data + sizeof(int32_t), pathLength);
+    int8_t result = kErrorCode_Success;
+    if ( ! m_channel.attach(path.c_str())) {
+        printf("Failed to attach IPC shared memory %s\n", path.c_str());
+        fflush(stdout);
+        return kErrorCode_Error;
+    }
+    if (::write(m_channel.fd(), &result, sizeof(int8_t)) != sizeof(int8_t)) {
+        printf("\n\nIPC write to JNI returned -1. Exiting\n\n");
+        fflush(stdout);
+        exit(-1);
+    }
+    return kErrorCode_None;
+}
+
 int8_t VoltDBIPC::stub(struct ipc_command *cmd) {
     printf("IPC command %d not implemented.\n", ntohl(cmd->command));
     fflush(stdout);
@@ -765,6 +996,8 @@ int8_t VoltDBIPC::initialize(struct ipc_command *cmd) {
         int defaultDrBufferSize;
         int64_t logLevels;
         int64_t tempTableMemory;
+        int64_t planCacheMemoryLimit;
+        int32_t compactionThreshold;
         int32_t isLowestSiteId;
         int32_t hostnameLength;
         char data[0];
@@ -784,6 +1017,8 @@ int8_t VoltDBIPC::initialize(struct ipc_command *cmd) {
     cs->defaultDrBufferSize = ntohl(cs->defaultDrBufferSize);
     cs->logLevels = ntohll(cs->logLevels);
     cs->tempTableMemory = ntohll(cs->tempTableMemory);
+    cs->planCacheMemoryLimit = ntohll(cs->planCacheMemoryLimit);
+    cs->compactionThreshold = ntohl(cs->compactionThreshold);
     cs->isLowestSiteId = ntohl(cs->isLowestSiteId);
     bool isLowestSiteId = cs->isLowestSiteId != 0;
     cs->hostnameLength = ntohl(cs->hostnameLength);
@@ -816,7 +1051,9 @@ int8_t VoltDBIPC::initialize(struct ipc_command *cmd) {
                              cs->drClusterId,
                              cs->defaultDrBufferSize,
                              cs->tempTableMemory,
-                             isLowestSiteId);
+                             isLowestSiteId,
+                             cs->compactionThreshold,
+                             cs->planCacheMemoryLimit);
         return kErrorCode_Success;
     }
     catch (const FatalException &e) {
@@ -981,7 +1218,7 @@ void VoltDBIPC::executePlanFragments(struct ipc_command *cmd) {
     if (errors == 0) {
         // write the results array back across the wire
         const int32_t size = m_engine->getResultsSize();
-        writeOrDie(m_fd, m_engine->getResultsBuffer(), size);
+        writeOrDie(m_channel, m_engine->getResultsBuffer(), size);
     } else {
         sendException(kErrorCode_Error);
     }
@@ -995,12 +1232,12 @@ void VoltDBIPC::setViewsEnabled(struct ipc_command *cmd) {
 
 void VoltDBIPC::sendPerFragmentStatsBuffer() {
     int8_t statusCode = static_cast<int8_t>(kErrorCode_pushPerFragmentStatsBuffer);
-    writeOrDie(m_fd, (unsigned char*)&statusCode, sizeof(int8_t));
+    writeOrDie(m_channel, (unsigned char*)&statusCode, sizeof(int8_t));
     // write the per-fragment stats back across the wire
     char *perFragmentStatsBuffer = m_engine->getPerFragmentStatsBuffer();
     int32_t perFragmentStatsBufferSizeToSend = htonl(m_engine->getPerFragmentStatsSize());
-    writeOrDie(m_fd, (unsigned char*)&perFragmentStatsBufferSizeToSend, sizeof(int32_t));
-    writeOrDie(m_fd, (unsigned char*)perFragmentStatsBuffer, m_engine->getPerFragmentStatsSize());
+    writeOrDie(m_channel, (unsigned char*)&perFragmentStatsBufferSizeToSend, sizeof(int32_t));
+    writeOrDie(m_channel, (unsigned char*)perFragmentStatsBuffer, m_engine->getPerFragmentStatsSize());
 }
 
 void checkBytesRead(ssize_t byteCountExpected, ssize_t byteCountRead, std::string description) {
@@ -1016,32 +1253,32 @@ void checkBytesRead(ssize_t byteCountExpected, ssize_t byteCountRead, std::strin
 int VoltDBIPC::callJavaUserDefinedHelper(int kErrorCode) {
     // Send a special status code indicating that a UDF invocation request is coming on the wire.
     int8_t statusCode = static_cast<int8_t>(kErrorCode);
-    writeOrDie(m_fd, (unsigned char*)&statusCode, sizeof(int8_t));
+    writeOrDie(m_channel, (unsigned char*)&statusCode, sizeof(int8_t));
 
     // Get the UDF buffer size.
     int32_t* udfBufferInInt32 = reinterpret_cast<int32_t*>(m_udfBuffer);
     int32_t udfBufferSizeToSend = ntohl(*udfBufferInInt32);
     // Send the whole UDF buffer to the wire.
     // Note that the number of bytes we sent includes the bytes for storing the buffer size.
-    writeOrDie(m_fd, (unsigned char*)m_udfBuffer, sizeof(udfBufferSizeToSend) + udfBufferSizeToSend);
+    writeOrDie(m_channel, (unsigned char*)m_udfBuffer, sizeof(udfBufferSizeToSend) + udfBufferSizeToSend);
 
     // Wait for the UDF result.
 
     int32_t retval, udfBufferSizeToRecv;
     // read buffer length
-    ssize_t bytes = read(m_fd, &udfBufferSizeToRecv, sizeof(int32_t));
+    ssize_t bytes = m_channel.read(&udfBufferSizeToRecv, sizeof(int32_t));
     checkBytesRead(sizeof(int32_t), bytes, "UDF return value buffer size");
     // The buffer size should exclude the size of the buffer size value
     // and the returning status code value (2 * sizeof(int32_t)).
     udfBufferSizeToRecv = ntohl(udfBufferSizeToRecv) - 2 * sizeof(int32_t);
 
     // read return value, 0 means success, failure otherwise.
-    bytes = read(m_fd, &retval, sizeof(int32_t));
+    bytes = m_channel.read(&retval, sizeof(int32_t));
     checkBytesRead(sizeof(int32_t), bytes, "UDF execution return code");
     retval = ntohl(retval);
 
     // read buffer content, includes the return value of the UDF.
-    bytes = read(m_fd, m_udfBuffer, udfBufferSizeToRecv);
+    bytes = m_channel.read(m_udfBuffer, udfBufferSizeToRecv);
     checkBytesRead(udfBufferSizeToRecv, bytes, "UDF return value buffer content");
     return retval;
 }
@@ -1078,12 +1315,12 @@ bool VoltDBIPC::sendResponseOrException(uint8_t errorCode) {
         sendException(errorCode);
         return true;
     }
-    writeOrDie(m_fd, (unsigned char*)&errorCode, sizeof(int8_t));
+    writeOrDie(m_channel, (unsigned char*)&errorCode, sizeof(int8_t));
     return false;
 }
 
 void VoltDBIPC::sendException(int8_t errorCode) {
-    writeOrDie(m_fd, (unsigned char*)&errorCode, sizeof(int8_t));
+    writeOrDie(m_channel, (unsigned char*)&errorCode, sizeof(int8_t));
 
     const void* exceptionData =
       m_engine->getExceptionOutputSerializer()->data();
@@ -1095,7 +1332,7 @@ void VoltDBIPC::sendException(int8_t errorCode) {
     fflush(stdout);
 
     const std::size_t expectedSize = exceptionLength + sizeof(int32_t);
-    writeOrDie(m_fd, (const unsigned char*)exceptionData, expectedSize);
+    writeOrDie(m_channel, (const unsigned char*)exceptionData, expectedSize);
 }
 
 int8_t VoltDBIPC::loadTable(struct ipc_command *cmd) {
@@ -1189,11 +1426,11 @@ char *VoltDBIPC::retrieveDependency(int32_t dependencyId, size_t *dependencySz)
     // tell java to send the dependency over the socket
     message[0] = static_cast<int8_t>(kErrorCode_RetrieveDependency);
     *reinterpret_cast<int32_t*>(&message[1]) = htonl(dependencyId);
-    writeOrDie(m_fd, (unsigned char*)message, sizeof(int8_t) + sizeof(int32_t));
+    writeOrDie(m_channel, (unsigned char*)message, sizeof(int8_t) + sizeof(int32_t));
 
     // read java's response code
     int8_t responseCode;
-    ssize_t bytes = read(m_fd, &responseCode, sizeof(int8_t));
+    ssize_t bytes = m_channel.read(&responseCode, sizeof(int8_t));
     if (bytes != sizeof(int8_t)) {
         printf("Error - blocking read failed. %jd read %jd attempted",
                 (intmax_t)bytes, (intmax_t)sizeof(int8_t));
@@ -1215,7 +1452,7 @@ char *VoltDBIPC::retrieveDependency(int32_t dependencyId, size_t *dependencySz)
 
     // start reading the dependency. its length is first
     int32_t dependencyLength;
-    bytes = read(m_fd, &dependencyLength, sizeof(int32_t));
+    bytes = m_channel.read(&dependencyLength, sizeof(int32_t));
     if (bytes != sizeof(int32_t)) {
         printf("Error - blocking read failed. %jd read %jd attempted",
                 (intmax_t)bytes, (intmax_t)sizeof(int32_t));
@@ -1230,7 +1467,7 @@ char *VoltDBIPC::retrieveDependency(int32_t dependencyId, size_t *dependencySz)
     char *dependencyData = new char[dependencyLength];
     while (bytes != dependencyLength) {
         ssize_t oldBytes = bytes;
-        bytes += read(m_fd, dependencyData + bytes, dependencyLength - bytes);
+        bytes += m_channel.read(dependencyData + bytes, dependencyLength - bytes);
         if (oldBytes == bytes) {
             break;
         }
@@ -1254,9 +1491,9 @@ char *VoltDBIPC::retrieveDependency(int32_t dependencyId, size_t *dependencySz)
 //   Reads a 4-byte integer from fd that is the length of the following string
 //   Reads the bytes for the string
 //   Returns those bytes as an std::string
-static std::string readLengthPrefixedBytesToStdString(int fd) {
+static std::string readLengthPrefixedBytesToStdString(IpcChannel &channel) {
     int32_t length;
-    ssize_t numBytesRead = read(fd, &length, sizeof(int32_t));
+    ssize_t numBytesRead = channel.read(&length, sizeof(int32_t));
     checkBytesRead(sizeof(int32_t), numBytesRead, "plan bytes length");
     length = static_cast<int32_t>(ntohl(length) - sizeof(int32_t));
     vassert(length > 0);
@@ -1265,7 +1502,7 @@ static std::string readLengthPrefixedBytesToStdString(int fd) {
     numBytesRead = 0;
     while (numBytesRead != length) {
         ssize_t oldBytes = numBytesRead;
-        numBytesRead += read(fd, bytes.get() + numBytesRead, length - numBytesRead);
+        numBytesRead += channel.read(bytes.get() + numBytesRead, length - numBytesRead);
         if (oldBytes == numBytesRead) {
             break;
         }
@@ -1298,17 +1535,17 @@ std::string VoltDBIPC::decodeBase64AndDecompress(const std::string& base64Data)
 
     ::memcpy(&message[offset], base64Data.c_str(), base64Data.size());
 
-    writeOrDie(m_fd, message, messageSize);
+    writeOrDie(m_channel, message, messageSize);
 
-    return readLengthPrefixedBytesToStdString(m_fd);
+    return readLengthPrefixedBytesToStdString(m_channel);
 }
 
 std::string VoltDBIPC::planForFragmentId(int64_t fragmentId) {
     char message[sizeof(int8_t) + sizeof(int64_t)];
     message[0] = static_cast<int8_t>(kErrorCode_needPlan);
     *reinterpret_cast<int64_t*>(&message[1]) = htonll(fragmentId);
-    writeOrDie(m_fd, (unsigned char*)message, sizeof(int8_t) + sizeof(int64_t));
-    return readLengthPrefixedBytesToStdString(m_fd);
+    writeOrDie(m_channel, (unsigned char*)message, sizeof(int8_t) + sizeof(int64_t));
+    return readLengthPrefixedBytesToStdString(m_channel);
 }
 
 static bool progressUpdateDisabled = true;
@@ -1352,13 +1589,13 @@ int64_t VoltDBIPC::fragmentProgressUpdate(
     if (staticDebugVerbose) {
         std::cout << "Writing progress update " << (int)*message << std::endl;
     }
-    writeOrDie(m_fd, (unsigned char*)message, offset);
+    writeOrDie(m_channel, (unsigned char*)message, offset);
     if (staticDebugVerbose) {
         std::cout << "Wrote progress update" << std::endl;
     }
 
     int64_t nextStep;
-    ssize_t bytes = read(m_fd, &nextStep, sizeof(nextStep));
+    ssize_t bytes = m_channel.read(&nextStep, sizeof(nextStep));
     if (bytes != sizeof(nextStep)) {
         printf("Error - blocking read after progress update failed. %jd read %jd attempted",
                 (intmax_t)bytes, (intmax_t)sizeof(nextStep));
@@ -1430,7 +1667,7 @@ void VoltDBIPC::crashVoltDB(voltdb::FatalException e) {
         position += traceLength;
     }
 
-    writeOrDie(m_fd,  (unsigned char*)m_reusedResultBuffer, 5 + messageLength);
+    writeOrDie(m_channel,  (unsigned char*)m_reusedResultBuffer, 5 + messageLength);
     exit(-1);
 }
 
@@ -1464,17 +1701,17 @@ void VoltDBIPC::getStats(struct ipc_command *cmd) {
         // write the results array back across the wire
         const int8_t successResult = kErrorCode_Success;
         if (result == 0 || result == 1) {
-            writeOrDie(m_fd, (const unsigned char*)&successResult, sizeof(int8_t));
+            writeOrDie(m_channel, (const unsigned char*)&successResult, sizeof(int8_t));
 
             if (result == 1) {
                 const int32_t size = m_engine->getResultsSize();
                 // write the dependency tables back across the wire
                 // the result set includes the total serialization size
-                writeOrDie(m_fd, m_engine->getResultsBuffer(), size);
+                writeOrDie(m_channel, m_engine->getResultsBuffer(), size);
             }
             else {
                 int32_t zero = 0;
-                writeOrDie(m_fd, (const unsigned char*)&zero, sizeof(int32_t));
+                writeOrDie(m_channel, (const unsigned char*)&zero, sizeof(int32_t));
             }
         } else {
             sendException(kErrorCode_Error);
@@ -1596,7 +1833,7 @@ void VoltDBIPC::tableStreamSerializeMore(struct ipc_command *cmd) {
             outputSize = offset;
         }
         // Ship it.
-        writeOrDie(m_fd, (unsigned char*)m_tupleBuffer, outputSize);
+        writeOrDie(m_channel, (unsigned char*)m_tupleBuffer, outputSize);
 
     } catch (const FatalException &e) {
         crashVoltDB(e);
@@ -1610,7 +1847,7 @@ void VoltDBIPC::tableHashCode( struct ipc_command *cmd) {
     char response[9];
     response[0] = kErrorCode_Success;
     *reinterpret_cast<int64_t*>(&response[1]) = htonll(tableHashCode);
-    writeOrDie(m_fd, (unsigned char*)response, 9);
+    writeOrDie(m_channel, (unsigned char*)response, 9);
 }
 
 void VoltDBIPC::setExportStreamPositions(struct ipc_command *cmd) {
@@ -1625,7 +1862,7 @@ void VoltDBIPC::setExportStreamPositions(struct ipc_command *cmd) {
                                        tableSignature);
 
     uint8_t success = 0;
-    writeOrDie(m_fd, (unsigned char*)&success, sizeof(success));
+    writeOrDie(m_channel, (unsigned char*)&success, sizeof(success));
 }
 
 void VoltDBIPC::deleteMigratedRows(struct ipc_command *cmd) {
@@ -1641,7 +1878,7 @@ void VoltDBIPC::deleteMigratedRows(struct ipc_command *cmd) {
                                                static_cast<int64_t>(ntohll(migrate_msg->undoToken)));
     char response[1];
     response[0] = result ? 1 : 0;
-    writeOrDie(m_fd, (unsigned char*)response, sizeof(int8_t));
+    writeOrDie(m_channel, (unsigned char*)response, sizeof(int8_t));
 }
 
 void VoltDBIPC::storeTopicsGroup(struct ipc_command *cmd) {
@@ -1679,9 +1916,9 @@ void VoltDBIPC::fetchTopicsGroups(struct ipc_command *cmd) {
         }
 
         response = result > 0;
-        writeOrDie(m_fd, &response, sizeof(uint8_t));
+        writeOrDie(m_channel, &response, sizeof(uint8_t));
         const int32_t size = m_engine->getResultsSize();
-        writeOrDie(m_fd, m_engine->getResultsBuffer(), size);
+        writeOrDie(m_channel, m_engine->getResultsBuffer(), size);
     } catch (const FatalException &e) {
         crashVoltDB(e);
     }
@@ -1702,7 +1939,7 @@ void VoltDBIPC::commitTopicsGroupOffsets(struct ipc_command *cmd) {
             return;
         }
         const int32_t size = m_engine->getResultsSize();
-        writeOrDie(m_fd, m_engine->getResultsBuffer(), size);
+        writeOrDie(m_channel, m_engine->getResultsBuffer(), size);
     } catch (const FatalException &e) {
         crashVoltDB(e);
     }
@@ -1723,7 +1960,7 @@ void VoltDBIPC::fetchTopicsGroupOffsets(struct ipc_command *cmd) {
             return;
         }
         const int32_t size = m_engine->getResultsSize();
-        writeOrDie(m_fd, m_engine->getResultsBuffer(), size);
+        writeOrDie(m_channel, m_engine->getResultsBuffer(), size);
     } catch (const FatalException &e) {
         crashVoltDB(e);
     }
@@ -1754,14 +1991,14 @@ void VoltDBIPC::getUSOForExportTable(struct ipc_command *cmd) {
     // write offset across bigendian.
     int64_t ackOffsetI64 = static_cast<int64_t>(ackOffset);
     ackOffsetI64 = htonll(ackOffsetI64);
-    writeOrDie(m_fd, (unsigned char*)&ackOffsetI64, sizeof(ackOffsetI64));
+    writeOrDie(m_channel, (unsigned char*)&ackOffsetI64, sizeof(ackOffsetI64));
 
     // write the poll data. It is at least 4 bytes of length prefix.
     seqNo = htonll(seqNo);
-    writeOrDie(m_fd, (unsigned char*)&seqNo, sizeof(seqNo));
+    writeOrDie(m_channel, (unsigned char*)&seqNo, sizeof(seqNo));
 
     genId = htonll(genId);
-    writeOrDie(m_fd, (unsigned char*)&genId, sizeof(genId));
+    writeOrDie(m_channel, (unsigned char*)&genId, sizeof(genId));
 }
 
 void VoltDBIPC::hashinate(struct ipc_command* cmd) {
@@ -1791,7 +2028,7 @@ void VoltDBIPC::hashinate(struct ipc_command* cmd) {
     char response[5];
     response[0] = kErrorCode_Success;
     *reinterpret_cast<int32_t*>(&response[1]) = htonl(retval);
-    writeOrDie(m_fd, (unsigned char*)response, 5);
+    writeOrDie(m_channel, (unsigned char*)response, 5);
 }
 
 void VoltDBIPC::updateHashinator(struct ipc_command *cmd) {
@@ -1835,7 +2072,7 @@ void VoltDBIPC::threadLocalPoolAllocations() {
     char response[9];
     response[0] = kErrorCode_Success;
     *reinterpret_cast<std::size_t*>(&response[1]) = htonll(poolAllocations);
-    writeOrDie(m_fd, (unsigned char*)response, 9);
+    writeOrDie(m_channel, (unsigned char*)response, 9);
 }
 
 void VoltDBIPC::pushExportBuffer(
@@ -1864,15 +2101,15 @@ void VoltDBIPC::pushExportBuffer(
     index += 32;
     if (block != NULL) {
         *reinterpret_cast<int32_t*>(&m_reusedResultBuffer[index]) = htonl(block->rawLength());
-        writeOrDie(m_fd, (unsigned char*)m_reusedResultBuffer, index + 4);
+        writeOrDie(m_channel, (unsigned char*)m_reusedResultBuffer, index + 4);
         // Memset the first 8 bytes to initialize the MAGIC_HEADER_SPACE_FOR_JAVA
         ::memset(block->rawPtr(), 0, 8);
-        writeOrDie(m_fd, (unsigned char*)block->rawPtr(), block->rawLength());
+        writeOrDie(m_channel, (unsigned char*)block->rawPtr(), block->rawLength());
         // Need the delete in the if statement for valgrind
         delete [] block->rawPtr();
     } else {
         *reinterpret_cast<int32_t*>(&m_reusedResultBuffer[index]) = htonl(0);
-        writeOrDie(m_fd, (unsigned char*)m_reusedResultBuffer, index + 4);
+        writeOrDie(m_channel, (unsigned char*)m_reusedResultBuffer, index + 4);
     }
 }
 
@@ -1886,7 +2123,7 @@ void VoltDBIPC::executeTask(struct ipc_command *cmd) {
         m_reusedResultBuffer[0] = kErrorCode_Success;
         m_engine->executeTask(taskId, input);
         int32_t responseLength = m_engine->getResultsSize();
-        writeOrDie(m_fd, m_engine->getResultsBuffer(), responseLength);
+        writeOrDie(m_channel, m_engine->getResultsBuffer(), responseLength);
     } catch (const FatalException& e) {
         crashVoltDB(e);
     }
@@ -1906,7 +2143,7 @@ void VoltDBIPC::applyBinaryLog(struct ipc_command *cmd) {
         char response[9];
         response[0] = kErrorCode_Success;
         *reinterpret_cast<int64_t*>(&response[1]) = htonll(rows);
-        writeOrDie(m_fd, (unsigned char*)response, 9);
+        writeOrDie(m_channel, (unsigned char*)response, 9);
     } catch (const FatalException& e) {
         crashVoltDB(e);
     }
@@ -1995,7 +2232,7 @@ void *eethread(void *ptr) {
 
         // read the header
         while (bytesread < 4) {
-            std::size_t b = read(fd, data.get() + bytesread, 4 - bytesread);
+            std::size_t b = voltipc->channel().read(data.get() + bytesread, 4 - bytesread);
             if (b == 0) {
                 printf("client eof\n");
                 close(fd);
@@ -2022,7 +2259,7 @@ void *eethread(void *ptr) {
         }
 
         while (bytesread < msg_size) {
-            std::size_t b = read(fd, data.get() + bytesread, msg_size - bytesread);
+            std::size_t b = voltipc->channel().read(data.get() + bytesread, msg_size - bytesread);
             if (b == 0) {
                 printf("client eof\n");
                 close(fd);
@@ -21,8 +21,6 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -39,7 +37,6 @@ import org.voltdb.VoltDB;
 import com.google_voltpatches.common.base.Throwables;
 import com.google_voltpatches.common.collect.ImmutableList;
 import com.google_voltpatches.common.collect.ImmutableMap;
-import com.google_voltpatches.common.primitives.Longs;
 
 public class ForeignHost {
     private static final VoltLogger hostLog = new VoltLogger("HOST");
@@ -213,37 +210,8 @@ public class ForeignHost {
             return;
         }
 
-        final HashMap<Subconnection, ArrayList<Long>> destinationsPerConn =
-                new HashMap<Subconnection, ArrayList<Long>>();
         if (m_hasMultiConnections) {
-            for (long remoteHsId : destinations) {
-                Subconnection c = null;
-                // fast path
-                // Negative site id is reserved for special purposes, deal them separately.
-                if (remoteHsId < 0) {
-                    c = m_connBySpecialHSIds.get(remoteHsId);
-                } else {
-                    c = m_connByHSIds.get(remoteHsId);
-                }
-                if (c == null) {
-                    // slow path, invoked when this host sends the first message for the destination
-                    if (remoteHsId < 0) {
-                        c = m_connections.get(m_nextConnectionForSpecialHSId.getAndIncrement() % m_connections.size());
-                    } else {
-                        c = m_connections.get(m_nextConnection.getAndIncrement() % m_connections.size());
-                    }
-                    bindConnection(remoteHsId, c);
-                }
-                ArrayList<Long> bundle = destinationsPerConn.get(c);
-                if (bundle == null) {
-                    bundle = new ArrayList<Long>();
-                    destinationsPerConn.put(c, bundle);
-                }
-                bundle.add(remoteHsId);
-            }
-            for (Entry<Subconnection, ArrayList<Long>> e : destinationsPerConn.entrySet()) {
-                e.getKey().send(Longs.toArray(e.getValue()), message);
-            }
+            sendToBoundConnections(destinations, message);
         } else {
             m_firstConn.send(destinations, message);
         }
@@ -251,6 +219,76 @@ public class ForeignHost {
         detectDeadHost();
     }
 
+    /**
+     * Each destination always goes through the subconnection it is bound to, so its messages
+     * stay in order. The destinations are usually all bound to the same subconnection, in which
+     * case the message is sent as is. Otherwise it is sent as one frame per subconnection with
+     * an exactly sized destination list, and flattened only once.
+     */
+    private void sendToBoundConnections(final long destinations[], final VoltMessage message) {
+        final Subconnection first = getConnection(destinations[0]);
+        int ii = 1;
+        while (ii < destinations.length && getConnection(destinations[ii]) == first) {
+            ii++;
+        }
+        if (ii == destinations.length) {
+            first.send(destinations, message);
+            return;
+        }
+
+        final Subconnection conns[] = new Subconnection[destinations.length];
+        for (int jj = 0; jj < ii; jj++) {
+            conns[jj] = first;
+        }
+        for (; ii < destinations.length; ii++) {
+            conns[ii] = getConnection(destinations[ii]);
+        }
+
+        final Subconnection.SharedMessage shared = new Subconnection.SharedMessage(message);
+        for (ii = 0; ii < conns.length; ii++) {
+            final Subconnection c = conns[ii];
+            if (c == null) {
+                continue;
+            }
+            int count = 0;
+            for (int jj = ii; jj < conns.length; jj++) {
+                if (conns[jj] == c) {
+                    count++;
+                }
+            }
+            final long bundle[] = new long[count];
+            count = 0;
+            for (int jj = ii; jj < conns.length; jj++) {
+                if (conns[jj] == c) {
+                    bundle[count++] = destinations[jj];
+                    conns[jj] = null;
+                }
+            }
+            c.send(bundle, message, shared);
+        }
+    }
+
+    private Subconnection getConnection(long remoteHsId) {
+        Subconnection c = null;
+        // fast path
+        // Negative site id is reserved for special purposes, deal them separately.
+        if (remoteHsId < 0) {
+            c = m_connBySpecialHSIds.get(remoteHsId);
+        } else {
+            c = m_connByHSIds.get(remoteHsId);
+        }
+        if (c == null) {
+            // slow path, invoked when this host sends the first message for the destination
+            if (remoteHsId < 0) {
+                c = m_connections.get(m_nextConnectionForSpecialHSId.getAndIncrement() % m_connections.size());
+            } else {
+                c = m_connections.get(m_nextConnection.getAndIncrement() % m_connections.size());
+            }
+            bindConnection(remoteHsId, c);
+        }
+        return c;
+    }
+
     private void detectDeadHost() {
 
         // NodeFailureFault no longer immediately trips FHInputHandler to
@@ -228,7 +228,40 @@ public class Subconnection {
         m_network.start(m_handler, verbotenThreads);
     }
 
+    /**
+     * A message sent through several subconnections of the same foreign host. It is flattened
+     * once, by whichever subconnection serializes its frame first, and the bytes are copied
+     * into the frames of the others.
+     */
+    static final class SharedMessage {
+        private final VoltMessage m_message;
+        private ByteBuffer m_flattened;
+
+        SharedMessage(VoltMessage message) {
+            m_message = message;
+        }
+
+        synchronized ByteBuffer get() throws IOException {
+            if (m_flattened == null) {
+                ByteBuffer buf = ByteBuffer.allocate(m_message.getSerializedSize());
+                m_message.flattenToBuffer(buf);
+                buf.flip();
+                m_flattened = buf;
+            }
+            return m_flattened.duplicate();
+        }
+    }
+
     void send(final long destinations[], final VoltMessage message) {
+        send(destinations, message, null);
+    }
+
+    /**
+     * Send one frame carrying the message and all of its destinations on this subconnection.
+     * If shared is not null the message is part of a send to several subconnections and is
+     * flattened only once for all of them.
+     */
+    void send(final long destinations[], final VoltMessage message, final SharedMessage shared) {
         if (!m_isUp) {
             hostLog.warn("Failed to send VoltMessage because connection to host " +
                     CoreUtils.getHostIdFromHSId(destinations[0])+ " is closed");
@@ -251,7 +284,11 @@ public class Subconnection {
                         for (int ii = 0; ii < destinations.length; ii++) {
                             buf.putLong(destinations[ii]);
                         }
-                        message.flattenToBuffer(buf);
+                        if (shared == null) {
+                            message.flattenToBuffer(buf);
+                        } else {
+                            buf.put(shared.get());
+                        }
                         buf.flip();
                     }
 
@@ -26,6 +26,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.RateLimitedLogger;
@@ -39,6 +40,18 @@ import org.voltcore.utils.RateLimitedLogger;
 public abstract class NIOWriteStreamBase {
     protected static final VoltLogger networkLog = new VoltLogger("NETWORK");
 
+    /*
+     * Messages at least this large (typically responses carrying big result tables) are
+     * serialized straight into a single pooled direct buffer of their own instead of being
+     * serialized to the heap and then copied piecewise into network pool buffers. Messages
+     * larger than the maximum take the heap path so that the global DBBPool does not end up
+     * holding on to huge buffers.
+     */
+    static final int DIRECT_SERIALIZATION_MIN_SIZE =
+            Integer.getInteger("NETWORK_DIRECT_SERIALIZATION_MIN_SIZE", 1024 * 256);
+    static final int DIRECT_SERIALIZATION_MAX_SIZE =
+            Integer.getInteger("NETWORK_DIRECT_SERIALIZATION_MAX_SIZE", 1024 * 1024 * 16);
+
     protected boolean m_isShutdown = false;
 
     protected BBContainer m_currentWriteBuffer = null;
@@ -107,6 +120,24 @@ public abstract class NIOWriteStreamBase {
             processedWrites++;
             final int serializedSize = ds.getSerializedSize();
             if (serializedSize == DeferredSerialization.EMPTY_MESSAGE_LENGTH) continue;
+            if (serializedSize >= DIRECT_SERIALIZATION_MIN_SIZE && serializedSize <= DIRECT_SERIALIZATION_MAX_SIZE) {
+                // Large message, serialize once into a pooled direct buffer which is queued as is.
+                // Like the network pool buffers it is left written but not flipped, and goes back
+                // to the pool when drainTo or shutdown discards it.
+                final BBContainer cont = DBBPool.allocateDirectAndPool(serializedSize);
+                final ByteBuffer slice = cont.b().slice();
+                try {
+                    ds.serialize(slice);
+                } catch (IOException | RuntimeException e) {
+                    cont.discard();
+                    throw e;
+                }
+                checkSloppySerialization(slice, ds);
+                cont.b().position(serializedSize);
+                bytesQueued += serializedSize;
+                m_queuedBuffers.offer(cont);
+                continue;
+            }
             BBContainer outCont = m_queuedBuffers.peekLast();
             ByteBuffer outbuf = null;
             if (outCont == null || !outCont.b().hasRemaining()) {
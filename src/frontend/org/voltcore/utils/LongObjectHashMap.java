@@ -0,0 +1,285 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltcore.utils;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An open addressing hash map from primitive longs to objects, for bookkeeping keyed by
+ * transaction ids or HSIds on paths where boxing the keys and allocating an entry per
+ * mapping adds up. Null values are not allowed, get() returns null for absent keys.
+ *
+ * Removed slots are left as tombstones until the table fills up, so entries can be removed
+ * through a {@link Cursor} while iterating. A full table is then rehashed in place when enough
+ * of it is tombstones, as with keys that churn through the map, and grown to twice the size
+ * of its contents otherwise. Not thread safe.
+ */
+public class LongObjectHashMap<V> {
+    private static final Object TOMBSTONE = new Object();
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] m_keys;
+    // null for free slots, TOMBSTONE for removed ones
+    private Object[] m_values;
+    private int m_mask;
+    private int m_size = 0;
+    // live entries plus tombstones
+    private int m_used = 0;
+
+    /** An iteration over the entries of the map, in no particular order */
+    public final class Cursor {
+        private int m_slot = -1;
+
+        /** Move to the next entry. Returns false once there are no more. */
+        public boolean advance() {
+            Object[] values = m_values;
+            while (++m_slot < values.length) {
+                Object value = values[m_slot];
+                if (value != null && value != TOMBSTONE) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public long key() {
+            checkPosition();
+            return m_keys[m_slot];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V value() {
+            checkPosition();
+            return (V) m_values[m_slot];
+        }
+
+        /** Remove the current entry, which leaves the cursor where it is */
+        public void remove() {
+            checkPosition();
+            m_values[m_slot] = TOMBSTONE;
+            --m_size;
+        }
+
+        private void checkPosition() {
+            if (m_slot < 0 || m_slot >= m_values.length || m_values[m_slot] == null || m_values[m_slot] == TOMBSTONE) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+
+    public LongObjectHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /** Size the map so it can hold expectedSize entries without resizing */
+    public LongObjectHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = find(key);
+        return slot < 0 ? null : (V) m_values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /** Map key to value, returning the value it replaced or null */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("LongObjectHashMap does not allow null values");
+        }
+        int tombstone = -1;
+        for (int slot = hash(key) & m_mask; ; slot = (slot + 1) & m_mask) {
+            Object current = m_values[slot];
+            if (current == null) {
+                if (tombstone >= 0) {
+                    // reuse the first removed slot on the probe path
+                    slot = tombstone;
+                } else {
+                    ++m_used;
+                }
+                m_keys[slot] = key;
+                m_values[slot] = value;
+                ++m_size;
+                if (m_used > maxUsed(m_values.length)) {
+                    // Purging is worth it while it frees at least a quarter of the usable slots
+                    int maxUsed = maxUsed(m_values.length);
+                    if (m_size <= maxUsed - (maxUsed >> 2)) {
+                        purgeTombstones();
+                    } else {
+                        rehash(capacityFor(m_size * 2));
+                    }
+                }
+                return null;
+            }
+            if (current == TOMBSTONE) {
+                if (tombstone < 0) {
+                    tombstone = slot;
+                }
+            } else if (m_keys[slot] == key) {
+                m_values[slot] = value;
+                return (V) current;
+            }
+        }
+    }
+
+    /** Remove the mapping for key, returning its value or null if there was none */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        V value = (V) m_values[slot];
+        m_values[slot] = TOMBSTONE;
+        --m_size;
+        return value;
+    }
+
+    public void clear() {
+        Arrays.fill(m_values, null);
+        m_size = 0;
+        m_used = 0;
+    }
+
+    /** A copy of the keys currently in the map, in no particular order */
+    public long[] keys() {
+        long[] keys = new long[m_size];
+        int i = 0;
+        for (int slot = 0; slot < m_values.length; ++slot) {
+            Object value = m_values[slot];
+            if (value != null && value != TOMBSTONE) {
+                keys[i++] = m_keys[slot];
+            }
+        }
+        return keys;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        Cursor cursor = cursor();
+        while (cursor.advance()) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(cursor.key()).append('=').append(cursor.value());
+        }
+        return sb.append('}').toString();
+    }
+
+    private int find(long key) {
+        for (int slot = hash(key) & m_mask; ; slot = (slot + 1) & m_mask) {
+            Object current = m_values[slot];
+            if (current == null) {
+                return -1;
+            }
+            if (current != TOMBSTONE && m_keys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] keys = m_keys;
+        Object[] values = m_values;
+        allocate(capacity);
+        for (int i = 0; i < values.length; ++i) {
+            Object value = values[i];
+            if (value != null && value != TOMBSTONE) {
+                int slot = hash(keys[i]) & m_mask;
+                while (m_values[slot] != null) {
+                    slot = (slot + 1) & m_mask;
+                }
+                m_keys[slot] = keys[i];
+                m_values[slot] = value;
+            }
+        }
+        m_used = m_size;
+    }
+
+    // Reinsert the live entries into the same arrays without the tombstones
+    private void purgeTombstones() {
+        long[] keys = new long[m_size];
+        Object[] values = new Object[m_size];
+        int count = 0;
+        for (int i = 0; i < m_values.length; ++i) {
+            Object value = m_values[i];
+            if (value != null && value != TOMBSTONE) {
+                keys[count] = m_keys[i];
+                values[count++] = value;
+            }
+        }
+        Arrays.fill(m_values, null);
+        for (int i = 0; i < count; ++i) {
+            int slot = hash(keys[i]) & m_mask;
+            while (m_values[slot] != null) {
+                slot = (slot + 1) & m_mask;
+            }
+            m_keys[slot] = keys[i];
+            m_values[slot] = values[i];
+        }
+        m_used = m_size;
+    }
+
+    // The backing array of values, for tests to see when the table is reallocated
+    Object[] valueSlots() {
+        return m_values;
+    }
+
+    private void allocate(int capacity) {
+        m_keys = new long[capacity];
+        m_values = new Object[capacity];
+        m_mask = capacity - 1;
+    }
+
+    // Keep the table at most 3/4 full, counting tombstones, so probes stay short and always end
+    private static int maxUsed(int capacity) {
+        return capacity - (capacity >> 2);
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while (maxUsed(capacity) < size + 1) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Transaction ids and HSIds keep their entropy in different bits, so mix them all in
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.voltdb;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -201,6 +202,21 @@ public interface CommandLog {
      */
     public void populateCommandLogStats(Map<String, Integer> columnNameToIndex, Object[] rowValues);
 
+    /**
+     * Statistics-related interface
+     * @return ids of the partitions which have per-partition command log statistics on this host
+     */
+    public default Set<Integer> getLoggedPartitionIds() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Statistics-related interface
+     * Implementation should populate the stats of one partition based on column name to index mapping
+     */
+    public default void populateCommandLogPartitionStats(int partitionId, Map<String, Integer> columnNameToIndex,
+            Object[] rowValues) {}
+
     /**
      * Does this logger do synchronous logging
      */
@@ -0,0 +1,405 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Checksum;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.InstanceId;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+import org.voltdb.utils.ChecksumService;
+
+/**
+ * On-disk layout of a segment written by {@link GroupCommitCommandLog}.
+ *
+ * <pre>
+ * header: magic(int) version(int) segmentId(long) instanceCoord(int) instanceTimestamp(long)
+ *         startMpTxnId(long) partitionCount(int) [partitionId(int) startTxnId(long)]* headerCrc(int)
+ * entry:  length(int) crc(int) type(byte) spHandle(long) involvedCount(short) [partitionId(int)]*
+ *         serialized Iv2InitiateTaskMessage
+ * </pre>
+ *
+ * The start txn ids in the header are the per-partition txn ids of the truncation snapshot that the
+ * segment's contents are applied on top of. Every entry carries the length and checksum of its body.
+ * A short or corrupt entry at the tail of the newest segment is a torn group commit and marks the end of
+ * the log. Older segments were complete and forced to disk before the log rolled over, so an entry which
+ * fails its checks anywhere else is corruption and can not be skipped. The header and entries are
+ * checksummed with CRC32C.
+ */
+public class CommandLogSegment {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    static final int MAGIC = 0x56434c47;
+    static final int VERSION = 1;
+    static final String FILE_PREFIX = "commandlog_";
+    static final String FILE_SUFFIX = ".vcl";
+
+    // length + crc
+    static final int ENTRY_HEADER_SIZE = 8;
+    // type + spHandle + involved partition count
+    private static final int ENTRY_FIXED_BODY_SIZE = 1 + 8 + 2;
+    // magic + version + id + coord + timestamp + mp txn id + partition count
+    private static final int HEADER_FIXED_SIZE = 4 + 4 + 8 + 4 + 8 + 8 + 4;
+
+    private final long m_id;
+    private final File m_file;
+    private final InstanceId m_instanceId;
+    private final long m_startMpTxnId;
+    private final Map<Integer, Long> m_startTxnIds;
+
+    CommandLogSegment(long id, File file, InstanceId instanceId, long startMpTxnId,
+            Map<Integer, Long> startTxnIds) {
+        m_id = id;
+        m_file = file;
+        m_instanceId = instanceId;
+        m_startMpTxnId = startMpTxnId;
+        m_startTxnIds = Collections.unmodifiableMap(new HashMap<>(startTxnIds));
+    }
+
+    public long getId() {
+        return m_id;
+    }
+
+    public File getFile() {
+        return m_file;
+    }
+
+    public InstanceId getInstanceId() {
+        return m_instanceId;
+    }
+
+    public long getStartMpTxnId() {
+        return m_startMpTxnId;
+    }
+
+    public Map<Integer, Long> getStartTxnIds() {
+        return m_startTxnIds;
+    }
+
+    static File fileForId(File dir, long id) {
+        return new File(dir, String.format("%s%019d%s", FILE_PREFIX, id, FILE_SUFFIX));
+    }
+
+    /**
+     * @return the segment id in the name of a segment file
+     */
+    static long idOf(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    static boolean isSegmentFile(File file) {
+        String name = file.getName();
+        if (!file.isFile() || !name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)
+                || name.length() == FILE_PREFIX.length() + FILE_SUFFIX.length()) {
+            return false;
+        }
+        for (int i = FILE_PREFIX.length(); i < name.length() - FILE_SUFFIX.length(); ++i) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int getHeaderSize() {
+        return HEADER_FIXED_SIZE + m_startTxnIds.size() * (4 + 8) + 4;
+    }
+
+    /**
+     * Serialize the segment header into a buffer which is ready to be written out.
+     */
+    ByteBuffer serializeHeader() {
+        ByteBuffer header = ByteBuffer.allocate(getHeaderSize());
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(m_id);
+        header.putInt(m_instanceId.getCoord());
+        header.putLong(m_instanceId.getTimestamp());
+        header.putLong(m_startMpTxnId);
+        header.putInt(m_startTxnIds.size());
+        for (Map.Entry<Integer, Long> e : m_startTxnIds.entrySet()) {
+            header.putInt(e.getKey());
+            header.putLong(e.getValue());
+        }
+        header.putInt(ChecksumService.crc32c(header.array(), 0, header.position()));
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Read the header of an existing segment file.
+     *
+     * @return the segment or {@code null} if the file does not hold a valid header
+     */
+    static CommandLogSegment readHeader(File file) throws IOException {
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer fixed = ByteBuffer.allocate(HEADER_FIXED_SIZE);
+            if (!readFully(fc, fixed)) {
+                return null;
+            }
+            fixed.flip();
+            if (fixed.getInt() != MAGIC) {
+                LOG.warn("Ignoring " + file + ", it is not a command log segment");
+                return null;
+            }
+            int version = fixed.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported command log segment version " + version + " in " + file);
+            }
+            long id = fixed.getLong();
+            InstanceId instanceId = new InstanceId(fixed.getInt(), fixed.getLong());
+            long startMpTxnId = fixed.getLong();
+            int partitionCount = fixed.getInt();
+            if (partitionCount < 0 || partitionCount > Short.MAX_VALUE) {
+                LOG.warn("Ignoring " + file + ", its header is corrupt");
+                return null;
+            }
+            ByteBuffer partitions = ByteBuffer.allocate(partitionCount * (4 + 8) + 4);
+            if (!readFully(fc, partitions)) {
+                return null;
+            }
+            partitions.flip();
+            Map<Integer, Long> startTxnIds = new HashMap<>();
+            for (int i = 0; i < partitionCount; ++i) {
+                startTxnIds.put(partitions.getInt(), partitions.getLong());
+            }
+            Checksum crc = ChecksumService.newCrc32c();
+            crc.update(fixed.array(), 0, fixed.limit());
+            crc.update(partitions.array(), 0, partitions.position());
+            if ((int) crc.getValue() != partitions.getInt()) {
+                LOG.warn("Ignoring " + file + ", its header checksum does not match");
+                return null;
+            }
+            return new CommandLogSegment(id, file, instanceId, startMpTxnId, startTxnIds);
+        }
+    }
+
+    /**
+     * @return the segment files in {@code dir} ordered by segment id
+     */
+    static List<File> listSegmentFiles(File dir) {
+        List<File> segmentFiles = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return segmentFiles;
+        }
+        for (File file : files) {
+            if (isSegmentFile(file)) {
+                segmentFiles.add(file);
+            }
+        }
+        // The ids in the file names are zero padded, so the names sort in id order
+        segmentFiles.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return segmentFiles;
+    }
+
+    /**
+     * Find and read all of the segments in {@code dir} ordered by segment id. Only the newest segment file
+     * may have an incomplete header, which happens when the log rolled over just before a crash.
+     *
+     * @throws IOException if the header of any other segment is missing or corrupt
+     */
+    static List<CommandLogSegment> scan(File dir) throws IOException {
+        List<CommandLogSegment> segments = new ArrayList<>();
+        List<File> files = listSegmentFiles(dir);
+        for (int i = 0; i < files.size(); ++i) {
+            File file = files.get(i);
+            CommandLogSegment segment = readHeader(file);
+            if (segment != null) {
+                segments.add(segment);
+            } else if (i < files.size() - 1) {
+                throw new IOException("Command log segment " + file + " has a missing or corrupt header");
+            }
+        }
+        segments.sort((a, b) -> Long.compare(a.m_id, b.m_id));
+        return segments;
+    }
+
+    /**
+     * Serialize one log entry including its length and checksum prefix.
+     *
+     * @param spHandle           spHandle the logging site assigned to the transaction
+     * @param involvedPartitions partitions of a multi-partition transaction or {@code null}
+     * @param message            initiation to log
+     * @return serialized entry
+     */
+    static byte[] serializeEntry(LogEntryType type, long spHandle, int[] involvedPartitions,
+            Iv2InitiateTaskMessage message) throws IOException {
+        final int involvedCount = involvedPartitions == null ? 0 : involvedPartitions.length;
+        final int messageSize = message.getSerializedSize();
+        final int bodySize = ENTRY_FIXED_BODY_SIZE + involvedCount * 4 + messageSize;
+        byte[] entry = new byte[ENTRY_HEADER_SIZE + bodySize];
+
+        ByteBuffer body = ByteBuffer.wrap(entry, ENTRY_HEADER_SIZE, bodySize - messageSize);
+        body.put(type.asByte());
+        body.putLong(spHandle);
+        body.putShort((short) involvedCount);
+        for (int i = 0; i < involvedCount; ++i) {
+            body.putInt(involvedPartitions[i]);
+        }
+        // The message asserts that it exactly fills the buffer so give it a slice of its own
+        message.flattenToBuffer(ByteBuffer.wrap(entry, entry.length - messageSize, messageSize).slice());
+
+        ByteBuffer header = ByteBuffer.wrap(entry, 0, ENTRY_HEADER_SIZE);
+        header.putInt(bodySize);
+        header.putInt(ChecksumService.crc32c(entry, ENTRY_HEADER_SIZE, bodySize));
+        return entry;
+    }
+
+    /**
+     * A single initiation read back from a segment
+     */
+    public static class Entry {
+        public final LogEntryType type;
+        public final long spHandle;
+        public final int[] involvedPartitions;
+        public final Iv2InitiateTaskMessage message;
+
+        Entry(LogEntryType type, long spHandle, int[] involvedPartitions, Iv2InitiateTaskMessage message) {
+            this.type = type;
+            this.spHandle = spHandle;
+            this.involvedPartitions = involvedPartitions;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Sequential reader of the entries in this segment. In the newest segment the reader stops at the first
+     * entry which is incomplete or fails its checksum, in any other segment such an entry is an error.
+     */
+    public class Reader implements AutoCloseable {
+        private final FileChannel m_fc;
+        private final boolean m_mayBeTorn;
+        private final ByteBuffer m_entryHeader = ByteBuffer.allocate(ENTRY_HEADER_SIZE);
+        private final Checksum m_crc = ChecksumService.newCrc32c();
+        private boolean m_done = false;
+
+        Reader(boolean mayBeTorn) throws IOException {
+            m_fc = FileChannel.open(m_file.toPath(), StandardOpenOption.READ);
+            m_fc.position(getHeaderSize());
+            m_mayBeTorn = mayBeTorn;
+        }
+
+        /**
+         * @return the next entry or {@code null} at the end of the segment
+         * @throws IOException if an entry of a segment other than the newest is incomplete or corrupt
+         */
+        public Entry next() throws IOException {
+            if (m_done) {
+                return null;
+            }
+            final long offset = m_fc.position();
+            m_entryHeader.clear();
+            if (!readFully(m_fc, m_entryHeader)) {
+                return offset == m_fc.size() ? end() : torn(offset, "an incomplete entry header");
+            }
+            m_entryHeader.flip();
+            int length = m_entryHeader.getInt();
+            int crc = m_entryHeader.getInt();
+            if (length < ENTRY_FIXED_BODY_SIZE || length > m_fc.size() - m_fc.position()) {
+                return torn(offset, "an entry length of " + length);
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            if (!readFully(m_fc, body)) {
+                return torn(offset, "an incomplete entry");
+            }
+            m_crc.reset();
+            m_crc.update(body.array(), 0, length);
+            if ((int) m_crc.getValue() != crc) {
+                return torn(offset, "an entry checksum mismatch");
+            }
+            body.flip();
+
+            LogEntryType type = LogEntryType.valueOf(body.get());
+            long spHandle = body.getLong();
+            int involvedCount = body.getShort();
+            int[] involvedPartitions = null;
+            if (involvedCount > 0) {
+                involvedPartitions = new int[involvedCount];
+                for (int i = 0; i < involvedCount; ++i) {
+                    involvedPartitions[i] = body.getInt();
+                }
+            }
+            if (body.get() != VoltDbMessageFactory.IV2_INITIATE_TASK_ID) {
+                throw new IOException("Unexpected message type in command log segment " + m_file);
+            }
+            Iv2InitiateTaskMessage message = new Iv2InitiateTaskMessage();
+            message.initFromBuffer(body);
+            return new Entry(type, spHandle, involvedPartitions, message);
+        }
+
+        private Entry end() {
+            m_done = true;
+            return null;
+        }
+
+        private Entry torn(long offset, String problem) throws IOException {
+            if (!m_mayBeTorn) {
+                throw new IOException("Command log segment " + m_file + " is corrupt, found " + problem
+                        + " at offset " + offset);
+            }
+            LOG.info("Command log segment " + m_file + " ends with " + problem + " at offset " + offset
+                    + ", ignoring the rest of the log");
+            return end();
+        }
+
+        @Override
+        public void close() throws IOException {
+            m_fc.close();
+        }
+    }
+
+    /**
+     * @param isNewest whether this is the newest segment of the log, the only one whose last group commit
+     *                 may have been torn by a crash
+     */
+    public Reader openForRead(boolean isNewest) throws IOException {
+        return new Reader(isNewest);
+    }
+
+    private static boolean readFully(FileChannel fc, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            try {
+                if (fc.read(buf) < 0) {
+                    return false;
+                }
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandLogSegment[" + m_id + ", " + m_file + "]";
+    }
+}
@@ -34,6 +34,14 @@ public class CommandLogStats extends StatsSource {
         FSYNC_INTERVAL
     };
 
+    public enum PartitionStatName {
+        LOGGED_TXNS,
+        SYNC_BATCHES,
+        AVG_BATCH_SIZE,
+        AVG_FSYNC_LATENCY,
+        MAX_FSYNC_LATENCY
+    };
+
     public CommandLogStats(CommandLog commandLog) {
         super(false);
         m_commandLog = commandLog;
@@ -82,4 +90,40 @@ public class CommandLogStats extends StatsSource {
         };
     }
 
+    /**
+     * Group commit batch size and fsync latency of each partition logged on this host.
+     * Latencies are reported in microseconds.
+     */
+    public static class PartitionStats extends StatsSource {
+        private final CommandLog m_commandLog;
+
+        public PartitionStats(CommandLog commandLog) {
+            super(false);
+            m_commandLog = commandLog;
+        }
+
+        @Override
+        protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+            super.populateColumnSchema(columns);
+            columns.add(new ColumnInfo(VoltSystemProcedure.CNAME_PARTITION_ID, VoltType.INTEGER));
+            columns.add(new ColumnInfo(PartitionStatName.LOGGED_TXNS.name(), VoltType.BIGINT));
+            columns.add(new ColumnInfo(PartitionStatName.SYNC_BATCHES.name(), VoltType.BIGINT));
+            columns.add(new ColumnInfo(PartitionStatName.AVG_BATCH_SIZE.name(), VoltType.FLOAT));
+            columns.add(new ColumnInfo(PartitionStatName.AVG_FSYNC_LATENCY.name(), VoltType.BIGINT));
+            columns.add(new ColumnInfo(PartitionStatName.MAX_FSYNC_LATENCY.name(), VoltType.BIGINT));
+        }
+
+        @Override
+        protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+            int partitionId = (Integer) rowKey;
+            rowValues[columnNameToIndex.get(VoltSystemProcedure.CNAME_PARTITION_ID)] = partitionId;
+            m_commandLog.populateCommandLogPartitionStats(partitionId, columnNameToIndex, rowValues);
+            super.updateStatsRow(rowKey, rowValues);
+        }
+
+        @Override
+        protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+            return new ArrayList<Object>(m_commandLog.getLoggedPartitionIds()).iterator();
+        }
+    }
 }
@@ -36,7 +36,6 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.hadoop_voltpatches.util.PureJavaCrc32;
-import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
 import org.json_voltpatches.JSONObject;
 import org.json_voltpatches.JSONStringer;
 import org.voltcore.logging.Level;
@@ -48,6 +47,8 @@ import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.RateLimitedLogger;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
+import org.voltdb.utils.ChecksumService;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.PosixAdvise;
 
@@ -111,6 +112,9 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     @SuppressWarnings("unused")
     private final String m_tableName;
 
+    // Codec the table data is compressed with, recorded in the header for restore
+    private final CompressionCodec m_compressionCodec = CompressionService.SNAPSHOT_CODEC;
+
     private final AtomicInteger m_outstandingWriteTasks = new AtomicInteger(0);
     private final ReentrantLock m_outstandingWriteTasksLock = new ReentrantLock();
     private final Condition m_noMoreOutstandingWriteTasksCondition =
@@ -216,6 +220,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             stringer.keySymbolValuePair("tableName", tableName.toUpperCase());
             stringer.keySymbolValuePair("isReplicated", isReplicated);
             stringer.keySymbolValuePair("isCompressed", true);
+            stringer.keySymbolValuePair("compressionCodec", m_compressionCodec.name());
             stringer.keySymbolValuePair("checksumType", "CRC32C");
             stringer.keySymbolValuePair("timestamp", timestamp);
             /*
@@ -469,7 +474,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
              * that is 16 bytes, but 4 of those are done by CompressionService
              */
             cont.b().position(12);
-            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont);
+            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont, m_compressionCodec);
         }
         final Future<BBContainer> compressionTaskFinal = compressionTask;
 
@@ -510,9 +515,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                             /*
                              * Checksum the header and put it in the payload buffer
                              */
-                            PureJavaCrc32C crc = new PureJavaCrc32C();
-                            crc.update(lengthPrefix.array(), 0, 8);
-                            lengthPrefix.putInt((int)crc.getValue());
+                            lengthPrefix.putInt(ChecksumService.crc32c(lengthPrefix.array(), 0, 8));
                             lengthPrefix.flip();
                             payloadBuffer.put(lengthPrefix);
                             payloadBuffer.position(0);
@@ -0,0 +1,635 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.KeeperException;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.InstanceId;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+import com.google_voltpatches.common.collect.ImmutableSet;
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * Command log which group commits the initiations of all of the sites on this host.
+ * <p>
+ * Sites serialize their {@link Iv2InitiateTaskMessage}s and append them to a shared batch. A dedicated writer
+ * thread swaps the batch out every fsync interval, or as soon as it holds {@code maxTxns} transactions, writes
+ * it to the current {@link CommandLogSegment} and forces it to disk. Once the batch is durable the writer hands
+ * the completion checks of every registered {@link DurabilityListener} back to its site.
+ * <p>
+ * In synchronous mode transactions are only released for execution by the completion checks. In asynchronous
+ * mode transactions execute immediately and the returned future only applies backpressure when the writer falls
+ * behind.
+ * <p>
+ * Segments are removed once a truncation snapshot covers all of their transactions. A truncation snapshot is
+ * requested whenever the segments on disk exceed the configured log size.
+ */
+public class GroupCommitCommandLog implements CommandLog, SnapshotCompletionInterest {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    static final long SEGMENT_SIZE = Long.getLong("COMMANDLOG_SEGMENT_SIZE", 64L * 1024 * 1024);
+    // Async logging only hands out backpressure once this many bytes are waiting to be written
+    static final int BACKPRESSURE_BYTES = Integer.getInteger("COMMANDLOG_BACKPRESSURE_BYTES", 32 * 1024 * 1024);
+
+    private static final ListenableFuture<Object> NO_BACKPRESSURE = Futures.immediateFuture(null);
+
+    private final boolean m_synchronous;
+    private final int m_fsyncIntervalMs;
+    private final long m_fsyncIntervalNanos;
+    private final int m_maxTxns;
+    private final File m_logDir;
+
+    /*
+     * m_lock guards the batches and the durability listeners. Listeners are not thread safe so
+     * adding a transaction and starting a new task list have to be serialized by the same lock.
+     */
+    private final Object m_lock = new Object();
+    private Batch m_currentBatch = new Batch();
+    private Batch m_spareBatch = new Batch();
+    private final List<DurabilityListener> m_listeners = new ArrayList<>();
+    private long m_inFlightBytes = 0;
+    private int m_inFlightTxns = 0;
+    private boolean m_shutdown = false;
+
+    private final Thread m_writer;
+    private volatile boolean m_initialized = false;
+    private volatile long m_logSizeBytes = Long.MAX_VALUE;
+    private final AtomicBoolean m_truncationPending = new AtomicBoolean(false);
+
+    // Segments which may still be needed for replay, oldest first. The last one is open for writing.
+    private final ArrayDeque<SegmentState> m_segments = new ArrayDeque<>();
+    private long m_nextSegmentId = 0;
+    private InstanceId m_instanceId;
+    private long m_startMpTxnId = Long.MIN_VALUE;
+    private Map<Integer, Long> m_startTxnIds = Collections.emptyMap();
+    private boolean m_rollRequested = false;
+
+    // Only accessed by the writer thread
+    private FileChannel m_channel;
+
+    private final Map<Integer, PartitionCounters> m_partitionCounters = new ConcurrentHashMap<>();
+    private volatile ImmutableSet<Integer> m_decommissionedPartitions = ImmutableSet.of();
+
+    public GroupCommitCommandLog(boolean synchronous, int fsyncIntervalMs, int maxTxns, String logPath,
+            String snapshotPath) {
+        m_synchronous = synchronous;
+        m_fsyncIntervalMs = fsyncIntervalMs;
+        m_fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, fsyncIntervalMs));
+        m_maxTxns = maxTxns > 0 ? maxTxns : Integer.MAX_VALUE;
+        m_logDir = new File(logPath);
+
+        m_writer = new Thread(this::runWriter, "CommandLog Writer");
+        m_writer.setDaemon(true);
+        m_writer.start();
+
+        LOG.info("Using " + (synchronous ? "synchronous" : "asynchronous") + " group commit command log in "
+                + m_logDir + " with an fsync interval of " + fsyncIntervalMs + "ms");
+    }
+
+    /**
+     * Transactions logged in one group commit
+     */
+    private static class Batch {
+        byte[] m_data = new byte[64 * 1024];
+        int m_size = 0;
+        int m_txnCount = 0;
+        // Partitions written to this batch, and how much of each
+        final Map<Integer, PartitionBatch> m_partitions = new HashMap<>();
+        SettableFuture<Object> m_writtenFuture;
+
+        void add(int partitionId, long spHandle, byte[] entry) {
+            ++m_txnCount;
+            if (entry == null) {
+                return;
+            }
+            if (m_size + entry.length > m_data.length) {
+                m_data = Arrays.copyOf(m_data, Math.max(m_data.length * 2, m_size + entry.length));
+            }
+            System.arraycopy(entry, 0, m_data, m_size, entry.length);
+            m_size += entry.length;
+
+            PartitionBatch partition = m_partitions.get(partitionId);
+            if (partition == null) {
+                partition = new PartitionBatch();
+                m_partitions.put(partitionId, partition);
+            }
+            ++partition.m_txnCount;
+            partition.m_maxSpHandle = Math.max(partition.m_maxSpHandle, spHandle);
+        }
+
+        SettableFuture<Object> writtenFuture() {
+            if (m_writtenFuture == null) {
+                m_writtenFuture = SettableFuture.create();
+            }
+            return m_writtenFuture;
+        }
+
+        void reset() {
+            m_size = 0;
+            m_txnCount = 0;
+            for (PartitionBatch partition : m_partitions.values()) {
+                partition.m_txnCount = 0;
+                partition.m_maxSpHandle = Long.MIN_VALUE;
+            }
+            m_writtenFuture = null;
+        }
+    }
+
+    private static class PartitionBatch {
+        int m_txnCount = 0;
+        long m_maxSpHandle = Long.MIN_VALUE;
+    }
+
+    private static class SegmentState {
+        final CommandLogSegment m_segment;
+        final Map<Integer, Long> m_maxSpHandles = new HashMap<>();
+        long m_size;
+        boolean m_closed = false;
+
+        SegmentState(CommandLogSegment segment) {
+            m_segment = segment;
+            m_size = segment.getHeaderSize();
+        }
+    }
+
+    private static class PartitionCounters {
+        long m_loggedTxns;
+        long m_batches;
+        long m_totalFsyncNanos;
+        long m_maxFsyncNanos;
+    }
+
+    @Override
+    public void init(int logSize, long txnId, String coreBinding, Map<Integer, Long> perPartitionTxnId) {
+        HostMessenger messenger = VoltDB.instance().getHostMessenger();
+        open(logSize, messenger.getInstanceId(), txnId, perPartitionTxnId);
+        VoltDB.instance().getSnapshotCompletionMonitor().addInterest(this);
+    }
+
+    @Override
+    public void initForRejoin(int logSize, long txnId, boolean isRejoin, String coreBinding,
+            Map<Integer, Long> perPartitionTxnId) {
+        init(logSize, txnId, coreBinding, perPartitionTxnId);
+    }
+
+    /**
+     * Start writing the log. Any segments left in the log directory are already covered by the snapshot
+     * the log is started from, so they are removed.
+     */
+    void open(int logSizeMb, InstanceId instanceId, long txnId, Map<Integer, Long> perPartitionTxnId) {
+        try {
+            if (!m_logDir.exists() && !m_logDir.mkdirs()) {
+                throw new IOException("Unable to create command log directory " + m_logDir);
+            }
+            for (File stale : CommandLogSegment.listSegmentFiles(m_logDir)) {
+                m_nextSegmentId = Math.max(m_nextSegmentId, CommandLogSegment.idOf(stale) + 1);
+                LOG.info("Removing command log segment " + stale + " which is covered by the snapshot");
+                stale.delete();
+            }
+        } catch (IOException e) {
+            throw VoltDB.crashLocalVoltDB("Unable to initialize command log in " + m_logDir, true, e);
+        }
+        synchronized (m_segments) {
+            m_instanceId = instanceId;
+            m_startMpTxnId = txnId;
+            m_startTxnIds = perPartitionTxnId == null ? Collections.emptyMap() : new HashMap<>(perPartitionTxnId);
+        }
+        m_logSizeBytes = logSizeMb > 0 ? logSizeMb * 1024L * 1024L : Long.MAX_VALUE;
+        m_initialized = true;
+    }
+
+    @Override
+    public boolean needsInitialization() {
+        return !m_initialized;
+    }
+
+    @Override
+    public ListenableFuture<Object> log(Iv2InitiateTaskMessage message, long spHandle, int[] involvedPartitions,
+            DurabilityListener listener, TransactionTask durabilityHandle) {
+        byte[] entry = null;
+        // Reads don't change state and don't need to be replayed but still go through the batch so that
+        // the durability listener releases them in order
+        if (message != null && !message.isReadOnly() && m_initialized) {
+            try {
+                entry = CommandLogSegment.serializeEntry(LogEntryType.INITIATION, spHandle, involvedPartitions,
+                        message);
+            } catch (IOException e) {
+                throw VoltDB.crashLocalVoltDB("Unable to serialize command log entry", true, e);
+            }
+        }
+        final int partitionId = TxnEgo.getPartitionId(spHandle);
+
+        synchronized (m_lock) {
+            listener.addTransaction(durabilityHandle);
+            Batch batch = m_currentBatch;
+            batch.add(partitionId, spHandle, entry);
+            if (batch.m_txnCount == 1 || batch.m_txnCount == m_maxTxns) {
+                m_lock.notify();
+            }
+            if (m_synchronous) {
+                return null;
+            }
+            if (batch.m_size + m_inFlightBytes > BACKPRESSURE_BYTES) {
+                return batch.writtenFuture();
+            }
+            return NO_BACKPRESSURE;
+        }
+    }
+
+    private void runWriter() {
+        long lastFlush = System.nanoTime();
+        List<CompletionChecks> checks = new ArrayList<>();
+        List<DurabilityListener> listeners = new ArrayList<>();
+        while (true) {
+            final Batch batch;
+            synchronized (m_lock) {
+                try {
+                    while (!m_shutdown) {
+                        final int txnCount = m_currentBatch.m_txnCount;
+                        if (txnCount >= m_maxTxns) {
+                            break;
+                        }
+                        if (txnCount == 0) {
+                            m_lock.wait();
+                            continue;
+                        }
+                        long remaining = lastFlush + m_fsyncIntervalNanos - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(m_lock, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    m_shutdown = true;
+                }
+                if (m_currentBatch.m_txnCount == 0) {
+                    if (m_shutdown) {
+                        break;
+                    }
+                    continue;
+                }
+
+                batch = m_currentBatch;
+                m_currentBatch = m_spareBatch;
+                m_spareBatch = null;
+                m_inFlightBytes = batch.m_size;
+                m_inFlightTxns = batch.m_txnCount;
+
+                for (DurabilityListener listener : m_listeners) {
+                    listeners.add(listener);
+                    checks.add(listener.startNewTaskList(listener.getNumberOfTasks()));
+                }
+            }
+
+            lastFlush = System.nanoTime();
+            if (batch.m_size > 0) {
+                try {
+                    write(batch);
+                } catch (IOException e) {
+                    throw VoltDB.crashLocalVoltDB("Unable to write to the command log in " + m_logDir, true, e);
+                }
+                recordBatchStats(batch, System.nanoTime() - lastFlush);
+            }
+
+            for (int i = 0; i < listeners.size(); ++i) {
+                listeners.get(i).processDurabilityChecks(checks.get(i));
+            }
+            listeners.clear();
+            checks.clear();
+            if (batch.m_writtenFuture != null) {
+                batch.m_writtenFuture.set(null);
+            }
+
+            synchronized (m_lock) {
+                batch.reset();
+                m_spareBatch = batch;
+                m_inFlightBytes = 0;
+                m_inFlightTxns = 0;
+            }
+
+            if (segmentBytes() > m_logSizeBytes) {
+                requestTruncationSnapshot(false);
+            }
+        }
+        closeChannel();
+    }
+
+    private void write(Batch batch) throws IOException {
+        SegmentState current;
+        synchronized (m_segments) {
+            current = m_segments.peekLast();
+            if (current == null || current.m_closed || current.m_size >= SEGMENT_SIZE || m_rollRequested) {
+                m_rollRequested = false;
+                current = rollSegment(current);
+            }
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(batch.m_data, 0, batch.m_size);
+        while (buf.hasRemaining()) {
+            m_channel.write(buf);
+        }
+        m_channel.force(false);
+
+        synchronized (m_segments) {
+            current.m_size += batch.m_size;
+            for (Map.Entry<Integer, PartitionBatch> e : batch.m_partitions.entrySet()) {
+                if (e.getValue().m_txnCount > 0) {
+                    current.m_maxSpHandles.merge(e.getKey(), e.getValue().m_maxSpHandle, Math::max);
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the current segment and start a new one. Called with the segment lock held.
+     */
+    private SegmentState rollSegment(SegmentState current) throws IOException {
+        if (current != null) {
+            current.m_closed = true;
+        }
+        closeChannel();
+
+        final long id = m_nextSegmentId++;
+        CommandLogSegment segment = new CommandLogSegment(id, CommandLogSegment.fileForId(m_logDir, id),
+                m_instanceId == null ? new InstanceId(0, 0) : m_instanceId, m_startMpTxnId, m_startTxnIds);
+        m_channel = FileChannel.open(segment.getFile().toPath(), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = segment.serializeHeader();
+        while (header.hasRemaining()) {
+            m_channel.write(header);
+        }
+        m_channel.force(true);
+
+        SegmentState state = new SegmentState(segment);
+        m_segments.addLast(state);
+        truncateSegments();
+        return state;
+    }
+
+    private void closeChannel() {
+        if (m_channel != null) {
+            try {
+                m_channel.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close command log segment", e);
+            }
+            m_channel = null;
+        }
+    }
+
+    /**
+     * Delete the closed segments, oldest first, whose transactions are all covered by the start txn ids.
+     * Called with the segment lock held.
+     */
+    private void truncateSegments() {
+        Iterator<SegmentState> iter = m_segments.iterator();
+        while (iter.hasNext()) {
+            SegmentState state = iter.next();
+            if (!state.m_closed || !isCovered(state, m_startTxnIds)) {
+                break;
+            }
+            iter.remove();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Truncating command log segment " + state.m_segment.getFile());
+            }
+            if (!state.m_segment.getFile().delete()) {
+                LOG.warn("Unable to delete truncated command log segment " + state.m_segment.getFile());
+            }
+        }
+    }
+
+    private static boolean isCovered(SegmentState state, Map<Integer, Long> txnIds) {
+        for (Map.Entry<Integer, Long> e : state.m_maxSpHandles.entrySet()) {
+            Long covered = txnIds.get(e.getKey());
+            if (covered == null || covered < e.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long segmentBytes() {
+        synchronized (m_segments) {
+            long bytes = 0;
+            for (SegmentState state : m_segments) {
+                bytes += state.m_size;
+            }
+            return bytes;
+        }
+    }
+
+    private void recordBatchStats(Batch batch, long fsyncNanos) {
+        for (Map.Entry<Integer, PartitionBatch> e : batch.m_partitions.entrySet()) {
+            final int txnCount = e.getValue().m_txnCount;
+            if (txnCount == 0) {
+                continue;
+            }
+            PartitionCounters counters = m_partitionCounters.computeIfAbsent(e.getKey(), k -> new PartitionCounters());
+            synchronized (counters) {
+                counters.m_loggedTxns += txnCount;
+                ++counters.m_batches;
+                counters.m_totalFsyncNanos += fsyncNanos;
+                counters.m_maxFsyncNanos = Math.max(counters.m_maxFsyncNanos, fsyncNanos);
+            }
+        }
+    }
+
+    @Override
+    public CountDownLatch snapshotCompleted(SnapshotCompletionEvent event) {
+        if (event.truncationSnapshot && event.didSucceed) {
+            synchronized (m_segments) {
+                m_startMpTxnId = event.multipartTxnId;
+                m_startTxnIds = new HashMap<>(event.partitionTxnIds);
+                // The open segment can only be removed once it has been closed
+                m_rollRequested = true;
+                truncateSegments();
+            }
+            m_truncationPending.set(false);
+        }
+        return new CountDownLatch(0);
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        synchronized (m_lock) {
+            m_shutdown = true;
+            m_lock.notify();
+        }
+        m_writer.join();
+        SnapshotCompletionMonitor monitor = VoltDB.instance().getSnapshotCompletionMonitor();
+        if (monitor != null) {
+            monitor.removeInterest(this);
+        }
+    }
+
+    /**
+     * Fault entries are only needed to decide which replica's log to replay. Replay only reads the log of
+     * the host which leads a partition, so there is nothing to write.
+     */
+    @Override
+    public SettableFuture<Boolean> logIv2Fault(long writerHSId, Set<Long> survivorHSId, int partitionId,
+            long spHandle) {
+        return logIv2Fault(writerHSId, survivorHSId, partitionId, spHandle, LogEntryType.IV2FAULT);
+    }
+
+    @Override
+    public SettableFuture<Boolean> logIv2Fault(long writerHSId, Set<Long> survivorHSId, int partitionId,
+            long spHandle, LogEntryType entryType) {
+        SettableFuture<Boolean> written = SettableFuture.create();
+        written.set(true);
+        return written;
+    }
+
+    @Override
+    public void initializeLastDurableUniqueId(DurabilityListener listener, long uniqueId) {
+        synchronized (m_lock) {
+            listener.initializeLastDurableUniqueId(uniqueId);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void requestTruncationSnapshot(boolean queueIfPending) {
+        if (!m_truncationPending.compareAndSet(false, true) && !queueIfPending) {
+            return;
+        }
+        HostMessenger messenger = VoltDB.instance().getHostMessenger();
+        if (messenger == null) {
+            return;
+        }
+        try {
+            messenger.getZK().create(VoltZK.request_truncation_snapshot_node, null, Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.PERSISTENT_SEQUENTIAL);
+        } catch (KeeperException.NodeExistsException e) {
+            // A request is already outstanding
+        } catch (Exception e) {
+            LOG.error("Unable to request a truncation snapshot for the command log", e);
+            m_truncationPending.set(false);
+        }
+    }
+
+    @Override
+    public void populateCommandLogStats(Map<String, Integer> columnNameToIndex, Object[] rowValues) {
+        long outstandingBytes;
+        long outstandingTxns;
+        synchronized (m_lock) {
+            outstandingBytes = m_currentBatch.m_size + m_inFlightBytes;
+            outstandingTxns = m_currentBatch.m_txnCount + m_inFlightTxns;
+        }
+        int segmentCount;
+        synchronized (m_segments) {
+            segmentCount = m_segments.size();
+        }
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_BYTES.name())] = outstandingBytes;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_TXNS.name())] = outstandingTxns;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name())] = segmentCount;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.SEGMENT_COUNT.name())] = segmentCount;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNC_INTERVAL.name())] = m_fsyncIntervalMs;
+    }
+
+    @Override
+    public Set<Integer> getLoggedPartitionIds() {
+        return new TreeSet<>(m_partitionCounters.keySet());
+    }
+
+    @Override
+    public void populateCommandLogPartitionStats(int partitionId, Map<String, Integer> columnNameToIndex,
+            Object[] rowValues) {
+        long loggedTxns = 0;
+        long batches = 0;
+        long totalFsyncNanos = 0;
+        long maxFsyncNanos = 0;
+        PartitionCounters counters = m_partitionCounters.get(partitionId);
+        if (counters != null) {
+            synchronized (counters) {
+                loggedTxns = counters.m_loggedTxns;
+                batches = counters.m_batches;
+                totalFsyncNanos = counters.m_totalFsyncNanos;
+                maxFsyncNanos = counters.m_maxFsyncNanos;
+            }
+        }
+        rowValues[columnNameToIndex.get(CommandLogStats.PartitionStatName.LOGGED_TXNS.name())] = loggedTxns;
+        rowValues[columnNameToIndex.get(CommandLogStats.PartitionStatName.SYNC_BATCHES.name())] = batches;
+        rowValues[columnNameToIndex.get(CommandLogStats.PartitionStatName.AVG_BATCH_SIZE.name())] =
+                batches == 0 ? 0.0 : (double) loggedTxns / batches;
+        rowValues[columnNameToIndex.get(CommandLogStats.PartitionStatName.AVG_FSYNC_LATENCY.name())] =
+                batches == 0 ? 0L : TimeUnit.NANOSECONDS.toMicros(totalFsyncNanos / batches);
+        rowValues[columnNameToIndex.get(CommandLogStats.PartitionStatName.MAX_FSYNC_LATENCY.name())] =
+                TimeUnit.NANOSECONDS.toMicros(maxFsyncNanos);
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return m_synchronous;
+    }
+
+    @Override
+    public boolean canOfferTask() {
+        return !m_synchronous;
+    }
+
+    @Override
+    public void registerDurabilityListener(DurabilityListener durabilityListener) {
+        synchronized (m_lock) {
+            m_listeners.add(durabilityListener);
+        }
+    }
+
+    @Override
+    public void notifyDecommissionPartitions(List<Integer> partitions) {
+        m_decommissionedPartitions = ImmutableSet.<Integer>builder().addAll(m_decommissionedPartitions)
+                .addAll(partitions).build();
+    }
+
+    @Override
+    public ImmutableSet<Integer> getDecommissionedPartitions() {
+        return m_decommissionedPartitions;
+    }
+}
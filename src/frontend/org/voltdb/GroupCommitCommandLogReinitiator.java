@@ -0,0 +1,530 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.KeeperException;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.apache.zookeeper_voltpatches.ZooKeeper;
+import org.json_voltpatches.JSONObject;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.BinaryPayloadMessage;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.messaging.Mailbox;
+import org.voltcore.messaging.VoltMessage;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.InstanceId;
+import org.voltcore.zk.ZKCountdownLatch;
+import org.voltcore.zk.ZKUtil;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.dtxn.TransactionCreator;
+import org.voltdb.iv2.Cartographer;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+
+import com.google_voltpatches.common.primitives.Longs;
+
+/**
+ * Replays the segments written by {@link GroupCommitCommandLog}.
+ * <p>
+ * Every replica logs the same transactions, so each host only replays the partitions it leads. Single partition
+ * transactions are resubmitted to their partition in log order. For a multi-partition transaction a sentinel is
+ * sent to each led partition at its position in the log. Before that, every host sends the multi-partition
+ * transactions in its log to the host running the MPI, which keeps one copy of each unique id and resubmits
+ * them in unique id order, so a transaction is replayed as long as any replica logged it.
+ */
+public class GroupCommitCommandLogReinitiator implements CommandLogReinitiator {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    // Upper bound on the transactions a host has in flight during replay
+    private static final int MAX_OUTSTANDING_TXNS = Integer.getInteger("COMMANDLOG_REPLAY_OUTSTANDING", 5000);
+    // Size of the messages carrying multi-partition transactions to the MPI host
+    private static final int MP_GATHER_CHUNK_BYTES = 1024 * 1024;
+    private static final byte MP_GATHER_ENTRIES = 0;
+    private static final byte MP_GATHER_DONE = 1;
+
+    private final int m_hostId;
+    private final HostMessenger m_messenger;
+    private final File m_logDir;
+    private volatile List<CommandLogSegment> m_segments;
+    // Whether any host in the cluster has segments to replay, once all of them have said so
+    private volatile Boolean m_clusterHasSegments;
+
+    private Callback m_callback;
+    private TransactionCreator m_initiator;
+    private RestoreAgent.SnapshotInfo m_snapshotInfo;
+    private boolean m_planned = false;
+    private boolean m_isMPINode = false;
+
+    private final SimpleClientResponseAdapter m_adapter =
+            new SimpleClientResponseAdapter(ClientInterface.CL_REPLAY_BASE_CID, "CommandLogReplayAdapter");
+    private final Semaphore m_outstanding = new Semaphore(MAX_OUTSTANDING_TXNS);
+    private final Semaphore m_outstandingMp = new Semaphore(MAX_OUTSTANDING_TXNS);
+    private final AtomicLong m_replayedTxns = new AtomicLong();
+
+    public GroupCommitCommandLogReinitiator(int hostId, HostMessenger messenger, String logPath) {
+        m_hostId = hostId;
+        m_messenger = messenger;
+        m_logDir = new File(logPath);
+        try {
+            m_segments = CommandLogSegment.scan(m_logDir);
+        } catch (IOException e) {
+            throw VoltDB.crashLocalVoltDB("Unable to read command log segments in " + m_logDir, true, e);
+        }
+        if (!m_segments.isEmpty()) {
+            LOG.info("Found " + m_segments.size() + " command log segments to replay in " + m_logDir);
+        }
+        publishSegments();
+    }
+
+    /**
+     * Record in ZK whether this host has segments to replay. All hosts decide from these records whether the
+     * cluster replays a command log, so that none of them replays while another thinks there is nothing to do.
+     */
+    private void publishSegments() {
+        final ZooKeeper zk = m_messenger.getZK();
+        final String path = ZKUtil.joinZKPath(VoltZK.commandlog_replay_segments, Integer.toString(m_hostId));
+        final byte[] data = new byte[] { (byte) (m_segments.isEmpty() ? 0 : 1) };
+        try {
+            ZKUtil.addIfMissing(zk, VoltZK.commandlog_replay_segments, CreateMode.PERSISTENT, null);
+            if (!ZKUtil.addIfMissing(zk, path, CreateMode.EPHEMERAL, data)) {
+                zk.setData(path, data, -1);
+            }
+        } catch (KeeperException | InterruptedException e) {
+            throw VoltDB.crashLocalVoltDB("Unable to publish the command log segments of host " + m_hostId, true, e);
+        }
+    }
+
+    /**
+     * Wait for every live host to publish whether it has segments to replay
+     *
+     * @return whether any of them has
+     */
+    private boolean anyHostHasSegments() throws KeeperException, InterruptedException {
+        final ZooKeeper zk = m_messenger.getZK();
+        while (true) {
+            Set<String> published = new HashSet<>(zk.getChildren(VoltZK.commandlog_replay_segments, false));
+            boolean allPublished = true;
+            for (int hostId : m_messenger.getLiveHostIds()) {
+                allPublished &= published.contains(Integer.toString(hostId));
+            }
+            if (allPublished) {
+                for (String host : published) {
+                    byte[] data = zk.getData(ZKUtil.joinZKPath(VoltZK.commandlog_replay_segments, host), false, null);
+                    if (data != null && data.length > 0 && data[0] != 0) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    @Override
+    public void setSnapshotTxnId(RestoreAgent.SnapshotInfo info) {
+        m_snapshotInfo = info;
+    }
+
+    @Override
+    public void setCallback(Callback callback) {
+        m_callback = callback;
+    }
+
+    @Override
+    public void setInitiator(TransactionCreator initiator) {
+        m_initiator = initiator;
+        m_initiator.bindAdapter(m_adapter);
+    }
+
+    @Override
+    public void initPartitionTracking() {}
+
+    @Override
+    public void generateReplayPlan(long snapshotTimeStamp, long snapshotTxnId, int newPartitionCount,
+            boolean isMPINode, JSONObject elasticOperationMetadata) {
+        m_isMPINode = isMPINode;
+        m_planned = true;
+        if (elasticOperationMetadata != null) {
+            LOG.warn("Ignoring the interrupted elastic operation recorded in the snapshot, "
+                    + "the command log can not resume it");
+        }
+    }
+
+    @Override
+    public void replay() {
+        Thread replayThread = new Thread(() -> {
+            try {
+                if (m_planned && m_initiator != null && hasReplayedSegments()) {
+                    replaySegments();
+                } else if (m_planned && m_isMPINode && m_initiator != null) {
+                    m_initiator.sendEOLMessage(MpInitiator.MP_INIT_PID);
+                }
+                ZKCountdownLatch latch = new ZKCountdownLatch(m_messenger.getZK(),
+                        VoltZK.commandlog_replay_barrier, m_messenger.getLiveHostIds().size());
+                latch.countDown(true);
+                latch.await();
+            } catch (Exception e) {
+                VoltDB.crashGlobalVoltDB("Failed to replay the command log", true, e);
+            }
+            if (m_callback != null) {
+                m_callback.onReplayCompletion();
+            }
+        }, "Command Log Replay");
+        replayThread.start();
+    }
+
+    /**
+     * Callback for the initiations read from this host's segments
+     */
+    private interface InitiationHandler {
+        void handle(CommandLogSegment.Entry entry) throws IOException, InterruptedException;
+    }
+
+    private void forEachInitiation(InitiationHandler handler) throws IOException, InterruptedException {
+        for (int i = 0; i < m_segments.size(); ++i) {
+            final CommandLogSegment segment = m_segments.get(i);
+            try (CommandLogSegment.Reader reader = segment.openForRead(i == m_segments.size() - 1)) {
+                CommandLogSegment.Entry entry;
+                while ((entry = reader.next()) != null) {
+                    if (entry.type == LogEntryType.INITIATION) {
+                        handler.handle(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private void replaySegments() throws IOException, InterruptedException, KeeperException {
+        final Cartographer cartographer = VoltDB.instance().getCartographer();
+        final Map<Integer, Boolean> ledPartitions = new HashMap<>();
+        final Map<Integer, Long> snapshotTxnIds = m_snapshotInfo == null ?
+                Collections.emptyMap() : m_snapshotInfo.partitionToTxnId;
+        final long snapshotMpTxnId = m_snapshotInfo == null ? Long.MIN_VALUE : m_snapshotInfo.txnId;
+
+        // A multi-partition transaction may only be durable in the logs of some of the replicas of the
+        // partitions it involved, so the MPI host gathers them from every host before resubmitting them.
+        Thread mpReplay = null;
+        if (m_isMPINode) {
+            final Collection<Iv2InitiateTaskMessage> mpTxns = gatherMpTxns(snapshotTxnIds, snapshotMpTxnId);
+            mpReplay = new Thread(() -> {
+                try {
+                    for (Iv2InitiateTaskMessage message : mpTxns) {
+                        submit(message, false, MpInitiator.MP_INIT_PID, m_outstandingMp);
+                    }
+                } catch (Exception e) {
+                    VoltDB.crashGlobalVoltDB("Failed to replay the multi-partition transactions of the command log",
+                            true, e);
+                }
+            }, "Command Log MP Replay");
+            mpReplay.start();
+        } else {
+            sendMpTxns(snapshotTxnIds, snapshotMpTxnId);
+        }
+
+        LOG.info("Replaying " + m_segments.size() + " command log segments");
+        forEachInitiation(entry -> {
+            final int partitionId = TxnEgo.getPartitionId(entry.spHandle);
+            final Iv2InitiateTaskMessage message = entry.message;
+
+            Boolean isLeader = ledPartitions.get(partitionId);
+            if (isLeader == null) {
+                Long masterHSId = cartographer.getHSIdForMaster(partitionId);
+                isLeader = masterHSId != null && CoreUtils.getHostIdFromHSId(masterHSId) == m_hostId;
+                ledPartitions.put(partitionId, isLeader);
+            }
+            if (!isLeader || isCoveredBySnapshot(entry, snapshotTxnIds, snapshotMpTxnId)) {
+                return;
+            }
+            if (message.isSinglePartition()) {
+                submit(message, true, partitionId, m_outstanding);
+            } else {
+                m_initiator.sendSentinel(message.getUniqueId(), partitionId);
+            }
+        });
+
+        if (mpReplay != null) {
+            mpReplay.join();
+        }
+        // The MPI may only see the end of the log once all of the multi-partition work is done
+        m_outstandingMp.acquire(MAX_OUTSTANDING_TXNS);
+        m_outstandingMp.release(MAX_OUTSTANDING_TXNS);
+        if (m_isMPINode) {
+            m_initiator.sendEOLMessage(MpInitiator.MP_INIT_PID);
+        }
+        m_outstanding.acquire(MAX_OUTSTANDING_TXNS);
+        m_outstanding.release(MAX_OUTSTANDING_TXNS);
+        LOG.info("Replayed " + m_replayedTxns.get() + " transactions from the command log");
+    }
+
+    private static boolean isCoveredBySnapshot(CommandLogSegment.Entry entry, Map<Integer, Long> snapshotTxnIds,
+            long snapshotMpTxnId) {
+        Long snapshotTxnId = snapshotTxnIds.get(TxnEgo.getPartitionId(entry.spHandle));
+        if (snapshotTxnId != null && entry.spHandle <= snapshotTxnId) {
+            return true;
+        }
+        return !entry.message.isSinglePartition() && entry.message.getTxnId() <= snapshotMpTxnId;
+    }
+
+    /**
+     * Collect the multi-partition transactions from the log of this host and those that every other host
+     * sends, keeping one copy of each.
+     *
+     * @return the transactions to resubmit in unique id order
+     */
+    private Collection<Iv2InitiateTaskMessage> gatherMpTxns(Map<Integer, Long> snapshotTxnIds,
+            long snapshotMpTxnId) throws IOException, InterruptedException, KeeperException {
+        final SortedMap<Long, Iv2InitiateTaskMessage> mpTxns = new TreeMap<>();
+        final Mailbox mailbox = m_messenger.createMailbox();
+        try {
+            m_messenger.getZK().create(VoltZK.commandlog_replay_mp_collector, Longs.toByteArray(mailbox.getHSId()),
+                    Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL);
+
+            forEachInitiation(entry -> {
+                if (!entry.message.isSinglePartition() &&
+                        !isCoveredBySnapshot(entry, snapshotTxnIds, snapshotMpTxnId)) {
+                    mpTxns.putIfAbsent(entry.message.getUniqueId(), entry.message);
+                }
+            });
+
+            // Messages from one host may arrive out of order, so each host ends with the number it sent
+            final Map<Integer, Integer> chunksOutstanding = new HashMap<>();
+            final Set<Integer> pendingHosts = new HashSet<>(m_messenger.getLiveHostIds());
+            pendingHosts.remove(m_hostId);
+            while (!pendingHosts.isEmpty()) {
+                VoltMessage received = mailbox.recvBlocking(1000);
+                if (received == null) {
+                    if (!m_messenger.getLiveHostIds().containsAll(pendingHosts)) {
+                        throw new IOException("A host failed before sending the multi-partition transactions "
+                                + "of its command log");
+                    }
+                    continue;
+                }
+                final BinaryPayloadMessage bpm = (BinaryPayloadMessage) received;
+                final ByteBuffer metadata = ByteBuffer.wrap(bpm.m_metadata);
+                final byte type = metadata.get();
+                final int hostId = metadata.getInt();
+                if (type == MP_GATHER_DONE) {
+                    chunksOutstanding.merge(hostId, metadata.getInt(), Integer::sum);
+                } else {
+                    chunksOutstanding.merge(hostId, -1, Integer::sum);
+                    final ByteBuffer payload = ByteBuffer.wrap(bpm.m_payload);
+                    while (payload.hasRemaining()) {
+                        final int length = payload.getInt();
+                        final ByteBuffer serialized = payload.slice();
+                        serialized.limit(length);
+                        payload.position(payload.position() + length);
+                        if (serialized.get() != VoltDbMessageFactory.IV2_INITIATE_TASK_ID) {
+                            throw new IOException("Unexpected message type in the command log of host " + hostId);
+                        }
+                        final Iv2InitiateTaskMessage message = new Iv2InitiateTaskMessage();
+                        message.initFromBuffer(serialized);
+                        mpTxns.putIfAbsent(message.getUniqueId(), message);
+                    }
+                }
+                if (chunksOutstanding.get(hostId) == 0) {
+                    pendingHosts.remove(hostId);
+                }
+            }
+        } finally {
+            m_messenger.removeMailbox(mailbox.getHSId());
+        }
+        LOG.info("Gathered " + mpTxns.size() + " multi-partition transactions to replay from the command logs");
+        return mpTxns.values();
+    }
+
+    /**
+     * Send the multi-partition transactions in the log of this host to the MPI host
+     */
+    private void sendMpTxns(Map<Integer, Long> snapshotTxnIds, long snapshotMpTxnId)
+            throws IOException, InterruptedException, KeeperException {
+        final ZooKeeper zk = m_messenger.getZK();
+        long collectorHSId;
+        while (true) {
+            try {
+                collectorHSId = Longs.fromByteArray(zk.getData(VoltZK.commandlog_replay_mp_collector, false, null));
+                break;
+            } catch (KeeperException.NoNodeException e) {
+                Thread.sleep(100);
+            }
+        }
+
+        final MpTxnSender sender = new MpTxnSender(collectorHSId);
+        try {
+            forEachInitiation(entry -> {
+                if (!entry.message.isSinglePartition() &&
+                        !isCoveredBySnapshot(entry, snapshotTxnIds, snapshotMpTxnId)) {
+                    sender.add(entry.message);
+                }
+            });
+            sender.finish();
+        } finally {
+            m_messenger.removeMailbox(sender.m_mailbox.getHSId());
+        }
+    }
+
+    /**
+     * Batches serialized initiations into messages to the host gathering the multi-partition transactions
+     */
+    private class MpTxnSender {
+        final Mailbox m_mailbox = m_messenger.createMailbox();
+        private final long m_collectorHSId;
+        private ByteBuffer m_chunk = ByteBuffer.allocate(MP_GATHER_CHUNK_BYTES);
+        private int m_chunkCount = 0;
+
+        MpTxnSender(long collectorHSId) {
+            m_collectorHSId = collectorHSId;
+        }
+
+        void add(Iv2InitiateTaskMessage message) throws IOException {
+            final int size = message.getSerializedSize();
+            if (m_chunk.remaining() < 4 + size) {
+                flush();
+                if (m_chunk.capacity() < 4 + size) {
+                    m_chunk = ByteBuffer.allocate(4 + size);
+                }
+            }
+            m_chunk.putInt(size);
+            // The message asserts that it exactly fills the buffer so give it a slice of its own
+            final ByteBuffer slice = m_chunk.slice();
+            slice.limit(size);
+            message.flattenToBuffer(slice);
+            m_chunk.position(m_chunk.position() + size);
+        }
+
+        void finish() {
+            flush();
+            m_mailbox.send(m_collectorHSId, new BinaryPayloadMessage(metadata(MP_GATHER_DONE, m_chunkCount),
+                    new byte[0]));
+        }
+
+        private void flush() {
+            if (m_chunk.position() == 0) {
+                return;
+            }
+            m_mailbox.send(m_collectorHSId, new BinaryPayloadMessage(metadata(MP_GATHER_ENTRIES, 0),
+                    Arrays.copyOf(m_chunk.array(), m_chunk.position())));
+            ++m_chunkCount;
+            m_chunk.clear();
+        }
+
+        private byte[] metadata(byte type, int chunkCount) {
+            return ByteBuffer.allocate(1 + 4 + 4).put(type).putInt(m_hostId).putInt(chunkCount).array();
+        }
+    }
+
+    private void submit(Iv2InitiateTaskMessage message, boolean isSinglePartition, int partitionId,
+            Semaphore outstanding) throws InterruptedException {
+        outstanding.acquire();
+        final StoredProcedureInvocation invocation = message.getStoredProcedureInvocation();
+        invocation.setClientHandle(m_adapter.registerCallback(response -> {
+            outstanding.release();
+            if (response.getStatus() != ClientResponse.SUCCESS && LOG.isDebugEnabled()) {
+                LOG.debug("Replayed " + invocation.getProcName() + " returned " + response.getStatusString());
+            }
+        }));
+        CreateTransactionResult result = m_initiator.createTransaction(ClientInterface.CL_REPLAY_BASE_CID,
+                message.getTxnId(), message.getUniqueId(), invocation, message.isReadOnly(), isSinglePartition,
+                message.isEveryPartition(), partitionId, message.getSerializedSize(), System.nanoTime());
+        if (result == CreateTransactionResult.SUCCESS) {
+            m_replayedTxns.incrementAndGet();
+        } else {
+            outstanding.release();
+            LOG.warn("Unable to replay " + invocation.getProcName() + " for partition " + partitionId + ": " + result);
+        }
+    }
+
+    /**
+     * Whether any host in the cluster has segments to replay. Every host gets the same answer, and a host
+     * replays even when its own log is empty if any other host has segments.
+     */
+    @Override
+    public boolean hasReplayedSegments() {
+        Boolean hasSegments = m_clusterHasSegments;
+        if (hasSegments == null) {
+            try {
+                hasSegments = anyHostHasSegments();
+            } catch (KeeperException | InterruptedException e) {
+                throw VoltDB.crashLocalVoltDB("Unable to find out whether any host has command log segments",
+                        true, e);
+            }
+            m_clusterHasSegments = hasSegments;
+        }
+        return hasSegments;
+    }
+
+    @Override
+    public boolean hasReplayedTxns() {
+        return m_replayedTxns.get() > 0;
+    }
+
+    @Override
+    public Long getMaxLastSeenTxn() {
+        if (m_segments.isEmpty()) {
+            return null;
+        }
+        CommandLogSegment oldest = m_segments.get(0);
+        long max = oldest.getStartMpTxnId();
+        for (long txnId : oldest.getStartTxnIds().values()) {
+            max = Math.max(max, txnId);
+        }
+        return max;
+    }
+
+    @Override
+    public Map<Integer, Long> getMaxLastSeenTxnByPartition() {
+        return m_segments.isEmpty() ? null : m_segments.get(0).getStartTxnIds();
+    }
+
+    @Override
+    public InstanceId getInstanceId() {
+        return m_segments.isEmpty() ? null : m_segments.get(0).getInstanceId();
+    }
+
+    @Override
+    public void returnAllSegments() {
+        for (CommandLogSegment segment : m_segments) {
+            if (!segment.getFile().delete()) {
+                LOG.warn("Unable to delete replayed command log segment " + segment.getFile());
+            }
+        }
+        m_segments = new ArrayList<>();
+    }
+
+    @Override
+    public void resumeElasticOperationIfNecessary() {}
+}
@@ -539,12 +539,19 @@ public class Inits {
             assert logConfig != null;
 
             if (logConfig.getEnabled()) {
+                CommandLog commandLog = null;
                 if (m_config.m_isEnterprise) {
-                    m_rvdb.m_commandLog = ProClass.newInstanceOf("org.voltdb.CommandLogImpl", "Command logging",
+                    commandLog = ProClass.newInstanceOf("org.voltdb.CommandLogImpl", "Command logging",
                             ProClass.HANDLER_LOG, logConfig.getSynchronous(), logConfig.getFsyncinterval(),
                             logConfig.getMaxtxns(), VoltDB.instance().getCommandLogPath(),
                             VoltDB.instance().getCommandLogSnapshotPath());
                 }
+                if (commandLog == null) {
+                    commandLog = new GroupCommitCommandLog(logConfig.getSynchronous(),
+                            logConfig.getFsyncinterval(), logConfig.getMaxtxns(),
+                            VoltDB.instance().getCommandLogPath(), VoltDB.instance().getCommandLogSnapshotPath());
+                }
+                m_rvdb.m_commandLog = commandLog;
             }
         }
     }
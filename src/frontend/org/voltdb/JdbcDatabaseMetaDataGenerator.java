@@ -526,7 +526,7 @@ public class JdbcDatabaseMetaDataGenerator
     private short getIndexType(Index index)
     {
         short type = java.sql.DatabaseMetaData.tableIndexOther;
-        if (index.getType() == IndexType.HASH_TABLE.getValue())
+        if (IndexType.isHashTable(index.getType()))
         {
             type = java.sql.DatabaseMetaData.tableIndexHashed;
         }
@@ -536,7 +536,8 @@ public class JdbcDatabaseMetaDataGenerator
     private String getSortOrder(Index index)
     {
         String sort_order = null;
-        if (index.getType() == IndexType.BALANCED_TREE.getValue())
+        if (index.getType() == IndexType.BALANCED_TREE.getValue() ||
+            index.getType() == IndexType.BTREE.getValue())
         {
             sort_order = "A";
         }
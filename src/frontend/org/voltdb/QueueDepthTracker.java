@@ -18,6 +18,7 @@ package org.voltdb;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -37,7 +38,6 @@ public class QueueDepthTracker extends SiteStatsSource {
     private static final VoltLogger s_logger = new VoltLogger("HOST");
 
     private final AtomicInteger m_depth;
-    private long m_lastWaitTime;
     private final ArrayBlockingQueue<QueueStatus> m_historicalData;
     private LinkedTransferQueue<SiteTasker> m_tasks;
     private long m_maxWaitTimeWindowSize = 5_000_000_000L; // window size set to 5 seconds
@@ -65,7 +65,6 @@ public class QueueDepthTracker extends SiteStatsSource {
         super(siteId, false);
         m_historicalData = new ArrayBlockingQueue<>(10);
         m_depth = new AtomicInteger(tasks.size());
-        m_lastWaitTime = 0;
         m_maxWaitLastLogTime = System.nanoTime();
         m_recentMaxWaitTime = 0;
         m_recentTotalWaitTime = 0;
@@ -80,14 +79,38 @@ public class QueueDepthTracker extends SiteStatsSource {
     public void pollUpdate(long offerTime) {
         m_depth.decrementAndGet();
         long currentTime = System.nanoTime();
-        m_lastWaitTime = currentTime - offerTime;
+        long waitTime = currentTime - offerTime;
+        recordWaitTimes(currentTime, waitTime, waitTime, 1);
+    }
+
+    /**
+     * Account for a batch of tasks polled at once
+     */
+    public void pollUpdate(List<SiteTasker> tasks) {
+        final int count = tasks.size();
+        if (count == 0) {
+            return;
+        }
+        m_depth.addAndGet(-count);
+        long currentTime = System.nanoTime();
+        long maxWaitTime = 0;
+        long totalWaitTime = 0;
+        for (int i = 0; i < count; i++) {
+            long waitTime = currentTime - tasks.get(i).getQueueOfferTime();
+            maxWaitTime = Math.max(maxWaitTime, waitTime);
+            totalWaitTime += waitTime;
+        }
+        recordWaitTimes(currentTime, maxWaitTime, totalWaitTime, count);
+    }
+
+    private void recordWaitTimes(long currentTime, long maxWaitTime, long totalWaitTime, int pollCount) {
         // if max wait time was last logged less than m_recentWindowSize ago
         // keep the max wait time in m_recentMaxWaitTime
         // or log and reset the recentMaxWaitTime, update last log time
         if (currentTime - m_maxWaitLastLogTime < m_recentWindowSize) {
-            if (m_recentMaxWaitTime < m_lastWaitTime) m_recentMaxWaitTime = m_lastWaitTime;
-            m_recentTotalWaitTime += m_lastWaitTime;
-            m_recentPollCount++;
+            if (m_recentMaxWaitTime < maxWaitTime) m_recentMaxWaitTime = maxWaitTime;
+            m_recentTotalWaitTime += totalWaitTime;
+            m_recentPollCount += pollCount;
         } else {
             // remove out of date historical data
             while (!m_historicalData.isEmpty() &&
@@ -102,9 +125,9 @@ public class QueueDepthTracker extends SiteStatsSource {
                 //This should never happen...
                 s_logger.warn("Could not insert queue stats data. Current data size: " + m_historicalData.size());
             }
-            m_recentMaxWaitTime = m_lastWaitTime;
-            m_recentTotalWaitTime = m_lastWaitTime;
-            m_recentPollCount = 1;
+            m_recentMaxWaitTime = maxWaitTime;
+            m_recentTotalWaitTime = totalWaitTime;
+            m_recentPollCount = pollCount;
             m_maxWaitLastLogTime = currentTime;
         }
     }
@@ -20,8 +20,10 @@ package org.voltdb;
  * Defines which stats should be collected when this enum is passed as an argument to the procedure {@code @Statistics}
  */
 public enum StatsSelector {
+    // The EE looks up its selectors by ordinal, see StatisticsSelectorType in types.h
     TABLE,
     INDEX,
+    PLANFRAGMENTCACHE, // size, hits and evictions of the built plan fragments cached in the EE
     PROCEDURE,
     STARVATION,
     QUEUE,
@@ -35,10 +37,12 @@ public enum StatsSelector {
     MEMORY,           // info about node's memory usage
     LIVECLIENTS,      // info about the currently connected clients
     PLANNER,          // info about planner and EE performance and cache usage
+    PLANCACHE,        // size, hits and evictions of the ad hoc plan cache
     CPU,            // return CPU Stats
     MANAGEMENT(MEMORY, INITIATOR, PROCEDURE, IOSTATS, TABLE, INDEX, STARVATION, QUEUE, CPU), // Returns pretty much everything
     SNAPSHOTSTATUS(false),
     SNAPSHOTSUMMARY(false),
+    SNAPSHOTRESTORE,  // progress and throughput of reading snapshot files for a restore
     PROCEDUREPROFILE(PROCEDURE), // performs an aggregation of the procedure statistics
     PROCEDUREINPUT(PROCEDURE),
     PROCEDUREOUTPUT(PROCEDURE),
@@ -66,6 +70,7 @@ public enum StatsSelector {
     GC,             // return GC Stats
 
     COMMANDLOG(false),     // return number of outstanding bytes and txns on this node
+    COMMANDLOGPARTITION(false),  // return per-partition group commit batch size and fsync latency
     IMPORTER,       // synonym as IMPORT for backward compatibility
     IMPORT(IMPORTER),
     EXPORT,
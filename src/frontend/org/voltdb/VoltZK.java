@@ -114,6 +114,11 @@ public class VoltZK {
     public static final String user_snapshot_request = "/db/user_snapshot_request";
     public static final String user_snapshot_response = "/db/user_snapshot_response";
     public static final String commandlog_init_barrier = "/db/commmandlog_init_barrier";
+    public static final String commandlog_replay_barrier = "/db/commandlog_replay_barrier";
+    // one child per host recording whether the host has command log segments to replay
+    public static final String commandlog_replay_segments = "/db/commandlog_replay_segments";
+    // HSId of the mailbox on the MPI host which gathers the multi-partition transactions to replay
+    public static final String commandlog_replay_mp_collector = "/db/commandlog_replay_mp_collector";
 
     // leader election
 
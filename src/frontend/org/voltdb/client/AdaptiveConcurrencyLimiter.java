@@ -0,0 +1,125 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes the number of outstanding transactions on one connection from the round trip
+ * times observed on it, with additive increase and multiplicative decrease (AIMD).
+ *
+ * The lowest round trip time seen recently is taken as the latency of an idle cluster.
+ * While responses come back within a tolerance of it and the limit is being used, the
+ * limit grows by about one per round trip. A response that took much longer, or a
+ * timeout, means requests are queueing up on the server (snapshot, rejoin, GC...) and
+ * the limit is cut, at most once per round trip so one slow burst only counts once.
+ *
+ * The connection reports backpressure while it is at its limit, which makes the
+ * client block or route invocations elsewhere like for network backpressure.
+ */
+class AdaptiveConcurrencyLimiter {
+
+    static final int INITIAL_LIMIT = 20;
+    static final int MIN_LIMIT = 1;
+    // Round trips more than this many times the minimum count as congestion
+    static final double LATENCY_TOLERANCE = 2.0;
+    static final double BACKOFF_RATIO = 0.9;
+    // The minimum round trip time is forgotten after this long so it follows lasting changes
+    static final long MIN_RTT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final int m_maxLimit;
+    private double m_limit;
+    private int m_inFlight = 0;
+
+    private long m_minRttNanos = Long.MAX_VALUE;
+    private long m_minRttWindowStartNanos = 0;
+    private long m_lastDecreaseNanos = 0;
+    private long m_decreases = 0;
+
+    AdaptiveConcurrencyLimiter(int maxLimit) {
+        m_maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        m_limit = Math.min(INITIAL_LIMIT, m_maxLimit);
+    }
+
+    /**
+     * Count a transaction sent on the connection. This never refuses it: the caller
+     * checked {@link #isFull()} when it picked the connection, and transactions which
+     * ignore backpressure are counted too.
+     */
+    synchronized void acquire() {
+        m_inFlight++;
+    }
+
+    synchronized boolean isFull() {
+        return m_inFlight >= (int) m_limit;
+    }
+
+    /**
+     * Account for a transaction that is no longer outstanding and adjust the limit.
+     *
+     * @param nowNanos when the response or timeout was processed
+     * @param roundTripNanos round trip time of the transaction, or -1 if there was no response
+     * @param timedOut whether the transaction timed out, which counts as congestion
+     * @return true if this took the connection out of being at its limit
+     */
+    synchronized boolean release(long nowNanos, long roundTripNanos, boolean timedOut) {
+        final boolean wasFull = isFull();
+        final boolean saturated = m_inFlight >= m_limit / 2;
+        m_inFlight = Math.max(0, m_inFlight - 1);
+
+        if (timedOut) {
+            decrease(nowNanos);
+        } else if (roundTripNanos > 0) {
+            if (m_minRttNanos == Long.MAX_VALUE || nowNanos - m_minRttWindowStartNanos > MIN_RTT_WINDOW_NANOS) {
+                m_minRttNanos = roundTripNanos;
+                m_minRttWindowStartNanos = nowNanos;
+            } else {
+                m_minRttNanos = Math.min(m_minRttNanos, roundTripNanos);
+            }
+
+            if (roundTripNanos > m_minRttNanos * LATENCY_TOLERANCE) {
+                decrease(nowNanos);
+            } else if (saturated) {
+                // Only grow a limit which is actually in use, or it would grow without bound
+                m_limit = Math.min(m_maxLimit, m_limit + 1.0 / m_limit);
+            }
+        }
+        return wasFull && !isFull();
+    }
+
+    private void decrease(long nowNanos) {
+        if (m_decreases > 0 && m_minRttNanos != Long.MAX_VALUE && nowNanos - m_lastDecreaseNanos < m_minRttNanos) {
+            return;
+        }
+        m_limit = Math.max(MIN_LIMIT, m_limit * BACKOFF_RATIO);
+        m_lastDecreaseNanos = nowNanos;
+        m_decreases++;
+    }
+
+    synchronized int getLimit() {
+        return (int) m_limit;
+    }
+
+    synchronized int getInFlight() {
+        return m_inFlight;
+    }
+
+    synchronized long getDecreases() {
+        return m_decreases;
+    }
+}
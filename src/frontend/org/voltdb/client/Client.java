@@ -22,7 +22,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.voltdb.client.VoltBulkLoader.BulkLoaderFailureCallBack;
 import org.voltdb.client.VoltBulkLoader.BulkLoaderSuccessCallback;
@@ -111,6 +113,51 @@ public interface Client {
     public boolean callProcedure(ProcedureCallback callback, String procName, Object... parameters)
     throws IOException, NoConnectionsException;
 
+    /**
+     * <p>Asynchronously invoke a procedure, returning a future for its response. The future completes
+     * normally with the response if the invocation succeeds. Otherwise it completes exceptionally with a
+     * {@link ProcCallException} carrying the response, or with the {@link IOException} that prevented the
+     * invocation from being queued. Backpressure is handled as for
+     * {@link #callProcedure(ProcedureCallback, String, Object...)}.</p>
+     *
+     * <p>The future is completed by the thread backing the client instance, so dependent stages that are
+     * not given an executor of their own run on that thread and must not block, like callbacks.</p>
+     *
+     * @param procName class name (not qualified by package) of the procedure to execute.
+     * @param parameters vararg list of procedure's parameter values.
+     * @return future for the {@link ClientResponse} of the invocation.
+     */
+    public default CompletableFuture<ClientResponse> callProcedureAsync(String procName, Object... parameters) {
+        CompletableFutureCallback callback = new CompletableFutureCallback();
+        try {
+            if (!callProcedure(callback, procName, parameters)) {
+                callback.notQueued();
+            }
+        } catch (IOException e) {
+            callback.failed(e);
+        }
+        return callback.future();
+    }
+
+    /**
+     * <p>Asynchronously invoke a procedure once for each of a list of parameter sets. Each invocation
+     * gets its own future, as from {@link #callProcedureAsync(String, Object...)}. The client returned by
+     * {@link ClientFactory} writes the serialized invocations going to the same server to the network together
+     * instead of one at a time, which saves system calls and packets when submitting many small invocations.</p>
+     *
+     * @param procName class name (not qualified by package) of the procedure to execute.
+     * @param parameterSets the parameter values of each invocation.
+     * @return futures for the {@link ClientResponse}s, in the order of the parameter sets.
+     */
+    public default List<CompletableFuture<ClientResponse>> callProcedures(String procName,
+            List<Object[]> parameterSets) {
+        List<CompletableFuture<ClientResponse>> futures = new ArrayList<>(parameterSets.size());
+        for (Object[] parameters : parameterSets) {
+            futures.add(callProcedureAsync(procName, parameters));
+        }
+        return futures;
+    }
+
     /**
      * <p>Synchronously invoke a procedure with timeout. Blocks until a result is available. A {@link ProcCallException}
      * is thrown if the response is anything other then success.</p>
@@ -68,6 +68,8 @@ public class ClientConfig {
     boolean m_sendReadsToReplicasBytDefaultIfCAEnabled = false;
     SslConfig m_sslConfig;
     boolean m_topologyChangeAware = false;
+    long m_writeCoalescingWindowNanos = 0;
+    boolean m_adaptiveConcurrencyLimit = false;
     boolean m_enableSSL = false;
     String m_sslPropsFile = null;
 
@@ -341,6 +343,23 @@ public class ClientConfig {
         m_autoTune = true;
     }
 
+    /**
+     * <p>Enable an adaptive limit on the number of outstanding transactions per connection,
+     * sized from the round trip times observed on that connection. The limit grows while
+     * latency stays close to the lowest recently seen and is cut back when it rises or
+     * transactions time out, so a server which slows down (snapshot, rejoin...) is sent
+     * less work instead of queueing it. A connection at its limit reports backpressure.</p>
+     *
+     * <p>The limit never exceeds the maximum set with {@link #setMaxOutstandingTxns(int)},
+     * which still applies to the client as a whole. The current limits are reported by
+     * {@link ClientStats#getConcurrencyLimit()}.</p>
+     *
+     * <p>Defaults to false.</p>
+     */
+    public void enableAdaptiveConcurrencyLimit() {
+        m_adaptiveConcurrencyLimit = true;
+    }
+
     /**
      * <p>Attempts to route transactions to the correct master partition improving latency
      * and throughput</p>
@@ -364,6 +383,22 @@ public class ClientConfig {
         m_topologyChangeAware = enabled;
     }
 
+    /**
+     * <p>Let invocations wait up to this long for others to the same server, so they can be written to
+     * the network together. This trades a little latency for higher throughput with fewer system calls
+     * when an application submits many small asynchronous invocations.</p>
+     *
+     * <p>Defaults to 0, which writes each invocation as soon as it is submitted.</p>
+     *
+     * @param micros coalescing window in microseconds.
+     */
+    public void setWriteCoalescingWindow(long micros) {
+        if (micros < 0) {
+            throw new IllegalArgumentException("Write coalescing window can not be negative");
+        }
+        m_writeCoalescingWindowNanos = TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
     /**
      * <p>By default, reads are sent to the leader replica for each partition. This
      * is usually optimal for the default read consistency value, SAFE. If you are
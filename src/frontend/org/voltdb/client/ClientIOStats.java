@@ -22,6 +22,9 @@ class ClientIOStats {
     long m_connectionId;
     long m_bytesSent;
     long m_bytesReceived;
+    // Current adaptive concurrency limit and how many times it was cut, 0 if not enabled
+    long m_concurrencyLimit = 0;
+    long m_concurrencyLimitDecreases = 0;
 
     ClientIOStats(long connectionId, long bytesSent, long bytesReceived) {
         m_connectionId = connectionId;
@@ -37,6 +40,8 @@ class ClientIOStats {
         ClientIOStats retval = new ClientIOStats(older.m_connectionId,
                                                  newer.m_bytesSent - older.m_bytesSent,
                                                  newer.m_bytesReceived - older.m_bytesReceived);
+        retval.m_concurrencyLimit = newer.m_concurrencyLimit;
+        retval.m_concurrencyLimitDecreases = newer.m_concurrencyLimitDecreases - older.m_concurrencyLimitDecreases;
         return retval;
     }
 
@@ -45,6 +50,9 @@ class ClientIOStats {
      */
     @Override
     protected Object clone() {
-        return new ClientIOStats(m_connectionId, m_bytesSent, m_bytesReceived);
+        ClientIOStats retval = new ClientIOStats(m_connectionId, m_bytesSent, m_bytesReceived);
+        retval.m_concurrencyLimit = m_concurrencyLimit;
+        retval.m_concurrencyLimitDecreases = m_concurrencyLimitDecreases;
+        return retval;
     }
 }
@@ -21,10 +21,12 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
@@ -142,6 +144,10 @@ public final class ClientImpl implements Client {
         }
         m_username = username;
         m_distributer.setTopologyChangeAware(config.m_topologyChangeAware);
+        m_distributer.setWriteCoalescingWindow(config.m_writeCoalescingWindowNanos);
+        if (config.m_adaptiveConcurrencyLimit) {
+            m_distributer.setAdaptiveConcurrencyLimit(config.m_maxOutstandingTxns);
+        }
         if (config.m_topologyChangeAware) {
             m_ex = Executors.newSingleThreadScheduledExecutor(CoreUtils.getThreadFactory("Topoaware thread"));
         }
@@ -406,6 +412,43 @@ public final class ClientImpl implements Client {
         return internalAsyncCallProcedure(callback, clientTimeoutUnit.toNanos(clientTimeout), invocation);
     }
 
+    @Override
+    public CompletableFuture<ClientResponse> callProcedureAsync(String procName, Object... parameters) {
+        return callProcedureAsync(false, procName, parameters);
+    }
+
+    @Override
+    public List<CompletableFuture<ClientResponse>> callProcedures(String procName, List<Object[]> parameterSets) {
+        List<CompletableFuture<ClientResponse>> futures = new ArrayList<>(parameterSets.size());
+        try {
+            for (Object[] parameters : parameterSets) {
+                futures.add(callProcedureAsync(true, procName, parameters));
+            }
+        } finally {
+            m_distributer.flushPendingWrites();
+        }
+        return futures;
+    }
+
+    private CompletableFuture<ClientResponse> callProcedureAsync(
+            boolean coalesce,
+            String procName,
+            Object... parameters) {
+        final CompletableFutureCallback callback = new CompletableFutureCallback();
+        try {
+            if (m_isShutdown) {
+                throw new NoConnectionsException("Client instance is shutdown");
+            }
+            ProcedureInvocation invocation = new ProcedureInvocation(m_handle.getAndIncrement(), procName, parameters);
+            if (!internalAsyncCallProcedure(callback, Distributer.USE_DEFAULT_CLIENT_TIMEOUT, invocation, coalesce)) {
+                callback.notQueued();
+            }
+        } catch (IOException e) {
+            callback.failed(e);
+        }
+        return callback.future();
+    }
+
     @Deprecated
     @Override
     public int calculateInvocationSerializedSize(
@@ -467,13 +510,21 @@ public final class ClientImpl implements Client {
             ProcedureCallback callback,
             long clientTimeoutNanos,
             ProcedureInvocation invocation) throws IOException {
+        return internalAsyncCallProcedure(callback, clientTimeoutNanos, invocation, false);
+    }
+
+    private final boolean internalAsyncCallProcedure(
+            ProcedureCallback callback,
+            long clientTimeoutNanos,
+            ProcedureInvocation invocation,
+            boolean coalesce) throws IOException {
         assert( ! m_isShutdown);
         assert(callback != null);
 
         final long nowNanos = System.nanoTime();
         //Blessed threads (the ones that invoke callbacks) are not subject to backpressure
         boolean isBlessed = m_blessedThreadIds.contains(Thread.currentThread().getId());
-        while (!m_distributer.queue(invocation, callback, isBlessed, nowNanos, clientTimeoutNanos)) {
+        while (!m_distributer.queue(invocation, callback, isBlessed, nowNanos, clientTimeoutNanos, coalesce)) {
             if ( ! m_blockingQueue) {
                 return false;
             }
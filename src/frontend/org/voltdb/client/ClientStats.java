@@ -74,6 +74,9 @@ public class ClientStats {
     long m_bytesSent;
     long m_bytesReceived;
 
+    long m_concurrencyLimit;
+    long m_concurrencyLimitDecreases;
+
     private static final long LOWEST_TRACKABLE = 50;
     private static final long HIGHEST_TRACKABLE = 10L * (1000L * 1000L);
     private static final int SIGNIFICANT_VALUE_DIGITS = 2;
@@ -96,6 +99,7 @@ public class ClientStats {
         m_invocationsCompleted = m_invocationAborts = m_invocationErrors = 0;
         m_roundTripTimeNanos = m_clusterRoundTripTime = 0;
         m_bytesSent = m_bytesReceived = 0;
+        m_concurrencyLimit = m_concurrencyLimitDecreases = 0;
         m_latencyHistogram = constructHistogram();
     }
 
@@ -116,6 +120,8 @@ public class ClientStats {
         m_latencyHistogram.reestablishTotalCount();
         m_bytesSent = other.m_bytesSent;
         m_bytesReceived = other.m_bytesReceived;
+        m_concurrencyLimit = other.m_concurrencyLimit;
+        m_concurrencyLimitDecreases = other.m_concurrencyLimitDecreases;
     }
 
     static ClientStats diff(ClientStats newer, ClientStats older) {
@@ -147,6 +153,9 @@ public class ClientStats {
         retval.m_bytesSent = newer.m_bytesSent - older.m_bytesSent;
         retval.m_bytesReceived = newer.m_bytesReceived - older.m_bytesReceived;
 
+        retval.m_concurrencyLimit = newer.m_concurrencyLimit;
+        retval.m_concurrencyLimitDecreases = newer.m_concurrencyLimitDecreases - older.m_concurrencyLimitDecreases;
+
         return retval;
     }
 
@@ -195,6 +204,9 @@ public class ClientStats {
 
         m_bytesSent += other.m_bytesSent;
         m_bytesReceived += other.m_bytesReceived;
+
+        m_concurrencyLimit += other.m_concurrencyLimit;
+        m_concurrencyLimitDecreases += other.m_concurrencyLimitDecreases;
     }
 
     void update(long roundTripTimeNanos, int clusterRoundTripTime, boolean abort, boolean error, boolean timeout) {
@@ -448,6 +460,28 @@ public class ClientStats {
         return m_bytesReceived;
     }
 
+    /**
+     * Return the adaptive limit on outstanding transactions at the end of the time period
+     * covered by this stats instance. This is specific to a connection, or the sum over all
+     * connections for global statistics, and is not recorded for per-procedure statistics.
+     *
+     * @return The concurrency limit, or 0 if the adaptive concurrency limit is not enabled
+     * (see {@link ClientConfig#enableAdaptiveConcurrencyLimit()}).
+     */
+    public long getConcurrencyLimit() {
+        return m_concurrencyLimit;
+    }
+
+    /**
+     * Return the number of times the adaptive limit on outstanding transactions was cut back
+     * because of rising latency or timeouts during the time period covered by this stats instance.
+     *
+     * @return The number of decreases, or 0 if the adaptive concurrency limit is not enabled.
+     */
+    public long getConcurrencyLimitDecreases() {
+        return m_concurrencyLimitDecreases;
+    }
+
     /**
      * <p>Using the latency bucketing statistics gathered by the client, estimate
      * the k-percentile latency value for the time period covered by this stats
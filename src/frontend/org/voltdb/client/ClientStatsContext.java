@@ -160,6 +160,8 @@ public class ClientStatsContext {
             if (cios != null) {
                 cs.m_bytesReceived = cios.m_bytesReceived;
                 cs.m_bytesSent = cios.m_bytesSent;
+                cs.m_concurrencyLimit = cios.m_concurrencyLimit;
+                cs.m_concurrencyLimitDecreases = cios.m_concurrencyLimitDecreases;
             }
             retval.put(e.getKey(), cs);
         }
@@ -0,0 +1,67 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+
+/**
+ * Callback which completes a future with the response of a procedure invocation. The future fails with a
+ * {@link ProcCallException} if the response is not a success, the same as a synchronous invocation.
+ */
+final class CompletableFutureCallback implements ProcedureCallback {
+    private static final String NOT_QUEUED_MESSAGE = "Unable to queue client request.";
+
+    private final CompletableFuture<ClientResponse> m_future = new CompletableFuture<>();
+
+    CompletableFuture<ClientResponse> future() {
+        return m_future;
+    }
+
+    @Override
+    public void clientCallback(ClientResponse response) {
+        if (response.getStatus() == ClientResponse.SUCCESS) {
+            m_future.complete(response);
+        } else {
+            m_future.completeExceptionally(new ProcCallException(response, response.getStatusString(), null));
+        }
+    }
+
+    /**
+     * Fail the future because the invocation was not queued
+     */
+    void notQueued() {
+        final ClientResponseImpl r = new ClientResponseImpl(
+                ClientResponse.GRACEFUL_FAILURE,
+                ClientResponse.UNINITIALIZED_APP_STATUS_CODE,
+                "",
+                new VoltTable[0],
+                NOT_QUEUED_MESSAGE);
+        m_future.completeExceptionally(new ProcCallException(r, NOT_QUEUED_MESSAGE, null));
+    }
+
+    /**
+     * Fail the future because the invocation could not be submitted
+     */
+    void failed(IOException e) {
+        m_future.completeExceptionally(e);
+    }
+}
@@ -165,6 +165,24 @@ class Distributer {
                 CoreUtils.getThreadFactory("VoltDB Client Reaper Thread"));
     ScheduledFuture<?> m_timeoutReaperHandle;
 
+    /*
+     * How long a serialized invocation may wait for others to the same connection so they
+     * are written together, 0 to write each one as soon as it is queued
+     */
+    private volatile long m_writeCoalescingWindowNanos = 0;
+
+    // A connection writes its pending invocations at once when they reach this size
+    static final int MAX_COALESCED_WRITE_BYTES = 256 * 1024;
+
+    // Longest a bulk submission holds back its invocations if it is blocked, e.g. by the rate limiter
+    static final long BULK_FLUSH_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /*
+     * Upper bound of the adaptive per connection concurrency limit,
+     * 0 if connections are only limited by the rate limiter
+     */
+    private volatile int m_adaptiveConcurrencyMax = 0;
+
     /**
      * Server's instances id. Unique for the cluster
      */
@@ -425,8 +443,80 @@ class Distributer {
         boolean m_outstandingPing = false;
         ClientStatusListenerExt.DisconnectCause m_closeCause = DisconnectCause.CONNECTION_CLOSED;
 
+        // Serialized invocations waiting to be written together, guarded by itself
+        private final ArrayList<ByteBuffer> m_pendingWrites = new ArrayList<>();
+        private int m_pendingWriteBytes = 0;
+        private boolean m_pendingFlushScheduled = false;
+        private long m_pendingFlushDeadlineNanos = 0;
+        // Null unless the adaptive concurrency limit is enabled
+        private final AdaptiveConcurrencyLimiter m_concurrencyLimiter =
+                m_adaptiveConcurrencyMax > 0 ? new AdaptiveConcurrencyLimiter(m_adaptiveConcurrencyMax) : null;
+        private final Runnable m_flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flushPendingWrites();
+            }
+        };
+
         public NodeConnection(long ids[]) {}
 
+        /*
+         * Invocations which are not coalesced still go behind the pending ones,
+         * so a connection always writes invocations in the order they were queued.
+         * Bulk invocations wait at least BULK_FLUSH_DELAY_NANOS for others, the rest
+         * no longer than the write coalescing window.
+         */
+        private void write(ByteBuffer buf, boolean bulk) {
+            final long windowNanos = m_writeCoalescingWindowNanos;
+            final boolean coalesce = bulk || windowNanos > 0;
+            final long delayNanos = bulk ? Math.max(windowNanos, BULK_FLUSH_DELAY_NANOS) : windowNanos;
+            boolean scheduleFlush = false;
+            synchronized (m_pendingWrites) {
+                if (!coalesce && m_pendingWrites.isEmpty()) {
+                    m_connection.writeStream().enqueue(buf);
+                    return;
+                }
+                m_pendingWrites.add(buf);
+                m_pendingWriteBytes += buf.remaining();
+                if (!coalesce || m_pendingWriteBytes >= MAX_COALESCED_WRITE_BYTES) {
+                    flushPendingWritesLocked();
+                } else {
+                    // A pending flush which is due later than this invocation may wait is brought forward
+                    final long deadlineNanos = System.nanoTime() + delayNanos;
+                    if (!m_pendingFlushScheduled || deadlineNanos - m_pendingFlushDeadlineNanos < 0) {
+                        m_pendingFlushScheduled = true;
+                        m_pendingFlushDeadlineNanos = deadlineNanos;
+                        scheduleFlush = true;
+                    }
+                }
+            }
+            if (scheduleFlush) {
+                try {
+                    m_ex.schedule(m_flushTask, delayNanos, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    flushPendingWrites();
+                }
+            }
+        }
+
+        void flushPendingWrites() {
+            synchronized (m_pendingWrites) {
+                m_pendingFlushScheduled = false;
+                flushPendingWritesLocked();
+            }
+        }
+
+        private void flushPendingWritesLocked() {
+            if (m_pendingWrites.isEmpty()) {
+                return;
+            }
+            // Enqueued as a single write, which also wakes up the network thread only once
+            m_connection.writeStream().enqueue(m_pendingWrites.toArray(new ByteBuffer[m_pendingWrites.size()]));
+            m_pendingWrites.clear();
+            m_pendingWriteBytes = 0;
+        }
+
         /*
          * NodeConnection uses ignoreBackpressure to get rate limiter to not
          * apply any permit tracking or rate limits to transactions that should
@@ -435,6 +525,15 @@ class Distributer {
          */
         public void createWork(final long nowNanos, long handle, String name, ByteBuffer c,
                 ProcedureCallback callback, boolean ignoreBackpressure, long timeoutNanos) {
+            createWork(nowNanos, handle, name, c, callback, ignoreBackpressure, timeoutNanos, false);
+        }
+
+        /*
+         * If coalesce is true, or there is a write coalescing window, the invocation may be held
+         * back for a while so it can be written together with others to the same connection.
+         */
+        public void createWork(final long nowNanos, long handle, String name, ByteBuffer c,
+                ProcedureCallback callback, boolean ignoreBackpressure, long timeoutNanos, boolean coalesce) {
             assert(callback != null);
 
             //How long from the starting point in time to wait to get this stuff done
@@ -467,6 +566,10 @@ class Distributer {
 
             assert(m_callbacks.containsKey(handle) == false);
 
+            if (m_concurrencyLimiter != null) {
+                m_concurrencyLimiter.acquire();
+            }
+
             //Drain needs to know when all callbacks have been invoked
             final int callbacksToInvoke = m_callbacksToInvoke.incrementAndGet();
             assert(callbacksToInvoke >= 0);
@@ -507,9 +610,10 @@ class Distributer {
 
                 //for bookkeeping, but it feels dishonest to call this here
                 m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure);
+                releaseConcurrencyLimit(nowNanos, -1, false);
                 return;
             } else {
-                m_connection.writeStream().enqueue(c);
+                write(c, coalesce);
             }
         }
 
@@ -550,6 +654,22 @@ class Distributer {
             final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
 
             invokeCallbackWithTimeout(cb.name, cb.callback, deltaNanos, nowNanos, cb.procedureTimeoutNanos, handle, cb.ignoreBackpressure);
+            releaseConcurrencyLimit(nowNanos, -1, true);
+        }
+
+        /*
+         * Let the adaptive concurrency limit know a transaction is no longer outstanding.
+         * If that takes the connection off its limit, tell listeners backpressure is over
+         * like offBackPressure() does for the write stream.
+         */
+        private void releaseConcurrencyLimit(long nowNanos, long roundTripNanos, boolean timedOut) {
+            if (m_concurrencyLimiter != null && m_concurrencyLimiter.release(nowNanos, roundTripNanos, timedOut)) {
+                synchronized (Distributer.this) {
+                    for (final ClientStatusListenerExt csl : m_listeners) {
+                        csl.backpressure(false);
+                    }
+                }
+            }
         }
 
         /*
@@ -718,6 +838,7 @@ class Distributer {
 
                 int clusterRoundTrip = response.getClusterRoundtrip();
                 m_rateLimiter.transactionResponseReceived(nowNanos, clusterRoundTrip, stuff.ignoreBackpressure);
+                releaseConcurrencyLimit(nowNanos, deltaNanos, false);
                 updateStats(stuff.name, deltaNanos, clusterRoundTrip, abort, error, false);
                 response.setClientRoundtrip(deltaNanos);
                 assert(response.getHashes() == null) : "A determinism hash snuck into the client wire protocol";
@@ -739,7 +860,8 @@ class Distributer {
         }
 
         public boolean hadBackPressure() {
-            return m_connection.writeStream().hadBackPressure();
+            return m_connection.writeStream().hadBackPressure() ||
+                    (m_concurrencyLimiter != null && m_concurrencyLimiter.isFull());
         }
 
         public void setConnection(Connection c) {
@@ -862,7 +984,9 @@ class Distributer {
                 final int remainingToInvoke = m_callbacksToInvoke.decrementAndGet();
                 assert(remainingToInvoke >= 0);
 
-                m_rateLimiter.transactionResponseReceived(System.nanoTime(), -1, callBk.ignoreBackpressure);
+                final long nowNanos = System.nanoTime();
+                m_rateLimiter.transactionResponseReceived(nowNanos, -1, callBk.ignoreBackpressure);
+                releaseConcurrencyLimit(nowNanos, -1, false);
             }
         }
 
@@ -1151,6 +1275,20 @@ class Distributer {
             ProcedureCallback cb,
             final boolean ignoreBackpressure, final long nowNanos, final long timeoutNanos)
             throws NoConnectionsException {
+        return queue(invocation, cb, ignoreBackpressure, nowNanos, timeoutNanos, false);
+    }
+
+    /**
+     * Same as the namesake, but if coalesce is true the invocation is written to the
+     * connection together with others queued around the same time, for instance by a
+     * bulk submission which then calls {@link #flushPendingWrites()}.
+     */
+    boolean queue(
+            ProcedureInvocation invocation,
+            ProcedureCallback cb,
+            final boolean ignoreBackpressure, final long nowNanos, final long timeoutNanos,
+            final boolean coalesce)
+            throws NoConnectionsException {
         // Shutting down, no more tasks
         if (m_shutdown.get()) {
             return false;
@@ -1292,7 +1430,8 @@ class Distributer {
             } catch (Exception e) {
                 Throwables.propagate(e);
             }
-            cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure, timeoutNanos);
+            cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure,
+                    timeoutNanos, coalesce);
         }
         if (m_topologyChangeAware) {
             createConnectionsUponTopologyChange();
@@ -1393,6 +1532,10 @@ class Distributer {
             long write = perConnIOStats.getSecond()[2];
 
             ClientIOStats cios = new ClientIOStats(conn.connectionId(), read, write);
+            if (conn.m_concurrencyLimiter != null) {
+                cios.m_concurrencyLimit = conn.m_concurrencyLimiter.getLimit();
+                cios.m_concurrencyLimitDecreases = conn.m_concurrencyLimiter.getDecreases();
+            }
             retval.put(conn.connectionId(), cios);
         }
 
@@ -1639,6 +1782,27 @@ class Distributer {
         m_topologyChangeAware = topoAware;
     }
 
+    void setWriteCoalescingWindow(long windowNanos) {
+        m_writeCoalescingWindowNanos = windowNanos;
+    }
+
+    /**
+     * Limit each connection created from now on with an {@link AdaptiveConcurrencyLimiter}
+     * which never goes above maxLimit
+     */
+    void setAdaptiveConcurrencyLimit(int maxLimit) {
+        m_adaptiveConcurrencyMax = maxLimit;
+    }
+
+    /**
+     * Write out the invocations all connections are holding back to coalesce them
+     */
+    void flushPendingWrites() {
+        for (NodeConnection cxn : m_connections) {
+            cxn.flushPendingWrites();
+        }
+    }
+
     void createConnectionsUponTopologyChange() {
 
         if(!m_topologyChangeAware || m_createConnectionUponTopoChangeInProgress.get()) {
@@ -0,0 +1,227 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTableRow;
+
+/**
+ * <p>Reads all the rows of a table as a sequence of bounded pages, so that scanning or
+ * exporting a table much larger than the 50MB result limit does not have to fit in one
+ * response, or in one client or server heap.</p>
+ *
+ * <p>Pages are fetched with keyset pagination: every page is a query ordered by a set of key
+ * columns which are unique and not null (normally the primary key), starting right after the
+ * key of the last row of the previous page. No state is kept on the server between pages,
+ * so the pager survives failovers and does not hold any resources if it is abandoned. The
+ * queries run through {@code @AdHocLarge}, which lets the server spill intermediate results
+ * to disk instead of failing when sorting a large partitioned table.</p>
+ *
+ * <p>A page is only requested when the caller asks for it, so a slow consumer naturally
+ * throttles the scan. Pages which turn out larger than the configured byte limit make the
+ * pager ask for proportionally fewer rows next time, and it goes back to the configured
+ * number of rows once a page fits again.</p>
+ *
+ * <p>The table and key column names are put into the query text, so they must be plain
+ * SQL identifiers.</p>
+ *
+ * <p>Rows inserted or updated behind the current position while the scan is running are not
+ * seen, and a page is a consistent snapshot only of the rows it contains.</p>
+ *
+ * <p>A TablePager is not thread safe.</p>
+ */
+public class TablePager {
+    public static final int DEFAULT_PAGE_ROWS = 10000;
+    public static final int DEFAULT_MAX_PAGE_BYTES = 8 * 1024 * 1024;
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final Client m_client;
+    private final String m_tableName;
+    private final String[] m_keyColumns;
+    private final int m_maxPageRows;
+    private final int m_maxPageBytes;
+    private final String m_orderBy;
+    private int m_pageRows;
+
+    // Key of the last row returned, null before the first page
+    private Object[] m_lastKey = null;
+    private VoltTable m_nextPage = null;
+    private boolean m_done = false;
+    private long m_rowsRead = 0;
+    private long m_pagesRead = 0;
+
+    /**
+     * @param client connected client used to run the queries
+     * @param tableName table to read
+     * @param keyColumns columns which uniquely identify a row and are never null
+     * @throws IllegalArgumentException if a table or column name is not a plain identifier
+     */
+    public TablePager(Client client, String tableName, String... keyColumns) {
+        this(client, tableName, Arrays.asList(keyColumns), DEFAULT_PAGE_ROWS, DEFAULT_MAX_PAGE_BYTES);
+    }
+
+    /**
+     * @param client connected client used to run the queries
+     * @param tableName table to read
+     * @param keyColumns columns which uniquely identify a row and are never null
+     * @param pageRows maximum number of rows in a page
+     * @param maxPageBytes serialized page size above which later pages are made smaller
+     * @throws IllegalArgumentException if a table or column name is not a plain identifier
+     */
+    public TablePager(Client client, String tableName, List<String> keyColumns, int pageRows, int maxPageBytes) {
+        if (keyColumns.isEmpty()) {
+            throw new IllegalArgumentException("At least one key column is required to page through " + tableName);
+        }
+        if (pageRows < 1 || maxPageBytes < 1) {
+            throw new IllegalArgumentException("Page rows and bytes must be positive");
+        }
+        m_client = client;
+        m_tableName = checkIdentifier("table", tableName);
+        m_keyColumns = new String[keyColumns.size()];
+        for (int i = 0; i < m_keyColumns.length; i++) {
+            m_keyColumns[i] = checkIdentifier("key column", keyColumns.get(i)).toUpperCase(Locale.ROOT);
+        }
+        m_pageRows = pageRows;
+        m_maxPageRows = pageRows;
+        m_maxPageBytes = maxPageBytes;
+        m_orderBy = " ORDER BY " + String.join(", ", m_keyColumns) + " LIMIT ?;";
+    }
+
+    /**
+     * @return true if there is at least one more page of rows
+     */
+    public boolean hasNext() throws IOException, ProcCallException {
+        if (m_nextPage == null && !m_done) {
+            m_nextPage = fetchPage();
+        }
+        return m_nextPage != null;
+    }
+
+    /**
+     * @return the next page of rows, which is never empty
+     * @throws NoSuchElementException if all the rows have been read
+     */
+    public VoltTable next() throws IOException, ProcCallException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("All the rows of " + m_tableName + " have been read");
+        }
+        VoltTable page = m_nextPage;
+        m_nextPage = null;
+        return page;
+    }
+
+    public long getRowsRead() {
+        return m_rowsRead;
+    }
+
+    public long getPagesRead() {
+        return m_pagesRead;
+    }
+
+    /**
+     * @return the number of rows which will be asked for in the next page
+     */
+    public int getPageRows() {
+        return m_pageRows;
+    }
+
+    private VoltTable fetchPage() throws IOException, ProcCallException {
+        String sql = buildQuery(m_tableName, m_keyColumns, m_lastKey != null) + m_orderBy;
+        List<Object> params = new ArrayList<>();
+        if (m_lastKey != null) {
+            // Same parameter order as the predicate built by buildQuery
+            for (int i = 0; i < m_keyColumns.length; i++) {
+                for (int j = 0; j <= i; j++) {
+                    params.add(m_lastKey[j]);
+                }
+            }
+        }
+        params.add(m_pageRows);
+        params.add(0, sql);
+
+        ClientResponse response = m_client.callProcedure("@AdHocLarge", params.toArray());
+        VoltTable page = response.getResults()[0];
+        int rowCount = page.getRowCount();
+        if (rowCount < m_pageRows) {
+            m_done = true;
+        }
+        if (rowCount == 0) {
+            return null;
+        }
+
+        VoltTableRow lastRow = page.fetchRow(rowCount - 1);
+        Object[] lastKey = new Object[m_keyColumns.length];
+        for (int i = 0; i < m_keyColumns.length; i++) {
+            int index = page.getColumnIndex(m_keyColumns[i]);
+            lastKey[i] = lastRow.get(index, page.getColumnType(index));
+        }
+        m_lastKey = lastKey;
+        m_rowsRead += rowCount;
+        ++m_pagesRead;
+
+        // Shrink the next page after large rows, and go back to the configured size as soon as
+        // a page fits again so that one wide row does not slow down the rest of the scan
+        int pageBytes = page.getSerializedSize();
+        if (pageBytes > m_maxPageBytes) {
+            m_pageRows = (int) Math.max(1, (long) rowCount * m_maxPageBytes / pageBytes);
+        } else {
+            m_pageRows = m_maxPageRows;
+        }
+        return page;
+    }
+
+    private static String checkIdentifier(String kind, String name) {
+        String trimmed = name == null ? null : name.trim();
+        if (trimmed == null || !IDENTIFIER.matcher(trimmed).matches()) {
+            throw new IllegalArgumentException("Invalid " + kind + " name: " + name);
+        }
+        return trimmed;
+    }
+
+    /**
+     * Build the query for a page without its ORDER BY and LIMIT. After the first page it
+     * selects the rows whose key sorts after the last key read, expanding the row comparison
+     * (k1, k2) > (?, ?) into k1 > ? OR (k1 = ? AND k2 > ?) and so on.
+     */
+    static String buildQuery(String tableName, String[] keyColumns, boolean afterLastKey) {
+        StringBuilder sb = new StringBuilder("SELECT * FROM ").append(tableName);
+        if (afterLastKey) {
+            sb.append(" WHERE ");
+            for (int i = 0; i < keyColumns.length; i++) {
+                if (i > 0) {
+                    sb.append(" OR ");
+                }
+                sb.append('(');
+                for (int j = 0; j < i; j++) {
+                    sb.append(keyColumns[j]).append(" = ? AND ");
+                }
+                sb.append(keyColumns[i]).append(" > ?)");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -18,12 +18,10 @@
 package org.voltdb.compiler;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.voltdb.common.Constants;
 import org.voltdb.planner.BoundPlan;
@@ -43,6 +41,9 @@ import com.google_voltpatches.common.cache.CacheBuilder;
  * statement mapped to core parameterized plans. These parameterized
  * plans need parameter values and sql literals in order to be
  * actually used.
+ *
+ * Both levels are {@link WindowedLfuCache}s, so lookups from the many
+ * planner threads do not serialize on a lock.
  */
 public class AdHocCompilerCache implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -63,16 +64,28 @@ public class AdHocCompilerCache implements Serializable {
      * Get the global cache for a given hash of the catalog. Note that there can be only
      * one cache per catalogHash at a time.
      */
-    public synchronized static AdHocCompilerCache getCacheForCatalogHash(byte[] catalogHash) {
+    public static AdHocCompilerCache getCacheForCatalogHash(byte[] catalogHash) {
         String hashString = Encoder.hexEncode(catalogHash);
         AdHocCompilerCache cache = m_catalogHashMatch.getIfPresent(hashString);
         if (cache == null) {
-            cache = new AdHocCompilerCache();
-            m_catalogHashMatch.put(hashString, cache);
+            synchronized (AdHocCompilerCache.class) {
+                cache = m_catalogHashMatch.getIfPresent(hashString);
+                if (cache == null) {
+                    cache = new AdHocCompilerCache();
+                    m_catalogHashMatch.put(hashString, cache);
+                }
+            }
         }
         return cache;
     }
 
+    /**
+     * Get the cache for a given hash of the catalog without creating one.
+     */
+    static AdHocCompilerCache getCacheIfPresent(byte[] catalogHash) {
+        return m_catalogHashMatch.getIfPresent(Encoder.hexEncode(catalogHash));
+    }
+
     //////////////////////////////////////////////////////////////////////////
     // PER-INSTANCE AWESOMEC CACHING CODE
     //////////////////////////////////////////////////////////////////////////
@@ -83,22 +96,23 @@ public class AdHocCompilerCache implements Serializable {
     final long MAX_LITERAL_MEM  = Long.getLong("ADHOC_COMPILER_CACHE_MAX_LITERAL_MEM_BYTES", 32*1024*1024);
     final int MAX_CORE_ENTRIES;
 
-    /** cache of literals to full plans */
-    final Map<String, AdHocPlannedStatement> m_literalCache;
+    /** cache of literals to full plans, bounded by both entry count and plan size */
+    final transient WindowedLfuCache<String, AdHocPlannedStatement> m_literalCache;
     /** cache of parameterized plan descriptions to one or more core parameterized plans,
      *  each plan optionally has its own requirements for which parameters need to be bound
-     *  to what values to enable its specialized (expression-indexed) plan. */
-    final Map<String, List<BoundPlan> > m_coreCache;
-
-    // placeholder stats used during development that may/may not survive
-    long m_literalHits = 0;
-    long m_literalQueries = 0;
-    long m_literalInsertions = 0;
-    long m_literalEvictions = 0;
-    long m_planHits = 0;
-    long m_planQueries = 0;
-    long m_planInsertions = 0;
-    long m_planEvictions = 0;
+     *  to what values to enable its specialized (expression-indexed) plan.
+     *  The lists are copy on write, as they are read by planner threads while others add to them. */
+    final transient WindowedLfuCache<String, CopyOnWriteArrayList<BoundPlan> > m_coreCache;
+
+    // snapshot of the counters at the last printStats()
+    private long m_lastLiteralHits = 0;
+    private long m_lastLiteralMisses = 0;
+    private long m_lastLiteralInsertions = 0;
+    private long m_lastLiteralEvictions = 0;
+    private long m_lastPlanHits = 0;
+    private long m_lastPlanMisses = 0;
+    private long m_lastPlanInsertions = 0;
+    private long m_lastPlanEvictions = 0;
 
     /** {@see this#startPeriodicStatsPrinting() } */
     Timer m_statsTimer = null;
@@ -120,84 +134,10 @@ public class AdHocCompilerCache implements Serializable {
         MAX_LITERAL_ENTRIES = maxLiteralEntries;
         MAX_CORE_ENTRIES = maxCoreEntries;
 
-        // an LRU cache map
-        m_literalCache = new AdHocStatementCache(MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM);
-
-        // an LRU cache map
-        m_coreCache = new LinkedHashMap<String, List<BoundPlan> >(MAX_CORE_ENTRIES * 2, .75f, true) {
-            private static final long serialVersionUID = 1L;
-
-            // This method is called just after a new entry has been added
-            @Override
-            public boolean removeEldestEntry(Map.Entry<String, List<BoundPlan> > eldest) {
-                if (size() > MAX_CORE_ENTRIES) {
-                    ++m_planEvictions;
-                    return true;
-                }
-                return false;
-            }
-
-        };
-    }
-
-    // define a LinkedHashMap based LRU cache bounds by both entry number and entry value on-heap size
-    // without changing Map.Entry, only works for value of type AdHocPlannedStatement
-    // only extend put, remove,clear and removeEldestEntry methods to account weight
-    public class AdHocStatementCache extends LinkedHashMap<String, AdHocPlannedStatement>{
-       private static final long serialVersionUID = 2988383448026641836L;
-        private final int maxEntries;
-        private final long maxMemory; // in bytes
-        private long currentMemory;   // in bytes
-
-        public AdHocStatementCache() {
-            // default max entry of 1000
-            // default max value size of 32MB
-            this(1000, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries) {
-            this(maxEntries, 32 * 1024 * 1024);
-        }
-
-        public AdHocStatementCache(final int maxEntries, final long maxMemory) {
-            // set accessOrder to true for LRU
-            super(maxEntries * 2, .75f, true);
-            this.maxEntries = maxEntries;
-            this.maxMemory = maxMemory;
-            this.currentMemory = 0;
-        }
-
-        // This method is called just after a new entry has been added
-        @Override
-        public boolean removeEldestEntry(final Map.Entry<String, AdHocPlannedStatement> eldest) {
-            if ((size() > maxEntries) || (this.currentMemory > this.maxMemory))  {
-                ++m_literalEvictions;
-                this.currentMemory -= eldest.getValue().getSerializedSize();
-                return true;
-            }
-            return false;
-        }
-
-        @Override
-        public AdHocPlannedStatement put(String key, AdHocPlannedStatement value) {
-            this.currentMemory += value.getSerializedSize();
-            return super.put(key,value);
-        }
-
-        @Override
-        public AdHocPlannedStatement remove(Object key) {
-            AdHocPlannedStatement value = super.remove(key);
-            if (value != null) {
-                this.currentMemory -= value.getSerializedSize();
-            }
-            return value;
-        }
-
-        @Override
-        public void clear() {
-            super.clear();
-            this.currentMemory = 0;
-        }
+        m_literalCache = new WindowedLfuCache<>(MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM,
+                AdHocPlannedStatement::getSerializedSize);
+        // core plans are only bounded by count
+        m_coreCache = new WindowedLfuCache<>(MAX_CORE_ENTRIES, Long.MAX_VALUE, plans -> 0);
     }
 
     /**
@@ -205,38 +145,46 @@ public class AdHocCompilerCache implements Serializable {
      * Probably shouldn't live past real stats integration.
      */
     synchronized void printStats() {
+        final long literalHits = m_literalCache.hitCount();
+        final long literalMisses = m_literalCache.missCount();
+        final long literalInsertions = m_literalCache.insertionCount();
+        final long literalEvictions = m_literalCache.evictionCount();
+        final long planHits = m_coreCache.hitCount();
+        final long planMisses = m_coreCache.missCount();
+        final long planInsertions = m_coreCache.insertionCount();
+        final long planEvictions = m_coreCache.evictionCount();
+
+        long hits = literalHits - m_lastLiteralHits;
+        long queries = hits + literalMisses - m_lastLiteralMisses;
         String line1 = String.format("CACHE STATS - Literals: Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_literalHits, m_literalQueries, (m_literalHits * 100.0) / m_literalQueries,
-                m_literalInsertions, m_literalEvictions);
+                hits, queries, (hits * 100.0) / queries,
+                literalInsertions - m_lastLiteralInsertions, literalEvictions - m_lastLiteralEvictions);
+        hits = planHits - m_lastPlanHits;
+        queries = hits + planMisses - m_lastPlanMisses;
         String line2 = String.format("CACHE STATS - Plans:    Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_planHits, m_planQueries, (m_planHits * 100.0) /m_planQueries,
-                m_planInsertions, m_planEvictions);
+                hits, queries, (hits * 100.0) / queries,
+                planInsertions - m_lastPlanInsertions, planEvictions - m_lastPlanEvictions);
 
         System.out.print(line1 + line2);
         System.out.flush();
 
         // reset these
-        m_literalHits = 0;
-        m_literalQueries = 0;
-        m_literalInsertions = 0;
-        m_literalEvictions = 0;
-        m_planHits = 0;
-        m_planQueries = 0;
-        m_planInsertions = 0;
-        m_planEvictions = 0;
+        m_lastLiteralHits = literalHits;
+        m_lastLiteralMisses = literalMisses;
+        m_lastLiteralInsertions = literalInsertions;
+        m_lastLiteralEvictions = literalEvictions;
+        m_lastPlanHits = planHits;
+        m_lastPlanMisses = planMisses;
+        m_lastPlanInsertions = planInsertions;
+        m_lastPlanEvictions = planEvictions;
     }
 
     /**
      * @param sql SQL literal
      * @return full, ready-to-go plan
      */
-    public synchronized AdHocPlannedStatement getWithSQL(String sql) {
-        ++m_literalQueries;
-        AdHocPlannedStatement retval = m_literalCache.get(sql);
-        if (retval != null) {
-            ++m_literalHits;
-        }
-        return retval;
+    public AdHocPlannedStatement getWithSQL(String sql) {
+        return m_literalCache.get(sql);
     }
 
     /**
@@ -244,13 +192,8 @@ public class AdHocCompilerCache implements Serializable {
      * SQL statement
      * @return A CorePlan that needs parameter values to run.
      */
-    public synchronized List<BoundPlan> getWithParsedToken(String parsedToken) {
-        ++m_planQueries;
-        List<BoundPlan> retval = m_coreCache.get(parsedToken);
-        if (retval != null) {
-            ++m_planHits;
-        }
-        return retval;
+    public List<BoundPlan> getWithParsedToken(String parsedToken) {
+        return m_coreCache.get(parsedToken);
     }
 
     /**
@@ -271,12 +214,12 @@ public class AdHocCompilerCache implements Serializable {
      * @param hasUserQuestionMarkParameters is user provided parameterized query
      * @param hasAutoParameterizedException is the auto parameterized query has parameter exception
      */
-    public synchronized void put(String sql,
-                                 String parsedToken,
-                                 AdHocPlannedStatement planIn,
-                                 String[] extractedLiterals,
-                                 boolean hasUserQuestionMarkParameters,
-                                 boolean hasAutoParameterizedException)
+    public void put(String sql,
+                    String parsedToken,
+                    AdHocPlannedStatement planIn,
+                    String[] extractedLiterals,
+                    boolean hasUserQuestionMarkParameters,
+                    boolean hasAutoParameterizedException)
     {
         assert(sql != null);
         assert(parsedToken != null);
@@ -293,21 +236,19 @@ public class AdHocCompilerCache implements Serializable {
 
         // deal with L2 cache
         if (! hasAutoParameterizedException) {
-            BoundPlan matched = null;
             BoundPlan unmatched = new BoundPlan(planIn.core, planIn.parameterBindings(extractedLiterals));
             // deal with the parameterized plan cache first
-            List<BoundPlan> boundVariants = m_coreCache.get(parsedToken);
-            if (boundVariants == null) {
-                boundVariants = new ArrayList<BoundPlan>();
-                m_coreCache.put(parsedToken, boundVariants);
-                // Note that there is an edge case in which more than one plan is getting counted as one
-                // "plan insertion". This only happens when two different plans arose from the same parameterized
-                // query (token) because one invocation used the correct constants to trigger an expression index and
-                // another invocation did not.  These are not counted separately (which would have to happen below
-                // after each call to boundVariants.add) because they are not evicted separately.
-                // It seems saner to use consistent units when counting insertions vs. evictions.
-                ++m_planInsertions;
-            } else {
+            CopyOnWriteArrayList<BoundPlan> newVariants = new CopyOnWriteArrayList<>();
+            newVariants.add(unmatched);
+            // Note that there is an edge case in which more than one plan is getting counted as one
+            // "plan insertion". This only happens when two different plans arose from the same parameterized
+            // query (token) because one invocation used the correct constants to trigger an expression index and
+            // another invocation did not.  These are not counted separately (which would have to happen below
+            // after each call to boundVariants.add) because they are not evicted separately.
+            // It seems saner to use consistent units when counting insertions vs. evictions.
+            CopyOnWriteArrayList<BoundPlan> boundVariants = m_coreCache.putIfAbsent(parsedToken, newVariants);
+            if (boundVariants != null) {
+                BoundPlan matched = null;
                 for (BoundPlan boundPlan : boundVariants) {
                     if (boundPlan.equals(unmatched)) {
                         matched = boundPlan;
@@ -322,25 +263,20 @@ public class AdHocCompilerCache implements Serializable {
                         plan.setBoundConstants(matched.m_constants);
                     }
                 }
-            }
-            if (matched == null) {
-                // Don't count insertions (of possibly repeated tokens) here
-                //  -- see the comment above where only UNIQUE token insertions are being counted, instead.
-                boundVariants.add(unmatched);
+                else {
+                    // Don't count insertions (of possibly repeated tokens) here
+                    //  -- see the comment above where only UNIQUE token insertions are being counted, instead.
+                    // Another planner thread may have just added the same variant.
+                    boundVariants.addIfAbsent(unmatched);
+                }
             }
         }
 
         // then deal with the L1 cache
         if (! hasUserQuestionMarkParameters) {
-            AdHocPlannedStatement cachedPlan = m_literalCache.get(sql);
-            if (cachedPlan == null) {
-                //* enable to debug */ System.out.println("DEBUG: Caching literal '" + sql + "'");
-                m_literalCache.put(sql, plan);
-                ++m_literalInsertions;
-            }
-            else {
-                assert(cachedPlan.equals(plan));
-            }
+            //* enable to debug */ System.out.println("DEBUG: Caching literal '" + sql + "'");
+            AdHocPlannedStatement cachedPlan = m_literalCache.putIfAbsent(sql, plan);
+            assert(cachedPlan == null || cachedPlan.equals(plan));
         }
     }
 
@@ -0,0 +1,147 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.voltdb.CatalogContext;
+import org.voltdb.StatsSource;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Size and hit/miss/insertion/eviction counts of both levels of the ad hoc plan cache
+ * for the current catalog.
+ */
+public class AdHocCompilerCacheStats extends StatsSource {
+
+    public enum CacheLevel {
+        LITERAL,
+        CORE
+    }
+
+    public enum StatName {
+        CACHE_LEVEL,
+        ENTRIES,
+        MAX_ENTRIES,
+        SIZE_BYTES,
+        HITS,
+        MISSES,
+        INSERTIONS,
+        EVICTIONS
+    }
+
+    // Counters at the last interval collection
+    private static class Counts {
+        long m_hits = 0;
+        long m_misses = 0;
+        long m_insertions = 0;
+        long m_evictions = 0;
+    }
+
+    private final Map<CacheLevel, Counts> m_lastCounts = new EnumMap<>(CacheLevel.class);
+    private boolean m_interval = false;
+    private AdHocCompilerCache m_cache = null;
+    // The cache that m_lastCounts were taken from
+    private AdHocCompilerCache m_countedCache = null;
+
+    public AdHocCompilerCacheStats() {
+        super(false);
+        for (CacheLevel level : CacheLevel.values()) {
+            m_lastCounts.put(level, new Counts());
+        }
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo(StatName.CACHE_LEVEL.name(), VoltType.STRING));
+        columns.add(new ColumnInfo(StatName.ENTRIES.name(), VoltType.INTEGER));
+        columns.add(new ColumnInfo(StatName.MAX_ENTRIES.name(), VoltType.INTEGER));
+        columns.add(new ColumnInfo(StatName.SIZE_BYTES.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.HITS.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.MISSES.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.INSERTIONS.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.EVICTIONS.name(), VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        CacheLevel level = (CacheLevel) rowKey;
+        WindowedLfuCache<?, ?> cache = level == CacheLevel.LITERAL ? m_cache.m_literalCache : m_cache.m_coreCache;
+        long hits = cache.hitCount();
+        long misses = cache.missCount();
+        long insertions = cache.insertionCount();
+        long evictions = cache.evictionCount();
+        if (m_interval) {
+            Counts last = m_lastCounts.get(level);
+            long totalHits = hits;
+            long totalMisses = misses;
+            long totalInsertions = insertions;
+            long totalEvictions = evictions;
+            hits -= last.m_hits;
+            misses -= last.m_misses;
+            insertions -= last.m_insertions;
+            evictions -= last.m_evictions;
+            last.m_hits = totalHits;
+            last.m_misses = totalMisses;
+            last.m_insertions = totalInsertions;
+            last.m_evictions = totalEvictions;
+        }
+
+        rowValues[columnNameToIndex.get(StatName.CACHE_LEVEL.name())] = level.name();
+        rowValues[columnNameToIndex.get(StatName.ENTRIES.name())] = cache.size();
+        rowValues[columnNameToIndex.get(StatName.MAX_ENTRIES.name())] = cache.maxEntries();
+        // Only the literal cache tracks the size of its plans
+        rowValues[columnNameToIndex.get(StatName.SIZE_BYTES.name())] = cache.weight();
+        rowValues[columnNameToIndex.get(StatName.HITS.name())] = hits;
+        rowValues[columnNameToIndex.get(StatName.MISSES.name())] = misses;
+        rowValues[columnNameToIndex.get(StatName.INSERTIONS.name())] = insertions;
+        rowValues[columnNameToIndex.get(StatName.EVICTIONS.name())] = evictions;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_interval = interval;
+        ArrayList<Object> levels = new ArrayList<>();
+        CatalogContext context = VoltDB.instance().getCatalogContext();
+        AdHocCompilerCache cache = context == null ? null : AdHocCompilerCache.getCacheIfPresent(context.getCatalogHash());
+        if (cache != null && cache != m_countedCache) {
+            // A catalog update replaced the cache, whose counters start over from zero
+            m_countedCache = cache;
+            for (Counts last : m_lastCounts.values()) {
+                last.m_hits = 0;
+                last.m_misses = 0;
+                last.m_insertions = 0;
+                last.m_evictions = 0;
+            }
+        }
+        m_cache = cache;
+        if (m_cache != null) {
+            for (CacheLevel level : CacheLevel.values()) {
+                levels.add(level);
+            }
+        }
+        return levels.iterator();
+    }
+}
@@ -2036,11 +2036,28 @@ public class DDLCompiler {
         // - Covering cell index (geo index for CONTAINS predicates)
         // - HASH index (set in HSQL because "hash" is in the name of the
         //   constraint or the index
+        // - FLAT HASH index, an open addressing HASH index, if the name
+        //   contains "flathash" and the index is unique
+        // - BTREE index, a B+tree instead of the red-black tree, if the
+        //   name contains "btree"
         // - TREE index, which is the default
         boolean isHashIndex = node.attributes.get("ishashindex").equals("true");
         if (has_geo_col) {
             index.setType(IndexType.COVERING_CELL_INDEX.getValue());
+        } else if (isHashIndex && name.toUpperCase().contains("FLATHASH") && (unique || assumeUnique)) {
+            // Same restriction as a HASH index
+            if (has_nonint_col) {
+                String emsg = "Index " + name + " in table " + table.getTypeName() +
+                             " uses a non-hashable column " + nonint_col_name;
+                throw compiler.new VoltCompilerException(emsg);
+            }
+            index.setType(IndexType.FLAT_HASH_TABLE.getValue());
         } else if (isHashIndex) {
+            if (name.toUpperCase().contains("FLATHASH")) {
+                // There is no flat hash multimap, record the chained hash table the EE builds instead
+                compiler.addWarn("Index " + name + " in table " + table.getTypeName() +
+                        " is not unique, so it will be a HASH index rather than a FLATHASH index");
+            }
             // warn user that hash index will be deprecated
             compiler.addWarn("Hash indexes are deprecated. In a future release, VoltDB will only support tree indexes, even if the index name contains the string \"hash\"");
 
@@ -2052,6 +2069,9 @@ public class DDLCompiler {
                 throw compiler.new VoltCompilerException(emsg);
             }
             index.setType(IndexType.HASH_TABLE.getValue());
+        } else if (name.toUpperCase().contains("BTREE")) {
+            index.setType(IndexType.BTREE.getValue());
+            index.setCountable(true);
         } else {
             index.setType(IndexType.BALANCED_TREE.getValue());
             index.setCountable(true);
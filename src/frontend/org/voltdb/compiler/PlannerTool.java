@@ -128,6 +128,7 @@ public class PlannerTool {
                     if (statsAgent != null) {
                         m_plannerStats = new PlannerStatsCollector(-1);
                         statsAgent.registerStatsSource(StatsSelector.PLANNER, -1, m_plannerStats);
+                        statsAgent.registerStatsSource(StatsSelector.PLANCACHE, -1, new AdHocCompilerCacheStats());
                     }
                 }
             }
@@ -0,0 +1,437 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * A concurrent cache bounded by entry count and total weight, evicting with a windowed LFU policy (W-TinyLFU).
+ * <p>
+ * New entries go into a small LRU window. Entries pushed out of the window only enter the main (segmented LRU)
+ * region if they have been used more often than the entry they would push out, according to a compact
+ * count-min sketch of recent use. That keeps one-off statements from flushing frequently used plans, which a
+ * plain LRU does under a scan of distinct ad hoc queries.
+ * <p>
+ * Lookups are lock free: they read a {@link ConcurrentHashMap} and record the access in a lossy ring buffer.
+ * Recorded accesses are applied to the policy in batches by whichever thread holds the eviction lock, which is
+ * only ever tried (never waited for) on the read path. Writes take the eviction lock.
+ */
+class WindowedLfuCache<K, V> {
+    // Which region of the policy a node is in
+    private static final byte NEW = -1;
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+    private static final byte REMOVED = 3;
+
+    // Size of the read buffer, must be a power of 2
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    // Accesses to buffer before draining on the read path
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = 32;
+
+    private static final class Node<K, V> {
+        final K m_key;
+        final V m_value;
+        final long m_weight;
+        byte m_region = NEW;
+        Node<K, V> m_prev;
+        Node<K, V> m_next;
+
+        Node(K key, V value, long weight) {
+            m_key = key;
+            m_value = value;
+            m_weight = weight;
+        }
+    }
+
+    /**
+     * An intrusive doubly linked list in LRU order, the head is the least recently used node
+     */
+    private static final class AccessOrderQueue<K, V> {
+        Node<K, V> m_head;
+        Node<K, V> m_tail;
+        int m_size;
+
+        void addLast(Node<K, V> node) {
+            node.m_prev = m_tail;
+            node.m_next = null;
+            if (m_tail == null) {
+                m_head = node;
+            } else {
+                m_tail.m_next = node;
+            }
+            m_tail = node;
+            ++m_size;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.m_prev == null) {
+                m_head = node.m_next;
+            } else {
+                node.m_prev.m_next = node.m_next;
+            }
+            if (node.m_next == null) {
+                m_tail = node.m_prev;
+            } else {
+                node.m_next.m_prev = node.m_prev;
+            }
+            node.m_prev = node.m_next = null;
+            --m_size;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if (node != m_tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * A count-min sketch of 4 bit counters estimating how often each key has been used recently.
+     * All counters are halved once enough uses have been recorded, so old popularity fades.
+     * Only accessed while holding the eviction lock.
+     */
+    private static final class FrequencySketch {
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+        private final long[] m_table;
+        private final int m_tableMask;
+        private final int m_sampleSize;
+        private int m_additions = 0;
+
+        FrequencySketch(int maxEntries) {
+            int tableSize = Integer.highestOneBit(Math.max(maxEntries, 16) - 1) << 1;
+            m_table = new long[tableSize];
+            m_tableMask = tableSize - 1;
+            m_sampleSize = 10 * Math.max(maxEntries, 16);
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = indexOf(hash, i);
+                int offset = counterOffset(hash, i);
+                frequency = Math.min(frequency, (int) ((m_table[index] >>> offset) & 0xfL));
+            }
+            return frequency;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = indexOf(hash, i);
+                int offset = counterOffset(hash, i);
+                if (((m_table[index] >>> offset) & 0xfL) != 0xfL) {
+                    m_table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++m_additions == m_sampleSize) {
+                for (int i = 0; i < m_table.length; i++) {
+                    m_table[i] = (m_table[i] >>> 1) & RESET_MASK;
+                }
+                m_additions /= 2;
+            }
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return ((int) h) & m_tableMask;
+        }
+
+        // Each long holds 16 counters, each hash function uses its own quarter of them
+        private static int counterOffset(int hash, int i) {
+            return ((i << 2) + ((hash >>> (i << 3)) & 3)) << 2;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+
+    private final int m_maxEntries;
+    private final long m_maxWeight;
+    private final int m_maxWindow;
+    private final int m_maxProtected;
+    private final ToLongFunction<V> m_weigher;
+
+    private final ConcurrentHashMap<K, Node<K, V>> m_data;
+
+    // Policy state, guarded by m_evictionLock
+    private final ReentrantLock m_evictionLock = new ReentrantLock();
+    private final AccessOrderQueue<K, V> m_window = new AccessOrderQueue<>();
+    private final AccessOrderQueue<K, V> m_probation = new AccessOrderQueue<>();
+    private final AccessOrderQueue<K, V> m_protected = new AccessOrderQueue<>();
+    private final FrequencySketch m_sketch;
+    private volatile long m_weight = 0;
+
+    // Lossy buffer of accesses not yet applied to the policy
+    private final AtomicReferenceArray<Node<K, V>> m_readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong m_readBufferWrites = new AtomicLong();
+    private volatile long m_readBufferReads = 0;
+
+    private final LongAdder m_hits = new LongAdder();
+    private final LongAdder m_misses = new LongAdder();
+    private final LongAdder m_insertions = new LongAdder();
+    private final LongAdder m_evictions = new LongAdder();
+
+    /**
+     * @param maxEntries maximum number of entries
+     * @param maxWeight  maximum total weight of the entries
+     * @param weigher    weight of a value, must not change while the value is cached
+     */
+    WindowedLfuCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+        assert maxEntries > 0;
+        m_maxEntries = maxEntries;
+        m_maxWeight = maxWeight;
+        m_weigher = weigher;
+        // 1% of the entries for the window, 80% of the rest for entries which have been used more than once
+        m_maxWindow = Math.max(1, maxEntries / 100);
+        m_maxProtected = (int) ((maxEntries - m_maxWindow) * 0.8);
+        m_data = new ConcurrentHashMap<>(maxEntries * 2);
+        m_sketch = new FrequencySketch(maxEntries);
+    }
+
+    /**
+     * Look up a value, counting the lookup as a hit or miss.
+     */
+    V get(K key) {
+        Node<K, V> node = m_data.get(key);
+        if (node == null) {
+            m_misses.increment();
+            return null;
+        }
+        m_hits.increment();
+        recordAccess(node);
+        return node.m_value;
+    }
+
+    /**
+     * Add a value unless the key already has one.
+     *
+     * @return the value already cached for key, or {@code null} if value was added
+     */
+    V putIfAbsent(K key, V value) {
+        Node<K, V> node = new Node<>(key, value, m_weigher.applyAsLong(value));
+        Node<K, V> existing = m_data.putIfAbsent(key, node);
+        if (existing != null) {
+            recordAccess(existing);
+            return existing.m_value;
+        }
+        m_insertions.increment();
+        m_evictionLock.lock();
+        try {
+            drainReadBuffer();
+            // Unless a concurrent clear() has dropped it already
+            if (m_data.get(key) == node) {
+                node.m_region = WINDOW;
+                m_window.addLast(node);
+                m_weight += node.m_weight;
+                m_sketch.increment(key);
+                evict();
+            }
+        } finally {
+            m_evictionLock.unlock();
+        }
+        return null;
+    }
+
+    void clear() {
+        m_evictionLock.lock();
+        try {
+            m_data.clear();
+            clearQueue(m_window);
+            clearQueue(m_probation);
+            clearQueue(m_protected);
+            m_weight = 0;
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                m_readBuffer.lazySet(i, null);
+            }
+            m_readBufferReads = m_readBufferWrites.get();
+        } finally {
+            m_evictionLock.unlock();
+        }
+    }
+
+    private static <K, V> void clearQueue(AccessOrderQueue<K, V> queue) {
+        while (queue.m_head != null) {
+            Node<K, V> node = queue.m_head;
+            queue.remove(node);
+            node.m_region = REMOVED;
+        }
+    }
+
+    int size() {
+        return m_data.size();
+    }
+
+    long weight() {
+        return m_weight;
+    }
+
+    int maxEntries() {
+        return m_maxEntries;
+    }
+
+    long maxWeight() {
+        return m_maxWeight;
+    }
+
+    long hitCount() {
+        return m_hits.sum();
+    }
+
+    long missCount() {
+        return m_misses.sum();
+    }
+
+    long insertionCount() {
+        return m_insertions.sum();
+    }
+
+    long evictionCount() {
+        return m_evictions.sum();
+    }
+
+    private void recordAccess(Node<K, V> node) {
+        final long writes = m_readBufferWrites.get();
+        final long pending = writes - m_readBufferReads;
+        // Drop the access if the buffer is full, the policy only needs a sample
+        if (pending < READ_BUFFER_SIZE && m_readBufferWrites.compareAndSet(writes, writes + 1)) {
+            m_readBuffer.lazySet((int) (writes & READ_BUFFER_MASK), node);
+        }
+        if (pending >= READ_BUFFER_DRAIN_THRESHOLD && m_evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                m_evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        final long writes = m_readBufferWrites.get();
+        long reads = m_readBufferReads;
+        for (; reads < writes; reads++) {
+            int index = (int) (reads & READ_BUFFER_MASK);
+            Node<K, V> node = m_readBuffer.get(index);
+            if (node == null) {
+                // The writer claimed the slot but has not filled it in yet
+                break;
+            }
+            m_readBuffer.lazySet(index, null);
+            onAccess(node);
+        }
+        m_readBufferReads = reads;
+    }
+
+    private void onAccess(Node<K, V> node) {
+        m_sketch.increment(node.m_key);
+        switch (node.m_region) {
+        case WINDOW:
+            m_window.moveToBack(node);
+            break;
+        case PROBATION:
+            // Used again, promote it and make room in the protected region if needed
+            m_probation.remove(node);
+            node.m_region = PROTECTED;
+            m_protected.addLast(node);
+            if (m_protected.m_size > m_maxProtected) {
+                Node<K, V> demoted = m_protected.m_head;
+                m_protected.remove(demoted);
+                demoted.m_region = PROBATION;
+                m_probation.addLast(demoted);
+            }
+            break;
+        case PROTECTED:
+            m_protected.moveToBack(node);
+            break;
+        default:
+            // Not added to the policy yet, or evicted since it was looked up
+            break;
+        }
+    }
+
+    private void evict() {
+        // Entries leaving the window become candidates for the main region
+        Node<K, V> candidate = null;
+        while (m_window.m_size > m_maxWindow) {
+            Node<K, V> node = m_window.m_head;
+            m_window.remove(node);
+            node.m_region = PROBATION;
+            m_probation.addLast(node);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+
+        while (m_data.size() > m_maxEntries || m_weight > m_maxWeight) {
+            Node<K, V> victim = m_probation.m_head;
+            if (victim == null) {
+                victim = m_protected.m_head != null ? m_protected.m_head : m_window.m_head;
+                if (victim == null) {
+                    break;
+                }
+            } else if (candidate != null) {
+                // Candidates were appended to probation in order, so the next one follows this one.
+                // Admit a candidate only if it is more popular than the entry it would replace.
+                Node<K, V> next = candidate.m_next;
+                if (candidate != victim &&
+                        m_sketch.frequency(candidate.m_key) <= m_sketch.frequency(victim.m_key)) {
+                    victim = candidate;
+                }
+                candidate = next;
+            }
+            removeNode(victim);
+        }
+    }
+
+    private void removeNode(Node<K, V> node) {
+        switch (node.m_region) {
+        case WINDOW:
+            m_window.remove(node);
+            break;
+        case PROBATION:
+            m_probation.remove(node);
+            break;
+        case PROTECTED:
+            m_protected.remove(node);
+            break;
+        default:
+            return;
+        }
+        node.m_region = REMOVED;
+        m_weight -= node.m_weight;
+        m_data.remove(node.m_key, node);
+        m_evictions.increment();
+    }
+}
@@ -128,7 +128,8 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             new AtomicReference<>(Pair.of((Mailbox)null, ImmutableList.<Long>builder().build()));
     private final Semaphore m_bufferPushPermits = new Semaphore(16);
 
-    private volatile ListeningExecutorService m_es;
+    // Serial lane of the shared export worker pool, runs all the tasks of this source in order
+    private volatile ExportWorkerPool.Lane m_es;
     // A place to keep unfinished export buffer when processor shuts down.
     private final AtomicReference<AckingContainer> m_pendingContainer = new AtomicReference<>();
     // Is EDS from catalog or from disk pdb?
@@ -273,8 +274,8 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 exportLog.debug(toString() + " is a replicated export stream");
             }
         }
-        m_es = CoreUtils.getListeningExecutorService("ExportDataSource for table " +
-                    m_tableName + " partition " + m_partitionId, 1);
+        m_es = ExportWorkerPool.instance().newLane("ExportDataSource for table " +
+                m_tableName + " partition " + m_partitionId);
     }
 
     public ExportDataSource(Generation generation, File adFile,
@@ -326,8 +327,8 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 exportLog.debug(toString() + " is a replicated export stream");
             }
         }
-        m_es = CoreUtils.getListeningExecutorService("ExportDataSource for table " +
-                m_tableName + " partition " + m_partitionId, 1);
+        m_es = ExportWorkerPool.instance().newLane("ExportDataSource for table " +
+                m_tableName + " partition " + m_partitionId);
     }
 
     /**
@@ -607,7 +608,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 return new ExportStatsRow(m_partitionId, m_siteId, m_tableName, m_exportTargetName,
                         exportingRole, m_tupleCount, tPend,
                         m_lastQueuedTimestamp, m_lastAckedTimestamp,
-                        avgLatency, maxLatency, m_queueGap, m_status.toString());
+                        avgLatency, maxLatency, m_queueGap, m_status.toString(), m_es.getQueueDepth());
             }
         });
     }
@@ -87,6 +87,7 @@ public class ExportStats extends ExportStatsBase {
         rowValues[columnNameToIndex.get(Columns.MAX_LATENCY)] = stat.m_maxLatency;
         rowValues[columnNameToIndex.get(Columns.QUEUE_GAP)] = stat.m_queueGap;
         rowValues[columnNameToIndex.get(Columns.STATUS)] = stat.m_status;
+        rowValues[columnNameToIndex.get(Columns.QUEUE_DEPTH)] = stat.m_queueDepth;
     }
 
     public ExportStatsRow getStatsRow(Object rowKey) {
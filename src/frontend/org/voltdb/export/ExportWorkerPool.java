@@ -0,0 +1,220 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+
+import com.google_voltpatches.common.util.concurrent.AbstractListeningExecutorService;
+
+/**
+ * A bounded pool of threads shared by all the export data sources of this host.
+ *
+ * Each data source used to get its own single threaded executor, which with many streams
+ * and sites per host meant thousands of mostly idle threads. Now each data source gets a
+ * {@link Lane} instead: an executor which runs its tasks one at a time, in submission
+ * order, on whichever pool thread is free. A lane with queued tasks occupies at most one
+ * pool thread, and gives it up after {@link #TASKS_PER_TURN} tasks so that a busy lane
+ * cannot starve the others.
+ */
+public class ExportWorkerPool {
+    private static final VoltLogger exportLog = new VoltLogger("EXPORT");
+
+    // Size of the pool, defaults to half the cores but at least 2 and at most 16
+    static final int THREAD_COUNT = Integer.getInteger("EXPORT_WORKER_THREADS",
+            Math.max(2, Math.min(16, CoreUtils.availableProcessors() / 2)));
+    // Idle pool threads exit after this long
+    private static final long KEEP_ALIVE_MS = TimeUnit.MINUTES.toMillis(1);
+    // Number of tasks a lane runs before letting other lanes have the thread
+    static final int TASKS_PER_TURN = 16;
+
+    private static class Holder {
+        static final ExportWorkerPool INSTANCE = new ExportWorkerPool(THREAD_COUNT);
+    }
+
+    private final ThreadPoolExecutor m_pool;
+    // Hands delayed tasks to their lanes, so that waiting never takes up a pool thread
+    private final ScheduledThreadPoolExecutor m_timer;
+
+    ExportWorkerPool(int threads) {
+        m_pool = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                new LinkedTransferQueue<Runnable>(),
+                CoreUtils.getThreadFactory(null, "Export worker", CoreUtils.SMALL_STACK_SIZE, true, null));
+        m_pool.allowCoreThreadTimeOut(true);
+        m_timer = CoreUtils.getScheduledThreadPoolExecutor("Export lane timer", 1, CoreUtils.SMALL_STACK_SIZE);
+        m_timer.setKeepAliveTime(KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+        m_timer.allowCoreThreadTimeOut(true);
+    }
+
+    public static ExportWorkerPool instance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Run a short task, typically one that submits work to a lane, once the delay is over.
+     * Lane tasks that have to wait for something should use this rather than sleep, which
+     * would keep a pool thread from the other lanes.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return m_timer.schedule(task, delay, unit);
+    }
+
+    /**
+     * Create a new lane, named for the thread dumps and logs of its tasks.
+     */
+    public Lane newLane(String name) {
+        return new Lane(name);
+    }
+
+    /**
+     * A serial executor on the shared pool. While one of its tasks runs, the pool thread
+     * takes the name of the lane.
+     */
+    public class Lane extends AbstractListeningExecutorService {
+        private final String m_name;
+        private final ArrayDeque<Runnable> m_tasks = new ArrayDeque<>();
+        // true while the lane is queued on, or running in, the pool
+        private boolean m_scheduled = false;
+        private boolean m_shutdown = false;
+        private boolean m_terminated = false;
+
+        private final Runnable m_turn = new Runnable() {
+            @Override
+            public void run() {
+                runTurn();
+            }
+        };
+
+        Lane(String name) {
+            m_name = name;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        /**
+         * Number of tasks waiting to run, not counting the one running now.
+         */
+        public synchronized int getQueueDepth() {
+            return m_tasks.size();
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                if (m_shutdown) {
+                    throw new RejectedExecutionException("Export lane " + m_name + " has been shut down");
+                }
+                m_tasks.add(task);
+                if (m_scheduled) {
+                    return;
+                }
+                m_scheduled = true;
+            }
+            m_pool.execute(m_turn);
+        }
+
+        private void runTurn() {
+            final Thread thread = Thread.currentThread();
+            final String poolName = thread.getName();
+            thread.setName(m_name);
+            try {
+                for (int i = 0; i < TASKS_PER_TURN; i++) {
+                    Runnable task;
+                    synchronized (this) {
+                        task = m_tasks.poll();
+                        if (task == null) {
+                            m_scheduled = false;
+                            if (m_shutdown) {
+                                m_terminated = true;
+                                notifyAll();
+                            }
+                            return;
+                        }
+                    }
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        exportLog.error("Exception thrown in export lane " + m_name, t);
+                    }
+                }
+            } finally {
+                thread.setName(poolName);
+            }
+            // More tasks may be waiting, go to the back of the pool's queue
+            m_pool.execute(m_turn);
+        }
+
+        @Override
+        public synchronized void shutdown() {
+            m_shutdown = true;
+            if (!m_scheduled) {
+                m_terminated = true;
+                notifyAll();
+            }
+        }
+
+        @Override
+        public synchronized List<Runnable> shutdownNow() {
+            List<Runnable> pending = new ArrayList<>(m_tasks);
+            m_tasks.clear();
+            shutdown();
+            return pending;
+        }
+
+        @Override
+        public synchronized boolean isShutdown() {
+            return m_shutdown;
+        }
+
+        @Override
+        public synchronized boolean isTerminated() {
+            return m_terminated;
+        }
+
+        @Override
+        public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!m_terminated) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "Export lane " + m_name;
+        }
+    }
+}
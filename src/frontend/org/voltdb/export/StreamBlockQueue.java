@@ -21,6 +21,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool.BBContainer;
@@ -36,6 +37,7 @@ import org.voltdb.utils.BinaryDeque.BinaryDequeTruncator;
 import org.voltdb.utils.BinaryDeque.BinaryDequeValidator;
 import org.voltdb.utils.BinaryDeque.TruncatorResponse;
 import org.voltdb.utils.BinaryDequeReader;
+import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.PersistentBinaryDeque;
 import org.voltdb.utils.PersistentBinaryDeque.ByteBufferTruncatorResponse;
 import org.voltdb.utils.VoltFile;
@@ -80,6 +82,8 @@ public class StreamBlockQueue {
 
     public static final String EXPORT_DISABLE_COMPRESSION_OPTION = "EXPORT_DISABLE_COMPRESSION";
     private static final boolean DISABLE_COMPRESSION = Boolean.getBoolean(EXPORT_DISABLE_COMPRESSION_OPTION);
+    // Interval for background syncs of the overflow, 0 to only sync when the export data source asks for it
+    private static final int SYNC_INTERVAL_MS = Integer.getInteger("EXPORT_OVERFLOW_SYNC_INTERVAL_MS", 0);
 
     /**
      * Deque containing reference to stream blocks that are in memory. Some of these
@@ -423,6 +427,8 @@ public class StreamBlockQueue {
         m_persistentDeque = PersistentBinaryDeque.builder(m_nonce, new VoltFile(m_path), exportLog)
                 .initialExtraHeader(metadata, serializer)
                 .compression(!DISABLE_COMPRESSION)
+                .compressionCodec(CompressionService.EXPORT_OVERFLOW_CODEC)
+                .syncInterval(SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS)
                 .deleteExisting(deleteExisting)
                 .build();
 
@@ -40,11 +40,13 @@ import org.voltdb.export.ExportDataProcessor;
 import org.voltdb.export.ExportDataSource;
 import org.voltdb.export.ExportDataSource.ReentrantPollException;
 import org.voltdb.export.ExportGeneration;
+import org.voltdb.export.ExportWorkerPool;
 import org.voltdb.export.Generation;
 import org.voltdb.exportclient.ExportClientBase;
 import org.voltdb.exportclient.ExportDecoderBase;
 import org.voltdb.exportclient.ExportDecoderBase.RestartBlockException;
 import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.ExportRowBatch;
 import org.voltdb.exportclient.ExportRowSchema;
 
 import com.google_voltpatches.common.base.Preconditions;
@@ -232,12 +234,10 @@ public class GuestProcessor implements ExportDataProcessor {
                                     buildListener(ads);
                                 }
                             } else {
-                                Thread.sleep(5);
-                                resubmitSelf();
+                                // Check again shortly, without holding up the shared export worker
+                                ExportWorkerPool.instance().schedule(() -> resubmitSelf(), 5, TimeUnit.MILLISECONDS);
                             }
-                        } catch(InterruptedException e) {
-                            resubmitSelf();
-                        }  catch (RejectedExecutionException whenExportDataSourceIsClosed) {
+                        } catch (RejectedExecutionException whenExportDataSourceIsClosed) {
                             if (EXPORTLOG.isDebugEnabled()) {
                                 EXPORTLOG.debug("Source " + m_source + " closed before being started");
                             }
@@ -355,43 +355,58 @@ public class GuestProcessor implements ExportDataProcessor {
                                     EXPORTLOG.debug("Processing " + cont + " on " + source);
                                     start = System.nanoTime();
                                 }
-                                while (buf.hasRemaining() && !m_shutdown) {
-                                    int length = buf.getInt();
-                                    byte[] rowdata = new byte[length];
-                                    buf.get(rowdata, 0, length);
-
+                                if (edb.supportsBatchProcessing()) {
+                                    ExportRowBatch batch = edb.getRowBatch();
                                     try {
                                         cont.updateStartTime(System.currentTimeMillis());
-                                        ExportRow schema = edb.getExportRowSchema();
-                                        if (schema == null || schema.generation != cont.getSchema().generation) {
-                                            // Note {@code ExportRowSchema} is a special {@code ExportRow}
-                                            ExportRowSchema newSchema = cont.getSchema();
-                                            if (EXPORTLOG.isDebugEnabled()) {
-                                                EXPORTLOG.debug("Set schema to: " + newSchema);
-                                            }
-                                            edb.setExportRowSchema(newSchema);
-                                        }
-                                        row = ExportRow.decodeRow(edb.getExportRowSchema(), source.getPartitionId(),
-                                                rowdata);
+                                        updateSchema(edb, cont);
+                                        batch.reset(edb.getExportRowSchema(), source.getPartitionId(), buf);
                                     } catch (IOException ioe) {
-                                        EXPORTLOG.warn("Failed decoding row for partition " + source.getPartitionId()
+                                        EXPORTLOG.warn("Failed decoding block for partition " + source.getPartitionId()
                                                 + ". " + ioe.getMessage());
                                         cont.discard();
                                         cont = null;
-                                        break;
+                                        batch = null;
+                                    }
+                                    if (batch != null && batch.getRowCount() > 0) {
+                                        edb.onBlockStart(batch.getSchema());
+                                        edb.processBatch(batch);
+                                        if (committedTxnId == 0) {
+                                            committedTxnId = extractCommittedTxnId(batch, cont.getCommittedSeqNo());
+                                        }
+                                        edb.onBlockCompletion(batch.getSchema());
                                     }
-                                    if (firstRowOfBlock) {
-                                        edb.onBlockStart(row);
-                                        firstRowOfBlock = false;
+                                } else {
+                                    while (buf.hasRemaining() && !m_shutdown) {
+                                        int length = buf.getInt();
+                                        byte[] rowdata = new byte[length];
+                                        buf.get(rowdata, 0, length);
+
+                                        try {
+                                            cont.updateStartTime(System.currentTimeMillis());
+                                            updateSchema(edb, cont);
+                                            row = ExportRow.decodeRow(edb.getExportRowSchema(), source.getPartitionId(),
+                                                    rowdata);
+                                        } catch (IOException ioe) {
+                                            EXPORTLOG.warn("Failed decoding row for partition " + source.getPartitionId()
+                                                    + ". " + ioe.getMessage());
+                                            cont.discard();
+                                            cont = null;
+                                            break;
+                                        }
+                                        if (firstRowOfBlock) {
+                                            edb.onBlockStart(row);
+                                            firstRowOfBlock = false;
+                                        }
+                                        edb.processRow(row);
+                                        if (committedTxnId == 0) {
+                                            committedTxnId = extractCommittedTxnId(row, cont.getCommittedSeqNo());
+                                        }
                                     }
-                                    edb.processRow(row);
-                                    if (committedTxnId == 0) {
-                                        committedTxnId = extractCommittedTxnId(row, cont.getCommittedSeqNo());
+                                    if (row != null) {
+                                        edb.onBlockCompletion(row);
                                     }
                                 }
-                                if (row != null) {
-                                    edb.onBlockCompletion(row);
-                                }
                                 if (EXPORTLOG.isDebugEnabled()) {
                                     long elapsedMs = TimeUnit.MILLISECONDS.convert(
                                             System.nanoTime() - start, TimeUnit.NANOSECONDS);
@@ -472,6 +487,18 @@ public class GuestProcessor implements ExportDataProcessor {
         }, edb.getExecutor());
     }
 
+    private static void updateSchema(ExportDecoderBase edb, AckingContainer cont) {
+        ExportRow schema = edb.getExportRowSchema();
+        if (schema == null || schema.generation != cont.getSchema().generation) {
+            // Note {@code ExportRowSchema} is a special {@code ExportRow}
+            ExportRowSchema newSchema = cont.getSchema();
+            if (EXPORTLOG.isDebugEnabled()) {
+                EXPORTLOG.debug("Set schema to: " + newSchema);
+            }
+            edb.setExportRowSchema(newSchema);
+        }
+    }
+
     /**
      * If the row is the last committed row, return the SpHandle, otherwise return 0
      *
@@ -496,6 +523,25 @@ public class GuestProcessor implements ExportDataProcessor {
         return ret;
     }
 
+    /**
+     * If the batch contains the last committed row, return its SpHandle, otherwise return 0
+     *
+     * @param batch the export rows of a block
+     * @param committedSeqNo the sequence number of the last committed row
+     * @return
+     */
+    private long extractCommittedTxnId(ExportRowBatch batch, long committedSeqNo) {
+        if (committedSeqNo == ExportDataSource.NULL_COMMITTED_SEQNO) {
+            return 0;
+        }
+        for (int i = 0; i < batch.getRowCount(); ++i) {
+            if (batch.getLong(i, 2) == committedSeqNo) {
+                return batch.getLong(i, 0);
+            }
+        }
+        return 0;
+    }
+
     @Override
     public void shutdown() {
         synchronized (this) {
@@ -64,6 +64,8 @@ public abstract class ExportDecoderBase {
 
     //Used by new style connector to pickup schema information from previous record.
     ExportRowSchema m_rowSchema;
+    //Reused from block to block by decoders which process whole batches
+    private ExportRowBatch m_rowBatch;
     public ExportDecoderBase(AdvertisedDataSource ads) {
         m_source = ads;
         m_startTS = System.currentTimeMillis();
@@ -113,6 +115,31 @@ public abstract class ExportDecoderBase {
         throw new UnsupportedOperationException("processRow must be implemented.");
     }
 
+    /**
+     * Whether this decoder processes whole blocks through {@code processBatch()}
+     * instead of one row at a time through {@code processRow()}. By default it does not.
+     *
+     * @return true if {@code processBatch()} is implemented
+     */
+    public boolean supportsBatchProcessing() {
+        return false;
+    }
+
+    /**
+     * Process all the rows of a block of the Export stream. Overridden by subclasses
+     * returning true from {@code supportsBatchProcessing()}.
+     * <p>
+     * The batch is only valid for the duration of the call. For a batch,
+     * {@code onBlockStart()} and {@code onBlockCompletion()} receive the schema
+     * of the block instead of its first and last rows.
+     *
+     * @param batch columnar view of the rows of the block
+     * @throws org.voltdb.exportclient.ExportDecoderBase.RestartBlockException
+     */
+    public void processBatch(ExportRowBatch batch) throws RestartBlockException {
+        throw new UnsupportedOperationException("processBatch must be implemented.");
+    }
+
     abstract public void sourceNoLongerAdvertised(AdvertisedDataSource source);
 
     /**
@@ -148,4 +175,11 @@ public abstract class ExportDecoderBase {
     public ExportRowSchema getExportRowSchema() {
         return m_rowSchema;
     }
+
+    public ExportRowBatch getRowBatch() {
+        if (m_rowBatch == null) {
+            m_rowBatch = new ExportRowBatch();
+        }
+        return m_rowBatch;
+    }
 }
@@ -0,0 +1,337 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.voltdb.VoltType;
+import org.voltdb.compiler.DDLCompiler;
+import org.voltdb.exportclient.ExportRow.ROW_OPERATION;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+
+/**
+ * A columnar view over all the rows of an export block.
+ * <p>
+ * {@link #reset} scans the block once, recording where each column value of each row
+ * starts, and the accessors then read the values in place from the block buffer. Numeric
+ * and timestamp columns are read as primitives, so a decoder which only needs those does
+ * not allocate anything per row. The other accessors return the same objects
+ * {@link ExportRow#decodeRow} would.
+ * <p>
+ * An instance is meant to be reused by one decoder from block to block, and is only valid
+ * until the next call to {@link #reset}. It is not thread safe.
+ */
+public class ExportRowBatch {
+    private static final int NULL_OFFSET = -1;
+
+    private ExportRow m_schema;
+    private VoltType[] m_types = new VoltType[0];
+    private int m_partitionId;
+    private ByteBuffer m_buf;
+    private int m_rowCount;
+    private int m_columnCount;
+    // Absolute buffer offset of each column value, row major, or NULL_OFFSET for nulls
+    private int[] m_offsets = new int[0];
+    private int[] m_partitionColumns = new int[0];
+
+    /**
+     * Point this batch at the rows of a block.
+     *
+     * @param schema the schema of the rows in the block
+     * @param partitionId partition of the block
+     * @param block buffer holding length prefixed rows from its position to its limit.
+     *        It is read through a view, so its position is left unchanged.
+     * @throws IOException if a row does not match the schema
+     */
+    public void reset(ExportRow schema, int partitionId, ByteBuffer block) throws IOException {
+        if (schema == null) {
+            throw new IOException("Export block with no schema found without prior block with schema.");
+        }
+        if (m_schema != schema) {
+            m_schema = schema;
+            m_types = schema.types.toArray(new VoltType[schema.types.size()]);
+        }
+        m_partitionId = partitionId;
+        m_columnCount = m_types.length;
+        m_rowCount = 0;
+        m_buf = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        final int nullArrayLength = ((m_columnCount + 7) & -8) >> 3;
+        int position = m_buf.position();
+        final int limit = m_buf.limit();
+        while (position < limit) {
+            final int rowLength = m_buf.getInt(position);
+            final int rowStart = position + Integer.BYTES;
+            final int partitionColIndex = m_buf.getInt(rowStart);
+            final int columnCount = m_buf.getInt(rowStart + Integer.BYTES);
+            assert(columnCount <= DDLCompiler.MAX_COLUMNS);
+            if (columnCount != m_columnCount) {
+                throw new IOException(
+                        String.format("Read %d columns from row but expected %d columns: %s", columnCount,
+                                m_columnCount, m_schema));
+            }
+            ensureRowCapacity(m_rowCount + 1);
+            m_partitionColumns[m_rowCount] = partitionColIndex;
+
+            final int nullArrayStart = rowStart + 2 * Integer.BYTES;
+            int offset = nullArrayStart + nullArrayLength;
+            final int base = m_rowCount * m_columnCount;
+            for (int i = 0; i < m_columnCount; ++i) {
+                byte flags = m_buf.get(nullArrayStart + (i >> 3));
+                if ((flags & (0x80 >>> (i & 7))) != 0) {
+                    m_offsets[base + i] = NULL_OFFSET;
+                } else {
+                    m_offsets[base + i] = offset;
+                    offset += valueLength(m_types[i], offset);
+                }
+            }
+            position = rowStart + rowLength;
+            ++m_rowCount;
+        }
+    }
+
+    private int valueLength(VoltType type, int offset) throws IOException {
+        switch (type) {
+        case TINYINT:
+            return Byte.BYTES;
+        case SMALLINT:
+            return Short.BYTES;
+        case INTEGER:
+            return Integer.BYTES;
+        case BIGINT:
+        case FLOAT:
+        case TIMESTAMP:
+            return Long.BYTES;
+        case STRING:
+        case VARBINARY:
+        case GEOGRAPHY:
+            return Integer.BYTES + m_buf.getInt(offset);
+        case DECIMAL:
+            // scale, precision byte count, then the unscaled value
+            return 2 + m_buf.get(offset + 1);
+        case GEOGRAPHY_POINT:
+            return 2 * Double.BYTES;
+        default:
+            throw new IOException("Invalid column type: " + type);
+        }
+    }
+
+    private void ensureRowCapacity(int rows) {
+        if (m_partitionColumns.length < rows) {
+            int capacity = Math.max(rows, m_partitionColumns.length * 2);
+            m_partitionColumns = Arrays.copyOf(m_partitionColumns, capacity);
+        }
+        if (m_offsets.length < rows * m_columnCount) {
+            m_offsets = Arrays.copyOf(m_offsets, m_partitionColumns.length * m_columnCount);
+        }
+    }
+
+    private int offset(int row, int column) {
+        assert(row >= 0 && row < m_rowCount);
+        return m_offsets[row * m_columnCount + column];
+    }
+
+    private int valueOffset(int row, int column) {
+        int offset = offset(row, column);
+        if (offset == NULL_OFFSET) {
+            throw new IllegalStateException("Column " + m_schema.names.get(column) + " of row " + row + " is null");
+        }
+        return offset;
+    }
+
+    /**
+     * @return the schema the rows were decoded with, which is also what
+     *         {@code onBlockStart} and {@code onBlockCompletion} receive for a batch
+     */
+    public ExportRow getSchema() {
+        return m_schema;
+    }
+
+    public int getPartitionId() {
+        return m_partitionId;
+    }
+
+    public int getRowCount() {
+        return m_rowCount;
+    }
+
+    public int getColumnCount() {
+        return m_columnCount;
+    }
+
+    public VoltType getColumnType(int column) {
+        return m_types[column];
+    }
+
+    public boolean isNull(int row, int column) {
+        return offset(row, column) == NULL_OFFSET;
+    }
+
+    /**
+     * Read a TINYINT, SMALLINT, INTEGER, BIGINT or TIMESTAMP column, the latter in microseconds.
+     * The column must not be null.
+     */
+    public long getLong(int row, int column) {
+        final int offset = valueOffset(row, column);
+        switch (m_types[column]) {
+        case TINYINT:
+            return m_buf.get(offset);
+        case SMALLINT:
+            return m_buf.getShort(offset);
+        case INTEGER:
+            return m_buf.getInt(offset);
+        case BIGINT:
+        case TIMESTAMP:
+            return m_buf.getLong(offset);
+        default:
+            throw new IllegalArgumentException("Column " + m_schema.names.get(column) + " of type "
+                    + m_types[column] + " is not an integer column");
+        }
+    }
+
+    /**
+     * Read a FLOAT column, which must not be null.
+     */
+    public double getDouble(int row, int column) {
+        if (m_types[column] != VoltType.FLOAT) {
+            throw new IllegalArgumentException("Column " + m_schema.names.get(column) + " of type "
+                    + m_types[column] + " is not a FLOAT column");
+        }
+        return m_buf.getDouble(valueOffset(row, column));
+    }
+
+    /**
+     * @return the operation which exported the row
+     */
+    public ROW_OPERATION getOperation(int row) {
+        return ROW_OPERATION.values()[(byte) getLong(row, ExportRow.INTERNAL_OPERATION_COLUMN)];
+    }
+
+    /**
+     * @return the partition column of the row, or -1 if it has none
+     */
+    public int getPartitionColumnIndex(int row) {
+        assert(row >= 0 && row < m_rowCount);
+        return m_partitionColumns[row];
+    }
+
+    /**
+     * @return the value of the partition column, or the partition id when there is no
+     *         partition column or its value is null, like {@link ExportRow#partitionValue}
+     */
+    public Object getPartitionValue(int row) {
+        int column = getPartitionColumnIndex(row);
+        Object value = null;
+        if (column >= 0 && column < m_columnCount) {
+            value = getValue(row, column);
+        }
+        return value == null ? m_partitionId : value;
+    }
+
+    public String getString(int row, int column) {
+        return isNull(row, column) ? null : ExportRow.decodeString(positionAt(row, column));
+    }
+
+    public byte[] getBytes(int row, int column) {
+        return isNull(row, column) ? null : (byte[]) ExportRow.decodeVarbinary(positionAt(row, column));
+    }
+
+    public BigDecimal getDecimal(int row, int column) {
+        return isNull(row, column) ? null : ExportRow.decodeDecimal(positionAt(row, column));
+    }
+
+    public GeographyPointValue getGeographyPoint(int row, int column) {
+        return isNull(row, column) ? null : ExportRow.decodeGeographyPoint(positionAt(row, column));
+    }
+
+    public GeographyValue getGeography(int row, int column) {
+        return isNull(row, column) ? null : ExportRow.decodeGeography(positionAt(row, column));
+    }
+
+    private ByteBuffer positionAt(int row, int column) {
+        m_buf.position(valueOffset(row, column));
+        return m_buf;
+    }
+
+    /**
+     * Read any column as the object {@link ExportRow#decodeRow} would have produced for it.
+     */
+    public Object getValue(int row, int column) {
+        if (isNull(row, column)) {
+            return null;
+        }
+        switch (m_types[column]) {
+        case TINYINT:
+            return (byte) getLong(row, column);
+        case SMALLINT:
+            return (short) getLong(row, column);
+        case INTEGER:
+            return (int) getLong(row, column);
+        case BIGINT:
+            return getLong(row, column);
+        case FLOAT:
+            return getDouble(row, column);
+        case TIMESTAMP:
+            return new TimestampType(getLong(row, column));
+        case STRING:
+            return getString(row, column);
+        case VARBINARY:
+            return getBytes(row, column);
+        case DECIMAL:
+            return getDecimal(row, column);
+        case GEOGRAPHY_POINT:
+            return getGeographyPoint(row, column);
+        case GEOGRAPHY:
+            return getGeography(row, column);
+        default:
+            throw new IllegalArgumentException("Invalid column type: " + m_types[column]);
+        }
+    }
+
+    /**
+     * Read all the columns of a row as objects.
+     *
+     * @param row the row to read
+     * @param to array to reuse, if it is large enough
+     * @return the values of the row
+     */
+    public Object[] getValues(int row, Object[] to) {
+        if (to == null || to.length < m_columnCount) {
+            to = new Object[m_columnCount];
+        }
+        for (int i = 0; i < m_columnCount; ++i) {
+            to[i] = getValue(row, i);
+        }
+        return to;
+    }
+
+    /**
+     * Materialize a row, for code which still works with {@link ExportRow}s.
+     */
+    public ExportRow toExportRow(int row) {
+        Object[] values = getValues(row, null);
+        return new ExportRow(m_schema.tableName, m_schema.names, m_schema.types, m_schema.lengths, values,
+                getPartitionValue(row), getPartitionColumnIndex(row), m_partitionId, m_schema.generation);
+    }
+}
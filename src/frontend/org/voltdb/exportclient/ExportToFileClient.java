@@ -719,6 +719,24 @@ public class ExportToFileClient extends ExportClientBase {
             return true;
         }
 
+        @Override
+        public boolean supportsBatchProcessing() {
+            return true;
+        }
+
+        @Override
+        public void processBatch(ExportRowBatch batch) throws RestartBlockException {
+            // reader lock is acquired in on-block start
+            for (int row = 0; row < batch.getRowCount(); ++row) {
+                try {
+                    m_csvWriterDecoder.decode(batch, row, m_writer);
+                }
+                catch (IOException io) {
+                    rateLimitedLogError(m_logger, "failed to to process export row %s", Throwables.getStackTraceAsString(io));
+                }
+            }
+        }
+
         /**
          * Release the current batch folder.
          * @throws RestartBlockException
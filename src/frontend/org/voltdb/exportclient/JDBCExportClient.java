@@ -27,6 +27,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -175,6 +176,10 @@ public class JDBCExportClient extends ExportClientBase {
         private final RefCountedDS m_ds;
 
         private final List<BatchRow> m_dataRows =  new ArrayList<>();
+        // Rows of the current export batch added to the statement batch, when processing batches
+        private ExportRowBatch m_batch;
+        private int[] m_batchedRows = new int[0];
+        private int m_batchedRowCount = 0;
         private class BatchRow {
             private final ExportRow m_row;
             public BatchRow(ExportRow r) {
@@ -591,7 +596,7 @@ public class JDBCExportClient extends ExportClientBase {
 
         @Override
         public void onBlockStart(ExportRow row) throws RestartBlockException {
-            m_dataRows.clear();
+            clearBatchedRows();
             if (m_conn == null) {
                 if (pstmt != null) {
                     try {
@@ -631,18 +636,29 @@ public class JDBCExportClient extends ExportClientBase {
                 rateLimitedLogError(m_logger, "Exception while executing and committing batch %s", Throwables.getStackTraceAsString(e));
                 throw new RestartBlockException(true);
             } finally{
-                m_dataRows.clear();
+                clearBatchedRows();
                 closeConnection();
             }
         }
 
+        private void clearBatchedRows() {
+            m_dataRows.clear();
+            m_batch = null;
+            m_batchedRowCount = 0;
+        }
+
+        // The rows added to the statement batch, materializing them if they came from an export batch
+        private ExportRow getBatchedRow(int i) {
+            return m_batch == null ? m_dataRows.get(i).m_row : m_batch.toExportRow(m_batchedRows[i]);
+        }
+
         private void logBatchErrors(BatchUpdateException e){
 
            int [] results = e.getUpdateCounts();
            StringBuilder builder = new StringBuilder();
            for(int i = 0; i < results.length; i++){
                 if(results[i] == Statement.EXECUTE_FAILED){
-                    ExportRow rowi = m_dataRows.get(i).m_row;
+                    ExportRow rowi = getBatchedRow(i);
                     Object row[] = rowi.values;
                     for (int j = firstField; j < rowi.types.size(); j++) {
                         builder.append((j == firstField) ? "":", ");
@@ -682,11 +698,10 @@ public class JDBCExportClient extends ExportClientBase {
             }
         }
 
-        @Override
-        public boolean processRow(ExportRow rowinst) throws RestartBlockException {
+        private void initializeStatement(ExportRow schema) throws RestartBlockException {
             if (m_preparedStmtStr == null) {
                 try {
-                    initialize(rowinst.generation, rowinst.tableName, rowinst.names, rowinst.types, rowinst.lengths);
+                    initialize(schema.generation, schema.tableName, schema.names, schema.types, schema.lengths);
                 } catch (Exception e) {
                     m_logger.warn("JDBC export unable to initialize jdbc target database", e);
                     closeConnection();
@@ -696,14 +711,20 @@ public class JDBCExportClient extends ExportClientBase {
             if (m_preparedStmtStr == null) {
                 throw new RestartBlockException(true);
             }
+        }
 
-            if (rowinst.getOperation() == ROW_OPERATION.UPDATE_NEW && !m_supportsUpsert) {
+        private boolean skipOperation(ROW_OPERATION operation, String tableName) {
+            if (operation == ROW_OPERATION.UPDATE_NEW && !m_supportsUpsert) {
                 if (!m_warnedOfUnsupportedOperation) {
                     rateLimitedLogWarn(m_logger, "JDBC export skipped past a row with an operation type " +
-                            rowinst.getOperation().name() + " from stream " + rowinst.tableName);
+                            operation.name() + " from stream " + tableName);
                 }
                 return true;
             }
+            return false;
+        }
+
+        private void prepareStatement() throws RestartBlockException {
             if (pstmt == null) {
                 if (m_disableAutoCommits) {
                     try {
@@ -734,6 +755,15 @@ public class JDBCExportClient extends ExportClientBase {
                     throw new RestartBlockException(true);
                 }
             }
+        }
+
+        @Override
+        public boolean processRow(ExportRow rowinst) throws RestartBlockException {
+            initializeStatement(rowinst);
+            if (skipOperation(rowinst.getOperation(), rowinst.tableName)) {
+                return true;
+            }
+            prepareStatement();
 
             Object[] row = rowinst.values;
             List<VoltType> columnTypes = rowinst.types;
@@ -796,6 +826,84 @@ public class JDBCExportClient extends ExportClientBase {
             return true;
         }
 
+        @Override
+        public boolean supportsBatchProcessing() {
+            return true;
+        }
+
+        @Override
+        public void processBatch(ExportRowBatch batch) throws RestartBlockException {
+            ExportRow schema = batch.getSchema();
+            initializeStatement(schema);
+            m_batch = batch;
+            List<VoltType> columnTypes = schema.types;
+            boolean restartBlock = false;
+            for (int row = 0; row < batch.getRowCount() && !restartBlock; ++row) {
+                if (skipOperation(batch.getOperation(row), schema.tableName)) {
+                    continue;
+                }
+                prepareStatement();
+                try {
+                    for (int i = firstField; i < columnTypes.size(); i++) {
+                        final int pstmtIndex = i + 1 - firstField;
+                        final VoltType columnType = columnTypes.get(i);
+                        if (batch.isNull(row, i)) {
+                            pstmt.setNull(pstmtIndex, Types.NULL);
+                        } else if (columnType == VoltType.DECIMAL) {
+                            pstmt.setBigDecimal(pstmtIndex, batch.getDecimal(row, i));
+                        } else if (columnType == VoltType.TINYINT) {
+                            pstmt.setByte(pstmtIndex, (byte) batch.getLong(row, i));
+                        } else if (columnType == VoltType.SMALLINT) {
+                            pstmt.setShort(pstmtIndex, (short) batch.getLong(row, i));
+                        } else if (columnType == VoltType.INTEGER) {
+                            pstmt.setInt(pstmtIndex, (int) batch.getLong(row, i));
+                        } else if (columnType == VoltType.BIGINT) {
+                            pstmt.setLong(pstmtIndex, batch.getLong(row, i));
+                        } else if (columnType == VoltType.FLOAT) {
+                            pstmt.setDouble(pstmtIndex, batch.getDouble(row, i));
+                        } else if (columnType == VoltType.STRING) {
+                            pstmt.setString(pstmtIndex, batch.getString(row, i));
+                        } else if (columnType == VoltType.TIMESTAMP) {
+                            pstmt.setTimestamp(pstmtIndex, new TimestampType(batch.getLong(row, i)).asJavaTimestamp());
+                        } else if (columnType == VoltType.GEOGRAPHY_POINT) {
+                            pstmt.setString(pstmtIndex, batch.getGeographyPoint(row, i).toWKT());
+                        } else if (columnType == VoltType.GEOGRAPHY) {
+                            pstmt.setString(pstmtIndex, batch.getGeography(row, i).toWKT());
+                        } else if (columnType == VoltType.VARBINARY) {
+                            pstmt.setBytes(pstmtIndex, batch.getBytes(row, i));
+                        }
+                    }
+
+                    try {
+                        if (m_supportsBatchUpdates) {
+                            pstmt.addBatch();
+                            addBatchedRow(row);
+                        } else {
+                            pstmt.executeUpdate();
+                        }
+                    } catch (SQLException e) {
+                        rateLimitedLogError(m_logger, "executeUpdate() failed in processBatch() for table %s %s", schema.tableName, Throwables.getStackTraceAsString(e));
+                        restartBlock = true;
+                    }
+                } catch (Exception e) {
+                    rateLimitedLogError(m_logger, "processBatch() failed in table %s, %s", schema.tableName, Throwables.getStackTraceAsString(e));
+                    restartBlock = true;
+                }
+            }
+
+            if (restartBlock) {
+                closeConnection();
+                throw new RestartBlockException(true);
+            }
+        }
+
+        private void addBatchedRow(int row) {
+            if (m_batchedRowCount == m_batchedRows.length) {
+                m_batchedRows = Arrays.copyOf(m_batchedRows, Math.max(16, m_batchedRowCount * 2));
+            }
+            m_batchedRows[m_batchedRowCount++] = row;
+        }
+
         /*
          * If there is any kind of exception from the DB call this to get a clean slate
          * and retry will recreate the connection and prepared statement.
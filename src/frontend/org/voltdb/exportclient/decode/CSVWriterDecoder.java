@@ -21,12 +21,15 @@ import java.io.IOException;
 import java.util.List;
 
 import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRowBatch;
 
 import au.com.bytecode.opencsv_voltpatches.CSVWriter;
 
 public class CSVWriterDecoder extends RowDecoder<CSVWriter, IOException> {
 
     protected final StringArrayDecoder m_stringArrayDecoder;
+    // Reused for the rows of export batches
+    private String[] m_fields;
 
     protected CSVWriterDecoder(StringArrayDecoder stringArrayDecoder) {
         super(stringArrayDecoder);
@@ -39,6 +42,15 @@ public class CSVWriterDecoder extends RowDecoder<CSVWriter, IOException> {
         return to;
     }
 
+    /**
+     * Write one row of an export batch
+     */
+    public CSVWriter decode(ExportRowBatch batch, int row, CSVWriter to) throws IOException {
+        m_fields = m_stringArrayDecoder.decode(batch, row, m_fields);
+        to.writeNext(m_fields);
+        return to;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
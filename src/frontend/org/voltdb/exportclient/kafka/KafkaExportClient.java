@@ -51,6 +51,7 @@ import org.voltdb.exportclient.ExportClientLogger;
 import org.voltdb.exportclient.ExportDecoderBase;
 import org.voltdb.exportclient.ExportDecoderBase.BinaryEncoding;
 import org.voltdb.exportclient.ExportRow;
+import org.voltdb.exportclient.ExportRowBatch;
 import org.voltdb.exportclient.decode.AvroDecoder;
 import org.voltdb.exportclient.decode.CSVStringDecoder;
 import org.voltdb.serdes.EncodeFormat;
@@ -317,6 +318,18 @@ public class KafkaExportClient extends ExportClientBase {
         CSVStringDecoder m_csvDecoder;
         final List<Future<RecordMetadata>> m_futures = new ArrayList<>();
         private final AtomicBoolean m_failure = new AtomicBoolean(false);
+        private final Callback m_sendCallback = new Callback() {
+            @Override
+            public void onCompletion(RecordMetadata metadata, Exception e) {
+                if (e != null){
+                    LOG.warn("Failed to send data. Verify if the kafka server matches bootstrap.servers %s", e,
+                            m_decoderProducerConfig.getProperty(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG));
+                    m_failure.compareAndSet(false, true);
+                }
+            }
+        };
+        // Reused for the rows of export batches encoded as Avro
+        private Object[] m_values;
         final ListeningExecutorService m_es;
         private volatile boolean m_primed = false;
         private volatile boolean m_paused = false;;
@@ -441,34 +454,54 @@ public class KafkaExportClient extends ExportClientBase {
             //Use partition value by default if its null use partition id.
             //partition value will be null only if partition column is overridden table.column and is nullable
             String pval = (rd.partitionValue == null) ? String.valueOf(rd.partitionId) : rd.partitionValue.toString();
-            ProducerRecord<String, Object> krec;
+            Object value;
             if (m_encodeFormat == EncodeFormat.AVRO) {
                 AvroDecoder decoder = m_tableAvroDecoderMap.computeIfAbsent(rd.tableName, k -> new AvroDecoder.Builder().build());
-                GenericRecord avroRecord = decoder.decode(rd.generation, rd.tableName, rd.types, rd.names, null, rd.values);
-                krec = new ProducerRecord<>(m_topic, pval, avroRecord);
+                value = decoder.decode(rd.generation, rd.tableName, rd.types, rd.names, null, rd.values);
             } else {
-                String decoded = m_csvDecoder.decode(rd.generation, rd.tableName, rd.types, rd.names, null, rd.values);
-                krec = new ProducerRecord<>(m_topic, pval, decoded);
+                value = m_csvDecoder.decode(rd.generation, rd.tableName, rd.types, rd.names, null, rd.values);
+            }
+            send(pval, value);
+            return true;
+        }
+
+        @Override
+        public boolean supportsBatchProcessing() {
+            return true;
+        }
+
+        @Override
+        public void processBatch(ExportRowBatch batch) throws RestartBlockException {
+            checkOnFirstRow();
+            ExportRow schema = batch.getSchema();
+            AvroDecoder avroDecoder = null;
+            if (m_encodeFormat == EncodeFormat.AVRO) {
+                avroDecoder = m_tableAvroDecoderMap.computeIfAbsent(schema.tableName, k -> new AvroDecoder.Builder().build());
             }
+            for (int row = 0; row < batch.getRowCount(); ++row) {
+                String pval = String.valueOf(batch.getPartitionValue(row));
+                Object value;
+                if (avroDecoder != null) {
+                    // Avro records are built from objects, so materialize the values
+                    m_values = batch.getValues(row, m_values);
+                    value = avroDecoder.decode(schema.generation, schema.tableName, schema.types, schema.names, null, m_values);
+                } else {
+                    value = m_csvDecoder.decode(batch, row);
+                }
+                send(pval, value);
+            }
+        }
 
+        private void send(String pval, Object value) throws RestartBlockException {
+            ProducerRecord<String, Object> krec = new ProducerRecord<>(m_topic, pval, value);
             try {
-                m_futures.add(m_producer.send(krec, new Callback() {
-                    @Override
-                    public void onCompletion(RecordMetadata metadata, Exception e) {
-                        if (e != null){
-                            LOG.warn("Failed to send data. Verify if the kafka server matches bootstrap.servers %s", e,
-                                    m_decoderProducerConfig.getProperty(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG));
-                            m_failure.compareAndSet(false, true);
-                        }
-                    }
-                }));
+                m_futures.add(m_producer.send(krec, m_sendCallback));
             } catch (KafkaException e) {
                 LOG.warn("Unable to send %s", e, krec);
                 throw new RestartBlockException("Unable to send message", e, true);
             } catch(IllegalStateException e) { // thrown if a catalog update closes the producer through pause()
                 throw new RestartBlockException("IllegalStateException, possibly because kafka producer was closed", e, false);
             }
-            return true;
         }
 
         @Override
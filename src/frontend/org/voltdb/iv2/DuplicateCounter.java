@@ -18,14 +18,13 @@
 package org.voltdb.iv2;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.messaging.TransactionInfoBaseMessage;
 import org.voltcore.messaging.VoltMessage;
 import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.LongObjectHashMap;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.catalog.Procedure;
@@ -37,7 +36,6 @@ import org.voltdb.messaging.FragmentTaskMessage;
 import org.voltdb.messaging.InitiateResponseMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
 
-import com.google_voltpatches.common.collect.Maps;
 import com.google_voltpatches.common.collect.Sets;
 import org.voltdb.utils.CatalogUtil;
 
@@ -88,7 +86,7 @@ public class DuplicateCounter
     final long m_txnId;
     final long m_leaderHSID;
     final TransactionInfoBaseMessage m_openMessage;
-    Map<Long, ResponseResult> m_responses = Maps.newTreeMap();
+    final LongObjectHashMap<ResponseResult> m_responses = new LongObjectHashMap<>();
 
     // Flag indicating that the the hashes from replicas match with the hash from partition master
     private boolean m_hashMatched = true;
@@ -328,26 +326,27 @@ public class DuplicateCounter
         m_responseHashes = leaderResponse.hashes;
 
         boolean misMatchLogged = false;
-        for (Iterator<Map.Entry<Long, ResponseResult>> it = m_responses.entrySet().iterator(); it.hasNext();) {
-            Map.Entry<Long, ResponseResult> entry = it.next();
+        LongObjectHashMap<ResponseResult>.Cursor it = m_responses.cursor();
+        while (it.advance()) {
+            final long hsId = it.key();
 
             // The replica is not present any more
-            if (!m_replicas.contains(entry.getKey())) {
+            if (!m_replicas.contains(hsId)) {
                 it.remove();
                 continue;
             }
 
-            ResponseResult res = entry.getValue();
+            ResponseResult res = it.value();
             if (ClientResponseImpl.isTransactionallySuccessful(m_status) != ClientResponseImpl.isTransactionallySuccessful(res.status)) {
                 if (!misMatchLogged) {
                     tmLog.error(HASHMISMATCH_MSG);
                     tmLog.error(MISMATCH_RESPONSE_MSG);
                     tmLog.error("Procedure status from leader: " + (m_statusString == null ? "Success" : m_statusString) + " ,while from replica: " + (res.statusString == null ? "Success" : res.statusString) );
-                    logRelevantMismatchInformation(res.hashes, null, -1, entry.getKey());
+                    logRelevantMismatchInformation(res.hashes, null, -1, hsId);
                     misMatchLogged = true;
                 }
                 m_hashMatched = false;
-                m_misMatchedReplicas.add(entry.getKey());
+                m_misMatchedReplicas.add(hsId);
                 continue;
             }
             if (!ClientResponseImpl.isTransactionallySuccessful(m_status)) {
@@ -361,11 +360,11 @@ public class DuplicateCounter
                 if (!misMatchLogged) {
                     tmLog.error(HASHMISMATCH_MSG);
                     tmLog.error(MISMATCH_HASH_MSG);
-                    logRelevantMismatchInformation(res.hashes, null, pos, entry.getKey());
+                    logRelevantMismatchInformation(res.hashes, null, pos, hsId);
                     misMatchLogged = true;
                 }
                 m_hashMatched = false;
-                m_misMatchedReplicas.add(entry.getKey());
+                m_misMatchedReplicas.add(hsId);
             }
         }
     }
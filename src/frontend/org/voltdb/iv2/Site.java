@@ -20,6 +20,7 @@ package org.voltdb.iv2;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
@@ -52,6 +53,7 @@ import org.voltdb.MemoryStats;
 import org.voltdb.NonVoltDBBackend;
 import org.voltdb.ParameterSet;
 import org.voltdb.PartitionDRGateway;
+import org.voltdb.PlanFragmentCacheStats;
 import org.voltdb.PostGISBackend;
 import org.voltdb.PostgreSQLBackend;
 import org.voltdb.ProcedureRunner;
@@ -181,6 +183,8 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
 
     // Manages pending tasks.
     final SiteTaskerQueue m_pendingSiteTasks;
+    // Maximum number of ready tasks the site thread takes from m_pendingSiteTasks at once
+    private static final int TASK_BATCH_SIZE = Integer.getInteger("SITE_TASK_BATCH_SIZE", 32);
 
     private final TickProducer m_tickProducer;
 
@@ -199,6 +203,7 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
     // Stats
     final TableStats m_tableStats;
     final IndexStats m_indexStats;
+    final PlanFragmentCacheStats m_planFragmentCacheStats;
     final MemoryStats m_memStats;
 
     // Each execution site manages snapshot using a SnapshotSiteProcessor
@@ -730,12 +735,17 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             agent.registerStatsSource(StatsSelector.INDEX,
                                       m_siteId,
                                       m_indexStats);
+            m_planFragmentCacheStats = new PlanFragmentCacheStats(m_siteId);
+            agent.registerStatsSource(StatsSelector.PLANFRAGMENTCACHE,
+                                      m_siteId,
+                                      m_planFragmentCacheStats);
             m_memStats = memStats;
             m_tickProducer = new TickProducer(pendingSiteTasks, siteId);
         } else {
             // MPI doesn't need to track these stats
             m_tableStats = null;
             m_indexStats = null;
+            m_planFragmentCacheStats = null;
             m_memStats = null;
             m_tickProducer = null;
         }
@@ -897,16 +907,26 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         m_startupConfig = null; // release the serializableCatalog.
         //Maintain a minimum ratio of task log (unrestricted) to live (restricted) transactions
         final MinimumRatioMaintainer mrm = new MinimumRatioMaintainer(m_taskLogReplayRatio);
+        final ArrayList<SiteTasker> taskBatch = new ArrayList<>(TASK_BATCH_SIZE);
         try {
             while (m_shouldContinue) {
                 if (m_runningState.isRunning()) {
-                    // Normal operation blocks the site thread on the sitetasker queue.
-                    SiteTasker task = m_pendingSiteTasks.take();
-                    if (task instanceof TransactionTask) {
-                        m_currentTxnId = ((TransactionTask)task).getTxnId();
-                        m_lastTxnTime = EstTime.currentTimeMillis();
+                    // Normal operation blocks the site thread on the sitetasker queue,
+                    // then runs every task that was ready at that point.
+                    m_pendingSiteTasks.takeBatch(taskBatch, TASK_BATCH_SIZE);
+                    for (int i = 0; i < taskBatch.size(); i++) {
+                        SiteTasker task = taskBatch.get(i);
+                        if (task instanceof TransactionTask) {
+                            m_currentTxnId = ((TransactionTask)task).getTxnId();
+                            m_lastTxnTime = EstTime.currentTimeMillis();
+                        }
+                        task.run(getSiteProcedureConnection());
+                        // Like tasks still in the queue, the rest of the batch is dropped on shutdown
+                        if (!m_shouldContinue || !m_runningState.isRunning()) {
+                            break;
+                        }
                     }
-                    task.run(getSiteProcedureConnection());
+                    taskBatch.clear();
                 } else if (m_runningState.isReplaying()) {
                     // Rejoin operation poll and try to do some catchup work. Tasks
                     // are responsible for logging any rejoin work they might have.
@@ -1491,6 +1511,20 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                 m_indexStats.resetStatsTable();
             }
 
+            // update plan fragment cache stats
+            final VoltTable[] s3 =
+                m_ee.getStats(StatsSelector.PLANFRAGMENTCACHE, new int[0], false, time);
+            if ((s3 != null) && (s3.length > 0)) {
+                if (s3[0].advanceRow()) {
+                    m_ee.setEECacheSize((int) s3[0].getLong("ENTRIES"));
+                }
+                s3[0].resetRowPosition();
+                m_planFragmentCacheStats.setStatsTable(s3[0]);
+            }
+            else {
+                m_planFragmentCacheStats.resetStatsTable();
+            }
+
             // update the rolled up memory statistics
             if (m_memStats != null) {
                 m_memStats.eeUpdateMemStats(m_siteId,
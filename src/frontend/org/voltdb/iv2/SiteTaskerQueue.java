@@ -17,8 +17,11 @@
 
 package org.voltdb.iv2;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.LinkedTransferQueue;
 
+import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.QueueDepthTracker;
 import org.voltdb.StarvationTracker;
@@ -26,6 +29,37 @@ import org.voltdb.StarvationTracker;
 /** SiteTaskerScheduler orders SiteTaskers for execution. */
 public class SiteTaskerQueue
 {
+    private static final VoltLogger hostLog = new VoltLogger("HOST");
+
+    /**
+     * What the site thread does while it waits for work in {@link #takeBatch(List, int)}, after
+     * spinning for {@link CoreUtils#QUEUE_SPIN_MICROSECONDS}.
+     */
+    public enum IdleStrategy {
+        /** Keep polling the queue, lowest latency but burns the core */
+        SPIN,
+        /** Poll the queue and yield the core in between */
+        YIELD,
+        /** Block until a task is offered */
+        PARK
+    }
+
+    public static final IdleStrategy IDLE_STRATEGY = idleStrategy(System.getProperty("SITE_TASK_IDLE_STRATEGY"));
+
+    /** Parse the idle strategy property, falling back to PARK rather than failing every site */
+    static IdleStrategy idleStrategy(String property) {
+        if (property == null) {
+            return IdleStrategy.PARK;
+        }
+        try {
+            return IdleStrategy.valueOf(property.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            hostLog.warn("Ignoring unknown SITE_TASK_IDLE_STRATEGY " + property + ", expected one of "
+                    + Arrays.toString(IdleStrategy.values()) + ". Using " + IdleStrategy.PARK + ".");
+            return IdleStrategy.PARK;
+        }
+    }
+
     private final LinkedTransferQueue<SiteTasker> m_tasks = new LinkedTransferQueue<SiteTasker>();
     private StarvationTracker m_starvationTracker;
     private QueueDepthTracker m_queueDepthTracker;
@@ -71,6 +105,48 @@ public class SiteTaskerQueue
         }
     }
 
+    /**
+     * Block until at least one task is available, then move up to maxTasks ready tasks into batch
+     * in queue order. The queue depth and starvation trackers are updated once for the whole batch.
+     *
+     * @param batch     an empty list to receive the tasks
+     * @param maxTasks  maximum number of tasks to take
+     */
+    public void takeBatch(List<SiteTasker> batch, int maxTasks) throws InterruptedException
+    {
+        assert batch.isEmpty();
+        if (m_tasks.drainTo(batch, maxTasks) == 0) {
+            m_starvationTracker.beginStarvation();
+            try {
+                batch.add(idleTake());
+            } finally {
+                m_starvationTracker.endStarvation();
+            }
+            m_tasks.drainTo(batch, maxTasks - 1);
+        }
+        m_queueDepthTracker.pollUpdate(batch);
+    }
+
+    private SiteTasker idleTake() throws InterruptedException
+    {
+        SiteTasker task;
+        switch (IDLE_STRATEGY) {
+        case SPIN:
+        case YIELD:
+            while ((task = m_tasks.poll()) == null) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (IDLE_STRATEGY == IdleStrategy.YIELD) {
+                    Thread.yield();
+                }
+            }
+            return task;
+        default:
+            return CoreUtils.queueSpinTake(m_tasks);
+        }
+    }
+
     // Non-blocking poll on the site tasker queue.
     public SiteTasker poll()
     {
@@ -162,8 +162,12 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
     public static final int ERRORCODE_PROGRESS_UPDATE = 111;
     public static final int ERRORCODE_DECODE_BASE64_AND_DECOMPRESS = 112;
 
-    /** For now sync this value with the value in the EE C++ code to get good stats. */
-    public static final int EE_PLAN_CACHE_SIZE = 1000;
+    /**
+     * Estimated memory, in bytes, that each site's EE may spend on keeping plan fragments built
+     * and ready to run. Set in megabytes with the EE_PLAN_CACHE_MEMORY_LIMIT_MB system property.
+     */
+    public static final long EE_PLAN_CACHE_MEMORY_LIMIT =
+            Long.getLong("EE_PLAN_CACHE_MEMORY_LIMIT_MB", 32) * 1024 * 1024;
 
     /** Partition ID */
     protected final int m_partitionId;
@@ -599,14 +603,21 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
     public byte[] planForFragmentId(long fragmentId) {
         // track cache misses
         m_cacheMisses++;
-        // estimate the cache size by the number of misses
-        if (m_eeCacheSize < EE_PLAN_CACHE_SIZE) {
-            m_eeCacheSize++;
-        }
+        // the EE caches the plan it builds, its evictions are picked up from its stats
+        m_eeCacheSize++;
         // get the plan for realz
         return ActivePlanRepository.planForFragmentId(fragmentId);
     }
 
+    /**
+     * Set the number of plan fragments cached by the EE, as it reports in its
+     * PLANFRAGMENTCACHE stats. The EE cache is bounded by memory rather than by a
+     * number of fragments, so misses alone can not tell how many it still holds.
+     */
+    public void setEECacheSize(int eeCacheSize) {
+        m_eeCacheSize = eeCacheSize;
+    }
+
     /*
      * Interface frontend invokes to communicate to CPP execution engine.
      */
@@ -1045,7 +1056,8 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
             int defaultDrBufferSize,
             long tempTableMemory,
             boolean createDrReplicatedStream,
-            int compactionThreshold);
+            int compactionThreshold,
+            long planCacheMemoryLimit);
 
     /**
      * Sets (or re-sets) all the shared direct byte buffers in the EE.
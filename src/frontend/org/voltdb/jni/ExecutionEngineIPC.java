@@ -27,6 +27,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
 import java.nio.channels.SocketChannel;
 import java.util.List;
 import java.util.logging.Level;
@@ -149,7 +150,8 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         , FetchTopicsGroups(37)
         , CommitTopicsGroupOffsets(38)
         , FetchTopicsGroupOffsets(39)
-        , DeleteExpiredTopicsOffsets(40);
+        , DeleteExpiredTopicsOffsets(40)
+        , AttachSharedMemory(41);
 
         Commands(final int id) {
             m_id = id;
@@ -168,6 +170,9 @@ public class ExecutionEngineIPC extends ExecutionEngine {
     private class Connection {
         private Socket m_socket = null;
         private SocketChannel m_socketChannel = null;
+        // Either the socket or, once attached, the shared memory channel
+        private ByteChannel m_channel = null;
+        private final ByteBuffer m_statusByte = ByteBuffer.allocate(1);
         Connection(BackendTarget target, int port) {
             boolean connected = false;
             int retries = 0;
@@ -179,6 +184,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
                     m_socketChannel.configureBlocking(true);
                     m_socket = m_socketChannel.socket();
                     m_socket.setTcpNoDelay(true);
+                    m_channel = m_socketChannel;
                     connected = true;
                 } catch (final Exception e) {
                     System.out.println(e.getMessage());
@@ -214,14 +220,63 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             if (m_socketChannel != null) {
                 try {
                     m_socketChannel.close();
+                    if (m_channel != m_socketChannel) {
+                        m_channel.close();
+                    }
                 } catch (final IOException e) {
                     throw new RuntimeException(e);
                 }
                 m_socketChannel = null;
                 m_socket = null;
+                m_channel = null;
+            }
+        }
+
+        /**
+         * Ask voltdbipc to move all further traffic to a pair of ring buffers in shared memory.
+         * The socket then only carries wakeups for a side blocked waiting on the other. If the
+         * EE can not map the file the connection keeps using the socket.
+         */
+        void attachSharedMemory(int capacity) throws IOException {
+            final SharedMemoryChannel channel = SharedMemoryChannel.create(m_socketChannel, capacity);
+            boolean attached = false;
+            try {
+                final byte path[] = channel.getPath().getBytes(Constants.UTF8ENCODING);
+                m_data.clear();
+                m_data.putInt(Commands.AttachSharedMemory.m_id);
+                m_data.putInt(path.length);
+                m_data.put(path);
+                m_data.flip();
+                write();
+                final int result = readStatusByte();
+                if (result == ExecutionEngine.ERRORCODE_SUCCESS) {
+                    m_channel = channel;
+                    attached = true;
+                    System.out.println("Attached IPC connection to shared memory " + channel.getPath());
+                } else {
+                    // skip the empty exception which goes with the error code
+                    readInt();
+                    System.out.println("IPC EE could not attach to shared memory, staying on the socket.");
+                }
+            } finally {
+                channel.unlink();
+                if (!attached) {
+                    channel.close();
+                }
             }
         }
 
+        /* Read the next byte as an unsigned value, or -1 at the end of the stream */
+        private int readUnsignedByte() throws IOException {
+            m_statusByte.clear();
+            while (m_statusByte.hasRemaining()) {
+                if (m_channel.read(m_statusByte) == -1) {
+                    return -1;
+                }
+            }
+            return m_statusByte.get(0) & 0xff;
+        }
+
         /** blocking write of all m_data to outputstream */
         void write() throws IOException {
             // write 4 byte length (which includes its own 4 bytes) in big-endian
@@ -237,7 +292,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             m_dataNetwork.limit(4 + amt);
             m_dataNetwork.rewind();
             while (m_dataNetwork.hasRemaining()) {
-                m_socketChannel.write(m_dataNetwork);
+                m_channel.write(m_dataNetwork);
             }
         }
 
@@ -317,7 +372,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         ByteBuffer getBytes(int size) throws IOException {
             ByteBuffer header = ByteBuffer.allocate(size);
             while (header.hasRemaining()) {
-                final int read = m_socket.getChannel().read(header);
+                final int read = m_channel.read(header);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -330,7 +385,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             int bufferSize = m_connection.readInt();
             final ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
             while (buffer.hasRemaining()) {
-                int read = m_socketChannel.read(buffer);
+                int read = m_channel.read(buffer);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -504,11 +559,11 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             int status = kErrorCode_RetrieveDependency;
 
             while (true) {
-                status = m_socket.getInputStream().read();
+                status = readUnsignedByte();
                 if (status == kErrorCode_RetrieveDependency) {
                     final ByteBuffer dependencyIdBuffer = ByteBuffer.allocate(4);
                     while (dependencyIdBuffer.hasRemaining()) {
-                        final int read = m_socketChannel.read(dependencyIdBuffer);
+                        final int read = m_channel.read(dependencyIdBuffer);
                         if (read == -1) {
                             throw new IOException("Unable to read enough bytes for dependencyId in order to " +
                             " satisfy IPC backend request for a dependency table");
@@ -577,7 +632,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
                 else if (status == kErrorCode_CrashVoltDB) {
                     ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
                     while (lengthBuffer.hasRemaining()) {
-                        final int read = m_socket.getChannel().read(lengthBuffer);
+                        final int read = m_channel.read(lengthBuffer);
                         if (read == -1) {
                             throw new EOFException();
                         }
@@ -585,7 +640,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
                     lengthBuffer.flip();
                     ByteBuffer messageBuffer = ByteBuffer.allocate(lengthBuffer.getInt());
                     while (messageBuffer.hasRemaining()) {
-                        final int read = m_socket.getChannel().read(messageBuffer);
+                        final int read = m_channel.read(messageBuffer);
                         if (read == -1) {
                             throw new EOFException();
                         }
@@ -654,7 +709,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
 
             //resultTablesLengthBytes.order(ByteOrder.LITTLE_ENDIAN);
             while (resultTablesLengthBytes.hasRemaining()) {
-                int read = m_socketChannel.read(resultTablesLengthBytes);
+                int read = m_channel.read(resultTablesLengthBytes);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -666,7 +721,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             // check the dirty-ness of the batch
             final ByteBuffer dirtyBytes = ByteBuffer.allocate(1);
             while (dirtyBytes.hasRemaining()) {
-                int read = m_socketChannel.read(dirtyBytes);
+                int read = m_channel.read(dirtyBytes);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -686,7 +741,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
                     .allocate(resultTablesLength);
             //resultTablesBuffer.order(ByteOrder.LITTLE_ENDIAN);
             while (resultTablesBuffer.hasRemaining()) {
-                int read = m_socketChannel.read(resultTablesBuffer);
+                int read = m_channel.read(resultTablesBuffer);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -705,7 +760,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             // check the dirty-ness of the batch
             final ByteBuffer dirtyBytes = ByteBuffer.allocate(1);
             while (dirtyBytes.hasRemaining()) {
-                int read = m_socketChannel.read(dirtyBytes);
+                int read = m_channel.read(dirtyBytes);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -717,7 +772,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             final ByteBuffer drBufferSizeBytes = ByteBuffer.allocate(4);
             //resultTablesLengthBytes.order(ByteOrder.LITTLE_ENDIAN);
             while (drBufferSizeBytes.hasRemaining()) {
-                int read = m_socketChannel.read(drBufferSizeBytes);
+                int read = m_channel.read(drBufferSizeBytes);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -728,7 +783,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             final ByteBuffer resultTablesLengthBytes = ByteBuffer.allocate(4);
             //resultTablesLengthBytes.order(ByteOrder.LITTLE_ENDIAN);
             while (resultTablesLengthBytes.hasRemaining()) {
-                int read = m_socketChannel.read(resultTablesLengthBytes);
+                int read = m_channel.read(resultTablesLengthBytes);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -746,7 +801,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             resultTablesBuffer.putInt(drBufferSize);
             resultTablesBuffer.putInt(resultTablesLength);
             while (resultTablesBuffer.hasRemaining()) {
-                int read = m_socketChannel.read(resultTablesBuffer);
+                int read = m_channel.read(resultTablesBuffer);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -763,7 +818,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
 
             //resultTablesLengthBytes.order(ByteOrder.LITTLE_ENDIAN);
             while (longBytes.hasRemaining()) {
-                int read = m_socketChannel.read(longBytes);
+                int read = m_channel.read(longBytes);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -782,7 +837,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
 
             //resultTablesLengthBytes.order(ByteOrder.LITTLE_ENDIAN);
             while (intBytes.hasRemaining()) {
-                int read = m_socketChannel.read(intBytes);
+                int read = m_channel.read(intBytes);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -801,7 +856,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
 
             //resultTablesLengthBytes.order(ByteOrder.LITTLE_ENDIAN);
             while (shortBytes.hasRemaining()) {
-                int read = m_socketChannel.read(shortBytes);
+                int read = m_channel.read(shortBytes);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -820,7 +875,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
 
             //resultTablesLengthBytes.order(ByteOrder.LITTLE_ENDIAN);
             while (bytes.hasRemaining()) {
-                int read = m_socketChannel.read(bytes);
+                int read = m_channel.read(bytes);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -839,7 +894,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
 
             //resultTablesLengthBytes.order(ByteOrder.LITTLE_ENDIAN);
             while (stringBytes.hasRemaining()) {
-                int read = m_socketChannel.read(stringBytes);
+                int read = m_channel.read(stringBytes);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -853,7 +908,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         public void throwException(final int errorCode) throws IOException {
             final ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
             while (lengthBuffer.hasRemaining()) {
-                int read = m_socketChannel.read(lengthBuffer);
+                int read = m_channel.read(lengthBuffer);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -866,7 +921,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
                 final ByteBuffer exceptionBuffer = ByteBuffer.allocate(exceptionLength + 4);
                 exceptionBuffer.putInt(exceptionLength);
                 while(exceptionBuffer.hasRemaining()) {
-                    int read = m_socketChannel.read(exceptionBuffer);
+                    int read = m_channel.read(exceptionBuffer);
                     if (read == -1) {
                         throw new EOFException();
                     }
@@ -878,6 +933,12 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         }
     }
 
+    /*
+     * Size in bytes (a power of 2) of each of the two shared memory rings to exchange data
+     * with voltdbipc through, or 0 to send everything over the socket
+     */
+    private static final int SHARED_MEMORY_RING_SIZE = Integer.getInteger("IPC_SHARED_MEMORY_RING_SIZE", 0);
+
     /** Local m_data */
     private final int m_clusterIndex;
     private final long m_siteId;
@@ -934,6 +995,14 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         m_dataNetwork.position(4);
         m_data = m_dataNetwork.slice();
 
+        if (SHARED_MEMORY_RING_SIZE > 0) {
+            try {
+                m_connection.attachSharedMemory(SHARED_MEMORY_RING_SIZE);
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         initialize(
                 m_clusterIndex,
                 m_siteId,
@@ -1026,6 +1095,8 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         m_data.putInt(defaultDrBufferSize);
         m_data.putLong(EELoggers.getLogLevels());
         m_data.putLong(tempTableMemory);
+        m_data.putLong(EE_PLAN_CACHE_MEMORY_LIMIT);
+        m_data.putInt(ExecutionEngineJNI.EE_COMPACTION_THRESHOLD);
         m_data.putInt(createDrReplicatedStream ? 1 : 0);
         m_data.putInt((short)hostname.length());
         m_data.put(hostname.getBytes(Charsets.UTF_8));
@@ -1401,7 +1472,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
     private ByteBuffer readMessage() throws IOException {
         final ByteBuffer messageLengthBuffer = ByteBuffer.allocate(4);
         while (messageLengthBuffer.hasRemaining()) {
-            int read = m_connection.m_socketChannel.read(messageLengthBuffer);
+            int read = m_connection.m_channel.read(messageLengthBuffer);
             if (read == -1) {
                 throw new EOFException("End of file reading statistics(1)");
             }
@@ -1413,7 +1484,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         }
         final ByteBuffer messageBuffer = ByteBuffer.allocate(length);
         while (messageBuffer.hasRemaining()) {
-            int read = m_connection.m_socketChannel.read(messageBuffer);
+            int read = m_connection.m_channel.read(messageBuffer);
             if (read == -1) {
                 throw new EOFException("End of file reading statistics(2)");
             }
@@ -1518,7 +1589,10 @@ public class ExecutionEngineIPC extends ExecutionEngine {
     private void sendDependencyTable(final int dependencyId) throws IOException{
         final byte[] dependencyBytes = nextDependencyAsBytes(dependencyId);
         if (dependencyBytes == null) {
-            m_connection.m_socket.getOutputStream().write(Connection.kErrorCode_DependencyNotFound);
+            final ByteBuffer notFound = ByteBuffer.allocate(1);
+            notFound.put((byte)Connection.kErrorCode_DependencyNotFound);
+            notFound.flip();
+            m_connection.m_channel.write(notFound);
             return;
         }
         // 1 for response code + 4 for dependency length prefix + dependencyBytes.length
@@ -1533,7 +1607,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         // finally, write dependency table itself
         message.put(dependencyBytes);
         message.rewind();
-        if (m_connection.m_socketChannel.write(message) != message.capacity()) {
+        if (m_connection.m_channel.write(message) != message.capacity()) {
             throw new IOException("Unable to send dependency table to client. Attempted blocking write of " +
                     message.capacity() + " but not all of it was written");
         }
@@ -1600,7 +1674,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             // Get the count.
             ByteBuffer countBuffer = ByteBuffer.allocate(4);
             while (countBuffer.hasRemaining()) {
-                int read = m_connection.m_socketChannel.read(countBuffer);
+                int read = m_connection.m_channel.read(countBuffer);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -1612,7 +1686,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             // Get the remaining tuple count.
             ByteBuffer remainingBuffer = ByteBuffer.allocate(8);
             while (remainingBuffer.hasRemaining()) {
-                int read = m_connection.m_socketChannel.read(remainingBuffer);
+                int read = m_connection.m_channel.read(remainingBuffer);
                 if (read == -1) {
                     throw new EOFException();
                 }
@@ -1630,7 +1704,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             for (int i = 0; i < count; i++) {
                 ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
                 while (lengthBuffer.hasRemaining()) {
-                    int read = m_connection.m_socketChannel.read(lengthBuffer);
+                    int read = m_connection.m_channel.read(lengthBuffer);
                     if (read == -1) {
                         throw new EOFException();
                     }
@@ -1640,7 +1714,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
                 ByteBuffer view = outputBuffers.get(i).b().duplicate();
                 view.limit(view.position() + serialized[i]);
                 while (view.hasRemaining()) {
-                    m_connection.m_socketChannel.read(view);
+                    m_connection.m_channel.read(view);
                 }
             }
             return Pair.of(remaining, serialized);
@@ -1690,7 +1764,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
 
             ByteBuffer results = ByteBuffer.allocate(1);
             while (results.remaining() > 0) {
-                m_connection.m_socketChannel.read(results);
+                m_connection.m_channel.read(results);
             }
             results.flip();
 
@@ -1717,7 +1791,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
 
             ByteBuffer results = ByteBuffer.allocate(16);
             while (results.remaining() > 0) {
-                m_connection.m_socketChannel.read(results);
+                m_connection.m_channel.read(results);
             }
             results.flip();
 
@@ -1745,7 +1819,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             m_connection.readStatusByte();
             ByteBuffer hashCode = ByteBuffer.allocate(8);
             while (hashCode.hasRemaining()) {
-                int read = m_connection.m_socketChannel.read(hashCode);
+                int read = m_connection.m_channel.read(hashCode);
                 if (read <= 0) {
                     throw new EOFException();
                 }
@@ -1777,7 +1851,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             m_connection.readStatusByte();
             ByteBuffer part = ByteBuffer.allocate(4);
             while (part.hasRemaining()) {
-                int read = m_connection.m_socketChannel.read(part);
+                int read = m_connection.m_channel.read(part);
                 if (read <= 0) {
                     throw new EOFException();
                 }
@@ -1824,7 +1898,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             m_connection.write();
             ByteBuffer rowCount = ByteBuffer.allocate(8);
             while (rowCount.hasRemaining()) {
-                int read = m_connection.m_socketChannel.read(rowCount);
+                int read = m_connection.m_channel.read(rowCount);
                 if (read <= 0) {
                     throw new EOFException();
                 }
@@ -1848,7 +1922,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             m_connection.readStatusByte();
             ByteBuffer allocations = ByteBuffer.allocate(8);
             while (allocations.hasRemaining()) {
-                int read = m_connection.m_socketChannel.read(allocations);
+                int read = m_connection.m_channel.read(allocations);
                 if (read <= 0) {
                     throw new EOFException();
                 }
@@ -1874,7 +1948,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             m_connection.readStatusByte();
             ByteBuffer length = ByteBuffer.allocate(4);
             while (length.hasRemaining()) {
-                int read = m_connection.m_socketChannel.read(length);
+                int read = m_connection.m_channel.read(length);
                 if (read <= 0) {
                     throw new EOFException();
                 }
@@ -1883,7 +1957,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
 
             ByteBuffer retval = ByteBuffer.allocate(length.getInt());
             while (retval.hasRemaining()) {
-                int read = m_connection.m_socketChannel.read(retval);
+                int read = m_connection.m_channel.read(retval);
                 if (read <= 0) {
                     throw new EOFException();
                 }
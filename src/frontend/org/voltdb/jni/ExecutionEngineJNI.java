@@ -189,7 +189,8 @@ public class ExecutionEngineJNI extends ExecutionEngine {
                     defaultDrBufferSize,
                     tempTableMemory * 1024 * 1024,
                     isLowestSiteId,
-                    EE_COMPACTION_THRESHOLD);
+                    EE_COMPACTION_THRESHOLD,
+                    EE_PLAN_CACHE_MEMORY_LIMIT);
         checkErrorCode(errorCode);
 
         setupPsetBuffer(smallBufferSize);
@@ -0,0 +1,326 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.jni;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.voltcore.utils.Bits;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.MBBContainer;
+
+/**
+ * Byte stream between {@link ExecutionEngineIPC} and a voltdbipc process which moves data
+ * through two single producer, single consumer ring buffers in a shared memory file instead
+ * of through the socket, saving the system calls and copies the socket costs per fragment.
+ *
+ * Both sides spin for a while when they find the ring they need empty (or full). If that
+ * does not help they raise their waiting flag and block reading the socket, and whoever
+ * next moves that ring clears the flag and writes a single wakeup byte to the socket. The
+ * flag is cleared with a compare and swap on both sides so there is exactly one wakeup byte
+ * per wait that needs one. A process which dies closes the socket, which wakes its peer.
+ *
+ * The layout of the file must match IpcChannel in voltdbipc.cpp. All fields are in native
+ * byte order since both processes are on the same host, and each field the two sides write
+ * concurrently is on its own cache line:
+ * <pre>
+ *    0 int  magic
+ *    4 int  ring capacity, a power of 2
+ *   64 int  Java is waiting
+ *  128 int  EE is waiting
+ *  192 long bytes written to the EE
+ *  256 long bytes read by the EE
+ *  320 long bytes written by the EE
+ *  384 long bytes read from the EE
+ * 4096      ring to the EE, then ring from the EE
+ * </pre>
+ */
+final class SharedMemoryChannel implements ByteChannel {
+
+    static final int MAGIC = 0x56444249; // "VDBI"
+    static final int HEADER_SIZE = 4096;
+    private static final long OFFSET_MAGIC = 0;
+    private static final long OFFSET_CAPACITY = 4;
+    private static final long OFFSET_JAVA_WAITING = 64;
+    private static final long OFFSET_EE_WAITING = 128;
+    private static final long OFFSET_TO_EE_WRITTEN = 192;
+    private static final long OFFSET_TO_EE_READ = 256;
+    private static final long OFFSET_FROM_EE_WRITTEN = 320;
+    private static final long OFFSET_FROM_EE_READ = 384;
+
+    // How many times to check a ring before blocking on the socket, spinning only helps with another CPU
+    static final int SPIN_TRIES = Runtime.getRuntime().availableProcessors() > 1 ?
+            Integer.getInteger("IPC_SHARED_MEMORY_SPINS", 10000) : 0;
+
+    private final File m_file;
+    private final MBBContainer m_mapped;
+    private final long m_address;
+    private final int m_capacity;
+    private final ByteChannel m_doorbell;
+    private final ByteBuffer m_doorbellByte = ByteBuffer.allocate(1);
+
+    // Which fields are ours depends on the side of the channel
+    private final long m_ownWaiting;
+    private final long m_peerWaiting;
+    private final long m_outWritten;
+    private final long m_outRead;
+    private final long m_inWritten;
+    private final long m_inRead;
+    private final ByteBuffer m_outRing;
+    private final ByteBuffer m_inRing;
+    private long m_writePosition;
+    private long m_readPosition;
+    private boolean m_open = true;
+
+    /**
+     * Create a shared memory file with rings of the given capacity and map it as the Java end
+     * of the channel. The file should be {@link #unlink()}ed once voltdbipc has mapped it too.
+     */
+    static SharedMemoryChannel create(ByteChannel doorbell, int capacity) throws IOException {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of 2, was " + capacity);
+        }
+        File dir = new File("/dev/shm");
+        if (!dir.isDirectory() || !dir.canWrite()) {
+            dir = new File(System.getProperty("java.io.tmpdir"));
+        }
+        // Only readable by this user, the rings carry table data
+        File file = Files.createTempFile(dir.toPath(), "voltdbipc", ".shm",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))).toFile();
+        try {
+            MBBContainer mapped = map(file, HEADER_SIZE + 2L * capacity);
+            final long address = mapped.address();
+            Bits.unsafe.putInt(null, address + OFFSET_CAPACITY, capacity);
+            // Published last so the peer never sees a partially set up header
+            Bits.unsafe.putIntVolatile(null, address + OFFSET_MAGIC, MAGIC);
+            return new SharedMemoryChannel(file, mapped, doorbell, false);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Map an existing shared memory file as the EE end of the channel,
+     * which voltdbipc does in production.
+     */
+    static SharedMemoryChannel attach(File file, ByteChannel doorbell) throws IOException {
+        MBBContainer mapped = map(file, file.length());
+        if (Bits.unsafe.getIntVolatile(null, mapped.address() + OFFSET_MAGIC) != MAGIC) {
+            mapped.discard();
+            throw new IOException("Not an IPC shared memory file: " + file);
+        }
+        return new SharedMemoryChannel(file, mapped, doorbell, true);
+    }
+
+    private static MBBContainer map(File file, long size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+            return DBBPool.wrapMBB(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private SharedMemoryChannel(File file, MBBContainer container, ByteChannel doorbell, boolean eeSide) {
+        m_file = file;
+        m_mapped = container;
+        m_address = container.address();
+        final MappedByteBuffer mapped = container.b();
+        m_capacity = Bits.unsafe.getInt(null, m_address + OFFSET_CAPACITY);
+        m_doorbell = doorbell;
+
+        mapped.clear();
+        mapped.position(HEADER_SIZE);
+        mapped.limit(HEADER_SIZE + m_capacity);
+        ByteBuffer toEE = mapped.slice();
+        mapped.clear();
+        mapped.position(HEADER_SIZE + m_capacity);
+        ByteBuffer fromEE = mapped.slice();
+
+        if (eeSide) {
+            m_ownWaiting = OFFSET_EE_WAITING;
+            m_peerWaiting = OFFSET_JAVA_WAITING;
+            m_outWritten = OFFSET_FROM_EE_WRITTEN;
+            m_outRead = OFFSET_FROM_EE_READ;
+            m_inWritten = OFFSET_TO_EE_WRITTEN;
+            m_inRead = OFFSET_TO_EE_READ;
+            m_outRing = fromEE;
+            m_inRing = toEE;
+        } else {
+            m_ownWaiting = OFFSET_JAVA_WAITING;
+            m_peerWaiting = OFFSET_EE_WAITING;
+            m_outWritten = OFFSET_TO_EE_WRITTEN;
+            m_outRead = OFFSET_TO_EE_READ;
+            m_inWritten = OFFSET_FROM_EE_WRITTEN;
+            m_inRead = OFFSET_FROM_EE_READ;
+            m_outRing = toEE;
+            m_inRing = fromEE;
+        }
+        m_writePosition = getVolatile(m_outWritten);
+        m_readPosition = getVolatile(m_inRead);
+    }
+
+    String getPath() {
+        return m_file.getAbsolutePath();
+    }
+
+    int getCapacity() {
+        return m_capacity;
+    }
+
+    /** Remove the file, which stays mapped until both sides close the channel */
+    void unlink() {
+        m_file.delete();
+    }
+
+    /**
+     * Blocks until at least one byte is available and reads as many as there are,
+     * or returns -1 if the peer closed the socket.
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        long written;
+        while ((written = getVolatile(m_inWritten)) == m_readPosition) {
+            if (!await(m_inWritten, m_readPosition)) {
+                return -1;
+            }
+        }
+        final int index = (int) (m_readPosition & (m_capacity - 1));
+        final int length = (int) Math.min(Math.min(written - m_readPosition, dst.remaining()), m_capacity - index);
+        m_inRing.clear();
+        m_inRing.position(index);
+        m_inRing.limit(index + length);
+        dst.put(m_inRing);
+        m_readPosition += length;
+        publish(m_inRead, m_readPosition);
+        return length;
+    }
+
+    /**
+     * Blocks until all of src is in the ring. Large writes are published piecewise
+     * so the peer can start reading before they are complete.
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        final int total = src.remaining();
+        while (src.hasRemaining()) {
+            final long read = getVolatile(m_outRead);
+            final long free = m_capacity - (m_writePosition - read);
+            if (free == 0) {
+                if (!await(m_outRead, read)) {
+                    throw new EOFException("IPC peer closed the connection");
+                }
+                continue;
+            }
+            final int index = (int) (m_writePosition & (m_capacity - 1));
+            final int length = (int) Math.min(Math.min(free, src.remaining()), m_capacity - index);
+            final ByteBuffer chunk = src.duplicate();
+            chunk.limit(chunk.position() + length);
+            m_outRing.clear();
+            m_outRing.position(index);
+            m_outRing.put(chunk);
+            src.position(src.position() + length);
+            m_writePosition += length;
+            publish(m_outWritten, m_writePosition);
+        }
+        return total;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return m_open;
+    }
+
+    /** Unmap the file. The socket is left to its owner to close. */
+    @Override
+    public void close() {
+        if (m_open) {
+            m_open = false;
+            m_mapped.discard();
+        }
+    }
+
+    private long getVolatile(long offset) {
+        return Bits.unsafe.getLongVolatile(null, m_address + offset);
+    }
+
+    /*
+     * Store a new ring position, then wake the peer if it is blocked. The volatile store
+     * orders the position before the load of the flag, as the peer orders its flag before
+     * its load of the position, so at least one of the two sees the other's store.
+     */
+    private void publish(long offset, long position) throws IOException {
+        Bits.unsafe.putLongVolatile(null, m_address + offset, position);
+        if (Bits.unsafe.getIntVolatile(null, m_address + m_peerWaiting) != 0 &&
+                Bits.unsafe.compareAndSwapInt(null, m_address + m_peerWaiting, 1, 0)) {
+            m_doorbellByte.clear();
+            while (m_doorbellByte.hasRemaining()) {
+                m_doorbell.write(m_doorbellByte);
+            }
+        }
+    }
+
+    /*
+     * Wait until the position at offset is no longer the given one.
+     * Returns false if the peer closed the socket while waiting.
+     */
+    private boolean await(long offset, long position) throws IOException {
+        for (int i = 0; i < SPIN_TRIES; i++) {
+            if (getVolatile(offset) != position) {
+                return true;
+            }
+        }
+        final long waiting = m_address + m_ownWaiting;
+        while (true) {
+            Bits.unsafe.putIntVolatile(null, waiting, 1);
+            if (getVolatile(offset) != position) {
+                if (Bits.unsafe.compareAndSwapInt(null, waiting, 1, 0)) {
+                    return true;
+                }
+                // The peer already cleared the flag, so its wakeup byte is on the way
+                return readDoorbell();
+            }
+            if (!readDoorbell()) {
+                return false;
+            }
+            if (getVolatile(offset) != position) {
+                return true;
+            }
+        }
+    }
+
+    private boolean readDoorbell() throws IOException {
+        m_doorbellByte.clear();
+        while (m_doorbellByte.hasRemaining()) {
+            if (m_doorbell.read(m_doorbellByte) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -21,7 +21,6 @@ import java.util.HashMap;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
-import org.voltdb.jni.ExecutionEngine;
 import org.voltdb.jni.Sha1Wrapper;
 
 public abstract class ActivePlanRepository {
@@ -61,6 +60,10 @@ public abstract class ActivePlanRepository {
     private static long m_nextFragId = INITIAL_FRAG_ID;
     /// A ticker that allows the sequencing of all fragment uses, providing a key to the LRU map.
     private static long m_nextFragUse = 1;
+    /// How many fragments to keep, including unreferenced ones which the EE may still ask for.
+    /// The EE keeps its own cache of built fragments bounded by memory, and asks for any
+    /// fragment it has evicted again, so this does not have to track what the EE holds.
+    private static final int PLAN_CACHE_SIZE = 1000;
 
     /**
      * Get the site-local fragment id for a given plan identified by 20-byte sha-1 hash
@@ -105,7 +108,7 @@ public abstract class ActivePlanRepository {
                 frag = new FragInfo(key, plan, m_nextFragId++, stmtText);
                 m_plansByHash.put(frag.hash, frag);
                 m_plansById.put(frag.fragId, frag);
-                if (m_plansById.size() > ExecutionEngine.EE_PLAN_CACHE_SIZE) {
+                if (m_plansById.size() > PLAN_CACHE_SIZE) {
                     evictLRUfragment();
                 }
             }
@@ -172,7 +175,7 @@ public abstract class ActivePlanRepository {
                 // so take another bite at the apple.
                 // Otherwise, trading exactly one evicted fragment for each new fragment
                 // would never reduce the cache.
-                if (m_plansById.size() > ExecutionEngine.EE_PLAN_CACHE_SIZE) {
+                if (m_plansById.size() > PLAN_CACHE_SIZE) {
                      continue;
                 }
                 return;
@@ -591,6 +591,7 @@ public class VoltPNestLoopIndexToMergeJoinRule extends RelOptRule {
             case BALANCED_TREE:
             case BTREE:
             case HASH_TABLE:
+            case FLAT_HASH_TABLE:
                 // HASH indexes are not supported and replaced by TREE based ones
                 return true;
             case COVERING_CELL_INDEX:
@@ -627,7 +627,7 @@ public class IndexScanPlanNode extends AbstractScanPlanNode implements IndexSort
         int tuplesToRead;
 
         // Assign minor priorities for different index types (tiebreakers).
-        if (m_catalogIndex.getType() == IndexType.HASH_TABLE.getValue()) {
+        if (IndexType.isHashTable(m_catalogIndex.getType())) {
             tuplesToRead = 2;
         } else if (m_catalogIndex.getType() == IndexType.BALANCED_TREE.getValue() ||
                  m_catalogIndex.getType() == IndexType.BTREE.getValue()) {
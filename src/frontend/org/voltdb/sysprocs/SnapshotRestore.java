@@ -137,6 +137,14 @@ public class SnapshotRestore extends VoltSystemProcedure {
     private static HashSet<String>  m_initializedTableSaveFileNames = new HashSet<String>();
     private static ArrayDeque<TableSaveFile> m_saveFiles = new ArrayDeque<TableSaveFile>();
 
+    /*
+     * Number of a partitioned table's save files which are read and decompressed
+     * at the same time, ahead of the file the chunks are currently being distributed from.
+     * Each of them holds up to two chunks per local site in memory.
+     */
+    private static final int READ_AHEAD_FILES =
+            Math.max(1, Integer.getInteger("SNAPSHOT_RESTORE_READ_AHEAD_FILES", 2));
+
     private static volatile DuplicateRowHandler m_duplicateRowHandler = null;
 
     private final static String HASHINATOR_ALL_BAD = "All hashinator snapshots are bad (%s).";
@@ -200,6 +208,17 @@ public class SnapshotRestore extends VoltSystemProcedure {
             }
             assert(m_saveFiles.peekLast().getCompleted());
         }
+        startReadAhead();
+    }
+
+    private static synchronized void startReadAhead() {
+        int started = 0;
+        for (TableSaveFile f : m_saveFiles) {
+            if (started++ == READ_AHEAD_FILES) {
+                break;
+            }
+            f.startReadAhead();
+        }
     }
 
     private static synchronized boolean hasMoreChunks() throws IOException {
@@ -213,6 +232,7 @@ public class SnapshotRestore extends VoltSystemProcedure {
                 } catch (IOException e) {
                 }
                 m_saveFiles.poll();
+                startReadAhead();
             }
         }
         return hasMoreChunks;
@@ -226,6 +246,7 @@ public class SnapshotRestore extends VoltSystemProcedure {
             if (c == null) {
                 f.close();
                 m_saveFiles.poll();
+                startReadAhead();
             }
         }
         return c;
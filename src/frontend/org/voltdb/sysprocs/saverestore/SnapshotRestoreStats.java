@@ -0,0 +1,155 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Progress and throughput of the snapshot save files read on this host by a restore.
+ * The counters are updated by {@link TableSaveFile}'s chunk readers and decompressors,
+ * and cover all restores since the host started.
+ */
+public class SnapshotRestoreStats extends StatsSource {
+
+    public enum StatName {
+        FILES_STARTED,
+        FILES_COMPLETED,
+        CHUNKS_READ,
+        CHUNKS_PENDING,
+        COMPRESSED_BYTES,
+        UNCOMPRESSED_BYTES,
+        DECOMPRESSION_MILLIS,
+        THROUGHPUT_MB_PER_SEC
+    }
+
+    private static final LongAdder s_filesStarted = new LongAdder();
+    private static final LongAdder s_filesCompleted = new LongAdder();
+    private static final LongAdder s_chunksRead = new LongAdder();
+    private static final LongAdder s_chunksDecompressed = new LongAdder();
+    private static final LongAdder s_compressedBytes = new LongAdder();
+    private static final LongAdder s_uncompressedBytes = new LongAdder();
+    private static final LongAdder s_decompressionNanos = new LongAdder();
+    // Wall clock span of the reads, for the overall throughput
+    private static final AtomicLong s_firstReadMillis = new AtomicLong();
+    private static final AtomicLong s_lastReadMillis = new AtomicLong();
+
+    static void fileStarted() {
+        s_filesStarted.increment();
+    }
+
+    static void fileCompleted() {
+        s_filesCompleted.increment();
+    }
+
+    static void chunkRead(int compressedBytes) {
+        long now = System.currentTimeMillis();
+        s_firstReadMillis.compareAndSet(0, now);
+        s_lastReadMillis.set(now);
+        s_chunksRead.increment();
+        s_compressedBytes.add(compressedBytes);
+    }
+
+    // Called for every chunk read, including the ones which turn out to be skipped
+    static void chunkDecompressed(int uncompressedBytes, long nanos) {
+        s_chunksDecompressed.increment();
+        s_uncompressedBytes.add(uncompressedBytes);
+        s_decompressionNanos.add(nanos);
+    }
+
+    // Counters at the last interval collection
+    private long m_lastTime = 0;
+    private long m_lastChunksRead = 0;
+    private long m_lastCompressedBytes = 0;
+    private long m_lastUncompressedBytes = 0;
+    private long m_lastDecompressionNanos = 0;
+    private boolean m_interval = false;
+
+    public SnapshotRestoreStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo(StatName.FILES_STARTED.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.FILES_COMPLETED.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.CHUNKS_READ.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.CHUNKS_PENDING.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.COMPRESSED_BYTES.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.UNCOMPRESSED_BYTES.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.DECOMPRESSION_MILLIS.name(), VoltType.BIGINT));
+        columns.add(new ColumnInfo(StatName.THROUGHPUT_MB_PER_SEC.name(), VoltType.FLOAT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        long chunksRead = s_chunksRead.sum();
+        // Chunks read but not yet decompressed or skipped
+        long chunksPending = Math.max(0, chunksRead - s_chunksDecompressed.sum());
+        long compressedBytes = s_compressedBytes.sum();
+        long uncompressedBytes = s_uncompressedBytes.sum();
+        long decompressionNanos = s_decompressionNanos.sum();
+        long elapsedMillis;
+        if (m_interval) {
+            long totalChunksRead = chunksRead;
+            long totalCompressedBytes = compressedBytes;
+            long totalUncompressedBytes = uncompressedBytes;
+            long totalDecompressionNanos = decompressionNanos;
+            chunksRead -= m_lastChunksRead;
+            compressedBytes -= m_lastCompressedBytes;
+            uncompressedBytes -= m_lastUncompressedBytes;
+            decompressionNanos -= m_lastDecompressionNanos;
+            m_lastChunksRead = totalChunksRead;
+            m_lastCompressedBytes = totalCompressedBytes;
+            m_lastUncompressedBytes = totalUncompressedBytes;
+            m_lastDecompressionNanos = totalDecompressionNanos;
+            long now = System.currentTimeMillis();
+            elapsedMillis = m_lastTime == 0 ? 0 : now - m_lastTime;
+            m_lastTime = now;
+        } else {
+            elapsedMillis = s_lastReadMillis.get() - s_firstReadMillis.get();
+        }
+
+        rowValues[columnNameToIndex.get(StatName.FILES_STARTED.name())] = s_filesStarted.sum();
+        rowValues[columnNameToIndex.get(StatName.FILES_COMPLETED.name())] = s_filesCompleted.sum();
+        rowValues[columnNameToIndex.get(StatName.CHUNKS_READ.name())] = chunksRead;
+        rowValues[columnNameToIndex.get(StatName.CHUNKS_PENDING.name())] = chunksPending;
+        rowValues[columnNameToIndex.get(StatName.COMPRESSED_BYTES.name())] = compressedBytes;
+        rowValues[columnNameToIndex.get(StatName.UNCOMPRESSED_BYTES.name())] = uncompressedBytes;
+        rowValues[columnNameToIndex.get(StatName.DECOMPRESSION_MILLIS.name())] =
+                TimeUnit.NANOSECONDS.toMillis(decompressionNanos);
+        rowValues[columnNameToIndex.get(StatName.THROUGHPUT_MB_PER_SEC.name())] = elapsedMillis <= 0 ? 0.0 :
+                (uncompressedBytes / (1024.0 * 1024.0)) / (elapsedMillis / 1000.0);
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_interval = interval;
+        return Collections.<Object>singletonList(this).iterator();
+    }
+}
@@ -29,26 +29,34 @@ import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.Checksum;
 
 import org.apache.hadoop_voltpatches.util.PureJavaCrc32;
-import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
 import org.json_voltpatches.JSONArray;
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.voltcore.TransactionIdManager;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Bits;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.NativeLibraryLoader;
 import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.utils.ChecksumService;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.PosixAdvise;
 
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
 /**
  * An abstraction around a table's save file for restore.  Deserializes the
  * meta-data that was stored when the table was saved and makes it available
@@ -246,6 +254,7 @@ public class TableSaveFile implements Closeable
                 m_tableName = fd.readString();
                 m_isReplicated = fd.readBoolean();
                 m_isCompressed = false;
+                m_compressionCodec = CompressionCodec.SNAPPY;
                 m_checksumType = ChecksumType.CRC32;
                 if (!m_isReplicated) {
                     m_partitionIds = (int[])fd.readArray(int.class);
@@ -291,6 +300,9 @@ public class TableSaveFile implements Closeable
                 m_tableName = obj.getString("tableName");
                 m_isReplicated = obj.getBoolean("isReplicated");
                 m_isCompressed = obj.optBoolean("isCompressed", false);
+                // Snapshots from before the codec was recorded are all snappy compressed
+                m_compressionCodec = CompressionCodec.fromName(
+                        obj.optString("compressionCodec", CompressionCodec.SNAPPY.name()));
                 m_checksumType = ChecksumType.valueOf(obj.optString("checksumType", "CRC32"));
                 if (!m_isReplicated) {
                     JSONArray partitionIds = obj.getJSONArray("partitionIds");
@@ -371,6 +383,10 @@ public class TableSaveFile implements Closeable
         return m_isCompressed;
     }
 
+    public CompressionCodec getCompressionCodec() {
+        return m_compressionCodec;
+    }
+
     public int getTotalPartitions() {
         return m_totalPartitions;
     }
@@ -405,8 +421,21 @@ public class TableSaveFile implements Closeable
         }
 
         synchronized (this) {
+            // Chunks still being decompressed are discarded once they are done
             while (!m_availableChunks.isEmpty()) {
-                m_availableChunks.poll().discard();
+                final ListenableFuture<Container> chunk = m_availableChunks.poll();
+                chunk.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Container c = chunk.get();
+                            if (c != null) {
+                                c.discard();
+                            }
+                        } catch (InterruptedException | ExecutionException e) {
+                        }
+                    }
+                }, CoreUtils.SAMETHREADEXECUTOR);
             }
             notifyAll();
         }
@@ -418,6 +447,11 @@ public class TableSaveFile implements Closeable
         while ((cont = m_buffers.poll()) != null) {
             cont.discard();
         }
+        synchronized (this) {
+            while ((cont = m_inputBuffers.poll()) != null) {
+                cont.discard();
+            }
+        }
     }
 
     public Set<Integer> getCorruptedPartitionIds() {
@@ -428,42 +462,60 @@ public class TableSaveFile implements Closeable
         return m_tableHeader;
     }
 
+    /**
+     * Start the thread that reads chunks from the file ahead of the calls to
+     * {@link #getNextChunk()}. Called by the first getNextChunk() if it has not been
+     * called already, so a restore can use it to read several files at once.
+     */
+    public synchronized void startReadAhead() {
+        if (m_chunkReader == null && m_hasMoreChunks.get()) {
+            m_chunkReader = new ChunkReader();
+            m_chunkReaderThread = new Thread(m_chunkReader, "ChunkReader");
+            m_chunkReaderThread.start();
+            SnapshotRestoreStats.fileStarted();
+        }
+    }
+
     // Will get the next chunk of the table that is just over the chunk size
     public synchronized BBContainer getNextChunk() throws IOException
     {
         if (m_chunkReaderException != null) {
             throw m_chunkReaderException;
         }
-        if (!m_hasMoreChunks.get()) {
-            final Container c = m_availableChunks.poll();
-            return c;
-        }
-
-        if (m_chunkReader == null) {
-            m_chunkReader = new ChunkReader();
-            m_chunkReaderThread = new Thread(m_chunkReader, "ChunkReader");
-            m_chunkReaderThread.start();
-        }
+        startReadAhead();
 
-        Container c = null;
-        while (c == null && (m_hasMoreChunks.get() || !m_availableChunks.isEmpty())) {
-            c = m_availableChunks.poll();
-            if (c == null) {
+        while (m_hasMoreChunks.get() || !m_availableChunks.isEmpty()) {
+            final ListenableFuture<Container> chunk = m_availableChunks.peek();
+            if (chunk == null || !chunk.isDone()) {
                 try {
                     wait();
                 } catch (InterruptedException e) {
                     throw new IOException(e);
                 }
+                continue;
             }
-        }
-        if (c != null) {
+            m_availableChunks.poll();
             m_chunkReads.release();
-        } else {
-            if (m_chunkReaderException != null) {
+
+            final Container c;
+            try {
+                c = chunk.get();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                m_hasMoreChunks.set(false);
+                m_chunkReaderException = e.getCause() instanceof IOException ?
+                        (IOException) e.getCause() : new IOException(e.getCause());
                 throw m_chunkReaderException;
             }
+            if (c != null) {
+                return c;
+            }
         }
-        return c;
+        if (m_chunkReaderException != null) {
+            throw m_chunkReaderException;
+        }
+        return null;
     }
 
     public synchronized boolean hasMoreChunks() throws IOException
@@ -487,13 +539,32 @@ public class TableSaveFile implements Closeable
     private final String m_tableName;
     private final boolean m_isReplicated;
     private final boolean m_isCompressed;
+    private final CompressionCodec m_compressionCodec;
     private final int m_partitionIds[];
     private final int m_totalPartitions;
     private final long m_txnId;
     private final long m_timestamp;
     private AtomicBoolean m_hasMoreChunks = new AtomicBoolean(true);
     private ConcurrentLinkedQueue<BBContainer> m_buffers = new ConcurrentLinkedQueue<BBContainer>();
-    private final ArrayDeque<Container> m_availableChunks = new ArrayDeque<Container>();
+    private final ConcurrentLinkedQueue<BBContainer> m_inputBuffers = new ConcurrentLinkedQueue<BBContainer>();
+
+    /**
+     * Chunks in file order. A chunk may still be being decompressed, and resolves to null
+     * if it was skipped because it is corrupt or belongs to an irrelevant partition.
+     */
+    private final ArrayDeque<ListenableFuture<Container>> m_availableChunks =
+            new ArrayDeque<ListenableFuture<Container>>();
+
+    // Wakes up a getNextChunk() waiting for the chunk at the head of the queue to be decompressed
+    private final Runnable m_notifier = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (TableSaveFile.this) {
+                TableSaveFile.this.notifyAll();
+            }
+        }
+    };
+
     private final HashSet<Integer> m_relevantPartitionIds;
     private final ChecksumType m_checksumType;
 
@@ -508,7 +579,7 @@ public class TableSaveFile implements Closeable
      * Maintain a list of corrupted partitions. It is possible for uncorrupted partitions
      * to be recovered from a save file in the future
      */
-    private final HashSet<Integer> m_corruptedPartitions = new HashSet<Integer>();
+    private final Set<Integer> m_corruptedPartitions = ConcurrentHashMap.newKeySet();
 
     /**
      * Ignore corrupted chunks and continue validation of the rest of the chunks.
@@ -534,10 +605,6 @@ public class TableSaveFile implements Closeable
          * that should be easier to understand and validate.
          */
         private void readChunksV2() {
-            //For reading the compressed input.
-            final BBContainer fileInputBufferC =
-                    DBBPool.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
-            final ByteBuffer fileInputBuffer = fileInputBufferC.b();
             long sinceLastFAdvise = Long.MAX_VALUE;
             long positionAtLastFAdvise = 0;
 
@@ -579,16 +646,16 @@ public class TableSaveFile implements Closeable
                 }
 
                 /*
-                 * Limit the number of chunk materialized into memory at one time
+                 * Limit the number of chunk materialized into memory at one time. The permit
+                 * is held until the chunk is taken from the queue in getNextChunk()
                  */
                 try {
                     m_chunkReads.acquire();
                 } catch (InterruptedException e) {
-                    fileInputBufferC.discard();
                     return;
                 }
                 boolean expectedAnotherChunk = false;
-                Container c = null;
+                BBContainer fileInputBufferC = null;
                 try {
 
                     /*
@@ -613,7 +680,7 @@ public class TableSaveFile implements Closeable
                      * has corrupt chunks in the file.
                      */
                     assert(m_checksumType == ChecksumType.CRC32C);
-                    final Checksum partitionIdCRC = new PureJavaCrc32C();
+                    final Checksum partitionIdCRC = ChecksumService.newCrc32c();
                     final int nextChunkPartitionId = chunkLengthB.getInt(4);
                     final int nextChunkPartitionIdCRC = chunkLengthB.getInt(8);
 
@@ -641,16 +708,16 @@ public class TableSaveFile implements Closeable
                         throw new IOException("Corrupted TableSaveFile chunk has negative chunk length");
                     }
 
+                    fileInputBufferC = getInputBuffer();
+                    final ByteBuffer fileInputBuffer = fileInputBufferC.b();
                     if (nextChunkLength > fileInputBuffer.capacity()) {
                         throw new IOException("Corrupted TableSaveFile chunk has unreasonable length " +
                                 "> DEFAULT_CHUNKSIZE bytes");
                     }
 
                     /*
-                     * Go fetch the compressed data so that the uncompressed size is known
-                     * and use that to set nextChunkLength to be the uncompressed length,
-                     * the code ahead that constructs the volt table is expecting
-                     * the uncompressed size/data since it is producing an uncompressed table
+                     * Go fetch the compressed data. Validating and decompressing it is left to
+                     * a ChunkDecompressor so this thread can go on reading the next chunk.
                      */
                     fileInputBuffer.clear();
                     fileInputBuffer.limit(nextChunkLength);
@@ -662,87 +729,15 @@ public class TableSaveFile implements Closeable
                         sinceLastFAdvise += read;
                     }
                     fileInputBuffer.flip();
-                    nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
-
-                    /*
-                     * Validate the rest of the chunk. This can fail if the data is corrupted
-                     * or the length value was corrupted.
-                     */
-                    final int calculatedCRC =
-                            DBBPool.getBufferCRC32C(fileInputBuffer, 0, fileInputBuffer.remaining());
-                    if (calculatedCRC != nextChunkCRC) {
-                        m_corruptedPartitions.add(nextChunkPartitionId);
-                        if (m_continueOnCorruptedChunk) {
-                            m_chunkReads.release();
-                            continue;
-                        } else {
-                            throw new IOException("CRC mismatch in saved table chunk");
-                        }
-                    }
-
-                    /*
-                     * Now allocate space to store the chunk using the VoltTable serialization representation.
-                     * The chunk will contain an integer row count preceding it so it can
-                     * be sucked straight in. There is a little funny business to overwrite the
-                     * partition id that is not part of the serialization format
-                     */
-                    c = getOutputBuffer(nextChunkPartitionId);
-
-                    /*
-                     * If the length value is wrong or not all data made it to disk this read will
-                     * not complete correctly. There could be overflow, underflow etc.
-                     * so use a try finally block to indicate that all partitions are now corrupt.
-                     * The enclosing exception handlers will do the right thing WRT to
-                     * propagating the error and closing the file.
-                     */
-                    boolean completedRead = false;
-                    try {
-                        final ByteBuffer buf = c.b();
-                        /*
-                         * Assemble a VoltTable out of the chunk of tuples.
-                         * Put in the header that was cached in the constructor,
-                         * then copy the tuple data.
-                         */
-                        buf.clear();
-                        buf.limit(nextChunkLength  + m_tableHeader.capacity());
-                        m_tableHeader.position(0);
-                        buf.put(m_tableHeader);
-                        //Doesn't move buffer position, does change the limit
-                        CompressionService.decompressBuffer(fileInputBuffer, buf);
-                        completedRead = true;
-                    } finally {
-                        if (!completedRead) {
-                            for (int partitionId : m_partitionIds) {
-                                m_corruptedPartitions.add(partitionId);
-                            }
-                            if (m_continueOnCorruptedChunk) {
-                                m_chunkReads.release();
-                                continue;
-                            } else {
-                                throw new IOException("Failed decompression of saved table chunk");
-                            }
-                        }
-                    }
+                    SnapshotRestoreStats.chunkRead(nextChunkLength + chunkLengthB.capacity());
 
-                    /*
-                     * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
-                     * in case it is the length value that is corrupted
-                     */
-                    if (m_relevantPartitionIds != null) {
-                        if (!m_relevantPartitionIds.contains(nextChunkPartitionId)) {
-                            m_chunkReads.release();
-                            continue;
-                        }
-                    }
-
-                    /*
-                     * VoltTable wants the buffer at the home position 0
-                     */
-                    c.b().position(0);
+                    final ListenableFuture<Container> chunk = CompressionService.submitCompressionTask(
+                            new ChunkDecompressor(fileInputBufferC, nextChunkPartitionId, nextChunkCRC));
+                    fileInputBufferC = null;
+                    chunk.addListener(m_notifier, CoreUtils.SAMETHREADEXECUTOR);
 
                     synchronized (TableSaveFile.this) {
-                        m_availableChunks.offer(c);
-                        c = null;
+                        m_availableChunks.offer(chunk);
                         TableSaveFile.this.notifyAll();
                     }
                 } catch (EOFException eof) {
@@ -779,12 +774,11 @@ public class TableSaveFile implements Closeable
                         TableSaveFile.this.notifyAll();
                     }
                 } finally {
-                    if (c != null) {
-                        c.discard();
+                    if (fileInputBufferC != null) {
+                        releaseInputBuffer(fileInputBufferC);
                     }
                 }
             }
-            fileInputBufferC.discard();
         }
 
         private void readChunks() {
@@ -825,7 +819,7 @@ public class TableSaveFile implements Closeable
                      * continue processing chunks from other partitions if only one partition
                      * has corrupt chunks in the file.
                      */
-                    final Checksum partitionIdCRC = m_checksumType == ChecksumType.CRC32C ? new PureJavaCrc32C() : new PureJavaCrc32();
+                    final Checksum partitionIdCRC = m_checksumType == ChecksumType.CRC32C ? ChecksumService.newCrc32c() : new PureJavaCrc32();
                     chunkLengthB.mark();
                     final int nextChunkPartitionId = chunkLengthB.getInt();
                     final int nextChunkPartitionIdCRC = chunkLengthB.getInt();
@@ -885,7 +879,7 @@ public class TableSaveFile implements Closeable
                             }
                         }
                         fileInputBuffer.flip();
-                        nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+                        nextChunkLength = m_compressionCodec.uncompressedLength(fileInputBuffer);
                     }
 
                     /*
@@ -931,7 +925,7 @@ public class TableSaveFile implements Closeable
                         c.b().position(c.b().position() + 4);//Leave space for row count to be moved into
                         checksumStartPosition = c.b().position();
                         if (isCompressed()) {
-                            CompressionService.decompressBuffer(fileInputBuffer, c.b());
+                            m_compressionCodec.decompress(fileInputBuffer, c.b());
                             c.b().position(c.b().limit());
                         } else {
                             while (c.b().hasRemaining()) {
@@ -959,7 +953,7 @@ public class TableSaveFile implements Closeable
                      */
                     final int calculatedCRC =
                             m_checksumType == ChecksumType.CRC32C  ?
-                                    DBBPool.getCRC32C(c.address(), c.b().position(), c.b().remaining()) :
+                                    ChecksumService.crc32c(c.b()) :
                                         DBBPool.getCRC32(c.address(), c.b().position(), c.b().remaining());
                     if (calculatedCRC != nextChunkCRC) {
                         m_corruptedPartitions.add(nextChunkPartitionId);
@@ -1006,7 +1000,7 @@ public class TableSaveFile implements Closeable
                     }
 
                     synchronized (TableSaveFile.this) {
-                        m_availableChunks.offer(c);
+                        m_availableChunks.offer(Futures.immediateFuture(c));
                         c = null;
                         TableSaveFile.this.notifyAll();
                     }
@@ -1051,22 +1045,6 @@ public class TableSaveFile implements Closeable
             }
             fileInputBufferC.discard();
         }
-        private Container getOutputBuffer(final int nextChunkPartitionId) {
-            BBContainer c = m_buffers.poll();
-            if (c == null) {
-                final BBContainer originContainer = DBBPool.allocateDirect(DEFAULT_CHUNKSIZE);
-                final ByteBuffer b = originContainer.b();
-                final Container retcont = new Container(b, originContainer, nextChunkPartitionId);
-                return retcont;
-            }
-            /*
-             * Need to reconstruct the container with the partition id of the next
-             * chunk so it can be a final public field. The buffer, address, and origin
-             * container remain the same.
-             */
-            final Container retcont = new Container(c.b(), c, nextChunkPartitionId);
-            return retcont;
-        }
 
         @Override
         public void run() {
@@ -1077,6 +1055,7 @@ public class TableSaveFile implements Closeable
                     readChunks();
                 }
             } finally {
+                SnapshotRestoreStats.fileCompleted();
                 synchronized (TableSaveFile.this) {
                     m_hasMoreChunks.set(false);
                     TableSaveFile.this.notifyAll();
@@ -1089,4 +1068,143 @@ public class TableSaveFile implements Closeable
         }
 
     }
+
+    private Container getOutputBuffer(final int nextChunkPartitionId) {
+        BBContainer c = m_buffers.poll();
+        if (c == null) {
+            final BBContainer originContainer = DBBPool.allocateDirect(DEFAULT_CHUNKSIZE);
+            final ByteBuffer b = originContainer.b();
+            final Container retcont = new Container(b, originContainer, nextChunkPartitionId);
+            return retcont;
+        }
+        /*
+         * Need to reconstruct the container with the partition id of the next
+         * chunk so it can be a final public field. The buffer, address, and origin
+         * container remain the same.
+         */
+        final Container retcont = new Container(c.b(), c, nextChunkPartitionId);
+        return retcont;
+    }
+
+    private BBContainer getInputBuffer() {
+        BBContainer c = m_inputBuffers.poll();
+        if (c == null) {
+            c = DBBPool.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
+        }
+        return c;
+    }
+
+    private void releaseInputBuffer(BBContainer c) {
+        synchronized (this) {
+            if (m_hasMoreChunks.get() == false) {
+                c.discard();
+            } else {
+                m_inputBuffers.add(c);
+            }
+        }
+    }
+
+    /**
+     * Validates and decompresses one chunk read by the ChunkReader. Runs in the compression
+     * service so the chunks of a file, and the chunks of all the files being restored,
+     * are decompressed in parallel while the reader goes on to the next one.
+     * Returns null if the chunk is to be skipped.
+     */
+    private class ChunkDecompressor implements Callable<Container> {
+        private final BBContainer m_input;
+        private final int m_partitionId;
+        private final int m_crc;
+
+        ChunkDecompressor(BBContainer input, int partitionId, int crc) {
+            m_input = input;
+            m_partitionId = partitionId;
+            m_crc = crc;
+        }
+
+        @Override
+        public Container call() throws IOException {
+            int uncompressedLength = 0;
+            long start = System.nanoTime();
+            try {
+                final ByteBuffer fileInputBuffer = m_input.b();
+
+                /*
+                 * Validate the rest of the chunk. This can fail if the data is corrupted
+                 * or the length value was corrupted.
+                 */
+                final int calculatedCRC =
+                        ChecksumService.crc32c(fileInputBuffer, 0, fileInputBuffer.remaining());
+                if (calculatedCRC != m_crc) {
+                    m_corruptedPartitions.add(m_partitionId);
+                    if (m_continueOnCorruptedChunk) {
+                        return null;
+                    } else {
+                        throw new IOException("CRC mismatch in saved table chunk");
+                    }
+                }
+
+                /*
+                 * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
+                 * in case it is the length value that is corrupted
+                 */
+                if (m_relevantPartitionIds != null && !m_relevantPartitionIds.contains(m_partitionId)) {
+                    return null;
+                }
+
+                uncompressedLength = m_compressionCodec.uncompressedLength(fileInputBuffer);
+
+                /*
+                 * Now allocate space to store the chunk using the VoltTable serialization representation.
+                 * The chunk will contain an integer row count preceding it so it can
+                 * be sucked straight in. There is a little funny business to overwrite the
+                 * partition id that is not part of the serialization format
+                 */
+                Container c = getOutputBuffer(m_partitionId);
+
+                /*
+                 * If the length value is wrong or not all data made it to disk this read will
+                 * not complete correctly. There could be overflow, underflow etc.
+                 * so use a try finally block to indicate that all partitions are now corrupt.
+                 */
+                boolean completedRead = false;
+                try {
+                    final ByteBuffer buf = c.b();
+                    /*
+                     * Assemble a VoltTable out of the chunk of tuples.
+                     * Put in the header that was cached in the constructor,
+                     * then copy the tuple data.
+                     */
+                    buf.clear();
+                    buf.limit(uncompressedLength + m_tableHeader.capacity());
+                    final ByteBuffer header = m_tableHeader.duplicate();
+                    header.position(0);
+                    buf.put(header);
+                    //Doesn't move buffer position, does change the limit
+                    m_compressionCodec.decompress(fileInputBuffer, buf);
+                    completedRead = true;
+                } finally {
+                    if (!completedRead) {
+                        c.discard();
+                        for (int partitionId : m_partitionIds) {
+                            m_corruptedPartitions.add(partitionId);
+                        }
+                        if (m_continueOnCorruptedChunk) {
+                            return null;
+                        } else {
+                            throw new IOException("Failed decompression of saved table chunk");
+                        }
+                    }
+                }
+
+                /*
+                 * VoltTable wants the buffer at the home position 0
+                 */
+                c.b().position(0);
+                return c;
+            } finally {
+                SnapshotRestoreStats.chunkDecompressed(uncompressedLength, System.nanoTime() - start);
+                releaseInputBuffer(m_input);
+            }
+        }
+    }
 }
@@ -30,6 +30,7 @@ public enum IndexType {
     HASH_TABLE          (2),
     BTREE               (3),
     COVERING_CELL_INDEX (4),
+    FLAT_HASH_TABLE     (5),
     ;
 
     IndexType(int val) {
@@ -90,6 +91,7 @@ public enum IndexType {
         case BTREE:
         case HASH_TABLE:
         case COVERING_CELL_INDEX:
+        case FLAT_HASH_TABLE:
             return "";
         case INVALID:
         }
@@ -113,9 +115,20 @@ public enum IndexType {
         case BTREE:
             return true;
         case HASH_TABLE:
+        case FLAT_HASH_TABLE:
         case INVALID:
             return false;
         }
         return false;
     }
+
+    /**
+     * Distinguish whether the IndexType with the given value is one of the hash index types,
+     * which only support equality lookups on the full key.
+     */
+    public static boolean isHashTable(int type)
+    {
+        IndexType it = get(type);
+        return it == HASH_TABLE || it == FLAT_HASH_TABLE;
+    }
 }
@@ -322,6 +322,15 @@ public abstract class CatalogSizing {
             isize.widthMin += 48;
             isize.widthMax += 48;
         }
+        else if (index.getType() == IndexType.FLAT_HASH_TABLE.getValue()) {
+            // Flat hash index slots hold the key, the 8 byte tuple pointer and a control byte.
+            // The slot array is between 7/8 full (just before growing) and 7/16 full
+            // (just after growing).
+            long slotWidthMin = isize.widthMin + TUPLE_PTR_SIZE + 1;
+            long slotWidthMax = isize.widthMax + TUPLE_PTR_SIZE + 1;
+            isize.widthMin = slotWidthMin * 8 / 7;
+            isize.widthMax = slotWidthMax * 16 / 7;
+        }
         else if (index.getType() == IndexType.COVERING_CELL_INDEX.getValue()) {
             // Covering cell indexes are implemented in the EE with two maps:
             //
@@ -345,6 +354,14 @@ public abstract class CatalogSizing {
             isize.widthMin += TUPLE_MAP_ENTRY + MIN_CELLS * CELL_MAP_ENTRY;
             isize.widthMax += TUPLE_MAP_ENTRY + MAX_CELLS * CELL_MAP_ENTRY;
         }
+        else if (index.getType() == IndexType.BTREE.getValue()) {
+            // B+tree leaves hold the key and the 8 byte tuple pointer, and are kept between
+            // half full and full. The inner nodes add a few percent, ignored here.
+            long entryWidthMin = isize.widthMin + TUPLE_PTR_SIZE;
+            long entryWidthMax = isize.widthMax + TUPLE_PTR_SIZE;
+            isize.widthMin = entryWidthMin;
+            isize.widthMax = entryWidthMax * 2;
+        }
         else {
             // Tree indexes have a 40 byte overhead per row.
             isize.widthMin += TREE_MAP_ENTRY_OVERHEAD + TUPLE_PTR_SIZE;
@@ -0,0 +1,150 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
+import org.voltcore.utils.DBBPool;
+import org.voltdb.NativeLibraryLoader;
+
+import com.google_voltpatches.common.base.Throwables;
+
+/**
+ * CRC32C checksums for data persisted by a node: PBD segments and snapshot blocks.
+ * <p>
+ * On Java 9 and later this uses {@code java.util.zip.CRC32C}, which the JIT compiles to the CPU's CRC32C
+ * instructions. On Java 8 direct buffers are checksummed by the EE's implementation when the native library is
+ * loaded, and everything else by {@link PureJavaCrc32C}. All of these produce the same values so data can be written
+ * and read by different JVMs.
+ */
+public final class ChecksumService {
+    // Constructor of java.util.zip.CRC32C and Checksum.update(ByteBuffer), null before Java 9
+    private static final MethodHandle s_newCrc32c;
+    private static final MethodHandle s_updateBuffer;
+
+    static {
+        MethodHandle newCrc32c = null;
+        MethodHandle updateBuffer = null;
+        try {
+            Class<?> crc32c = Class.forName("java.util.zip.CRC32C");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            newCrc32c = lookup.findConstructor(crc32c, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Checksum.class));
+            updateBuffer = lookup.findVirtual(Checksum.class, "update",
+                    MethodType.methodType(void.class, ByteBuffer.class));
+        } catch (ReflectiveOperationException e) {
+            newCrc32c = null;
+            updateBuffer = null;
+        }
+        s_newCrc32c = newCrc32c;
+        s_updateBuffer = updateBuffer;
+    }
+
+    // Lazily determined since loading the native library is not appropriate in every process
+    private static volatile Boolean s_nativeAvailable;
+
+    private ChecksumService() {}
+
+    /**
+     * @return {@code true} if checksums are computed by {@code java.util.zip.CRC32C}
+     */
+    public static boolean isIntrinsicCrc32c() {
+        return s_newCrc32c != null;
+    }
+
+    /**
+     * @return a new streaming CRC32C {@link Checksum}
+     */
+    public static Checksum newCrc32c() {
+        if (s_newCrc32c != null) {
+            try {
+                return (Checksum) s_newCrc32c.invokeExact();
+            } catch (Throwable t) {
+                Throwables.throwIfUnchecked(t);
+                throw new RuntimeException(t);
+            }
+        }
+        return new PureJavaCrc32C();
+    }
+
+    /**
+     * @return the CRC32C of the remaining bytes of {@code buf}. The position of {@code buf} is not changed.
+     */
+    public static int crc32c(ByteBuffer buf) {
+        if (s_newCrc32c != null) {
+            Checksum checksum = newCrc32c();
+            try {
+                s_updateBuffer.invokeExact(checksum, buf.duplicate());
+            } catch (Throwable t) {
+                Throwables.throwIfUnchecked(t);
+                throw new RuntimeException(t);
+            }
+            return (int) checksum.getValue();
+        }
+        if (buf.hasArray()) {
+            return crc32c(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        }
+        if (isNativeAvailable()) {
+            return DBBPool.getBufferCRC32C(buf, buf.position(), buf.remaining());
+        }
+        PureJavaCrc32C checksum = new PureJavaCrc32C();
+        ByteBuffer dup = buf.duplicate();
+        byte[] chunk = new byte[Math.min(dup.remaining(), 64 * 1024)];
+        while (dup.hasRemaining()) {
+            int length = Math.min(dup.remaining(), chunk.length);
+            dup.get(chunk, 0, length);
+            checksum.update(chunk, 0, length);
+        }
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * @return the CRC32C of {@code length} bytes of {@code buf} starting at the absolute {@code offset}
+     */
+    public static int crc32c(ByteBuffer buf, int offset, int length) {
+        ByteBuffer dup = buf.duplicate();
+        dup.limit(offset + length).position(offset);
+        return crc32c(dup);
+    }
+
+    /**
+     * @return the CRC32C of {@code length} bytes of {@code bytes} starting at {@code offset}
+     */
+    public static int crc32c(byte[] bytes, int offset, int length) {
+        Checksum checksum = newCrc32c();
+        checksum.update(bytes, offset, length);
+        return (int) checksum.getValue();
+    }
+
+    private static boolean isNativeAvailable() {
+        Boolean available = s_nativeAvailable;
+        if (available == null) {
+            try {
+                available = NativeLibraryLoader.loadVoltDB(false);
+            } catch (Throwable t) {
+                available = false;
+            }
+            s_nativeAvailable = available;
+        }
+        return available;
+    }
+}
@@ -0,0 +1,238 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.voltcore.logging.VoltLogger;
+import org.xerial.snappy.Snappy;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * Block compression codecs used for snapshot data files and persistent binary deque segments.
+ * <p>
+ * Each codec has a small id which is recorded alongside the data it compresses, so that
+ * readers always pick the codec the data was written with, regardless of the codec currently
+ * configured. {@link #SNAPPY} has id 0, which is what data written before codecs were
+ * selectable is implicitly compressed with.
+ * <p>
+ * All codecs compress the remaining bytes of the input buffer into the output buffer starting at
+ * its position. Neither buffer's position is changed, and the limit of the output buffer is set
+ * to the end of the compressed (or uncompressed) data.
+ */
+public enum CompressionCodec {
+    /** The original codec. Requires direct buffers. */
+    SNAPPY(0) {
+        @Override
+        public int maxCompressedLength(int uncompressedSize) {
+            return Snappy.maxCompressedLength(uncompressedSize);
+        }
+
+        @Override
+        public int compress(ByteBuffer input, ByteBuffer output) throws IOException {
+            return Snappy.compress(input, output);
+        }
+
+        @Override
+        public int uncompressedLength(ByteBuffer compressed) throws IOException {
+            return Snappy.uncompressedLength(compressed);
+        }
+
+        @Override
+        public int decompress(ByteBuffer compressed, ByteBuffer output) throws IOException {
+            return Snappy.uncompress(compressed, output);
+        }
+    },
+    /** LZ4, faster than snappy at both compressing and decompressing with a similar ratio */
+    LZ4(1) {
+        @Override
+        public int compress(ByteBuffer input, ByteBuffer output) throws IOException {
+            return Lz4.compress(Lz4.FAST, input, output);
+        }
+    },
+    /**
+     * LZ4 with the high compression compressor. Much slower to compress but with a better ratio, and decompresses
+     * as fast as {@link #LZ4}. Intended for archival snapshots.
+     */
+    LZ4HC(2) {
+        @Override
+        public int compress(ByteBuffer input, ByteBuffer output) throws IOException {
+            return Lz4.compress(Lz4.HIGH, input, output);
+        }
+    };
+
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    private static final CompressionCodec[] BY_ID;
+    static {
+        CompressionCodec[] values = values();
+        BY_ID = new CompressionCodec[values.length];
+        for (CompressionCodec codec : values) {
+            BY_ID[codec.m_id] = codec;
+        }
+    }
+
+    private final byte m_id;
+
+    private CompressionCodec(int id) {
+        m_id = (byte) id;
+    }
+
+    /**
+     * @return the id which identifies this codec in persisted data
+     */
+    public byte getId() {
+        return m_id;
+    }
+
+    /**
+     * @return the largest number of bytes {@code uncompressedSize} bytes can compress to
+     */
+    public int maxCompressedLength(int uncompressedSize) {
+        return Lz4.LENGTH_PREFIX_BYTES + Lz4.FAST.maxCompressedLength(uncompressedSize);
+    }
+
+    /**
+     * Compress the remaining bytes of {@code input} into {@code output}
+     *
+     * @return the compressed size
+     * @throws IOException if the data could not be compressed, such as when {@code output} is too small
+     */
+    public abstract int compress(ByteBuffer input, ByteBuffer output) throws IOException;
+
+    /**
+     * @return the size the remaining bytes of {@code compressed} will uncompress to
+     * @throws IOException if {@code compressed} is not valid for this codec
+     */
+    public int uncompressedLength(ByteBuffer compressed) throws IOException {
+        return Lz4.uncompressedLength(compressed);
+    }
+
+    /**
+     * Decompress the remaining bytes of {@code compressed} into {@code output}
+     *
+     * @return the uncompressed size
+     * @throws IOException if {@code compressed} is not valid for this codec or {@code output} is too small
+     */
+    public int decompress(ByteBuffer compressed, ByteBuffer output) throws IOException {
+        return Lz4.decompress(compressed, output);
+    }
+
+    /**
+     * @return the codec with the given id
+     * @throws IOException if {@code id} does not identify a known codec
+     */
+    public static CompressionCodec fromId(int id) throws IOException {
+        if (id < 0 || id >= BY_ID.length) {
+            throw new IOException("Unknown compression codec id " + id);
+        }
+        return BY_ID[id];
+    }
+
+    /**
+     * @return the codec with the given name, ignoring case
+     * @throws IllegalArgumentException if {@code name} is not the name of a known codec
+     */
+    public static CompressionCodec fromName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * Look up the codec named by a system property, falling back to {@code defaultCodec} if the property is not set
+     * or does not name a known codec.
+     */
+    static CompressionCodec fromProperty(String property, CompressionCodec defaultCodec) {
+        String name = System.getProperty(property);
+        if (name == null || name.trim().isEmpty()) {
+            return defaultCodec;
+        }
+        try {
+            return fromName(name);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown compression codec " + name + " for " + property + ", using " + defaultCodec);
+            return defaultCodec;
+        }
+    }
+
+    /**
+     * The LZ4 block format does not carry the uncompressed length so it is prefixed to the compressed block as a big
+     * endian int.
+     */
+    private static final class Lz4 {
+        static final int LENGTH_PREFIX_BYTES = 4;
+
+        static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+        static final LZ4Compressor FAST = FACTORY.fastCompressor();
+        static final LZ4Compressor HIGH = FACTORY.highCompressor();
+        static final LZ4SafeDecompressor DECOMPRESSOR = FACTORY.safeDecompressor();
+
+        static int compress(LZ4Compressor compressor, ByteBuffer input, ByteBuffer output) throws IOException {
+            final int length = input.remaining();
+            final int start = output.position();
+            if (output.remaining() < LENGTH_PREFIX_BYTES) {
+                throw new IOException("Output buffer too small for compressed data");
+            }
+            final int compressedSize;
+            try {
+                compressedSize = compressor.compress(input, input.position(), length, output,
+                        start + LENGTH_PREFIX_BYTES, output.remaining() - LENGTH_PREFIX_BYTES);
+            } catch (LZ4Exception e) {
+                throw new IOException("Failed to compress data", e);
+            }
+            output.duplicate().order(ByteOrder.BIG_ENDIAN).putInt(start, length);
+            output.limit(start + LENGTH_PREFIX_BYTES + compressedSize);
+            return LENGTH_PREFIX_BYTES + compressedSize;
+        }
+
+        static int uncompressedLength(ByteBuffer compressed) throws IOException {
+            if (compressed.remaining() < LENGTH_PREFIX_BYTES) {
+                throw new IOException("Truncated LZ4 compressed data");
+            }
+            final int length = compressed.duplicate().order(ByteOrder.BIG_ENDIAN).getInt();
+            if (length < 0) {
+                throw new IOException("Invalid LZ4 uncompressed length " + length);
+            }
+            return length;
+        }
+
+        static int decompress(ByteBuffer compressed, ByteBuffer output) throws IOException {
+            final int length = uncompressedLength(compressed);
+            final int start = output.position();
+            if (output.remaining() < length) {
+                throw new IOException("Output buffer too small for uncompressed data");
+            }
+            final int uncompressedSize;
+            try {
+                uncompressedSize = DECOMPRESSOR.decompress(compressed, compressed.position() + LENGTH_PREFIX_BYTES,
+                        compressed.remaining() - LENGTH_PREFIX_BYTES, output, start, length);
+            } catch (LZ4Exception e) {
+                throw new IOException("Failed to decompress LZ4 data", e);
+            }
+            if (uncompressedSize != length) {
+                throw new IOException("LZ4 data decompressed to " + uncompressedSize + " bytes, expected " + length);
+            }
+            output.limit(start + length);
+            return length;
+        }
+    }
+}
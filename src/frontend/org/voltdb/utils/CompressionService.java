@@ -41,6 +41,17 @@ import com.google_voltpatches.common.util.concurrent.MoreExecutors;
 
 public final class CompressionService {
 
+    /*
+     * Codecs used for the different kinds of data persisted by a node, each configured by a system property naming
+     * a CompressionCodec. Readers use the codec recorded with the data, so these can be changed between restarts.
+     */
+    public static final CompressionCodec SNAPSHOT_CODEC =
+            CompressionCodec.fromProperty("SNAPSHOT_COMPRESSION_CODEC", CompressionCodec.SNAPPY);
+    public static final CompressionCodec EXPORT_OVERFLOW_CODEC =
+            CompressionCodec.fromProperty("EXPORT_OVERFLOW_COMPRESSION_CODEC", CompressionCodec.SNAPPY);
+    public static final CompressionCodec DR_OVERFLOW_CODEC =
+            CompressionCodec.fromProperty("DR_OVERFLOW_COMPRESSION_CODEC", CompressionCodec.SNAPPY);
+
     static {
         CoreUtils.m_threadLocalDeallocator = new Runnable() {
             @Override
@@ -129,6 +140,11 @@ public final class CompressionService {
     }
 
     public static Future<BBContainer> compressAndCRC32cBufferAsync(final ByteBuffer inBuffer, final BBContainer outBufferC) {
+        return compressAndCRC32cBufferAsync(inBuffer, outBufferC, CompressionCodec.SNAPPY);
+    }
+
+    public static Future<BBContainer> compressAndCRC32cBufferAsync(final ByteBuffer inBuffer,
+            final BBContainer outBufferC, final CompressionCodec codec) {
         assert(inBuffer.isDirect());
         assert(outBufferC.b().isDirect());
         return submitCompressionTask(new Callable<BBContainer>() {
@@ -140,9 +156,9 @@ public final class CompressionService {
                 final int crcPosition = outBuffer.position();
                 outBuffer.position(outBuffer.position() + 4);
                 final int crcCalcStart = outBuffer.position();
-                compressBuffer(inBuffer, outBuffer);
+                codec.compress(inBuffer, outBuffer);
                 final int crc32c =
-                        DBBPool.getCRC32C( outBufferC.address(), crcCalcStart, outBuffer.limit() - crcCalcStart);
+                        ChecksumService.crc32c(outBuffer, crcCalcStart, outBuffer.limit() - crcCalcStart);
                 outBuffer.putInt(crcPosition, crc32c);
                 return outBufferC;
             }
@@ -217,8 +233,15 @@ public final class CompressionService {
         return result;
     }
 
+    /**
+     * @return the largest number of bytes {@code uncompressedSize} bytes can compress to with any codec
+     */
     public static int maxCompressedLength(int uncompressedSize) {
-        return Snappy.maxCompressedLength(uncompressedSize);
+        int maxLength = 0;
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            maxLength = Math.max(maxLength, codec.maxCompressedLength(uncompressedSize));
+        }
+        return maxLength;
     }
 
     public static int uncompressedLength(ByteBuffer compressed) throws IOException {
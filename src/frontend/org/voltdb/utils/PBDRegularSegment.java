@@ -33,6 +33,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 
 import org.voltcore.logging.VoltLogger;
@@ -53,8 +54,10 @@ import com.google_voltpatches.common.base.Preconditions;
 class PBDRegularSegment<M> extends PBDSegment<M> {
     private static final String TRUNCATOR_CURSOR = "__truncator__";
     private static final String SCANNER_CURSOR = "__scanner__";
-    private static final int VERSION = 3;
+    private static final int VERSION = 4;
     private static final int COMPATIBLE_VERSION = 3;
+    // First version which checksums the headers and entries with CRC32C instead of CRC32
+    private static final int CRC32C_VERSION = 4;
     private static final Random RANDOM = new Random();
 
     private final Map<String, SegmentReader> m_readCursors = new HashMap<>();
@@ -63,10 +66,14 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
 
     private boolean m_closed = true;
     private FileChannelWrapper m_fc;
-    // Avoid unnecessary sync with this flag
-    private boolean m_syncedSinceLastEdit = true;
-    // Reusable crc calculator. Must be reset before each use
+    // Edits are counted so that a sync done without the deque lock knows which edits it made durable,
+    // and unnecessary syncs are avoided
+    private long m_editCount = 0;
+    private final AtomicLong m_syncedEditCount = new AtomicLong();
+    // Reusable crc calculator for segments older than CRC32C_VERSION. Must be reset before each use
     private final CRC32 m_crc;
+    // Format version of the segment file, which determines the checksums used
+    private int m_version = VERSION;
     // Mirror of the isFinal metadata on the filesystem
     private boolean m_isFinal;
     // Whether or not this is the current active segment being written to
@@ -80,7 +87,8 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
     private long m_startId = INVALID_ID;
     private long m_endId = INVALID_ID;
     private long m_timestamp = INVALID_TIMESTAMP;
-    private boolean m_compress;
+    // Codec entries offered by DeferredSerialization are compressed with, null if they should not be compressed
+    private CompressionCodec m_compression;
     private int m_segmentRandomId;
     private int m_extraHeaderSize = 0;
     // Not guaranteed to be valid unless m_extraHeaderSize > 0
@@ -101,7 +109,7 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
     }
 
     private void reset() {
-        m_syncedSinceLastEdit = false;
+        m_editCount++;
         if (m_segmentHeaderBuf != null) {
             m_segmentHeaderBuf.discard();
             m_segmentHeaderBuf = null;
@@ -157,7 +165,7 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         }
 
         if (m_closed) {
-            open(false, false, false);
+            open(false, false, null);
         }
         SegmentReader reader = new SegmentReader(cursorId);
         m_readCursors.put(cursorId, reader);
@@ -172,12 +180,12 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
 
     @Override
     void openForTruncate() throws IOException {
-        open(true, false, false);
+        open(true, false, null);
     }
 
     @Override
-    void openNewSegment(boolean compress) throws IOException {
-        open(true, true, compress);
+    void openNewSegment(CompressionCodec compression) throws IOException {
+        open(true, true, compression);
     }
 
     /**
@@ -194,7 +202,7 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         return m_extraHeaderSize;
     }
 
-    private void open(boolean forWrite, boolean emptyFile, boolean compress) throws IOException {
+    private void open(boolean forWrite, boolean emptyFile, CompressionCodec compression) throws IOException {
         if (!m_closed) {
             throw new IOException("Segment is already opened");
         }
@@ -203,7 +211,7 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
             if (!forWrite) {
                 throw new IOException("File " + m_file + " does not exist");
             }
-            m_syncedSinceLastEdit = false;
+            m_editCount++;
         }
         assert (m_fc == null);
         m_fc = openFile(m_file, forWrite);
@@ -212,10 +220,11 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
 
         // Those asserts ensure the file is opened with correct flag
         if (emptyFile) {
+            m_version = VERSION;
             setFinal(false);
             m_segmentRandomId = RANDOM.nextInt();
             initNumEntries(0, 0);
-            m_compress = compress;
+            m_compression = compression;
             m_isActive = true;
         }
         if (forWrite) {
@@ -242,7 +251,7 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         boolean wasClosed = false;
         if (m_closed) {
             wasClosed = true;
-            open(false, false, false);
+            open(false, false, null);
         }
         try {
             if (m_fc.size() >= SEGMENT_HEADER_BYTES) {
@@ -257,6 +266,13 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
                     m_usageSpecificLog.warn(message);
                     throw new IOException(message);
                 }
+                if (version > VERSION) {
+                    String message = "File version is not supported. Detected version " + version + " in header. Supports "
+                            + "up to version " + VERSION + " in file " + m_file.getName();
+                    m_usageSpecificLog.warn(message);
+                    throw new IOException(message);
+                }
+                m_version = version;
 
                 int numOfEntries = b.getInt();
                 int size = b.getInt();
@@ -317,7 +333,7 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         ByteBuffer b = m_segmentHeaderBuf.b();
         b.clear();
         b.putInt(0); // dummy before crc calculation. We want to reuse this same buffer for crc calculation too.
-        b.putInt(VERSION);
+        b.putInt(m_version);
         b.putInt(m_numOfEntries);
         b.putInt(m_size);
         b.putLong(m_startId);
@@ -332,22 +348,33 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         b.putInt(crc);
         b.position(HEADER_START_OFFSET);
         PBDUtils.writeBuffer(m_fc, m_segmentHeaderBuf.bDR(), PBDSegment.HEADER_START_OFFSET);
-        m_syncedSinceLastEdit = false;
+        m_editCount++;
+    }
+
+    private boolean usesCrc32c() {
+        return m_version >= CRC32C_VERSION;
     }
 
     private int calculateSegmentHeaderCrc() {
         ByteBuffer bb = m_segmentHeaderBuf.b();
         bb.position(HEADER_VERSION_OFFSET);
-        m_crc.reset();
-        m_crc.update(m_segmentHeaderBuf.b());
-
-        // the checksum here is really an unsigned int
-        return (int) m_crc.getValue();
+        return calculateCrc(bb);
     }
 
     private int calculateExtraHeaderCrc(ByteBuffer extraHeader) {
+        return calculateCrc(extraHeader);
+    }
+
+    // Checksum and consume the remaining bytes of buf
+    private int calculateCrc(ByteBuffer buf) {
+        if (usesCrc32c()) {
+            int crc = ChecksumService.crc32c(buf);
+            buf.position(buf.limit());
+            return crc;
+        }
         m_crc.reset();
-        m_crc.update(extraHeader);
+        m_crc.update(buf);
+        // the checksum here is really an unsigned int
         return (int) m_crc.getValue();
     }
 
@@ -663,10 +690,28 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         if (m_closed) {
             throw new IOException("Segment closed");
         }
-        if (!m_syncedSinceLastEdit) {
+        final long editCount = m_editCount;
+        if (m_syncedEditCount.get() < editCount) {
             m_fc.force(true);
+            m_syncedEditCount.accumulateAndGet(editCount, Math::max);
+        }
+    }
+
+    @Override
+    PendingSync prepareSync() throws IOException {
+        if (m_closed) {
+            throw new IOException("Segment closed");
         }
-        m_syncedSinceLastEdit = true;
+        final long editCount = m_editCount;
+        if (m_syncedEditCount.get() >= editCount) {
+            return null;
+        }
+        // Force the underlying channel directly so a concurrent close or reopen does not mark m_fc as unstable
+        final FileChannel channel = m_fc.m_delegate;
+        return () -> {
+            channel.force(true);
+            m_syncedEditCount.accumulateAndGet(editCount, Math::max);
+        };
     }
 
     @Override
@@ -690,57 +735,38 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
 
     // Used by Export path
     @Override
-    int offer(DBBPool.BBContainer cont, long startId, long endId, long timestamp) throws IOException
+    int offer(Entry entry, long startId, long endId, long timestamp) throws IOException
     {
         assert(m_endId == INVALID_ID || startId == m_endId+1) : "Current endId=" + m_endId + ", input startId=" + startId;
         if (m_closed) {
             throw new IOException("Segment closed");
         }
 
-        final ByteBuffer buf = cont.b();
-        final int remaining = buf.remaining();
-        boolean compress = m_compress && remaining >= 32 && buf.isDirect();
-
-        final int maxCompressedSize = (compress ? CompressionService.maxCompressedLength(remaining) : remaining)
-                + ENTRY_HEADER_BYTES;
-        if (remaining() < maxCompressedSize) {
+        // Reserve the worst case compressed size, as if the entry were compressed here, so that how much
+        // a segment holds does not depend on how well its entries compress
+        if (remaining() < entry.m_reservedSize + ENTRY_HEADER_BYTES) {
             return -1;
         }
+        final ByteBuffer data = entry.m_data.b();
 
-        m_syncedSinceLastEdit = false;
-        DBBPool.BBContainer destBuf = cont;
-        int written = 0;
-        try {
-            m_entryHeaderBuf.b().clear();
+        m_editCount++;
+        m_entryHeaderBuf.b().clear();
+        writeEntryHeader(data, entry.m_flags);
 
-            if (compress) {
-                destBuf = DBBPool.allocateDirectAndPool(maxCompressedSize);
-                final int compressedSize = CompressionService.compressBuffer(buf, destBuf.b());
-                destBuf.b().limit(compressedSize);
-                writeEntryHeader(destBuf.b(), PBDSegment.FLAG_COMPRESSED);
-            } else {
-                destBuf = cont;
-                writeEntryHeader(destBuf.b(), PBDSegment.NO_FLAGS);
-            }
-            // Write entry header
-            m_entryHeaderBuf.b().flip();
-            while (m_entryHeaderBuf.b().hasRemaining()) {
-                m_fc.write(m_entryHeaderBuf.b());
-            }
+        // Write entry header
+        m_entryHeaderBuf.b().flip();
+        while (m_entryHeaderBuf.b().hasRemaining()) {
+            m_fc.write(m_entryHeaderBuf.b());
+        }
 
-            // Write entry
-            destBuf.b().flip();
-            written = destBuf.b().remaining();
-            while (destBuf.b().hasRemaining()) {
-                m_fc.write(destBuf.b());
-            }
-            // Update segment header
-            updateHeaderDataAfterOffer(remaining, startId, endId, timestamp);
-        } finally {
-            if (compress) {
-                destBuf.discard();
-            }
+        // Write entry
+        data.flip();
+        final int written = data.remaining();
+        while (data.hasRemaining()) {
+            m_fc.write(data);
         }
+        // Update segment header
+        updateHeaderDataAfterOffer(entry.m_uncompressedSize, startId, endId, timestamp);
 
         return written;
     }
@@ -756,22 +782,29 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
             return -1;
         }
 
-        m_syncedSinceLastEdit = false;
         DBBPool.BBContainer destBuf = DBBPool.allocateDirectAndPool(fullSize);
+        Entry entry = null;
 
         try {
-            m_entryHeaderBuf.b().clear();
             MiscUtils.writeDeferredSerialization(destBuf.b(), ds);
             destBuf.b().flip();
-            // Write entry header
-            return offer(destBuf, INVALID_ID, INVALID_ID, INVALID_TIMESTAMP);
+            entry = Entry.prepare(destBuf, m_compression);
+            return offer(entry, INVALID_ID, INVALID_ID, INVALID_TIMESTAMP);
         } finally {
+            if (entry != null) {
+                entry.discard();
+            }
             destBuf.discard();
         }
     }
 
     private void writeEntryHeader(ByteBuffer data, char flags) {
-        PBDUtils.writeEntryHeader(m_crc, m_entryHeaderBuf.b(), data, m_segmentRandomId + m_numOfEntries + 1, flags);
+        final int entryId = m_segmentRandomId + m_numOfEntries + 1;
+        if (usesCrc32c()) {
+            PBDUtils.writeEntryHeaderCrc32c(m_entryHeaderBuf.b(), data, entryId, flags);
+        } else {
+            PBDUtils.writeEntryHeader(m_crc, m_entryHeaderBuf.b(), data, entryId, flags);
+        }
     }
 
     @Override
@@ -787,6 +820,10 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         try {
             written += entry.writeTruncatedObject(partialCont.b(), m_segmentRandomId + entryNumber);
             partialCont.b().flip();
+            if (usesCrc32c()) {
+                // Truncator responses always write CRC32 entry headers
+                rewriteEntryCrc(partialCont.b());
+            }
 
             while (partialCont.b().hasRemaining()) {
                 m_fc.write(partialCont.b());
@@ -797,6 +834,14 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         return written;
     }
 
+    private static void rewriteEntryCrc(ByteBuffer entry) {
+        final int entryId = entry.getInt(ENTRY_HEADER_ENTRY_ID_OFFSET);
+        final char flags = entry.getChar(ENTRY_HEADER_FLAG_OFFSET);
+        ByteBuffer data = entry.duplicate();
+        data.position(ENTRY_HEADER_BYTES);
+        entry.putInt(ENTRY_HEADER_CRC_OFFSET, PBDUtils.calculateEntryCrc32c(data, entryId, flags));
+    }
+
     @Override
     void writeExtraHeader(M extraHeader) throws IOException {
         if (!(m_numOfEntries == 0 && m_extraHeaderSize == 0)) {
@@ -971,10 +1016,11 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
                         try {
                             fillBuffer(compressedBuf.b(), entryId, flags, entryCRC, checkCrc);
 
-                            uncompressedLen = CompressionService.uncompressedLength(compressedBuf.bDR());
+                            final CompressionCodec codec = entryCompressionCodec(flags);
+                            uncompressedLen = codec.uncompressedLength(compressedBuf.bDR());
                             retcont = factory.getContainer(uncompressedLen);
                             retcont.b().limit(uncompressedLen);
-                            CompressionService.decompressBuffer(compressedBuf.bDR(), retcont.b());
+                            codec.decompress(compressedBuf.bDR(), retcont.b());
                         } finally {
                             compressedBuf.discard();
                         }
@@ -1019,8 +1065,9 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
             entry.position(origPosition);
 
             if (checkCrc) {
-                if (crc != PBDUtils.calculateEntryCrc(m_crcReader, entry, entryId, flags)
-                        || INJECT_PBD_CHECKSUM_ERROR) {
+                final int expectedCrc = usesCrc32c() ? PBDUtils.calculateEntryCrc32c(entry, entryId, flags)
+                        : PBDUtils.calculateEntryCrc(m_crcReader, entry, entryId, flags);
+                if (crc != expectedCrc || INJECT_PBD_CHECKSUM_ERROR) {
                     throw new IOException("File corruption detected in " + m_file.getName() + ": checksum error. "
                             + "Truncate the file to last safe point.");
                 }
@@ -1120,7 +1167,7 @@ class PBDRegularSegment<M> extends PBDSegment<M> {
         @Override
         public void reopen() throws IOException {
             if (m_readerClosed) {
-                open(false, false, false);
+                open(false, false, null);
                 m_readerClosed = false;
             }
             if (m_cursorId != null) {
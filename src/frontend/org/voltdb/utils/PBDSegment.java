@@ -63,6 +63,10 @@ public abstract class PBDSegment<M> {
 
     static final char NO_FLAGS = 0;
     static final char FLAG_COMPRESSED = 1;
+    // Id of the CompressionCodec of a compressed entry. Always 0 (snappy) in entries written before codecs
+    // were selectable, and also 0 for snappy now so those entries are unchanged
+    static final int FLAG_CODEC_SHIFT = 1;
+    static final char FLAG_CODEC_MASK = 0xF << FLAG_CODEC_SHIFT;
 
     // Export Segment Entry Header layout (each segment has multiple entries):
     //  - crc of segment entry (4 bytes),
@@ -143,10 +147,10 @@ public abstract class PBDSegment<M> {
     /**
      * Open and initialize this segment as a new segment
      *
-     * @param compress whether or not entries should be compressed by default
+     * @param compression codec entries should be compressed with by default or {@code null} for no compression
      * @throws IOException
      */
-    abstract void openNewSegment(boolean compress) throws IOException;
+    abstract void openNewSegment(CompressionCodec compression) throws IOException;
 
     /**
      * Open the segment for read and possible truncation
@@ -163,21 +167,30 @@ public abstract class PBDSegment<M> {
 
     abstract void sync() throws IOException;
 
+    /**
+     * Capture the edits to this segment which have not been synced yet, so that they can be synced without holding
+     * the deque lock. Must be called while holding the deque lock.
+     *
+     * @return the pending sync or {@code null} if everything written to this segment has already been synced
+     * @throws IOException if the segment is closed
+     */
+    abstract PendingSync prepareSync() throws IOException;
+
     abstract boolean hasAllFinishedReading() throws IOException;
 
     /**
-     * Writes passed in bytes to this segment as next entry in the PBD.
-     * @param cont BBContainer with the bytes to be written
+     * Writes a prepared entry to this segment as next entry in the PBD.
+     * @param entry {@link Entry} with the bytes to be written
      * @param startId the starting id of the data that is being offered. This should be <code>INVALID_ID</code>
      *        if the PBD does not require ids
      * @param endId the ending id of the data that is being offered. This should be <code>INVALID_ID</code>
      *        if the PBD does not require ids
-     * @return the number of bytes written. If compression is enables, bytes written will be
+     * @return the number of bytes written. If the entry is compressed, bytes written will be
      *         different from the number passed in. -1 will be returned if the bytes cannot
-     *         fit into this segment.
+     *         fit into this segment, in which case the entry is left untouched.
      * @throws IOException if any IO error occurs trying to write to the pbd segment file.
      */
-    abstract int offer(DBBPool.BBContainer cont, long startId, long endId, long timestamp) throws IOException;
+    abstract int offer(Entry entry, long startId, long endId, long timestamp) throws IOException;
 
     abstract int offer(DeferredSerialization ds) throws IOException;
 
@@ -281,4 +294,86 @@ public abstract class PBDSegment<M> {
     static UserDefinedFileAttributeView getFileAttributeView(File file) {
         return Files.getFileAttributeView(file.toPath(), UserDefinedFileAttributeView.class);
     }
+
+    /**
+     * @return the entry flags for an entry compressed with {@code codec}
+     */
+    static char compressedEntryFlags(CompressionCodec codec) {
+        return (char) (FLAG_COMPRESSED | (codec.getId() << FLAG_CODEC_SHIFT));
+    }
+
+    /**
+     * @return the codec a compressed entry with {@code flags} was compressed with
+     * @throws IOException if the codec id in {@code flags} is not known
+     */
+    static CompressionCodec entryCompressionCodec(char flags) throws IOException {
+        return CompressionCodec.fromId((flags & FLAG_CODEC_MASK) >> FLAG_CODEC_SHIFT);
+    }
+
+    /**
+     * An entry ready to be written to a segment. Preparing an entry, which includes compressing it, does not involve
+     * any segment so it is done before taking the deque lock, leaving only the write itself to be done holding it.
+     */
+    static final class Entry {
+        final DBBPool.BBContainer m_data;
+        final int m_uncompressedSize;
+        // Worst case size of the entry data, which a segment must have room for to accept the entry
+        final int m_reservedSize;
+        final char m_flags;
+        private final boolean m_compressed;
+
+        private Entry(DBBPool.BBContainer data, int uncompressedSize, int reservedSize, char flags,
+                boolean compressed) {
+            m_data = data;
+            m_uncompressedSize = uncompressedSize;
+            m_reservedSize = reservedSize;
+            m_flags = flags;
+            m_compressed = compressed;
+        }
+
+        /**
+         * @param cont        data of the entry. Still owned by the caller.
+         * @param compression codec to compress the data with or {@code null} for no compression
+         * @return a new entry which must be discarded after it has been offered
+         */
+        static Entry prepare(DBBPool.BBContainer cont, CompressionCodec compression) throws IOException {
+            final ByteBuffer buf = cont.b();
+            final int remaining = buf.remaining();
+            if (compression == null || remaining < 32 || !buf.isDirect()) {
+                return new Entry(cont, remaining, remaining, NO_FLAGS, false);
+            }
+
+            final int maxCompressedLength = compression.maxCompressedLength(remaining);
+            DBBPool.BBContainer compressed = DBBPool.allocateDirectAndPool(maxCompressedLength);
+            try {
+                compression.compress(buf, compressed.b());
+            } catch (Throwable t) {
+                compressed.discard();
+                throw t;
+            }
+            return new Entry(compressed, remaining, maxCompressedLength, compressedEntryFlags(compression), true);
+        }
+
+        /**
+         * Release the compressed copy of the data if one was made
+         */
+        void discard() {
+            if (m_compressed) {
+                m_data.discard();
+            }
+        }
+    }
+
+    /**
+     * Sync of the edits captured by {@link PBDSegment#prepareSync()}
+     */
+    interface PendingSync {
+        /**
+         * Force the captured edits to disk. May be called without holding the deque lock.
+         *
+         * @throws java.nio.channels.ClosedChannelException if the segment was closed or reopened since the sync was
+         *                                                   prepared. The sync should be redone holding the lock.
+         */
+        void run() throws IOException;
+    }
 }
@@ -56,10 +56,34 @@ public class PBDUtils {
         return (int) crc.getValue();
     }
 
+    /**
+     * Checksum of an entry in a segment of version 4 or later: the CRC32C of the entry length, id and flags followed by
+     * the CRC32C of the data. Like {@link #calculateEntryCrc(CRC32, ByteBuffer, int, char)} this consumes
+     * {@code destBuf}.
+     */
+    public static int calculateEntryCrc32c(ByteBuffer destBuf, int entryId, char flags) {
+        ByteBuffer header = ByteBuffer.allocate(14);
+        header.putInt(destBuf.remaining());
+        header.putInt(entryId);
+        header.putChar(flags);
+        header.putInt(ChecksumService.crc32c(destBuf));
+        destBuf.position(destBuf.limit());
+        return ChecksumService.crc32c(header.array(), 0, header.capacity());
+    }
+
     public static void writeEntryHeader(CRC32 crc, ByteBuffer headerBuf,
             ByteBuffer destBuf, int entryId, char flag) {
         int length = destBuf.remaining();
-        headerBuf.putInt(calculateEntryCrc(crc, destBuf, entryId, flag));
+        putEntryHeader(headerBuf, calculateEntryCrc(crc, destBuf, entryId, flag), length, entryId, flag);
+    }
+
+    public static void writeEntryHeaderCrc32c(ByteBuffer headerBuf, ByteBuffer destBuf, int entryId, char flag) {
+        int length = destBuf.remaining();
+        putEntryHeader(headerBuf, calculateEntryCrc32c(destBuf, entryId, flag), length, entryId, flag);
+    }
+
+    private static void putEntryHeader(ByteBuffer headerBuf, int crc, int length, int entryId, char flag) {
+        headerBuf.putInt(crc);
         headerBuf.putInt(length);
         headerBuf.putInt(entryId);
         headerBuf.putChar(flag);
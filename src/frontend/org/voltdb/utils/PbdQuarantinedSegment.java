@@ -63,7 +63,7 @@ class PbdQuarantinedSegment<M> extends PBDSegment<M> {
     }
 
     @Override
-    void openNewSegment(boolean compress) {
+    void openNewSegment(CompressionCodec compression) {
         throw new UnsupportedOperationException();
     }
 
@@ -87,13 +87,18 @@ class PbdQuarantinedSegment<M> extends PBDSegment<M> {
     @Override
     void sync() {}
 
+    @Override
+    PendingSync prepareSync() {
+        return null;
+    }
+
     @Override
     boolean hasAllFinishedReading() {
         return true;
     }
 
     @Override
-    int offer(BBContainer cont, long startId, long endId, long timestamp) {
+    int offer(Entry entry, long startId, long endId, long timestamp) {
         throw new UnsupportedOperationException();
     }
 
@@ -21,6 +21,7 @@ import static java.util.Objects.requireNonNull;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -31,9 +32,13 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.CRC32;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
@@ -71,6 +76,16 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         return s_retentionPolicyMgr;
     }
 
+    // Runs the periodic syncs of all deques built with a sync interval
+    private static ScheduledExecutorService s_syncScheduler;
+
+    private static synchronized ScheduledExecutorService getSyncScheduler() {
+        if (s_syncScheduler == null) {
+            s_syncScheduler = CoreUtils.getScheduledThreadPoolExecutor("PBD Sync", 1, CoreUtils.SMALL_STACK_SIZE);
+        }
+        return s_syncScheduler;
+    }
+
     class GapWriter implements BinaryDequeGapWriter<M> {
         private M m_gapHeader;
         private PBDSegment<M> m_activeSegment;
@@ -99,14 +114,19 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
 
         @Override
         public int offer(BBContainer data, long startId, long endId, long timestamp) throws IOException {
+            PBDSegment.Entry entry = null;
             try {
-                return offer0(data, startId, endId, timestamp);
+                entry = PBDSegment.Entry.prepare(data, m_compression);
+                return offer0(entry, startId, endId, timestamp);
             } finally {
+                if (entry != null) {
+                    entry.discard();
+                }
                 data.discard();
             }
         }
 
-        private int offer0(BBContainer data, long startId, long endId, long timestamp) throws IOException {
+        private int offer0(PBDSegment.Entry data, long startId, long endId, long timestamp) throws IOException {
             synchronized (PersistentBinaryDeque.this) {
                 if (m_closed) {
                     throw new IOException("updateGapHeader call on closed PBD " + m_nonce);
@@ -762,7 +782,8 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
 
     private final File m_path;
     private final String m_nonce;
-    private final boolean m_compress;
+    // Codec entries are compressed with, null if compression is disabled
+    private final CompressionCodec m_compression;
     private final PBDSegmentFactory m_pbdSegmentFactory;
     private final boolean m_noPurgeOnCursorClose;
     private boolean m_initializedFromExistingFiles = false;
@@ -786,6 +807,7 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
     private boolean m_requiresId;
     private GapWriter m_gapWriter;
     private boolean m_filledGap;
+    private ScheduledFuture<?> m_syncTask;
 
     /**
      * Create a persistent binary deque with the specified nonce and storage back at the specified path. This is a
@@ -802,7 +824,7 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         m_path = builder.m_path;
         m_nonce = builder.m_nonce;
         m_usageSpecificLog = builder.m_logger;
-        m_compress = builder.m_useCompression;
+        m_compression = builder.m_useCompression ? builder.m_compressionCodec : null;
         m_extraHeader = builder.m_initialExtraHeader;
         m_extraHeaderSerializer = builder.m_extraHeaderSerializer;
         m_pbdSegmentFactory = builder.m_pbdSegmentFactory;
@@ -820,6 +842,11 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
 
         m_numObjects = countNumObjects();
         assertions();
+
+        if (builder.m_syncIntervalMillis > 0) {
+            m_syncTask = getSyncScheduler().scheduleWithFixedDelay(this::scheduledSync, builder.m_syncIntervalMillis,
+                    builder.m_syncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     TreeMap<Long, PBDSegment<M>> getSegments() {
@@ -1229,7 +1256,7 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         PBDSegment<M> segment = m_pbdSegmentFactory.create(segmentId, file, m_usageSpecificLog,
                 m_extraHeaderSerializer);
         try {
-            segment.openNewSegment(m_compress);
+            segment.openNewSegment(m_compression);
             if (extraHeader != null) {
                 segment.writeExtraHeader(extraHeader);
             }
@@ -1261,15 +1288,23 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
     }
 
     @Override
-    public synchronized int offer(BBContainer object) throws IOException {
+    public int offer(BBContainer object) throws IOException {
         return offer(object, PBDSegment.INVALID_ID, PBDSegment.INVALID_ID, PBDSegment.INVALID_TIMESTAMP);
     }
 
     @Override
-    public synchronized int offer(BBContainer object, long startId, long endId, long timestamp) throws IOException {
+    public int offer(BBContainer object, long startId, long endId, long timestamp) throws IOException {
+        PBDSegment.Entry entry = null;
         try {
-            return commonOffer(object, startId, endId, timestamp);
+            // Compress before taking the lock so that readers are only blocked for the write itself
+            entry = PBDSegment.Entry.prepare(object, m_compression);
+            synchronized (this) {
+                return commonOffer(entry, startId, endId, timestamp);
+            }
         } finally {
+            if (entry != null) {
+                entry.discard();
+            }
             object.discard();
         }
     }
@@ -1305,12 +1340,12 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         }
 
         int written = (isDs) ? segment.offer((DeferredSerialization) object)
-                : segment.offer((BBContainer) object, startId, endId, timestamp);
+                : segment.offer((PBDSegment.Entry) object, startId, endId, timestamp);
         if (written < 0) {
             finishWrite(segment);
             segment = addSegment(segment, startId, extraHeader);
             written = (isDs) ? segment.offer((DeferredSerialization) object)
-                    : segment.offer((BBContainer) object, startId, endId, timestamp);
+                    : segment.offer((PBDSegment.Entry) object, startId, endId, timestamp);
             if (written < 0) {
                 throw new IOException("Failed to offer object in PBD");
             }
@@ -1444,8 +1479,13 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
             nextIndex--;
 
             while (currentSegmentContents.peek() != null) {
-                writeSegment.offer(currentSegmentContents.pollFirst(), PBDSegment.INVALID_ID, PBDSegment.INVALID_ID,
-                        PBDSegment.INVALID_TIMESTAMP);
+                PBDSegment.Entry entry = PBDSegment.Entry.prepare(currentSegmentContents.pollFirst(), m_compression);
+                try {
+                    writeSegment.offer(entry, PBDSegment.INVALID_ID, PBDSegment.INVALID_ID,
+                            PBDSegment.INVALID_TIMESTAMP);
+                } finally {
+                    entry.discard();
+                }
                 m_numObjects++;
             }
 
@@ -1674,14 +1714,54 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         return true;
     }
 
+    /**
+     * Force everything offered before this call to disk. The edits to sync are captured while holding the deque lock
+     * but the fsyncs themselves are done without it, so offers and reads are not blocked while the disk catches up.
+     */
     @Override
-    public synchronized void sync() throws IOException {
-        if (m_closed) {
-            throw new IOException("Cannot sync(): PBD has been Closed");
+    public void sync() throws IOException {
+        List<Pair<PBDSegment<M>, PBDSegment.PendingSync>> pendingSyncs = new ArrayList<>();
+        synchronized (this) {
+            if (m_closed) {
+                throw new IOException("Cannot sync(): PBD has been Closed");
+            }
+            for (PBDSegment<M> segment : m_segments.values()) {
+                if (!segment.isClosed()) {
+                    PBDSegment.PendingSync pendingSync = segment.prepareSync();
+                    if (pendingSync != null) {
+                        pendingSyncs.add(Pair.of(segment, pendingSync));
+                    }
+                }
+            }
         }
-        for (PBDSegment<M> segment : m_segments.values()) {
-            if (!segment.isClosed()) {
-                segment.sync();
+
+        for (Pair<PBDSegment<M>, PBDSegment.PendingSync> pendingSync : pendingSyncs) {
+            try {
+                pendingSync.getSecond().run();
+            } catch (ClosedChannelException e) {
+                // The segment was closed or reopened for read while syncing. Redo the sync holding the lock.
+                // A closed segment was either finalized, which syncs it, or deleted.
+                synchronized (this) {
+                    PBDSegment<M> segment = pendingSync.getFirst();
+                    if (!segment.isClosed()) {
+                        segment.sync();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Group commit: sync whatever was offered since the last sync, run periodically when a sync interval is set
+     */
+    private void scheduledSync() {
+        try {
+            if (!m_closed) {
+                sync();
+            }
+        } catch (IOException e) {
+            if (!m_closed) {
+                m_usageSpecificLog.error("Failed to sync PBD " + m_nonce, e);
             }
         }
     }
@@ -1717,6 +1797,10 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
             return;
         }
 
+        if (m_syncTask != null) {
+            m_syncTask.cancel(false);
+            m_syncTask = null;
+        }
         stopRetentionPolicyEnforcement();
         if (m_gapWriter != null) {
             m_gapWriter.close();
@@ -2014,12 +2098,14 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         final File m_path;
         final VoltLogger m_logger;
         boolean m_useCompression = false;
+        CompressionCodec m_compressionCodec = CompressionCodec.SNAPPY;
         boolean m_deleteExisting = false;
         boolean m_noPurgeOnCursorClose = false;
         BinaryDequeSerializer<M> m_extraHeaderSerializer;
         M m_initialExtraHeader;
         PBDSegmentFactory m_pbdSegmentFactory = PBDRegularSegment::new;
         boolean m_requiresId = false;
+        long m_syncIntervalMillis = 0;
 
         private Builder(String nonce, File path, VoltLogger logger) {
             super();
@@ -2031,10 +2117,12 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
         private Builder(Builder<?> builder, M extraHeader, BinaryDequeSerializer<M> serializer) {
             this(builder.m_nonce, builder.m_path, builder.m_logger);
             m_useCompression = builder.m_useCompression;
+            m_compressionCodec = builder.m_compressionCodec;
             m_initialExtraHeader = extraHeader;
             m_extraHeaderSerializer = serializer;
             m_pbdSegmentFactory = builder.m_pbdSegmentFactory;
             m_requiresId = builder.m_requiresId;
+            m_syncIntervalMillis = builder.m_syncIntervalMillis;
         }
 
         /**
@@ -2050,6 +2138,20 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
             return this;
         }
 
+        /**
+         * Set the codec used to compress entries when compression is enabled. Entries record the codec they were
+         * compressed with so this can differ from the codec used by existing segments.
+         * <p>
+         * Default: {@link CompressionCodec#SNAPPY}
+         *
+         * @param codec {@link CompressionCodec} to compress entries with
+         * @return An updated {@link Builder} instance
+         */
+        public Builder<M> compressionCodec(CompressionCodec codec) {
+            m_compressionCodec = requireNonNull(codec, "codec");
+            return this;
+        }
+
         /**
          * Set whether the pre-existing PBD files should be deleted.
          * <p>
@@ -2105,6 +2207,23 @@ public class PersistentBinaryDeque<M> implements BinaryDeque<M> {
             return this;
         }
 
+        /**
+         * Set the interval at which entries offered to this PBD are synced to disk in the background, so that many
+         * offers share one fsync. Syncs are done without holding the PBD lock so neither offers nor readers wait for
+         * the disk. {@link PersistentBinaryDeque#sync()} is still needed to know that a given entry is durable.
+         * <p>
+         * Default: {@code 0}, entries are only synced by {@link PersistentBinaryDeque#sync()} or when their segment
+         * is finished
+         *
+         * @param interval time between the end of one sync and the start of the next, {@code 0} to disable
+         * @param unit     {@link TimeUnit} of {@code interval}
+         * @return An updated {@link Builder} instance
+         */
+        public Builder<M> syncInterval(long interval, TimeUnit unit) {
+            m_syncIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
         /**
          * @return A new instance of {@link PersistentBinaryDeque} constructed by this builder
          * @throws IOException If there was an error constructing the instance
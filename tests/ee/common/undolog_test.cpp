@@ -212,6 +212,29 @@ TEST_F(UndoLogTest, TestOneQuantumThreeActionReleaseOrdering) {
     confirmReleaseActionHistoryOrder(histories, startingIndex);
 }
 
+/*
+ * Enough actions to fill several chunks of the quantum's action list.
+ */
+TEST_F(UndoLogTest, TestOneQuantumManyActionUndoOrdering) {
+    std::vector<int64_t> undoTokens = generateQuantumsAndActions( 1, 10000);
+    ASSERT_EQ( 1, undoTokens.size());
+
+    m_undoLog->undo(undoTokens[0]);
+    std::vector<MockUndoActionHistory*> histories = m_undoActionHistoryByQuantum[0];
+    int startingIndex = 0;
+    confirmUndoneActionHistoryOrder(histories, startingIndex);
+}
+
+TEST_F(UndoLogTest, TestOneQuantumManyActionReleaseOrdering) {
+    std::vector<int64_t> undoTokens = generateQuantumsAndActions( 1, 10000);
+    ASSERT_EQ( 1, undoTokens.size());
+
+    m_undoLog->release(undoTokens[0]);
+    std::vector<MockUndoActionHistory*> histories = m_undoActionHistoryByQuantum[0];
+    int startingIndex = 0;
+    confirmReleaseActionHistoryOrder(histories, startingIndex);
+}
+
 /*
  * Now do the same for three quantums.
  */
@@ -0,0 +1,101 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+#include "execution/PlanFragmentCache.h"
+
+#include <vector>
+
+using namespace voltdb;
+
+class PlanFragmentCacheTest : public Test {
+public:
+    static boost::shared_ptr<int64_t> fragment(int64_t fragId) {
+        return boost::shared_ptr<int64_t>(new int64_t(fragId));
+    }
+};
+
+TEST_F(PlanFragmentCacheTest, HitsAndMisses) {
+    PlanFragmentCache<int64_t> cache(1000);
+
+    EXPECT_EQ(NULL, cache.find(1));
+    EXPECT_EQ(1, *cache.insert(1, fragment(1), 100));
+    EXPECT_EQ(1, *cache.find(1));
+    EXPECT_EQ(1, *cache.find(1));
+    EXPECT_EQ(NULL, cache.find(2));
+
+    EXPECT_EQ(1, cache.size());
+    EXPECT_EQ(100, cache.memoryEstimate());
+    EXPECT_EQ(2, cache.hits());
+    EXPECT_EQ(2, cache.misses());
+    EXPECT_EQ(0, cache.evictions());
+}
+
+TEST_F(PlanFragmentCacheTest, EvictsByMemory) {
+    PlanFragmentCache<int64_t> cache(1000);
+
+    // Many small fragments fit
+    for (int64_t fragId = 1; fragId <= 10; ++fragId) {
+        cache.insert(fragId, fragment(fragId), 100);
+    }
+    EXPECT_EQ(10, cache.size());
+    EXPECT_EQ(0, cache.evictions());
+
+    // Touch fragment 1 so that 2 and 3 are the least recently used
+    EXPECT_EQ(1, *cache.find(1));
+    cache.insert(11, fragment(11), 200);
+    EXPECT_EQ(9, cache.size());
+    EXPECT_EQ(1000, cache.memoryEstimate());
+    EXPECT_EQ(2, cache.evictions());
+    EXPECT_EQ(NULL, cache.find(2));
+    EXPECT_EQ(NULL, cache.find(3));
+    EXPECT_EQ(1, *cache.find(1));
+    EXPECT_EQ(11, *cache.find(11));
+
+    std::vector<int64_t> order;
+    cache.forEach([&order](int64_t fragId) { order.push_back(fragId); });
+    ASSERT_EQ(9, order.size());
+    EXPECT_EQ(11, order[0]);
+    EXPECT_EQ(1, order[1]);
+    EXPECT_EQ(4, order[8]);
+}
+
+TEST_F(PlanFragmentCacheTest, KeepsNewestOversizedFragment) {
+    PlanFragmentCache<int64_t> cache(1000);
+    cache.insert(1, fragment(1), 500);
+    EXPECT_EQ(2, *cache.insert(2, fragment(2), 5000));
+    EXPECT_EQ(1, cache.size());
+    EXPECT_EQ(1, cache.evictions());
+    EXPECT_EQ(2, *cache.find(2));
+
+    // Clearing is not an eviction
+    cache.clear();
+    EXPECT_EQ(0, cache.size());
+    EXPECT_EQ(0, cache.memoryEstimate());
+    EXPECT_EQ(1, cache.evictions());
+    EXPECT_EQ(NULL, cache.find(2));
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
@@ -0,0 +1,97 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+#include "expressions/functionexpression.h"
+
+#include <string>
+
+using namespace voltdb;
+
+class JsonDocumentCacheTest : public Test {
+public:
+    static boost::shared_ptr<const Json::Value> parse(JsonDocumentCache& cache, std::string const& doc) {
+        return cache.parse(doc.c_str(), static_cast<int32_t>(doc.size()));
+    }
+};
+
+TEST_F(JsonDocumentCacheTest, ParsesEachDocumentOnce) {
+    JsonDocumentCache cache;
+    std::string doc("{\"a\": {\"b\": [1, 2, 3]}, \"c\": \"x\"}");
+
+    boost::shared_ptr<const Json::Value> root = parse(cache, doc);
+    EXPECT_EQ(3, (*root)["a"]["b"].size());
+    // An equal document, even at another address, is the same parsed document
+    EXPECT_EQ(root.get(), parse(cache, std::string(doc)).get());
+    EXPECT_NE(root.get(), parse(cache, "[1, 2]").get());
+
+    EXPECT_EQ(2, cache.size());
+    EXPECT_EQ(1, cache.hits());
+    EXPECT_EQ(2, cache.misses());
+}
+
+TEST_F(JsonDocumentCacheTest, EvictsLeastRecentlyUsed) {
+    JsonDocumentCache cache;
+    boost::shared_ptr<const Json::Value> first = parse(cache, "[0]");
+    for (size_t i = 1; i < JsonDocumentCache::MAX_ENTRIES; ++i) {
+        parse(cache, "[" + std::to_string(i) + "]");
+    }
+    parse(cache, "[0]");
+    parse(cache, "[100]");
+    EXPECT_EQ(JsonDocumentCache::MAX_ENTRIES, cache.size());
+
+    // "[1]" was evicted, "[0]" was not
+    int64_t misses = cache.misses();
+    EXPECT_EQ(first.get(), parse(cache, "[0]").get());
+    parse(cache, "[1]");
+    EXPECT_EQ(misses + 1, cache.misses());
+}
+
+TEST_F(JsonDocumentCacheTest, InvalidDocumentsAreNotCached) {
+    JsonDocumentCache cache;
+    bool thrown = false;
+    try {
+        parse(cache, "{\"a\": ");
+    } catch (const SQLException& e) {
+        thrown = true;
+    }
+    EXPECT_TRUE(thrown);
+    EXPECT_EQ(0, cache.size());
+}
+
+TEST_F(JsonDocumentCacheTest, SetDoesNotChangeTheCachedDocument) {
+    std::string text("{\"a\": 1}");
+    JsonDocument doc(text.c_str(), static_cast<int32_t>(text.size()));
+    doc.set("a", 1, "2", 1);
+
+    std::string value;
+    ASSERT_TRUE(doc.get("a", 1, value));
+    EXPECT_EQ("2\n", value);
+    JsonDocument again(text.c_str(), static_cast<int32_t>(text.size()));
+    ASSERT_TRUE(again.get("a", 1, value));
+    EXPECT_EQ("1\n", value);
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
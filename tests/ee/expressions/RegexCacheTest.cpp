@@ -0,0 +1,116 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+#include "expressions/regexcache.h"
+
+#include <string>
+
+using namespace voltdb;
+
+class RegexCacheTest : public Test {
+public:
+    static boost::shared_ptr<CompiledRegex> get(RegexCache& cache, std::string const& pattern,
+                                                uint32_t options = PCRE2_UTF) {
+        int errorCode = 0;
+        return cache.get(pattern.c_str(), pattern.size(), options, errorCode);
+    }
+};
+
+TEST_F(RegexCacheTest, HitsAndMisses) {
+    RegexCache cache;
+
+    boost::shared_ptr<CompiledRegex> regex = get(cache, "[a-z]+");
+    ASSERT_TRUE(regex.get() != NULL);
+    EXPECT_EQ(regex.get(), get(cache, "[a-z]+").get());
+    // The same pattern with other options is another entry
+    EXPECT_NE(regex.get(), get(cache, "[a-z]+", PCRE2_UTF | PCRE2_CASELESS).get());
+
+    EXPECT_EQ(2, cache.size());
+    EXPECT_EQ(1, cache.hits());
+    EXPECT_EQ(2, cache.misses());
+}
+
+TEST_F(RegexCacheTest, FailuresAreNotCached) {
+    RegexCache cache;
+    int errorCode = 0;
+    std::string pattern("[a-z](a]");
+
+    EXPECT_TRUE(cache.get(pattern.c_str(), pattern.size(), PCRE2_UTF, errorCode).get() == NULL);
+    EXPECT_NE(0, errorCode);
+    EXPECT_EQ(0, cache.size());
+    EXPECT_EQ(1, cache.misses());
+}
+
+TEST_F(RegexCacheTest, EvictsLeastRecentlyUsed) {
+    RegexCache cache(2);
+
+    boost::shared_ptr<CompiledRegex> first = get(cache, "a");
+    get(cache, "b");
+    get(cache, "a");
+    get(cache, "c");
+    EXPECT_EQ(2, cache.size());
+    EXPECT_EQ(1, cache.hits());
+
+    // "b" was evicted, "a" was not
+    get(cache, "a");
+    EXPECT_EQ(2, cache.hits());
+    get(cache, "b");
+    EXPECT_EQ(4, cache.misses());
+
+    // An evicted pattern stays usable by whoever holds it
+    size_t offset = 0;
+    EXPECT_EQ(1, first->match("xa", 2, offset));
+    EXPECT_EQ(1, offset);
+}
+
+TEST_F(RegexCacheTest, Match) {
+    RegexCache cache;
+    boost::shared_ptr<CompiledRegex> regex = get(cache, "[a-z](\\d+)[A-Z]");
+    std::string subject("TEST reGexp1A");
+    size_t offset = 0;
+
+    EXPECT_EQ(2, regex->match(subject.c_str(), subject.size(), offset));
+    EXPECT_EQ(10, offset);
+    EXPECT_EQ(PCRE2_ERROR_NOMATCH, regex->match("TEST", 4, offset));
+    EXPECT_EQ(2, regex->matches());
+}
+
+TEST_F(RegexCacheTest, HotPatternsStillMatch) {
+    RegexCache cache;
+    boost::shared_ptr<CompiledRegex> regex = get(cache, "b+");
+    size_t offset = 0;
+
+    // Whether or not this platform can JIT compile, results are the same before and after
+    for (int64_t i = 0; i < CompiledRegex::JIT_THRESHOLD * 2; ++i) {
+        offset = 0;
+        ASSERT_EQ(1, regex->match("aabbb", 5, offset));
+        ASSERT_EQ(2, offset);
+    }
+    regex->jitCompile();
+    EXPECT_EQ(PCRE2_ERROR_NOMATCH, regex->match("aaa", 3, offset));
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
@@ -123,6 +123,63 @@ TEST_F(CompactingHashIndexTest, ENG1193) {
     delete tuple4;
 }
 
+TEST_F(CompactingHashIndexTest, FlatHashUniqueIndex) {
+    vector<int> columnIndices;
+    vector<ValueType> columnTypes;
+    vector<int32_t> columnLengths;
+    vector<bool> columnAllowNull;
+
+    columnIndices.push_back(0);
+    columnTypes.push_back(ValueType::tBIGINT);
+    columnLengths.push_back(NValue::getTupleStorageSize(ValueType::tBIGINT));
+    columnAllowNull.push_back(false);
+
+    TupleSchema *schema = TupleSchema::createTupleSchemaForTest(columnTypes,
+                                                         columnLengths,
+                                                         columnAllowNull);
+
+    TableIndexScheme scheme("test_flathash_index", FLAT_HASH_TABLE_INDEX,
+                            columnIndices, TableIndex::simplyIndexColumns(),
+                            true, false, false, schema);
+    TableIndex *index = TableIndexFactory::getInstance(scheme);
+    EXPECT_EQ("FlatHashUniqueIndex", index->getTypeName());
+
+    vector<TableTuple*> tuples;
+    for (int i = 0; i < 1000; ++i) {
+        tuples.push_back(newTuple(schema, 0, i));
+        index->addEntry(tuples.back(), NULL);
+    }
+    EXPECT_EQ(1000, index->getSize());
+
+    // a duplicate key is reported as a conflict
+    TableTuple *duplicate = newTuple(schema, 0, 10);
+    TableTuple conflict(schema);
+    index->addEntry(duplicate, &conflict);
+    EXPECT_EQ(tuples[10]->address(), conflict.address());
+
+    EXPECT_TRUE(index->replaceEntryNoKeyChange(*duplicate, *tuples[10]));
+    EXPECT_FALSE(index->exists(tuples[10]));
+    EXPECT_TRUE(index->exists(duplicate));
+
+    EXPECT_TRUE(index->deleteEntry(duplicate));
+    EXPECT_FALSE(index->exists(duplicate));
+    for (int i = 0; i < 1000; i += 2) {
+        EXPECT_EQ(i != 10, index->deleteEntry(tuples[i]));
+    }
+    EXPECT_EQ(500, index->getSize());
+    for (int i = 0; i < 1000; ++i) {
+        EXPECT_EQ(i % 2 == 1, index->exists(tuples[i]));
+    }
+
+    delete index;
+    TupleSchema::freeTupleSchema(schema);
+    tuples.push_back(duplicate);
+    for (TableTuple *tuple : tuples) {
+        delete[] tuple->address();
+        delete tuple;
+    }
+}
+
 int main()
 {
     return TestSuite::globalInstance()->runAll();
@@ -0,0 +1,143 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "common/ValueFactory.hpp"
+#include "storage/MaterializedViewMinMaxCache.h"
+
+using namespace voltdb;
+
+typedef MaterializedViewMinMaxCache::Candidates Candidates;
+
+class MaterializedViewMinMaxCacheTest : public Test {
+protected:
+    static NValue bigint(int64_t value) {
+        return ValueFactory::getBigIntValue(value);
+    }
+
+    int64_t bestOf(Candidates const& candidates) {
+        NValue best = NValue::getNullValue(ValueType::tBIGINT);
+        EXPECT_TRUE(candidates.best(best));
+        return best.isNull() ? -1 : ValuePeeker::peekBigInt(best);
+    }
+};
+
+TEST_F(MaterializedViewMinMaxCacheTest, CompleteScan) {
+    Candidates max(1);
+    NValue best = NValue::getNullValue(ValueType::tBIGINT);
+    EXPECT_FALSE(max.best(best));
+
+    max.startScan();
+    for (int64_t value : {5, 9, 2, 9, 7}) {
+        max.add(bigint(value));
+    }
+    EXPECT_EQ(5, max.size());
+    EXPECT_EQ(9, bestOf(max));
+
+    // Deleting one of the tied values leaves the other one as the max
+    max.remove(bigint(9));
+    EXPECT_EQ(9, bestOf(max));
+    max.remove(bigint(9));
+    EXPECT_EQ(7, bestOf(max));
+
+    max.add(bigint(3));
+    max.remove(bigint(7));
+    max.remove(bigint(5));
+    EXPECT_EQ(3, bestOf(max));
+    max.remove(bigint(3));
+    max.remove(bigint(2));
+    // Everything was known, so the group is known to have no values left
+    EXPECT_EQ(-1, bestOf(max));
+}
+
+TEST_F(MaterializedViewMinMaxCacheTest, IncompleteScan) {
+    Candidates min(-1);
+    min.startScan();
+    for (int64_t value = 100; value > 0; --value) {
+        min.add(bigint(value));
+    }
+    EXPECT_EQ(MaterializedViewMinMaxCache::MAX_CANDIDATES, min.size());
+    EXPECT_EQ(1, bestOf(min));
+
+    // Values worse than every candidate do not displace them
+    min.add(bigint(50));
+    min.remove(bigint(60));
+    EXPECT_EQ(MaterializedViewMinMaxCache::MAX_CANDIDATES, min.size());
+
+    for (int64_t value = 1; value <= MaterializedViewMinMaxCache::MAX_CANDIDATES; ++value) {
+        EXPECT_EQ(value, bestOf(min));
+        min.remove(bigint(value));
+    }
+    // The remaining values were not kept, so the group has to be scanned again
+    NValue best = NValue::getNullValue(ValueType::tBIGINT);
+    EXPECT_FALSE(min.best(best));
+}
+
+TEST_F(MaterializedViewMinMaxCacheTest, InconsistentDelete) {
+    Candidates max(1);
+    max.startScan();
+    max.add(bigint(4));
+    max.add(bigint(8));
+    // A value which should have been there but was not
+    max.remove(bigint(6));
+    EXPECT_FALSE(max.isKnown());
+    NValue best = NValue::getNullValue(ValueType::tBIGINT);
+    EXPECT_FALSE(max.best(best));
+    max.add(bigint(10));
+    EXPECT_FALSE(max.best(best));
+}
+
+TEST_F(MaterializedViewMinMaxCacheTest, LeastRecentlyUsedGroups) {
+    MaterializedViewMinMaxCache cache(std::vector<int>{-1, 1});
+    std::vector<std::string> keys;
+    for (int64_t group = 0; group <= MaterializedViewMinMaxCache::MAX_GROUPS; ++group) {
+        std::string key;
+        MaterializedViewMinMaxCache::appendToGroupKey(key, bigint(group));
+        keys.push_back(key);
+    }
+    std::string nullKey;
+    MaterializedViewMinMaxCache::appendToGroupKey(nullKey, NValue::getNullValue(ValueType::tBIGINT));
+    EXPECT_NE(keys[0], nullKey);
+
+    EXPECT_EQ(2, cache.findOrAdd(keys[0]).size());
+    for (int group = 1; group < MaterializedViewMinMaxCache::MAX_GROUPS; ++group) {
+        cache.findOrAdd(keys[group]);
+    }
+    EXPECT_EQ(MaterializedViewMinMaxCache::MAX_GROUPS, cache.size());
+    // Using the first group again makes the second one the least recently used
+    EXPECT_TRUE(cache.find(keys[0]) != NULL);
+    cache.findOrAdd(keys[MaterializedViewMinMaxCache::MAX_GROUPS]);
+    EXPECT_EQ(MaterializedViewMinMaxCache::MAX_GROUPS, cache.size());
+    EXPECT_TRUE(cache.find(keys[0]) != NULL);
+    EXPECT_TRUE(cache.find(keys[1]) == NULL);
+
+    cache.erase(keys[0]);
+    EXPECT_TRUE(cache.find(keys[0]) == NULL);
+    cache.clear();
+    EXPECT_TRUE(cache.empty());
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
@@ -0,0 +1,770 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "execution/VoltDBEngine.h"
+#include "storage/MaterializedViewMinMaxCache.h"
+#include "storage/persistenttable.h"
+#include "storage/TableCatalogDelegate.hpp"
+#include "storage/tableiterator.h"
+
+#include <boost/scoped_ptr.hpp>
+
+#include <cmath>
+#include <cstdlib>
+#include <cstring>
+#include <map>
+#include <utility>
+#include <vector>
+
+using namespace voltdb;
+
+/**
+ * Drive the MIN / MAX maintenance of a single table view through its trigger, with the source
+ * table scan caching the best values of each group, and compare the view with the aggregates
+ * of a full scan of the source table after every step.
+ *
+ *     CREATE TABLE T (G INTEGER NOT NULL, ID INTEGER NOT NULL, V BIGINT);
+ *     PARTITION TABLE T ON COLUMN G;
+ *     CREATE VIEW MV (G, CNT, MINV, MAXV) AS SELECT G, COUNT(*), MIN(V), MAX(V) FROM T GROUP BY G;
+ *
+ * There is no index on T, so both MIN(V) and MAX(V) are recalculated by a table scan, which is
+ * what the cache is used for. TF and MVF are the same, except that G is a FLOAT.
+ */
+class MaterializedViewMinMaxTest : public Test {
+public:
+    MaterializedViewMinMaxTest()
+        : m_undoToken(0)
+        , m_uniqueId(0)
+        , m_nextId(0)
+        , m_sourceName("T")
+        , m_viewName("MV")
+    {
+        m_engine.reset(new VoltDBEngine());
+        m_engine->initialize(1,     // clusterIndex
+                             1,     // siteId
+                             0,     // partitionId
+                             1,     // sitesPerHost
+                             0,     // hostId
+                             "",    // hostname
+                             0,     // drClusterId
+                             1024,  // defaultDrBufferSize
+                             voltdb::DEFAULT_TEMP_TABLE_MEMORY,
+                             true); // this is the lowest SiteId/PartitionId
+        m_engine->setUndoToken(m_undoToken);
+        m_engine->loadCatalog(0, catalogPayload());
+        beginWork();
+    }
+
+    ~MaterializedViewMinMaxTest()
+    {
+        m_engine.reset();
+        voltdb::globalDestroyOncePerProcess();
+    }
+
+protected:
+    // MIN and MAX of a group without any non-null values
+    static const int64_t NULL_VALUE = INT64_MIN;
+
+    struct Aggregates {
+        int64_t count = 0;
+        int64_t min = NULL_VALUE;
+        int64_t max = NULL_VALUE;
+    };
+
+    void commit() {
+        m_engine->releaseUndoToken(m_undoToken, false);
+        ++m_undoToken;
+        m_engine->setUndoToken(m_undoToken);
+        beginWork();
+    }
+
+    void rollback() {
+        m_engine->undoUndoToken(m_undoToken);
+        ++m_undoToken;
+        m_engine->setUndoToken(m_undoToken);
+        beginWork();
+    }
+
+    // Roll back and run again with the same undo token, as a restarted transaction does
+    void rollbackAndRetry() {
+        m_engine->undoUndoToken(m_undoToken);
+        m_engine->setUndoToken(m_undoToken);
+        beginWork();
+    }
+
+    // Groups 1 to 3 with 40 rows each, some of them with tied values
+    void fillGroups() {
+        for (int32_t group = 1; group <= 3; ++group) {
+            for (int64_t i = 0; i < 40; ++i) {
+                insert(group, (i * 37 + group) % 101);
+                if (i % 8 == 0) {
+                    insert(group, (i * 37 + group) % 101);
+                }
+            }
+        }
+    }
+
+    // Work on TF and MVF, whose groups are numbered by their FLOAT value, with NaN as -1
+    void useFloatGroups() {
+        m_sourceName = "TF";
+        m_viewName = "MVF";
+    }
+
+    // Look the tables up every time, a truncate replaces them
+    PersistentTable* source() const {
+        return m_engine->getTableDelegate(m_sourceName)->getPersistentTable();
+    }
+
+    PersistentTable* view() const {
+        return m_engine->getTableDelegate(m_viewName)->getPersistentTable();
+    }
+
+    void insert(int32_t group, int64_t value) {
+        insert(m_sourceName == "T" ? ValueFactory::getIntegerValue(group)
+                                   : ValueFactory::getDoubleValue(group), value);
+    }
+
+    void insert(NValue const& group, int64_t value) {
+        TableTuple &tuple = source()->tempTuple();
+        tuple.setNValue(0, group);
+        tuple.setNValue(1, ValueFactory::getIntegerValue(m_nextId++));
+        tuple.setNValue(2, value == NULL_VALUE ? NValue::getNullValue(ValueType::tBIGINT)
+                                               : ValueFactory::getBigIntValue(value));
+        ASSERT_TRUE(source()->insertTuple(tuple));
+    }
+
+    // Delete one row of the group with the given value, returning whether there was one
+    bool deleteValue(int32_t group, int64_t value) {
+        PersistentTable* table = source();
+        TableTuple tuple(table->schema());
+        TableIterator iterator = table->iterator();
+        while (iterator.next(tuple)) {
+            if (groupOf(tuple.getNValue(0)) == group && valueOf(tuple.getNValue(2)) == value) {
+                table->deleteTuple(tuple, true);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Delete the row holding the group's MIN as the view has it
+    void deleteMin(int32_t group) {
+        ASSERT_TRUE(deleteValue(group, viewAggregates(group).min));
+    }
+
+    // Delete the row holding the group's MAX as the view has it
+    void deleteMax(int32_t group) {
+        ASSERT_TRUE(deleteValue(group, viewAggregates(group).max));
+    }
+
+    void truncate() {
+        source()->truncateTable(m_engine.get());
+    }
+
+    // Delete a row whose G has exactly the bits of the given value, unlike NValue::compare
+    bool deleteRow(NValue const& group, int64_t value) {
+        PersistentTable* table = source();
+        TableTuple tuple(table->schema());
+        TableIterator iterator = table->iterator();
+        double groupBits = ValuePeeker::peekDouble(group);
+        while (iterator.next(tuple)) {
+            double rowBits = ValuePeeker::peekDouble(tuple.getNValue(0));
+            if (memcmp(&rowBits, &groupBits, sizeof(double)) == 0 && valueOf(tuple.getNValue(2)) == value) {
+                table->deleteTuple(tuple, true);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Delete the nth row of the source table
+    void deleteRow(int64_t n) {
+        PersistentTable* table = source();
+        TableTuple tuple(table->schema());
+        TableIterator iterator = table->iterator();
+        while (iterator.next(tuple)) {
+            if (n-- == 0) {
+                table->deleteTuple(tuple, true);
+                return;
+            }
+        }
+        FAIL("the source table has fewer rows than expected");
+    }
+
+    Aggregates viewAggregates(int32_t group) const {
+        std::map<int32_t, Aggregates> rows = viewRows();
+        auto row = rows.find(group);
+        return row == rows.end() ? Aggregates() : row->second;
+    }
+
+    std::map<int32_t, Aggregates> viewRows() const {
+        std::map<int32_t, Aggregates> rows;
+        PersistentTable* table = view();
+        TableTuple tuple(table->schema());
+        TableIterator iterator = table->iterator();
+        while (iterator.next(tuple)) {
+            Aggregates& row = rows[groupOf(tuple.getNValue(0))];
+            row.count = ValuePeeker::peekBigInt(tuple.getNValue(1));
+            row.min = valueOf(tuple.getNValue(2));
+            row.max = valueOf(tuple.getNValue(3));
+        }
+        return rows;
+    }
+
+    // The aggregates the view should have, from a full scan of the source table
+    std::map<int32_t, Aggregates> scanSource() const {
+        std::map<int32_t, Aggregates> groups;
+        PersistentTable* table = source();
+        TableTuple tuple(table->schema());
+        TableIterator iterator = table->iterator();
+        while (iterator.next(tuple)) {
+            Aggregates& group = groups[groupOf(tuple.getNValue(0))];
+            ++group.count;
+            int64_t value = valueOf(tuple.getNValue(2));
+            if (value == NULL_VALUE) {
+                continue;
+            }
+            if (group.min == NULL_VALUE || value < group.min) {
+                group.min = value;
+            }
+            if (group.max == NULL_VALUE || value > group.max) {
+                group.max = value;
+            }
+        }
+        return groups;
+    }
+
+    void verifyView() {
+        std::map<int32_t, Aggregates> expected = scanSource();
+        std::map<int32_t, Aggregates> actual = viewRows();
+        ASSERT_EQ(expected.size(), actual.size());
+        for (auto const& group : expected) {
+            auto row = actual.find(group.first);
+            ASSERT_TRUE(row != actual.end());
+            EXPECT_EQ(group.second.count, row->second.count);
+            EXPECT_EQ(group.second.min, row->second.min);
+            EXPECT_EQ(group.second.max, row->second.max);
+        }
+    }
+
+    // Rows deleted by the current quantum are still counted as active until it is released
+    int64_t sourceRowCount() const {
+        int64_t count = 0;
+        PersistentTable* table = source();
+        TableTuple tuple(table->schema());
+        TableIterator iterator = table->iterator();
+        while (iterator.next(tuple)) {
+            ++count;
+        }
+        return count;
+    }
+
+    // The number of the group a G value belongs to, which is the same for all the values
+    // NValue::compare finds equal
+    static int32_t groupOf(NValue const& value) {
+        if (ValuePeeker::peekValueType(value) == ValueType::tINTEGER) {
+            return ValuePeeker::peekInteger(value);
+        }
+        double group = ValuePeeker::peekDouble(value);
+        return std::isnan(group) ? -1 : static_cast<int32_t>(group);
+    }
+
+private:
+    static int64_t valueOf(NValue const& value) {
+        return value.isNull() ? NULL_VALUE : ValuePeeker::peekBigInt(value);
+    }
+
+    void beginWork() {
+        ExecutorContext::getExecutorContext()->setupForPlanFragments(
+            m_engine->getCurrentUndoQuantum(),
+            0,  // txn id
+            0,  // sp handle
+            0,  // last committed sp handle
+            m_uniqueId,
+            false);
+        m_uniqueId += (1 << 14);
+    }
+
+    static const std::string& catalogPayload() {
+        static const std::string payload(
+            "add / clusters cluster\n"
+            "set /clusters#cluster localepoch 1199145600\n"
+            "add /clusters#cluster databases database\n" +
+            sourceAndView("T", "MV", "5", "4", "i") +
+            sourceAndView("TF", "MVF", "8", "8", "f"));
+        return payload;
+    }
+
+    // The catalog of a source table and its view, grouped by a column of the given type
+    static std::string sourceAndView(std::string const& source, std::string const& view,
+                                     std::string const& groupType, std::string const& groupSize,
+                                     std::string const& groupSignature) {
+        return std::string(
+            "add /clusters#cluster/databases#database tables " + source + "\n"
+            "set /clusters#cluster/databases#database/tables#" + source + " isreplicated false\n"
+            "set $PREV partitioncolumn /clusters#cluster/databases#database/tables#" + source + "/columns#G\n"
+            "set $PREV estimatedtuplecount 0\n"
+            "set $PREV materializer null\n"
+            "set $PREV signature \"" + source + "|" + groupSignature + "ib\"\n"
+            "set $PREV tuplelimit 2147483647\n"
+            "set $PREV isDRed false\n"
+            "add /clusters#cluster/databases#database/tables#" + source + " columns G\n"
+            "set /clusters#cluster/databases#database/tables#" + source + "/columns#G index 0\n"
+            "set $PREV type " + groupType + "\n"
+            "set $PREV size " + groupSize + "\n"
+            "set $PREV nullable false\n"
+            "set $PREV name \"G\"\n"
+            "set $PREV defaultvalue null\n"
+            "set $PREV defaulttype 0\n"
+            "set $PREV matview null\n"
+            "set $PREV aggregatetype 0\n"
+            "set $PREV matviewsource null\n"
+            "set $PREV inbytes false\n"
+            "add /clusters#cluster/databases#database/tables#" + source + " columns ID\n"
+            "set /clusters#cluster/databases#database/tables#" + source + "/columns#ID index 1\n"
+            "set $PREV type 5\n"
+            "set $PREV size 4\n"
+            "set $PREV nullable false\n"
+            "set $PREV name \"ID\"\n"
+            "set $PREV defaultvalue null\n"
+            "set $PREV defaulttype 0\n"
+            "set $PREV matview null\n"
+            "set $PREV aggregatetype 0\n"
+            "set $PREV matviewsource null\n"
+            "set $PREV inbytes false\n"
+            "add /clusters#cluster/databases#database/tables#" + source + " columns V\n"
+            "set /clusters#cluster/databases#database/tables#" + source + "/columns#V index 2\n"
+            "set $PREV type 6\n"
+            "set $PREV size 8\n"
+            "set $PREV nullable true\n"
+            "set $PREV name \"V\"\n"
+            "set $PREV defaultvalue null\n"
+            "set $PREV defaulttype 0\n"
+            "set $PREV matview null\n"
+            "set $PREV aggregatetype 0\n"
+            "set $PREV matviewsource null\n"
+            "set $PREV inbytes false\n"
+            "add /clusters#cluster/databases#database tables " + view + "\n"
+            "set /clusters#cluster/databases#database/tables#" + view + " isreplicated false\n"
+            "set $PREV partitioncolumn /clusters#cluster/databases#database/tables#" + view + "/columns#G\n"
+            "set $PREV estimatedtuplecount 0\n"
+            "set $PREV materializer /clusters#cluster/databases#database/tables#" + source + "\n"
+            "set $PREV signature \"" + view + "|" + groupSignature + "bbb\"\n"
+            "set $PREV tuplelimit 2147483647\n"
+            "set $PREV isDRed false\n"
+            "add /clusters#cluster/databases#database/tables#" + view + " columns G\n"
+            "set /clusters#cluster/databases#database/tables#" + view + "/columns#G index 0\n"
+            "set $PREV type " + groupType + "\n"
+            "set $PREV size " + groupSize + "\n"
+            "set $PREV nullable false\n"
+            "set $PREV name \"G\"\n"
+            "set $PREV defaultvalue null\n"
+            "set $PREV defaulttype 0\n"
+            "set $PREV matview null\n"
+            "set $PREV aggregatetype 0\n"
+            "set $PREV matviewsource /clusters#cluster/databases#database/tables#" + source + "/columns#G\n"
+            "set $PREV inbytes false\n"
+            "add /clusters#cluster/databases#database/tables#" + view + " columns CNT\n"
+            "set /clusters#cluster/databases#database/tables#" + view + "/columns#CNT index 1\n"
+            "set $PREV type 6\n"
+            "set $PREV size 8\n"
+            "set $PREV nullable false\n"
+            "set $PREV name \"CNT\"\n"
+            "set $PREV defaultvalue null\n"
+            "set $PREV defaulttype 0\n"
+            "set $PREV matview null\n"
+            "set $PREV aggregatetype 41\n"
+            "set $PREV matviewsource null\n"
+            "set $PREV inbytes false\n"
+            "add /clusters#cluster/databases#database/tables#" + view + " columns MINV\n"
+            "set /clusters#cluster/databases#database/tables#" + view + "/columns#MINV index 2\n"
+            "set $PREV type 6\n"
+            "set $PREV size 8\n"
+            "set $PREV nullable true\n"
+            "set $PREV name \"MINV\"\n"
+            "set $PREV defaultvalue null\n"
+            "set $PREV defaulttype 0\n"
+            "set $PREV matview null\n"
+            "set $PREV aggregatetype 43\n"
+            "set $PREV matviewsource /clusters#cluster/databases#database/tables#" + source + "/columns#V\n"
+            "set $PREV inbytes false\n"
+            "add /clusters#cluster/databases#database/tables#" + view + " columns MAXV\n"
+            "set /clusters#cluster/databases#database/tables#" + view + "/columns#MAXV index 3\n"
+            "set $PREV type 6\n"
+            "set $PREV size 8\n"
+            "set $PREV nullable true\n"
+            "set $PREV name \"MAXV\"\n"
+            "set $PREV defaultvalue null\n"
+            "set $PREV defaulttype 0\n"
+            "set $PREV matview null\n"
+            "set $PREV aggregatetype 44\n"
+            "set $PREV matviewsource /clusters#cluster/databases#database/tables#" + source + "/columns#V\n"
+            "set $PREV inbytes false\n"
+            "add /clusters#cluster/databases#database/tables#" + view + " indexes MATVIEW_PK_INDEX\n"
+            "set /clusters#cluster/databases#database/tables#" + view + "/indexes#MATVIEW_PK_INDEX unique true\n"
+            "set $PREV assumeUnique false\n"
+            "set $PREV countable true\n"
+            "set $PREV type 1\n"
+            "set $PREV expressionsjson \"\"\n"
+            "set $PREV predicatejson \"\"\n"
+            "add /clusters#cluster/databases#database/tables#" + view + "/indexes#MATVIEW_PK_INDEX columns G\n"
+            "set /clusters#cluster/databases#database/tables#" + view + "/indexes#MATVIEW_PK_INDEX/columns#G index 0\n"
+            "set $PREV column /clusters#cluster/databases#database/tables#" + view + "/columns#G\n"
+            "add /clusters#cluster/databases#database/tables#" + view + " constraints MATVIEW_PK_CONSTRAINT\n"
+            "set /clusters#cluster/databases#database/tables#" + view + "/constraints#MATVIEW_PK_CONSTRAINT type 4\n"
+            "set $PREV oncommit \"\"\n"
+            "set $PREV index /clusters#cluster/databases#database/tables#" + view + "/indexes#MATVIEW_PK_INDEX\n"
+            "set $PREV foreignkeytable null\n"
+            "add /clusters#cluster/databases#database/tables#" + source + " views " + view + "\n"
+            "set /clusters#cluster/databases#database/tables#" + source + "/views#" + view + " dest /clusters#cluster/databases#database/tables#" + view + "\n"
+            "set $PREV predicate \"\"\n"
+            "set $PREV groupbyExpressionsJson \"\"\n"
+            "set $PREV aggregationExpressionsJson \"\"\n"
+            "set $PREV isSafeWithNonemptySources true\n"
+            "add /clusters#cluster/databases#database/tables#" + source + "/views#" + view + " groupbycols G\n"
+            "set /clusters#cluster/databases#database/tables#" + source + "/views#" + view + "/groupbycols#G index 0\n"
+            "set $PREV column /clusters#cluster/databases#database/tables#" + source + "/columns#G\n"
+            "add /clusters#cluster/databases#database/tables#" + source + "/views#" + view + " indexForMinMax 0\n"
+            "set /clusters#cluster/databases#database/tables#" + source + "/views#" + view + "/indexForMinMax#0 name \"\"\n"
+            "add /clusters#cluster/databases#database/tables#" + source + "/views#" + view + " indexForMinMax 1\n"
+            "set /clusters#cluster/databases#database/tables#" + source + "/views#" + view + "/indexForMinMax#1 name \"\"\n"
+        );
+    }
+
+    boost::scoped_ptr<VoltDBEngine> m_engine;
+    int64_t m_undoToken;
+    int64_t m_uniqueId;
+    int32_t m_nextId;
+    std::string m_sourceName;
+    std::string m_viewName;
+};
+
+TEST_F(MaterializedViewMinMaxTest, DeleteMinMaxOfCachedGroup) {
+    fillGroups();
+    commit();
+    verifyView();
+
+    // The first delete of the MAX scans the group and caches its best values
+    deleteMax(1);
+    verifyView();
+    commit();
+
+    // Later deletes of the MIN or MAX of the group take the next one from the cache
+    for (int i = 0; i < 6; ++i) {
+        deleteMax(1);
+        verifyView();
+        deleteMin(1);
+        verifyView();
+        // Deletes of values which are not the MIN or MAX keep the cache up to date too
+        deleteValue(1, viewAggregates(1).max - 1);
+        verifyView();
+        commit();
+    }
+    verifyView();
+}
+
+TEST_F(MaterializedViewMinMaxTest, InsertIntoCachedGroup) {
+    fillGroups();
+    deleteMax(2);
+    deleteMin(2);
+    commit();
+    verifyView();
+
+    // A new best value, then the one it displaced has to come back when it is deleted
+    insert(2, 1000);
+    verifyView();
+    deleteMax(2);
+    verifyView();
+
+    insert(2, -1000);
+    verifyView();
+    deleteMin(2);
+    verifyView();
+
+    // Ties with the current MIN and MAX
+    insert(2, viewAggregates(2).max);
+    insert(2, viewAggregates(2).min);
+    deleteMax(2);
+    verifyView();
+    deleteMax(2);
+    verifyView();
+    deleteMin(2);
+    verifyView();
+    deleteMin(2);
+    verifyView();
+    commit();
+
+    // Values in between and nulls do not change the MIN and MAX, until the ones above them are gone
+    insert(2, 50);
+    insert(2, NULL_VALUE);
+    insert(2, 51);
+    verifyView();
+    for (int i = 0; i < 10; ++i) {
+        deleteMax(2);
+        verifyView();
+        deleteMin(2);
+        verifyView();
+    }
+    commit();
+}
+
+TEST_F(MaterializedViewMinMaxTest, DeletesExhaustCandidates) {
+    // More distinct values than the cache keeps
+    for (int64_t i = 0; i < 60; ++i) {
+        insert(1, (i * 7) % 60);
+        insert(2, i);
+    }
+    commit();
+    verifyView();
+
+    // Each run of deletes uses up the cached values and has to scan the group again
+    for (size_t i = 0; i < 2 * MaterializedViewMinMaxCache::MAX_CANDIDATES + 4; ++i) {
+        deleteMax(1);
+        verifyView();
+        if (i % 5 == 0) {
+            commit();
+        }
+    }
+    for (size_t i = 0; i < MaterializedViewMinMaxCache::MAX_CANDIDATES + 4; ++i) {
+        deleteMin(1);
+        verifyView();
+    }
+    commit();
+
+    // Delete the rest of the group, which removes it from the view
+    while (viewAggregates(1).count > 0) {
+        deleteMax(1);
+        verifyView();
+    }
+    commit();
+    verifyView();
+}
+
+TEST_F(MaterializedViewMinMaxTest, Truncate) {
+    fillGroups();
+    deleteMax(1);
+    deleteMin(3);
+    commit();
+    verifyView();
+
+    // A rolled back truncate brings back the rows and the groups they cached
+    truncate();
+    verifyView();
+    EXPECT_EQ(0, sourceRowCount());
+    rollback();
+    verifyView();
+    deleteMax(1);
+    verifyView();
+    deleteMin(3);
+    verifyView();
+    commit();
+
+    truncate();
+    verifyView();
+    commit();
+    EXPECT_EQ(0, sourceRowCount());
+
+    // The same groups again, with smaller values than the ones which were cached before
+    for (int32_t group = 1; group <= 3; ++group) {
+        for (int64_t i = 0; i < 20; ++i) {
+            insert(group, i % 13);
+        }
+    }
+    commit();
+    verifyView();
+    for (int i = 0; i < 8; ++i) {
+        deleteMax(1);
+        verifyView();
+        deleteMin(3);
+        verifyView();
+    }
+    commit();
+}
+
+TEST_F(MaterializedViewMinMaxTest, RolledBackQuantum) {
+    fillGroups();
+    commit();
+
+    // Roll back the transaction which first cached the group
+    deleteMax(1);
+    deleteMax(1);
+    verifyView();
+    rollback();
+    verifyView();
+    for (int i = 0; i < 4; ++i) {
+        deleteMax(1);
+        verifyView();
+    }
+    commit();
+
+    // Roll back deletes and then inserts of new best values in a cached group, after which
+    // the cached values would be stale if they were kept
+    for (int i = 0; i < 3; ++i) {
+        deleteMax(1);
+        deleteMin(1);
+    }
+    insert(1, 500);
+    insert(1, -500);
+    verifyView();
+    rollback();
+    verifyView();
+    for (int i = 0; i < 4; ++i) {
+        deleteMax(1);
+        verifyView();
+        deleteMin(1);
+        verifyView();
+    }
+    commit();
+
+    // Roll back only inserts of new best values, which would otherwise stay among the candidates
+    insert(1, 600);
+    insert(1, -600);
+    verifyView();
+    rollback();
+    verifyView();
+    for (int i = 0; i < 4; ++i) {
+        deleteMax(1);
+        verifyView();
+        deleteMin(1);
+        verifyView();
+    }
+    commit();
+}
+
+TEST_F(MaterializedViewMinMaxTest, RestartedQuantum) {
+    fillGroups();
+    commit();
+
+    // The first run caches the group and is rolled back
+    deleteMax(1);
+    verifyView();
+    rollbackAndRetry();
+    verifyView();
+
+    // The second run has the same undo token and has to clear the cache again when it is rolled
+    // back, or the values it inserted would stay among the candidates
+    int64_t max = viewAggregates(1).max;
+    deleteMax(1);
+    insert(1, max);
+    insert(1, max);
+    verifyView();
+    rollbackAndRetry();
+    verifyView();
+    for (int i = 0; i < 4; ++i) {
+        deleteMax(1);
+        verifyView();
+    }
+    commit();
+}
+
+TEST_F(MaterializedViewMinMaxTest, FloatGroupKeys) {
+    useFloatGroups();
+    const NValue zero = ValueFactory::getDoubleValue(0.0);
+    const NValue negativeZero = ValueFactory::getDoubleValue(-0.0);
+    const NValue nan = ValueFactory::getDoubleValue(std::nan(""));
+    const NValue otherNan = ValueFactory::getDoubleValue(-std::nan("1"));
+
+    // 0.0 and -0.0 are one group, and so are the NaNs, whichever value the rows have
+    for (int64_t i = 0; i < 40; ++i) {
+        insert(i % 2 == 0 ? zero : negativeZero, (i * 37) % 101);
+        insert(i % 2 == 0 ? nan : otherNan, (i * 37) % 101);
+    }
+    commit();
+    verifyView();
+    ASSERT_EQ(2, viewRows().size());
+
+    const std::vector<std::pair<NValue, NValue>> groupValues = { { zero, negativeZero }, { nan, otherNan } };
+    for (auto const& values : groupValues) {
+        NValue const& value = values.first;
+        NValue const& otherValue = values.second;
+        int32_t group = groupOf(value);
+
+        // Cache the group through a row with one of its values
+        ASSERT_TRUE(deleteRow(value, viewAggregates(group).max));
+        verifyView();
+        commit();
+
+        // New best values with the other value have to be among the cached ones
+        insert(otherValue, 200);
+        insert(value, 200);
+        insert(otherValue, -200);
+        insert(value, -200);
+        verifyView();
+        ASSERT_TRUE(deleteRow(value, 200));
+        verifyView();
+        ASSERT_TRUE(deleteRow(value, -200));
+        verifyView();
+        commit();
+        for (int i = 0; i < 4; ++i) {
+            deleteMax(group);
+            verifyView();
+            deleteMin(group);
+            verifyView();
+        }
+        commit();
+    }
+}
+
+TEST_F(MaterializedViewMinMaxTest, RandomWorkload) {
+    srand(0);
+    for (int step = 0; step < 3000; ++step) {
+        int32_t group = rand() % 4;
+        int op = rand() % 20;
+        if (op < 9 || sourceRowCount() == 0) {
+            // A small value range makes ties common
+            insert(group, op == 0 ? NULL_VALUE : rand() % 30);
+        }
+        else if (op < 13) {
+            if (viewAggregates(group).max != NULL_VALUE) {
+                deleteMax(group);
+            }
+        }
+        else if (op < 17) {
+            if (viewAggregates(group).min != NULL_VALUE) {
+                deleteMin(group);
+            }
+        }
+        else {
+            deleteRow(rand() % sourceRowCount());
+        }
+        verifyView();
+        if (step % 25 == 24) {
+            if (rand() % 4 == 0) {
+                rollback();
+            }
+            else {
+                commit();
+            }
+            verifyView();
+        }
+    }
+    commit();
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
@@ -0,0 +1,300 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+#include "structures/BTreeMap.h"
+
+#include <cstdio>
+#include <cstdlib>
+#include <map>
+#include <string>
+
+using namespace voltdb;
+
+class StringComparator {
+public:
+    int operator()(const std::string &lhs, const std::string &rhs) const {
+        return lhs.compare(rhs);
+    }
+
+    int compareWithoutPointer(const std::string &lhs, const std::string &rhs) const {
+        return operator()(lhs, rhs);
+    }
+};
+
+class IntComparator {
+public:
+    int operator()(const int &lhs, const int &rhs) const {
+        if (lhs > rhs) return 1;
+        else if (lhs < rhs) return -1;
+        else return 0;
+    }
+
+    int compareWithoutPointer(const int &lhs, const int &rhs) const {
+        return operator()(lhs, rhs);
+    }
+};
+
+// std::string entries are big enough to get the minimum node fan-out,
+// so that a few thousand entries make a tree several levels deep.
+typedef BTreeMap<NormalKeyValuePair<std::string, std::string>, StringComparator, true> StringMap;
+typedef BTreeMap<NormalKeyValuePair<int, int>, IntComparator, true> IntMap;
+
+class BTreeMapTest : public Test {
+public:
+    std::string keyFromInt(int i) {
+        char buf[32];
+        snprintf(buf, sizeof(buf), "%010d", i);
+        return buf;
+    }
+
+    // Compare the whole map, in both directions, to its STL model
+    template<typename MAP, typename STL>
+    void verifyContents(const MAP &volt, const STL &stl) {
+        ASSERT_TRUE(volt.verify());
+        ASSERT_TRUE(volt.verifyRank());
+        ASSERT_EQ(stl.size(), volt.size());
+        typename MAP::iterator volti = volt.begin();
+        for (typename STL::const_iterator stli = stl.begin(); stli != stl.end(); ++stli) {
+            ASSERT_FALSE(volti.isEnd());
+            ASSERT_TRUE(stli->first == volti.key());
+            volti.moveNext();
+        }
+        ASSERT_TRUE(volti.isEnd());
+        volti = volt.rbegin();
+        for (typename STL::const_reverse_iterator stli = stl.rbegin(); stli != stl.rend(); ++stli) {
+            ASSERT_FALSE(volti.isEnd());
+            ASSERT_TRUE(stli->first == volti.key());
+            volti.movePrev();
+        }
+        ASSERT_TRUE(volti.isEnd());
+    }
+};
+
+TEST_F(BTreeMapTest, Simple) {
+    const int COUNT = 10000;
+    IntMap volt(true, IntComparator());
+    ASSERT_TRUE(volt.begin().isEnd());
+    ASSERT_TRUE(volt.rbegin().isEnd());
+    ASSERT_TRUE(volt.lowerBound(1).isEnd());
+    ASSERT_EQ(0, volt.bytesAllocated());
+
+    // insert the odd numbers in descending order
+    for (int i = COUNT * 2 - 1; i > 0; i -= 2) {
+        ASSERT_TRUE(volt.insert(i, -i) == NULL);
+    }
+    ASSERT_TRUE(volt.verify());
+    ASSERT_TRUE(volt.verifyRank());
+    ASSERT_EQ(COUNT, volt.size());
+
+    // conflicts return the existing value
+    const int *conflict = volt.insert(7, 0);
+    ASSERT_TRUE(conflict != NULL);
+    ASSERT_EQ(-7, *conflict);
+    ASSERT_EQ(COUNT, volt.size());
+
+    for (int i = 1; i < COUNT * 2; i += 2) {
+        int rank = (i + 1) / 2;
+        ASSERT_EQ(rank, volt.rankLower(i));
+        ASSERT_EQ(rank, volt.rankUpper(i));
+        IntMap::iterator iter = volt.findRank(rank);
+        ASSERT_FALSE(iter.isEnd());
+        ASSERT_EQ(i, iter.key());
+        ASSERT_EQ(-i, iter.value());
+
+        ASSERT_EQ(i, volt.lowerBound(i).key());
+        ASSERT_EQ(i, volt.lowerBound(i - 1).key());
+        ASSERT_TRUE(volt.find(i - 1).isEnd());
+        ASSERT_EQ(-1, volt.rankLower(i - 1));
+        iter = volt.upperBound(i);
+        if (i == COUNT * 2 - 1) {
+            ASSERT_TRUE(iter.isEnd());
+        }
+        else {
+            ASSERT_EQ(i + 2, iter.key());
+        }
+    }
+    ASSERT_TRUE(volt.findRank(0).isEnd());
+    ASSERT_TRUE(volt.findRank(COUNT + 1).isEnd());
+    ASSERT_EQ(1, volt.begin().key());
+    ASSERT_EQ(COUNT * 2 - 1, volt.rbegin().key());
+
+    IntMap::iterator iter = volt.find(99);
+    iter.setValue(1000);
+    ASSERT_EQ(1000, volt.find(99).value());
+
+    // erase from the front, the back and the middle
+    for (int i = 1; i < COUNT * 2; i += 6) {
+        ASSERT_TRUE(volt.erase(i));
+        ASSERT_FALSE(volt.erase(i));
+    }
+    for (int i = 3; i < COUNT * 2; i += 6) {
+        IntMap::iterator iter = volt.find(i);
+        ASSERT_TRUE(volt.erase(iter));
+    }
+    ASSERT_TRUE(volt.verify());
+    ASSERT_TRUE(volt.verifyRank());
+    for (int i = 5; i < COUNT * 2; i += 6) {
+        ASSERT_TRUE(volt.erase(i));
+    }
+    ASSERT_EQ(0, volt.size());
+    ASSERT_TRUE(volt.verify());
+    ASSERT_TRUE(volt.begin().isEnd());
+    ASSERT_EQ(0, volt.bytesAllocated());
+}
+
+TEST_F(BTreeMapTest, RandomUnique) {
+    const int ITERATIONS = 20000;
+    const int BIGGEST_VAL = 5000;
+
+    std::map<std::string, std::string> stl;
+    StringMap volt(true, StringComparator());
+
+    srand(0);
+    for (int i = 0; i < ITERATIONS; i++) {
+        if ((i % 1000) == 0) {
+            verifyContents(volt, stl);
+        }
+
+        // insert a bit more often than erase, so the map grows and shrinks through many sizes
+        int op = rand() % 7;
+        std::string key = keyFromInt(rand() % BIGGEST_VAL);
+        std::map<std::string, std::string>::iterator stli = stl.find(key);
+        StringMap::iterator volti = volt.find(key);
+        ASSERT_EQ(stli == stl.end(), volti.isEnd());
+
+        if (op < 3) {
+            std::string value = keyFromInt(i);
+            const std::string *conflict = volt.insert(key, value);
+            if (stli == stl.end()) {
+                ASSERT_TRUE(conflict == NULL);
+                stl.insert(std::make_pair(key, value));
+            }
+            else {
+                ASSERT_TRUE(conflict != NULL);
+                ASSERT_TRUE(*conflict == stli->second);
+            }
+        }
+        else if (op < 5) {
+            if (stli == stl.end()) {
+                ASSERT_FALSE(volt.erase(key));
+            }
+            else {
+                stl.erase(stli);
+                if (op == 3) {
+                    ASSERT_TRUE(volt.erase(key));
+                }
+                else {
+                    ASSERT_TRUE(volt.erase(volti));
+                }
+            }
+        }
+        else if (op == 5) {
+            // bounds
+            stli = stl.lower_bound(key);
+            volti = volt.lowerBound(key);
+            ASSERT_EQ(stli == stl.end(), volti.isEnd());
+            if (stli != stl.end()) {
+                ASSERT_TRUE(stli->first == volti.key());
+            }
+            stli = stl.upper_bound(key);
+            volti = volt.upperBound(key);
+            ASSERT_EQ(stli == stl.end(), volti.isEnd());
+            if (stli != stl.end()) {
+                ASSERT_TRUE(stli->first == volti.key());
+            }
+        }
+        else if (stli != stl.end()) {
+            // rank
+            int64_t rank = std::distance(stl.begin(), stli) + 1;
+            ASSERT_EQ(rank, volt.rankLower(key));
+            ASSERT_EQ(rank, volt.rankUpper(key));
+            ASSERT_TRUE(volt.findRank(rank).key() == key);
+        }
+    }
+    verifyContents(volt, stl);
+}
+
+TEST_F(BTreeMapTest, RandomMulti) {
+    const int ITERATIONS = 20000;
+    const int BIGGEST_VAL = 300;
+
+    std::multimap<std::string, std::string> stl;
+    StringMap volt(false, StringComparator());
+
+    srand(0);
+    for (int i = 0; i < ITERATIONS; i++) {
+        if ((i % 1000) == 0) {
+            verifyContents(volt, stl);
+        }
+
+        int op = rand() % 6;
+        std::string key = keyFromInt(rand() % BIGGEST_VAL);
+        ASSERT_EQ(stl.find(key) == stl.end(), volt.find(key).isEnd());
+
+        if (op < 3) {
+            std::string value = keyFromInt(i);
+            stl.insert(std::make_pair(key, value));
+            ASSERT_TRUE(volt.insert(key, value) == NULL);
+        }
+        else if (op < 5) {
+            std::pair<std::multimap<std::string, std::string>::iterator,
+                      std::multimap<std::string, std::string>::iterator> stlRange = stl.equal_range(key);
+            std::pair<StringMap::iterator, StringMap::iterator> voltRange = volt.equalRange(key);
+            if (stlRange.first == stlRange.second) {
+                ASSERT_TRUE(voltRange.first.equals(voltRange.second));
+                ASSERT_FALSE(volt.erase(key));
+                continue;
+            }
+            // Duplicates keep their insertion order, so erase the same one (the last) from both
+            std::multimap<std::string, std::string>::iterator stli = stlRange.second;
+            --stli;
+            StringMap::iterator volti = voltRange.first;
+            int64_t found = 0;
+            while (! volti.equals(voltRange.second)) {
+                ++found;
+                if (volti.value() == stli->second) {
+                    break;
+                }
+                volti.moveNext();
+            }
+            ASSERT_EQ(std::distance(stlRange.first, stlRange.second), found);
+            stl.erase(stli);
+            ASSERT_TRUE(volt.erase(volti));
+        }
+        else if (stl.find(key) != stl.end()) {
+            // ranks of the first and last duplicates
+            int64_t lower = std::distance(stl.begin(), stl.lower_bound(key)) + 1;
+            int64_t upper = std::distance(stl.begin(), stl.upper_bound(key));
+            ASSERT_EQ(lower, volt.rankLower(key));
+            ASSERT_EQ(upper, volt.rankUpper(key));
+            ASSERT_TRUE(volt.findRank(lower).key() == key);
+            ASSERT_TRUE(volt.findRank(upper).key() == key);
+        }
+    }
+    verifyContents(volt, stl);
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
@@ -0,0 +1,127 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+#include "structures/FlatHashTable.h"
+
+#include <cstdlib>
+#include <unordered_map>
+
+using namespace voltdb;
+
+// Deliberately weak, like the index key hashers, to check that the table mixes the bits
+struct IdentityHasher {
+    size_t operator()(int64_t key) const { return static_cast<size_t>(key); }
+};
+
+struct Int64Eq {
+    bool operator()(int64_t lhs, int64_t rhs) const { return lhs == rhs; }
+};
+
+typedef FlatHashTable<int64_t, int64_t, IdentityHasher, Int64Eq> Table;
+
+class FlatHashTableTest : public Test {
+public:
+    FlatHashTableTest() : m_table(IdentityHasher(), Int64Eq()) { }
+    Table m_table;
+};
+
+TEST_F(FlatHashTableTest, InsertFindErase) {
+    EXPECT_TRUE(m_table.find(1).isEnd());
+    EXPECT_EQ(NULL, m_table.insert(1, 100));
+    EXPECT_EQ(NULL, m_table.insert(2, 200));
+
+    // a duplicate key reports the existing value and changes nothing
+    const int64_t *conflict = m_table.insert(1, 101);
+    ASSERT_TRUE(conflict != NULL);
+    EXPECT_EQ(100, *conflict);
+    EXPECT_EQ(2, m_table.size());
+
+    Table::iterator iter = m_table.find(2);
+    ASSERT_FALSE(iter.isEnd());
+    EXPECT_EQ(200, iter.value());
+    iter.setValue(201);
+    EXPECT_EQ(201, m_table.find(2).value());
+
+    EXPECT_TRUE(m_table.erase(1));
+    EXPECT_FALSE(m_table.erase(1));
+    EXPECT_TRUE(m_table.find(1).isEnd());
+    EXPECT_EQ(1, m_table.size());
+    EXPECT_TRUE(m_table.verify());
+}
+
+TEST_F(FlatHashTableTest, GrowsAndShrinks) {
+    const size_t initialBytes = m_table.bytesAllocated();
+    const int64_t count = 100000;
+    for (int64_t i = 0; i < count; ++i) {
+        ASSERT_EQ(NULL, m_table.insert(i, i * 2));
+    }
+    EXPECT_EQ(count, m_table.size());
+    EXPECT_TRUE(m_table.verify());
+    EXPECT_TRUE(m_table.bytesAllocated() > initialBytes);
+    // at most 7/8 full, at least 7/32 after doubling
+    EXPECT_TRUE(m_table.capacity() * 7 >= count * 8);
+    EXPECT_TRUE(m_table.capacity() * 7 <= count * 32);
+    for (int64_t i = 0; i < count; ++i) {
+        Table::iterator iter = m_table.find(i);
+        ASSERT_FALSE(iter.isEnd());
+        ASSERT_EQ(i * 2, iter.value());
+    }
+
+    for (int64_t i = 0; i < count; ++i) {
+        ASSERT_TRUE(m_table.erase(i));
+    }
+    EXPECT_EQ(0, m_table.size());
+    EXPECT_EQ(initialBytes, m_table.bytesAllocated());
+    EXPECT_TRUE(m_table.verify());
+}
+
+TEST_F(FlatHashTableTest, RandomOperations) {
+    std::unordered_map<int64_t, int64_t> expected;
+    srand(1234);
+    for (int i = 0; i < 200000; ++i) {
+        // a small key space makes for a lot of deleted slots and their reuse
+        int64_t key = rand() % 5000 - 2500;
+        if (rand() % 3 == 0) {
+            ASSERT_EQ(expected.erase(key) == 1, m_table.erase(key));
+        }
+        else {
+            bool inserted = expected.insert(std::make_pair(key, int64_t(i))).second;
+            ASSERT_EQ(inserted, m_table.insert(key, i) == NULL);
+        }
+        if (i % 10000 == 0) {
+            ASSERT_TRUE(m_table.verify());
+        }
+    }
+    ASSERT_EQ(expected.size(), m_table.size());
+    for (auto const& entry : expected) {
+        Table::iterator iter = m_table.find(entry.first);
+        ASSERT_FALSE(iter.isEnd());
+        ASSERT_EQ(entry.second, iter.value());
+    }
+    EXPECT_TRUE(m_table.verify());
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
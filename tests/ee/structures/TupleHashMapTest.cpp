@@ -0,0 +1,163 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "common/executorcontext.hpp"
+#include "common/Pool.hpp"
+#include "common/SQLException.h"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "storage/TempTableLimits.h"
+#include "structures/TupleHashMap.h"
+
+#include "test_utils/ScopedTupleSchema.hpp"
+#include "test_utils/Tools.hpp"
+#include "test_utils/UniqueEngine.hpp"
+
+#include <map>
+#include <string>
+
+using namespace voltdb;
+
+class TupleHashMapTest : public Test {
+public:
+    TupleHashMapTest()
+        : m_engine(UniqueEngineBuilder().build())
+        , m_schema(Tools::buildSchema(ValueType::tBIGINT, std::make_pair(ValueType::tVARCHAR, 32))) { }
+
+    ~TupleHashMapTest() {
+        voltdb::globalDestroyOncePerProcess();
+    }
+
+    /** Build a key tuple in the test's pool, the map does not copy keys */
+    TableTuple makeKey(int64_t id, std::string const& name) {
+        PoolBackedTupleStorage storage;
+        storage.init(m_schema.get(), &m_pool);
+        storage.allocateActiveTuple();
+        TableTuple key = storage;
+        Tools::setTupleValues(&key, id, name);
+        return key;
+    }
+
+protected:
+    UniqueEngine m_engine;
+    ScopedTupleSchema m_schema;
+    Pool m_pool;
+};
+
+TEST_F(TupleHashMapTest, InsertAndFind) {
+    TupleHashMap<int64_t> map(&m_pool);
+    ASSERT_TRUE(map.empty());
+    ASSERT_EQ(nullptr, map.find(makeKey(1, "one")));
+
+    const int64_t count = 10000;
+    for (int64_t ii = 0; ii < count; ++ii) {
+        auto const entry = map.insert(makeKey(ii, "key" + std::to_string(ii % 10)));
+        ASSERT_TRUE(entry.second);
+        entry.first->m_value = ii * 2;
+    }
+    ASSERT_EQ(count, map.size());
+    // Never more than 75% full
+    ASSERT_TRUE(map.size() * 4 <= map.capacity() * 3);
+
+    for (int64_t ii = 0; ii < count; ++ii) {
+        // An equal key in different storage finds the same entry
+        TableTuple probe = makeKey(ii, "key" + std::to_string(ii % 10));
+        auto const found = map.find(probe);
+        ASSERT_NE(nullptr, found);
+        ASSERT_EQ(ii * 2, found->m_value);
+
+        auto const entry = map.insert(probe);
+        ASSERT_FALSE(entry.second);
+        ASSERT_EQ(ii * 2, entry.first->m_value);
+    }
+    ASSERT_EQ(count, map.size());
+    ASSERT_EQ(nullptr, map.find(makeKey(1, "key2")));
+    ASSERT_EQ(nullptr, map.find(makeKey(count, "key0")));
+}
+
+TEST_F(TupleHashMapTest, IterateAndClear) {
+    TupleHashMap<int64_t> map(&m_pool);
+    std::map<int64_t, int64_t> expected;
+    for (int64_t ii = 0; ii < 500; ++ii) {
+        auto const entry = map.insert(makeKey(ii, "x"));
+        entry.first->m_value = -ii;
+        expected[ii] = -ii;
+    }
+
+    std::map<int64_t, int64_t> actual;
+    for (auto const& entry : map) {
+        actual[ValuePeeker::peekBigInt(entry.m_key.getNValue(0))] = entry.m_value;
+    }
+    ASSERT_TRUE(expected == actual);
+
+    // clear keeps the table around for reuse
+    size_t capacity = map.capacity();
+    map.clear();
+    ASSERT_TRUE(map.empty());
+    ASSERT_EQ(capacity, map.capacity());
+    ASSERT_TRUE(map.begin() == map.end());
+    ASSERT_EQ(nullptr, map.find(makeKey(1, "x")));
+    ASSERT_TRUE(map.insert(makeKey(1, "x")).second);
+    ASSERT_EQ(1, map.size());
+
+    // reset drops it
+    map.reset();
+    ASSERT_TRUE(map.empty());
+    ASSERT_EQ(0, map.capacity());
+    ASSERT_TRUE(map.insert(makeKey(1, "x")).second);
+}
+
+TEST_F(TupleHashMapTest, GrowthIsChargedToLimits) {
+    TempTableLimits limits(1024 * 1024);
+    TupleHashMap<int64_t> map(&m_pool, &limits);
+    ASSERT_EQ(0, limits.getAllocated());
+
+    map.insert(makeKey(0, "a"));
+    ASSERT_TRUE(limits.getAllocated() > 0);
+    int64_t charged = limits.getAllocated();
+    map.clear();
+    ASSERT_EQ(charged, limits.getAllocated());
+    map.reset();
+    ASSERT_EQ(0, limits.getAllocated());
+
+    // Keep adding keys until the table can no longer grow within the limit
+    bool threw = false;
+    try {
+        for (int64_t ii = 0; ii < 1000000; ++ii) {
+            map.insert(makeKey(ii, "a"));
+        }
+    }
+    catch (SQLException const& e) {
+        threw = true;
+    }
+    ASSERT_TRUE(threw);
+    // Everything charged, including the allocation that failed, is given back on reset
+    map.reset();
+    ASSERT_EQ(0, limits.getAllocated());
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
@@ -0,0 +1,153 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltcore.messaging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.voltcore.network.PicoNetwork;
+import org.voltcore.utils.DeferredSerialization;
+
+public class TestSubconnection {
+
+    private static class CountingMessage extends VoltMessage {
+        int m_flattens = 0;
+
+        @Override
+        public int getSerializedSize() {
+            return super.getSerializedSize() + 8;
+        }
+
+        @Override
+        protected void initFromBuffer(ByteBuffer buf) throws IOException {
+        }
+
+        @Override
+        public void flattenToBuffer(ByteBuffer buf) throws IOException {
+            m_flattens++;
+            buf.put((byte) 42);
+            buf.putLong(1234567890123L);
+        }
+    }
+
+    @Test
+    public void testSharedMessageIsFlattenedOnce() throws Exception {
+        CountingMessage message = new CountingMessage();
+        Subconnection.SharedMessage shared = new Subconnection.SharedMessage(message);
+
+        ByteBuffer first = shared.get();
+        ByteBuffer frame = ByteBuffer.allocate(32);
+        frame.put(first);
+        ByteBuffer second = shared.get();
+        assertEquals(1, message.m_flattens);
+
+        // Copying the message into one frame doesn't consume it for the others
+        assertNotSame(first, second);
+        assertEquals(message.getSerializedSize(), second.remaining());
+        assertEquals(42, second.get());
+        assertEquals(1234567890123L, second.getLong());
+        assertEquals(message.getSerializedSize(), frame.position());
+    }
+
+    /**
+     * Serialize the frames enqueued on a subconnection's network and return the destination
+     * list of each, checking that every frame carries the whole message
+     */
+    private static long[][] sentDestinations(PicoNetwork network, int frames, CountingMessage message)
+            throws IOException {
+        ArgumentCaptor<DeferredSerialization> captor = ArgumentCaptor.forClass(DeferredSerialization.class);
+        verify(network, times(frames)).enqueue(captor.capture());
+        List<DeferredSerialization> sent = captor.getAllValues();
+        long[][] destinations = new long[sent.size()][];
+        for (int ii = 0; ii < sent.size(); ii++) {
+            ByteBuffer frame = ByteBuffer.allocate(sent.get(ii).getSerializedSize());
+            sent.get(ii).serialize(frame);
+            assertEquals(frame.limit() - 4, frame.getInt());
+            frame.getLong();
+            destinations[ii] = new long[frame.getInt()];
+            for (int jj = 0; jj < destinations[ii].length; jj++) {
+                destinations[ii][jj] = frame.getLong();
+            }
+            assertEquals(message.getSerializedSize(), frame.remaining());
+            assertEquals(42, frame.get());
+            assertEquals(1234567890123L, frame.getLong());
+        }
+        return destinations;
+    }
+
+    @Test
+    public void testSendIsSplitByBoundSubconnection() throws Exception {
+        PicoNetwork networks[] = new PicoNetwork[3];
+        for (int ii = 0; ii < networks.length; ii++) {
+            networks[ii] = mock(PicoNetwork.class);
+        }
+        ForeignHost fh = new ForeignHost(mock(HostMessenger.class), 1, mock(SocketChannel.class), 10000,
+                null, networks[0]);
+        fh.createAndEnableNewConnection(mock(SocketChannel.class), networks[1], new HashSet<>());
+        fh.createAndEnableNewConnection(mock(SocketChannel.class), networks[2], new HashSet<>());
+        fh.setHasMultiConnections();
+
+        // The destinations are bound round robin as they are first seen, so this binds
+        // 11 and 14 to the first subconnection, 12 and 15 to the second and 13 to the third
+        CountingMessage message = new CountingMessage();
+        long destinations[] = new long[] { 11, 12, 13, 14, 15 };
+        fh.send(destinations, message);
+
+        long expected[][] = new long[][] { { 11, 14 }, { 12, 15 }, { 13 } };
+        Set<Long> seen = new HashSet<>();
+        for (int ii = 0; ii < networks.length; ii++) {
+            long sent[][] = sentDestinations(networks[ii], 1, message);
+            assertArrayEquals(expected[ii], sent[0]);
+            for (long destination : sent[0]) {
+                assertTrue("Destination " + destination + " sent more than once", seen.add(destination));
+            }
+        }
+        assertEquals(destinations.length, seen.size());
+        assertEquals(1, message.m_flattens);
+
+        // Destinations bound to one subconnection keep using it, in a single frame
+        CountingMessage again = new CountingMessage();
+        fh.send(new long[] { 15, 12 }, again);
+        assertArrayEquals(new long[] { 15, 12 }, sentDestinations(networks[1], 2, again)[1]);
+        verify(networks[0], times(1)).enqueue(any(DeferredSerialization.class));
+        verify(networks[2], times(1)).enqueue(any(DeferredSerialization.class));
+        assertEquals(1, again.m_flattens);
+    }
+}
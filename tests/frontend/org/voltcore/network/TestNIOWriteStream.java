@@ -59,6 +59,7 @@ import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.EstTime;
 import org.voltcore.utils.EstTimeUpdater;
 import org.voltdb.AdmissionControlGroup;
@@ -389,6 +390,57 @@ public class TestNIOWriteStream extends TestCase {
         wstream.shutdown();
     }
 
+    public void testLargeMessageSerializedDirect() throws IOException {
+        final int size = NIOWriteStreamBase.DIRECT_SERIALIZATION_MIN_SIZE * 2 + 3;
+        final ByteBuffer received = ByteBuffer.allocate(size + 5);
+        final boolean[] wroteHeap = new boolean[] { false };
+        GatheringByteChannel channel = new MockChannel(MockChannel.SINK, 0) {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                wroteHeap[0] |= !src.isDirect();
+                int remaining = src.remaining();
+                received.put(src);
+                return remaining;
+            }
+        };
+        MockPort port = new MockPort();
+        VoltNIOWriteStream wstream = new VoltNIOWriteStream(port);
+
+        // a small message followed by a large one, which gets a pooled buffer of its own
+        wstream.enqueue(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5 }));
+        wstream.enqueue(new DeferredSerialization() {
+            @Override
+            public void serialize(ByteBuffer buf) {
+                for (int i = 0; i < size; i++) {
+                    buf.put((byte) i);
+                }
+            }
+
+            @Override
+            public void cancel() {}
+
+            @Override
+            public int getSerializedSize() {
+                return size;
+            }
+        });
+        assertEquals(2, wstream.serializeQueuedWrites(pool));
+        // the whole large message sits in the last queued buffer
+        assertEquals(size, wstream.m_queuedBuffers.peekLast().b().position());
+        assertEquals(size + 5, wstream.drainTo(channel));
+        assertFalse(wroteHeap[0]);
+        assertTrue(wstream.isEmpty());
+
+        received.flip();
+        for (int i = 1; i <= 5; i++) {
+            assertEquals((byte) i, received.get());
+        }
+        for (int i = 0; i < size; i++) {
+            assertEquals((byte) i, received.get());
+        }
+        wstream.shutdown();
+    }
+
     public void testLastWriteDelta() throws Exception {
         EstTimeUpdater.s_pause = true;
         Thread.sleep(10);
@@ -0,0 +1,138 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestLongObjectHashMap {
+
+    @Test
+    public void testPutGetRemove() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1L, "a"));
+        assertNull(map.put(-1L, "b"));
+        assertNull(map.put(Long.MIN_VALUE, "c"));
+        assertNull(map.put(0L, "d"));
+        assertEquals("a", map.put(1L, "e"));
+
+        assertEquals(4, map.size());
+        assertEquals("e", map.get(1L));
+        assertEquals("b", map.get(-1L));
+        assertEquals("c", map.get(Long.MIN_VALUE));
+        assertEquals("d", map.get(0L));
+        assertNull(map.get(2L));
+        assertFalse(map.containsKey(2L));
+
+        assertEquals("b", map.remove(-1L));
+        assertNull(map.remove(-1L));
+        assertFalse(map.containsKey(-1L));
+        assertEquals(3, map.size());
+
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertTrue(Arrays.equals(new long[] { Long.MIN_VALUE, 0L, 1L }, keys));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1L));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        new LongObjectHashMap<String>().put(1L, null);
+    }
+
+    @Test
+    public void testCursorRemove() {
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        for (long i = 0; i < 100; ++i) {
+            map.put(i, i);
+        }
+        LongObjectHashMap<Long>.Cursor cursor = map.cursor();
+        int visited = 0;
+        while (cursor.advance()) {
+            assertEquals(cursor.key(), cursor.value().longValue());
+            if (cursor.key() % 2 == 0) {
+                cursor.remove();
+            }
+            ++visited;
+        }
+        assertEquals(100, visited);
+        assertEquals(50, map.size());
+        for (long i = 0; i < 100; ++i) {
+            assertEquals(i % 2 == 1, map.containsKey(i));
+        }
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        // Transaction ids share their low bits, which is the case the hash has to cope with
+        Random random = new Random(0);
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100000; ++i) {
+            long key = (random.nextInt(500) << 23) | 7;
+            int op = random.nextInt(3);
+            if (op == 0) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else if (op == 1) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+    }
+
+    @Test
+    public void testChurnDoesNotResize() {
+        // Transactions come and go while about the same number are outstanding
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>(100);
+        for (long key = 0; key < 100; ++key) {
+            map.put(key, key);
+        }
+        Object[] slots = map.valueSlots();
+        for (long key = 100; key < 100000; ++key) {
+            assertEquals(Long.valueOf(key - 100), map.remove(key - 100));
+            assertNull(map.put(key, key));
+            assertSame(slots, map.valueSlots());
+        }
+        assertEquals(100, map.size());
+        for (long key = 100000 - 100; key < 100000; ++key) {
+            assertEquals(Long.valueOf(key), map.get(key));
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.utils.InstanceId;
+import org.voltdb.CommandLog.CompletionChecks;
+import org.voltdb.CommandLog.DurabilityListener;
+import org.voltdb.iv2.SpScheduler.DurableUniqueIdListener;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.iv2.UniqueIdGenerator;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.sysprocs.saverestore.SnapshotPathType;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
+public class TestGroupCommitCommandLog {
+    private File m_tempDir;
+    private GroupCommitCommandLog m_log;
+    private final UniqueIdGenerator m_uniqueIdGenerator = new UniqueIdGenerator(0, 0);
+
+    /**
+     * Counts the transactions which the command log reports as durable
+     */
+    private static class CountingListener implements DurabilityListener {
+        private class Checks implements CompletionChecks {
+            int m_count = 0;
+
+            @Override
+            public CompletionChecks startNewCheckList(int startSize) {
+                return new Checks();
+            }
+
+            @Override
+            public void addTask(TransactionTask task) {
+                ++m_count;
+            }
+
+            @Override
+            public void setLastDurableUniqueId(long uniqueId) {}
+
+            @Override
+            public boolean isChanged() {
+                return m_count > 0;
+            }
+
+            @Override
+            public int getTaskListSize() {
+                return m_count;
+            }
+
+            @Override
+            public void processChecks() {
+                m_durable.release(m_count);
+            }
+        }
+
+        final Semaphore m_durable = new Semaphore(0);
+        private Checks m_current = new Checks();
+
+        @Override
+        public void configureUniqueIdListener(DurableUniqueIdListener listener, boolean install) {}
+
+        @Override
+        public void createFirstCompletionCheck(boolean isSyncLogging, boolean commandLoggingEnabled) {}
+
+        @Override
+        public boolean completionCheckInitialized() {
+            return true;
+        }
+
+        @Override
+        public void addTransaction(TransactionTask pendingTask) {
+            m_current.addTask(pendingTask);
+        }
+
+        @Override
+        public void initializeLastDurableUniqueId(long uniqueId) {}
+
+        @Override
+        public int getNumberOfTasks() {
+            return m_current.getTaskListSize();
+        }
+
+        @Override
+        public CompletionChecks startNewTaskList(int nextMaxRowCnt) {
+            Checks last = m_current;
+            m_current = (Checks) m_current.startNewCheckList(nextMaxRowCnt);
+            return last;
+        }
+
+        @Override
+        public void processDurabilityChecks(CompletionChecks completionChecks) {
+            completionChecks.processChecks();
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        m_tempDir = File.createTempFile("test-commandlog", "");
+        m_tempDir.delete();
+        assertTrue(m_tempDir.mkdir());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (m_log != null) {
+            m_log.shutdown();
+            m_log = null;
+        }
+        VoltFile.recursivelyDelete(m_tempDir);
+    }
+
+    private GroupCommitCommandLog open(boolean synchronous) {
+        GroupCommitCommandLog log = new GroupCommitCommandLog(synchronous, 5, 100, m_tempDir.getPath(), null);
+        assertTrue(log.needsInitialization());
+        log.open(1024, new InstanceId(1, 2), Long.MIN_VALUE, new HashMap<>());
+        assertFalse(log.needsInitialization());
+        return log;
+    }
+
+    private Iv2InitiateTaskMessage makeTask(long spHandle, boolean readOnly, boolean singlePartition) {
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+        invocation.setProcName("hah");
+        invocation.setParams(1l, "haha", 3.3);
+        Iv2InitiateTaskMessage task = new Iv2InitiateTaskMessage(1, 2, Long.MIN_VALUE, spHandle,
+                m_uniqueIdGenerator.getNextUniqueId(), readOnly, singlePartition, false, invocation, 4, 5, false);
+        task.setSpHandle(spHandle);
+        return task;
+    }
+
+    private List<CommandLogSegment.Entry> readAll() throws IOException {
+        List<CommandLogSegment.Entry> entries = new ArrayList<>();
+        List<CommandLogSegment> segments = CommandLogSegment.scan(m_tempDir);
+        for (int i = 0; i < segments.size(); i++) {
+            try (CommandLogSegment.Reader reader = segments.get(i).openForRead(i == segments.size() - 1)) {
+                CommandLogSegment.Entry entry;
+                while ((entry = reader.next()) != null) {
+                    entries.add(entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void testSyncGroupCommit() throws Exception {
+        m_log = open(true);
+        assertTrue(m_log.isSynchronous());
+        assertFalse(m_log.canOfferTask());
+
+        CountingListener listener = new CountingListener();
+        m_log.registerDurabilityListener(listener);
+
+        TxnEgo spego = TxnEgo.makeZero(0);
+        List<Long> written = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            spego = spego.makeNext();
+            boolean readOnly = i % 5 == 0;
+            assertNull(m_log.log(makeTask(spego.getTxnId(), readOnly, true), spego.getTxnId(), null, listener, null));
+            if (!readOnly) {
+                written.add(spego.getTxnId());
+            }
+        }
+        // Dummy transactions carry no message but still have to be released
+        spego = spego.makeNext();
+        assertNull(m_log.log(null, spego.getTxnId(), null, listener, null));
+
+        assertTrue(listener.m_durable.tryAcquire(251, 10, TimeUnit.SECONDS));
+        m_log.shutdown();
+        m_log = null;
+
+        List<CommandLogSegment.Entry> entries = readAll();
+        assertEquals(written.size(), entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(LogEntryType.INITIATION, entries.get(i).type);
+            assertEquals((long) written.get(i), entries.get(i).spHandle);
+            assertEquals("hah", entries.get(i).message.getStoredProcedureName());
+        }
+    }
+
+    @Test
+    public void testAsyncDoesNotBlockTransactions() throws Exception {
+        m_log = open(false);
+        assertFalse(m_log.isSynchronous());
+        assertTrue(m_log.canOfferTask());
+
+        CountingListener listener = new CountingListener();
+        m_log.registerDurabilityListener(listener);
+
+        TxnEgo spego = TxnEgo.makeZero(3).makeNext();
+        ListenableFuture<Object> backpressure =
+                m_log.log(makeTask(spego.getTxnId(), false, true), spego.getTxnId(), null, listener, null);
+        assertNotNull(backpressure);
+        assertTrue(backpressure.isDone());
+        assertTrue(listener.m_durable.tryAcquire(1, 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testMultiPartitionEntry() throws Exception {
+        m_log = open(true);
+        CountingListener listener = new CountingListener();
+        m_log.registerDurabilityListener(listener);
+
+        long spHandle = TxnEgo.makeZero(1).makeNext().getTxnId();
+        int[] involved = new int[] { 0, 1, 2 };
+        m_log.log(makeTask(spHandle, false, false), spHandle, involved, listener, null);
+        assertTrue(listener.m_durable.tryAcquire(1, 10, TimeUnit.SECONDS));
+        m_log.shutdown();
+        m_log = null;
+
+        List<CommandLogSegment.Entry> entries = readAll();
+        assertEquals(1, entries.size());
+        assertFalse(entries.get(0).message.isSinglePartition());
+        assertArrayEquals(involved, entries.get(0).involvedPartitions);
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws Exception {
+        m_log = open(true);
+        CountingListener listener = new CountingListener();
+        m_log.registerDurabilityListener(listener);
+
+        TxnEgo spego = TxnEgo.makeZero(0);
+        for (int i = 0; i < 10; i++) {
+            spego = spego.makeNext();
+            m_log.log(makeTask(spego.getTxnId(), false, true), spego.getTxnId(), null, listener, null);
+        }
+        assertTrue(listener.m_durable.tryAcquire(10, 10, TimeUnit.SECONDS));
+        m_log.shutdown();
+        m_log = null;
+
+        List<CommandLogSegment> segments = CommandLogSegment.scan(m_tempDir);
+        assertEquals(1, segments.size());
+        assertEquals(new InstanceId(1, 2), segments.get(0).getInstanceId());
+        try (FileOutputStream fos = new FileOutputStream(segments.get(0).getFile(), true)) {
+            // A length prefix with only part of the entry behind it
+            fos.write(new byte[] { 0, 0, 1, 0, 1, 2, 3, 4, 5, 6, 7 });
+        }
+        assertEquals(10, readAll().size());
+    }
+
+    /**
+     * Write a segment with {@code count} single partition entries the way the log does
+     *
+     * @return offsets of the entries in the segment file
+     */
+    private List<Long> writeSegment(long id, TxnEgo[] spego, int count) throws IOException {
+        Map<Integer, Long> startTxnIds = new HashMap<>();
+        startTxnIds.put(0, Long.MIN_VALUE);
+        CommandLogSegment segment = new CommandLogSegment(id, CommandLogSegment.fileForId(m_tempDir, id),
+                new InstanceId(1, 2), Long.MIN_VALUE, startTxnIds);
+        List<Long> offsets = new ArrayList<>();
+        try (FileOutputStream fos = new FileOutputStream(segment.getFile())) {
+            ByteBuffer header = segment.serializeHeader();
+            fos.write(header.array(), 0, header.limit());
+            long offset = header.limit();
+            for (int i = 0; i < count; i++) {
+                spego[0] = spego[0].makeNext();
+                byte[] entry = CommandLogSegment.serializeEntry(LogEntryType.INITIATION, spego[0].getTxnId(), null,
+                        makeTask(spego[0].getTxnId(), false, true));
+                fos.write(entry);
+                offsets.add(offset);
+                offset += entry.length;
+            }
+        }
+        return offsets;
+    }
+
+    private static void corrupt(File file, long offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(offset);
+            int b = raf.read();
+            raf.seek(offset);
+            raf.write(b ^ 0xff);
+        }
+    }
+
+    @Test
+    public void testCorruptEntryInNewestSegmentEndsTheLog() throws Exception {
+        TxnEgo[] spego = { TxnEgo.makeZero(0) };
+        writeSegment(1, spego, 5);
+        List<Long> offsets = writeSegment(2, spego, 5);
+        // Flip a byte in the body of the fourth entry of the newest segment
+        corrupt(CommandLogSegment.fileForId(m_tempDir, 2), offsets.get(3) + CommandLogSegment.ENTRY_HEADER_SIZE + 1);
+        assertEquals(8, readAll().size());
+    }
+
+    @Test
+    public void testCorruptEntryInOlderSegmentFails() throws Exception {
+        TxnEgo[] spego = { TxnEgo.makeZero(0) };
+        List<Long> offsets = writeSegment(1, spego, 5);
+        writeSegment(2, spego, 5);
+        File older = CommandLogSegment.fileForId(m_tempDir, 1);
+        corrupt(older, offsets.get(2) + CommandLogSegment.ENTRY_HEADER_SIZE + 1);
+        try {
+            readAll();
+            fail("A corrupt entry before the newest segment must not end the log");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(older.toString()));
+            assertTrue(e.getMessage(), e.getMessage().contains("offset " + offsets.get(2)));
+        }
+
+        // A bad length is corruption as well
+        corrupt(older, offsets.get(2) + CommandLogSegment.ENTRY_HEADER_SIZE + 1);
+        corrupt(older, offsets.get(1));
+        try {
+            readAll();
+            fail("A bad entry length before the newest segment must not end the log");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("offset " + offsets.get(1)));
+        }
+    }
+
+    @Test
+    public void testCorruptHeaderInOlderSegmentFails() throws Exception {
+        TxnEgo[] spego = { TxnEgo.makeZero(0) };
+        writeSegment(1, spego, 5);
+        writeSegment(2, spego, 5);
+        corrupt(CommandLogSegment.fileForId(m_tempDir, 2), 10);
+        assertEquals(5, readAll().size());
+
+        corrupt(CommandLogSegment.fileForId(m_tempDir, 1), 10);
+        try {
+            CommandLogSegment.scan(m_tempDir);
+            fail("A corrupt header before the newest segment must not be ignored");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(CommandLogSegment.fileForId(m_tempDir, 1).toString()));
+        }
+    }
+
+    @Test
+    public void testTruncation() throws Exception {
+        m_log = open(true);
+        CountingListener listener = new CountingListener();
+        m_log.registerDurabilityListener(listener);
+
+        TxnEgo spego = TxnEgo.makeZero(0).makeNext();
+        m_log.log(makeTask(spego.getTxnId(), false, true), spego.getTxnId(), null, listener, null);
+        assertTrue(listener.m_durable.tryAcquire(1, 10, TimeUnit.SECONDS));
+        assertEquals(1, CommandLogSegment.scan(m_tempDir).size());
+
+        Map<Integer, Long> partitionTxnIds = new HashMap<>();
+        partitionTxnIds.put(0, spego.getTxnId());
+        m_log.snapshotCompleted(SnapshotCompletionInterest.SnapshotCompletionEvent.newInstanceForTest(
+                m_tempDir.getPath(), SnapshotPathType.SNAP_CL, "nonce", Long.MIN_VALUE, partitionTxnIds,
+                true, 0, 0));
+
+        // The next batch rolls the log onto a new segment, which frees the covered one
+        spego = spego.makeNext();
+        m_log.log(makeTask(spego.getTxnId(), false, true), spego.getTxnId(), null, listener, null);
+        assertTrue(listener.m_durable.tryAcquire(1, 10, TimeUnit.SECONDS));
+
+        List<CommandLogSegment> segments = CommandLogSegment.scan(m_tempDir);
+        assertEquals(1, segments.size());
+        assertEquals(partitionTxnIds, segments.get(0).getStartTxnIds());
+        assertEquals(1, readAll().size());
+    }
+}
@@ -0,0 +1,128 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestAdaptiveConcurrencyLimiter {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static void fill(AdaptiveConcurrencyLimiter limiter) {
+        while (!limiter.isFull()) {
+            limiter.acquire();
+        }
+    }
+
+    @Test
+    public void testGrowsWhenSaturatedAndLatencyIsSteady() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(100);
+        assertEquals(AdaptiveConcurrencyLimiter.INITIAL_LIMIT, limiter.getLimit());
+
+        long now = 0;
+        // About one more per round trip, i.e. per limit responses
+        for (int i = 0; i < 10000; i++) {
+            fill(limiter);
+            now += RTT;
+            limiter.release(now, RTT, false);
+        }
+        assertEquals(100, limiter.getLimit());
+        assertEquals(0, limiter.getDecreases());
+    }
+
+    @Test
+    public void testDoesNotGrowWhenIdle() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(100);
+        long now = 0;
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire();
+            now += RTT;
+            limiter.release(now, RTT, false);
+        }
+        assertEquals(AdaptiveConcurrencyLimiter.INITIAL_LIMIT, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLatencySpikeDecreasesOncePerRoundTrip() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(100);
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire();
+        }
+        now += RTT;
+        limiter.release(now, RTT, false);
+
+        // A burst of slow responses within one round trip only cuts the limit once
+        now += 10 * RTT;
+        limiter.release(now, 10 * RTT, false);
+        limiter.release(now, 10 * RTT, false);
+        limiter.release(now + RTT / 2, 10 * RTT, false);
+        assertEquals(1, limiter.getDecreases());
+        assertEquals((int) (AdaptiveConcurrencyLimiter.INITIAL_LIMIT * AdaptiveConcurrencyLimiter.BACKOFF_RATIO),
+                limiter.getLimit());
+
+        // Another one after a round trip cuts it again
+        limiter.release(now + 2 * RTT, 10 * RTT, false);
+        assertEquals(2, limiter.getDecreases());
+    }
+
+    @Test
+    public void testTimeoutsDecreaseDownToMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(100);
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            now += TimeUnit.SECONDS.toNanos(1);
+            limiter.release(now, -1, true);
+        }
+        assertEquals(AdaptiveConcurrencyLimiter.MIN_LIMIT, limiter.getLimit());
+        assertEquals(100, limiter.getDecreases());
+    }
+
+    @Test
+    public void testReleaseReportsEndOfBackpressure() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2);
+        assertEquals(2, limiter.getLimit());
+        limiter.acquire();
+        assertFalse(limiter.isFull());
+        limiter.acquire();
+        assertTrue(limiter.isFull());
+        // Transactions ignoring backpressure can still go over the limit
+        limiter.acquire();
+
+        assertFalse(limiter.release(RTT, RTT, false));
+        assertTrue(limiter.release(2 * RTT, RTT, false));
+        assertFalse(limiter.isFull());
+        assertFalse(limiter.release(3 * RTT, RTT, false));
+        assertEquals(0, limiter.getInFlight());
+    }
+}
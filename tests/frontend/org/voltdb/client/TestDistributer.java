@@ -31,6 +31,7 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -890,6 +891,48 @@ public class TestDistributer extends TestCase {
        }
     }
 
+    public void testClientFutures() throws Exception {
+       if (ClientConfig.ENABLE_SSL_FOR_TEST) return;
+       // TODO: write a mock server that can grock ssl
+       MockVolt volt = null;
+       Client clt = null;
+
+       try {
+           // create a fake server and connect to it.
+           volt = new MockVolt(21212);
+           volt.start();
+
+           ClientConfig config = new ClientConfig();
+           config.setWriteCoalescingWindow(500);
+           clt = ClientFactory.createClient(config);
+           clt.createConnection("localhost");
+
+           ClientResponse response = clt.callProcedureAsync("Foo", new Integer(1)).get(10, TimeUnit.SECONDS);
+           assertEquals(ClientResponse.SUCCESS, response.getStatus());
+           assertEquals(5, volt.handler.roundTrips.get());
+
+           // written to the connection together
+           List<Object[]> parameterSets = new ArrayList<>();
+           for (int ii = 0; ii < 10; ii++) {
+               parameterSets.add(new Object[] { ii });
+           }
+           List<CompletableFuture<ClientResponse>> futures = clt.callProcedures("Bar", parameterSets);
+           assertEquals(10, futures.size());
+           for (CompletableFuture<ClientResponse> future : futures) {
+               assertEquals(ClientResponse.SUCCESS, future.get(10, TimeUnit.SECONDS).getStatus());
+           }
+           assertEquals(15, volt.handler.roundTrips.get());
+       }
+       finally {
+           if (clt != null) {
+               clt.close();
+           }
+           if (volt != null) {
+               volt.shutdown();
+           }
+       }
+    }
+
     @Test
     public void testClientBlockedOnMaxOutstanding() throws Exception {
         // TODO: write a mock server that can grock ssl
@@ -0,0 +1,155 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+public class TestTablePager {
+
+    private static VoltTable page(long... ids) {
+        VoltTable t = new VoltTable(new ColumnInfo("ID", VoltType.BIGINT), new ColumnInfo("NAME", VoltType.STRING));
+        for (long id : ids) {
+            t.addRow(id, "row" + id);
+        }
+        return t;
+    }
+
+    @Test
+    public void testBuildQuery() {
+        String[] keys = new String[] { "A", "B", "C" };
+        assertEquals("SELECT * FROM T", TablePager.buildQuery("T", keys, false));
+        assertEquals("SELECT * FROM T WHERE (A > ?) OR (A = ? AND B > ?) OR (A = ? AND B = ? AND C > ?)",
+                TablePager.buildQuery("T", keys, true));
+    }
+
+    @Test
+    public void testPagesContinueAfterLastKey() throws Exception {
+        MockVoltClient client = new MockVoltClient();
+        client.nextResults.add(new VoltTable[] { page(1, 2, 3) });
+        client.nextResults.add(new VoltTable[] { page(4, 5, 6) });
+        client.nextResults.add(new VoltTable[] { page(7) });
+        TablePager pager = new TablePager(client, "people", Arrays.asList("id"), 3, Integer.MAX_VALUE);
+
+        assertTrue(pager.hasNext());
+        assertEquals("@AdHocLarge", client.calledName);
+        assertArrayEquals(new Object[] { "SELECT * FROM people ORDER BY ID LIMIT ?;", 3 }, client.calledParameters);
+        assertEquals(3, pager.next().getRowCount());
+
+        assertTrue(pager.hasNext());
+        assertArrayEquals(new Object[] { "SELECT * FROM people WHERE (ID > ?) ORDER BY ID LIMIT ?;", 3L, 3 },
+                client.calledParameters);
+        assertEquals(3, pager.next().getRowCount());
+
+        assertTrue(pager.hasNext());
+        assertArrayEquals(new Object[] { "SELECT * FROM people WHERE (ID > ?) ORDER BY ID LIMIT ?;", 6L, 3 },
+                client.calledParameters);
+        assertEquals(1, pager.next().getRowCount());
+
+        // A short page is the last one, so there is no extra round trip
+        assertFalse(pager.hasNext());
+        assertEquals(3, client.numCalls);
+        assertEquals(7, pager.getRowsRead());
+        assertEquals(3, pager.getPagesRead());
+    }
+
+    @Test
+    public void testEmptyTable() throws Exception {
+        MockVoltClient client = new MockVoltClient();
+        client.nextResults.add(new VoltTable[] { page() });
+        TablePager pager = new TablePager(client, "people", "id");
+        assertFalse(pager.hasNext());
+        assertEquals(0, pager.getPagesRead());
+    }
+
+    @Test
+    public void testLargePagesShrink() throws Exception {
+        MockVoltClient client = new MockVoltClient();
+        VoltTable first = page(1, 2, 3, 4);
+        client.nextResults.add(new VoltTable[] { first });
+        TablePager pager = new TablePager(client, "people", Arrays.asList("id"), 4, first.getSerializedSize() / 2);
+        assertEquals(4, pager.next().getRowCount());
+        assertTrue(pager.getPageRows() <= 2);
+        assertTrue(pager.getPageRows() >= 1);
+    }
+
+    @Test
+    public void testPageSizeGrowsBack() throws Exception {
+        MockVoltClient client = new MockVoltClient();
+        int maxPageBytes = page(1, 2, 3, 4).getSerializedSize();
+        VoltTable large = new VoltTable(new ColumnInfo("ID", VoltType.BIGINT), new ColumnInfo("NAME", VoltType.STRING));
+        char[] name = new char[8 * maxPageBytes];
+        Arrays.fill(name, 'x');
+        large.addRow(1L, new String(name));
+        large.addRow(2L, "row2");
+        large.addRow(3L, "row3");
+        large.addRow(4L, "row4");
+        client.nextResults.add(new VoltTable[] { large });
+        client.nextResults.add(new VoltTable[] { page(5) });
+        client.nextResults.add(new VoltTable[] { page(6, 7, 8, 9) });
+        TablePager pager = new TablePager(client, "people", Arrays.asList("id"), 4, maxPageBytes);
+
+        assertEquals(4, pager.next().getRowCount());
+        assertEquals(1, pager.getPageRows());
+        assertEquals(1, pager.next().getRowCount());
+        assertArrayEquals(new Object[] { "SELECT * FROM people WHERE (ID > ?) ORDER BY ID LIMIT ?;", 4L, 1 },
+                client.calledParameters);
+        // That page fit, so the next one asks for the configured number of rows
+        assertEquals(4, pager.getPageRows());
+        assertEquals(4, pager.next().getRowCount());
+        assertArrayEquals(new Object[] { "SELECT * FROM people WHERE (ID > ?) ORDER BY ID LIMIT ?;", 5L, 4 },
+                client.calledParameters);
+    }
+
+    @Test
+    public void testInvalidIdentifiers() {
+        MockVoltClient client = new MockVoltClient();
+        for (String table : new String[] { "people; DELETE FROM people", "people p", "\"people\"", "", null }) {
+            try {
+                new TablePager(client, table, "id");
+                fail("Table name " + table + " should be rejected");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        for (String column : new String[] { "id) OR (1 = 1", "id--", "1id", " " }) {
+            try {
+                new TablePager(client, "people", column);
+                fail("Key column " + column + " should be rejected");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        new TablePager(client, " people_2 ", " _id ");
+        assertEquals(0, client.numCalls);
+    }
+}
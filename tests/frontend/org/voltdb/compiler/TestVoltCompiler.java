@@ -1696,7 +1696,22 @@ public class TestVoltCompiler extends TestCase {
                             Pair.of("create table t ( goodvanilla integer not null ); create unique index myhash on t ( goodvanilla );",
                                     IndexType.HASH_TABLE),
                             Pair.of("create table t ( goodhash integer not null primary key );",
-                                    IndexType.BALANCED_TREE)
+                                    IndexType.BALANCED_TREE),
+                            // A hash name containing "flathash" picks the flat hash index
+                            Pair.of("create table t ( goodvanilla integer not null, constraint good_flathash primary key ( goodvanilla ) );",
+                                    IndexType.FLAT_HASH_TABLE),
+                            Pair.of("create table t ( goodvanilla integer not null ); create unique index myflathash on t ( goodvanilla );",
+                                    IndexType.FLAT_HASH_TABLE),
+                            Pair.of("create table t ( goodvanilla integer not null ); create unique index myflathashtree on t ( goodvanilla );",
+                                    IndexType.BALANCED_TREE),
+                            // There is no non-unique flat hash index, the chained one is built instead
+                            Pair.of("create table t ( goodvanilla integer not null ); create index myflathash on t ( goodvanilla );",
+                                    IndexType.HASH_TABLE),
+                            // A name containing "btree" picks the B+tree, for any column types
+                            Pair.of("create table t ( goodvanilla integer not null ); create unique index mybtree on t ( goodvanilla );",
+                                    IndexType.BTREE),
+                            Pair.of("create table t ( goodbtreename varchar(256) not null, constraint good_btree primary key ( goodbtreename ) );",
+                                    IndexType.BTREE)
         );
         String[] failing = {
                 // If we name the constraint with a hash name,
@@ -1707,7 +1722,8 @@ public class TestVoltCompiler extends TestCase {
                 "create table t ( badzotzname varchar(256) not null, constraint badhashconstraint primary key ( badzotzname ) );",
                 // If any of the columns are non-hashable, the index is
                 // not hashable.
-                "create table t ( fld1 integer, fld2 varchar(256), constraint badhashconstraint primary key ( fld1, fld2 ) );"
+                "create table t ( fld1 integer, fld2 varchar(256), constraint badhashconstraint primary key ( fld1, fld2 ) );",
+                "create table t ( badflathashname varchar(256) not null, constraint badflathash primary key ( badflathashname ) );"
         };
         for (Pair<String, IndexType> cmdPair : passing) {
             // See if we can actually create the table.
@@ -0,0 +1,140 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TestWindowedLfuCache {
+
+    private static WindowedLfuCache<String, String> countBounded(int maxEntries) {
+        return new WindowedLfuCache<>(maxEntries, Long.MAX_VALUE, value -> 0);
+    }
+
+    @Test
+    public void testGetAndPutIfAbsent() {
+        WindowedLfuCache<String, String> cache = countBounded(10);
+        assertNull(cache.get("a"));
+        assertNull(cache.putIfAbsent("a", "1"));
+        assertEquals("1", cache.putIfAbsent("a", "2"));
+        assertEquals("1", cache.get("a"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.insertionCount());
+        assertEquals(0, cache.evictionCount());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testEntryBound() {
+        WindowedLfuCache<String, String> cache = countBounded(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.putIfAbsent("key" + i, "value" + i);
+            assertTrue(cache.size() <= 100);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(1000, cache.insertionCount());
+        assertEquals(900, cache.evictionCount());
+    }
+
+    @Test
+    public void testWeightBound() {
+        WindowedLfuCache<String, String> cache = new WindowedLfuCache<>(1000, 100, String::length);
+        for (int i = 0; i < 100; i++) {
+            cache.putIfAbsent("key" + i, "0123456789");
+            assertTrue(cache.weight() <= 100);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(100, cache.weight());
+    }
+
+    @Test
+    public void testFrequentlyUsedEntriesSurviveScan() {
+        WindowedLfuCache<String, String> cache = countBounded(100);
+        for (int i = 0; i < 50; i++) {
+            cache.putIfAbsent("hot" + i, "hot");
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get("hot" + i);
+            }
+        }
+        // A long run of statements which are each only seen once
+        for (int i = 0; i < 10000; i++) {
+            cache.putIfAbsent("cold" + i, "cold");
+        }
+        int hot = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get("hot" + i) != null) {
+                ++hot;
+            }
+        }
+        assertTrue("Only " + hot + " hot entries survived", hot >= 45);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final WindowedLfuCache<Integer, Integer> cache = new WindowedLfuCache<>(500, Long.MAX_VALUE, value -> 0);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 200000; i++) {
+                        int key = random.nextInt(2000);
+                        Integer value = cache.get(key);
+                        if (value == null) {
+                            cache.putIfAbsent(key, key);
+                        } else if (value != key) {
+                            throw new AssertionError("Wrong value " + value + " for " + key);
+                        }
+                    }
+                } catch (Throwable t1) {
+                    failure.compareAndSet(null, t1);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertTrue(cache.size() <= 500);
+        assertEquals(cache.insertionCount() - cache.evictionCount(), cache.size());
+    }
+}
@@ -0,0 +1,176 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestExportWorkerPool {
+
+    @Test
+    public void testLanesKeepTaskOrder() throws Exception {
+        final int lanes = 20;
+        final int tasks = 1000;
+        ExportWorkerPool pool = new ExportWorkerPool(4);
+        List<List<Integer>> results = new ArrayList<>();
+        List<ExportWorkerPool.Lane> created = new ArrayList<>();
+        for (int l = 0; l < lanes; l++) {
+            results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+            created.add(pool.newLane("lane " + l));
+        }
+        for (int t = 0; t < tasks; t++) {
+            for (int l = 0; l < lanes; l++) {
+                final List<Integer> result = results.get(l);
+                final int value = t;
+                created.get(l).execute(() -> result.add(value));
+            }
+        }
+        for (ExportWorkerPool.Lane lane : created) {
+            lane.shutdown();
+        }
+        for (ExportWorkerPool.Lane lane : created) {
+            assertTrue(lane.awaitTermination(30, TimeUnit.SECONDS));
+        }
+        for (List<Integer> result : results) {
+            assertEquals(tasks, result.size());
+            for (int t = 0; t < tasks; t++) {
+                assertEquals(t, result.get(t).intValue());
+            }
+        }
+    }
+
+    @Test
+    public void testLaneRunsOneTaskAtATime() throws Exception {
+        ExportWorkerPool pool = new ExportWorkerPool(4);
+        ExportWorkerPool.Lane lane = pool.newLane("serial");
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        for (int i = 0; i < 200; i++) {
+            lane.execute(() -> {
+                if (running.incrementAndGet() != 1) {
+                    overlaps.incrementAndGet();
+                }
+                Thread.yield();
+                running.decrementAndGet();
+            });
+        }
+        lane.submit(() -> { }).get(30, TimeUnit.SECONDS);
+        assertEquals(0, overlaps.get());
+    }
+
+    @Test
+    public void testQueueDepthAndShutdown() throws Exception {
+        ExportWorkerPool pool = new ExportWorkerPool(2);
+        ExportWorkerPool.Lane lane = pool.newLane("blocked");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        lane.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(30, TimeUnit.SECONDS));
+        final AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            lane.execute(() -> ran.incrementAndGet());
+        }
+        assertEquals(5, lane.getQueueDepth());
+
+        // Another lane is not held up by the blocked one
+        ExportWorkerPool.Lane other = pool.newLane("other");
+        other.submit(() -> ran.incrementAndGet()).get(30, TimeUnit.SECONDS);
+        assertEquals(1, ran.get());
+
+        // Tasks queued before shutdown still run, later ones are rejected
+        lane.shutdown();
+        assertTrue(lane.isShutdown());
+        assertFalse(lane.isTerminated());
+        try {
+            lane.execute(() -> ran.incrementAndGet());
+            fail("Expected the lane to reject a task after shutdown");
+        } catch (RejectedExecutionException expected) {
+        }
+        release.countDown();
+        assertTrue(lane.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(6, ran.get());
+        assertEquals(0, lane.getQueueDepth());
+    }
+
+    @Test
+    public void testExceptionDoesNotStopLane() throws Exception {
+        ExportWorkerPool pool = new ExportWorkerPool(1);
+        ExportWorkerPool.Lane lane = pool.newLane("throwing");
+        lane.execute(() -> {
+            throw new RuntimeException("expected by the test");
+        });
+        assertEquals(Integer.valueOf(42), lane.submit(() -> 42).get(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testScheduledRetryLeavesThreadFree() throws Exception {
+        // A single pool thread: a lane polling for a condition through schedule()
+        // must not keep another lane from running meanwhile
+        ExportWorkerPool pool = new ExportWorkerPool(1);
+        final ExportWorkerPool.Lane waiting = pool.newLane("waiting");
+        ExportWorkerPool.Lane other = pool.newLane("other");
+        final CountDownLatch condition = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger checks = new AtomicInteger();
+        waiting.execute(new Runnable() {
+            @Override
+            public void run() {
+                checks.incrementAndGet();
+                if (condition.getCount() == 0) {
+                    done.countDown();
+                } else {
+                    pool.schedule(() -> waiting.execute(this), 5, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            final int value = i;
+            assertEquals(Integer.valueOf(value), other.submit(() -> value).get(30, TimeUnit.SECONDS));
+        }
+        Thread.sleep(50);
+        condition.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertTrue(checks.get() > 1);
+    }
+}
@@ -0,0 +1,246 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.exportclient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.exportclient.ExportRow.ROW_OPERATION;
+import org.voltdb.exportclient.decode.CSVStringDecoder;
+import org.voltdb.exportclient.decode.StringArrayDecoder;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+
+public class TestExportRowBatch {
+
+    static final GeographyPointValue GEOG_POINT = GeographyPointValue.fromWKT("point(-122 37)");
+    static final GeographyValue GEOG = GeographyValue.fromWKT("polygon((0 0, 1 1, 0 1, 0 0))");
+    static final int PARTITION_COLUMN = 8;
+
+    private static VoltTable createTable() {
+        return new VoltTable(
+                new VoltTable.ColumnInfo("VOLT_TRANSACTION_ID", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("VOLT_EXPORT_TIMESTAMP", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("VOLT_EXPORT_SEQUENCE_NUMBER", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("VOLT_PARTITION_ID", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("VOLT_SITE_ID", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("VOLT_EXPORT_OPERATION", VoltType.TINYINT),
+                new VoltTable.ColumnInfo("tinyint", VoltType.TINYINT),
+                new VoltTable.ColumnInfo("smallint", VoltType.SMALLINT),
+                new VoltTable.ColumnInfo("integer", VoltType.INTEGER),
+                new VoltTable.ColumnInfo("bigint", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("float", VoltType.FLOAT),
+                new VoltTable.ColumnInfo("timestamp", VoltType.TIMESTAMP),
+                new VoltTable.ColumnInfo("string", VoltType.STRING),
+                new VoltTable.ColumnInfo("decimal", VoltType.DECIMAL),
+                new VoltTable.ColumnInfo("geog_point", VoltType.GEOGRAPHY_POINT),
+                new VoltTable.ColumnInfo("geog", VoltType.GEOGRAPHY));
+    }
+
+    private static void addRow(VoltTable table, int i) {
+        if (i % 3 == 2) {
+            // every user column null
+            table.addRow(i, 1000L + i, 100L + i, 0, 7, (byte) ROW_OPERATION.DELETE.ordinal(),
+                    null, null, null, null, null, null, null, null, null, null);
+        } else {
+            table.addRow(i, 1000L + i, 100L + i, 0, 7, (byte) ROW_OPERATION.INSERT.ordinal(),
+                    (byte) i, (short) -i, 3 * i, 4L * i, 5.5 * i, 6000L * i + 123, "row" + i,
+                    new BigDecimal(88 + i), GEOG_POINT, GEOG);
+        }
+    }
+
+    /**
+     * Encode the rows of a table one by one, returning the schema and the block of rows.
+     * Rows are encoded separately as the test encoder does not handle growing its buffer
+     * well enough for large tables.
+     */
+    private static ExportRow encode(VoltTable table, ByteBuffer[] block) throws IOException {
+        ExportRow schema = null;
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        table.resetRowPosition();
+        while (table.advanceRow()) {
+            ByteBuffer bb = ByteBuffer.wrap(ExportEncoder.encodeRow(table, "mytable", PARTITION_COLUMN, 1L));
+            bb.order(ByteOrder.LITTLE_ENDIAN);
+            int schemaSize = bb.getInt();
+            schema = ExportRow.decodeBufferSchema(bb, schemaSize + Integer.BYTES, 4, 1L);
+            rows.write(bb.array(), bb.position(), bb.remaining());
+        }
+        if (schema == null) {
+            // No rows, still need the schema
+            table.addRow(0, 0, 0, 0, 0, (byte) 0, null, null, null, null, null, null, null, null, null, null);
+            schema = encode(table, block);
+            table.clearRowData();
+        }
+        block[0] = ByteBuffer.wrap(rows.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        return schema;
+    }
+
+    @Test
+    public void testMatchesRowDecoding() throws IOException {
+        VoltTable table = createTable();
+        final int rowCount = 10;
+        for (int i = 0; i < rowCount; ++i) {
+            addRow(table, i);
+        }
+        ByteBuffer[] block = new ByteBuffer[1];
+        ExportRow schema = encode(table, block);
+        final int startPosition = block[0].position();
+
+        ExportRowBatch batch = new ExportRowBatch();
+        batch.reset(schema, 4, block[0]);
+        assertEquals(startPosition, block[0].position());
+        assertEquals(rowCount, batch.getRowCount());
+        assertEquals(schema.names.size(), batch.getColumnCount());
+
+        ByteBuffer rows = block[0].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        Object[] values = null;
+        for (int row = 0; row < rowCount; ++row) {
+            rows.getInt(); // row size
+            ExportRow expected = ExportRow.decodeRow(schema, 4, rows);
+            values = batch.getValues(row, values);
+            for (int col = 0; col < batch.getColumnCount(); ++col) {
+                if (expected.values[col] instanceof GeographyValue) {
+                    assertEquals(expected.values[col].toString(), values[col].toString());
+                } else {
+                    assertEquals(expected.values[col], values[col]);
+                }
+                assertEquals(expected.values[col] == null, batch.isNull(row, col));
+            }
+            assertEquals(expected.partitionValue, batch.getPartitionValue(row));
+            assertEquals(PARTITION_COLUMN, batch.getPartitionColumnIndex(row));
+            assertEquals(expected.getOperation(), batch.getOperation(row));
+
+            ExportRow materialized = batch.toExportRow(row);
+            assertEquals(expected.partitionValue, materialized.partitionValue);
+            assertEquals(expected.tableName, materialized.tableName);
+
+            // primitive accessors
+            assertEquals(row, batch.getLong(row, 0));
+            assertEquals(100L + row, batch.getLong(row, 2));
+            if (row % 3 != 2) {
+                assertEquals(row, batch.getLong(row, 6));
+                assertEquals(-row, batch.getLong(row, 7));
+                assertEquals(3 * row, batch.getLong(row, 8));
+                assertEquals(4L * row, batch.getLong(row, 9));
+                assertEquals(5.5 * row, batch.getDouble(row, 10), 0.0);
+                assertEquals(6000L * row + 123, batch.getLong(row, 11));
+                assertEquals("row" + row, batch.getString(row, 12));
+            } else {
+                // null partition column falls back to the partition id
+                assertEquals(4, batch.getPartitionValue(row));
+                try {
+                    batch.getLong(row, 9);
+                    fail("Reading a null column as a primitive should fail");
+                } catch (IllegalStateException expectedException) {
+                }
+            }
+        }
+        assertFalse(rows.hasRemaining());
+
+        try {
+            batch.getDouble(0, 9);
+            fail("Reading a BIGINT column as a FLOAT should fail");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testReuse() throws IOException {
+        ExportRowBatch batch = new ExportRowBatch();
+        ByteBuffer[] block = new ByteBuffer[1];
+        for (int rowCount : new int[] { 40, 3, 0, 100 }) {
+            VoltTable table = createTable();
+            for (int i = 0; i < rowCount; ++i) {
+                addRow(table, i);
+            }
+            ExportRow schema = encode(table, block);
+            batch.reset(schema, 4, block[0]);
+            assertEquals(rowCount, batch.getRowCount());
+            for (int row = 0; row < rowCount; ++row) {
+                assertEquals(row, batch.getLong(row, 0));
+                assertEquals(row % 3 == 2, batch.isNull(row, 12));
+            }
+        }
+    }
+
+    @Test
+    public void testSchemaMismatch() throws IOException {
+        VoltTable table = createTable();
+        addRow(table, 0);
+        ByteBuffer[] block = new ByteBuffer[1];
+        encode(table, block);
+
+        VoltTable other = new VoltTable(new VoltTable.ColumnInfo("VOLT_TRANSACTION_ID", VoltType.BIGINT));
+        other.addRow(1L);
+        ExportRow otherSchema = encode(other, new ByteBuffer[1]);
+        try {
+            new ExportRowBatch().reset(otherSchema, 4, block[0]);
+            fail("Decoding rows with the wrong schema should fail");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("columns"));
+        }
+    }
+
+    @Test
+    public void testStringDecoding() throws IOException {
+        VoltTable table = createTable();
+        for (int i = 0; i < 6; ++i) {
+            addRow(table, i);
+        }
+        ByteBuffer[] block = new ByteBuffer[1];
+        ExportRow schema = encode(table, block);
+        ExportRowBatch batch = new ExportRowBatch();
+        batch.reset(schema, 4, block[0]);
+
+        StringArrayDecoder.Builder builder = StringArrayDecoder.builder();
+        builder.skipInternalFields(false);
+        StringArrayDecoder arrayDecoder = builder.build();
+        CSVStringDecoder csvDecoder = CSVStringDecoder.builder().build();
+        CSVStringDecoder batchCsvDecoder = CSVStringDecoder.builder().build();
+        String[] fields = null;
+        for (int row = 0; row < batch.getRowCount(); ++row) {
+            ExportRow expected = batch.toExportRow(row);
+            String[] expectedFields = arrayDecoder.decode(expected.generation, expected.tableName, expected.types,
+                    expected.names, null, expected.values);
+            fields = arrayDecoder.decode(batch, row, fields);
+            assertArrayEquals(expectedFields, fields);
+
+            assertEquals(csvDecoder.decode(expected.generation, expected.tableName, expected.types, expected.names,
+                    null, expected.values), batchCsvDecoder.decode(batch, row));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StarvationTracker;
+import org.voltdb.rejoin.TaskLog;
+
+public class TestSiteTaskerQueue {
+    private SiteTaskerQueue m_queue;
+
+    private static class NoopTask extends SiteTasker {
+        @Override
+        public void run(SiteProcedureConnection siteConnection) {}
+
+        @Override
+        public void runForRejoin(SiteProcedureConnection siteConnection, TaskLog rejoinTaskLog) {}
+    }
+
+    @Before
+    public void setUp() {
+        m_queue = new SiteTaskerQueue(0);
+        m_queue.setStarvationTracker(new StarvationTracker(0));
+        m_queue.setupQueueDepthTracker(0);
+    }
+
+    @Test
+    public void testTakeBatchKeepsOrderAndLimit() throws Exception {
+        List<SiteTasker> offered = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            SiteTasker task = new NoopTask();
+            offered.add(task);
+            assertTrue(m_queue.offer(task));
+        }
+
+        List<SiteTasker> batch = new ArrayList<>();
+        m_queue.takeBatch(batch, 4);
+        assertEquals(offered.subList(0, 4), batch);
+        assertEquals(6, m_queue.size());
+
+        batch.clear();
+        m_queue.takeBatch(batch, 100);
+        assertEquals(offered.subList(4, 10), batch);
+        assertTrue(m_queue.isEmpty());
+    }
+
+    @Test
+    public void testTakeBatchWaitsForWork() throws Exception {
+        final List<SiteTasker> batch = new ArrayList<>();
+        final CountDownLatch taken = new CountDownLatch(1);
+        Thread site = new Thread(() -> {
+            try {
+                m_queue.takeBatch(batch, 8);
+                taken.countDown();
+            } catch (InterruptedException e) {
+            }
+        });
+        site.start();
+        assertEquals(1, taken.getCount());
+
+        SiteTasker task = new NoopTask();
+        m_queue.offer(task);
+        assertTrue(taken.await(10, TimeUnit.SECONDS));
+        site.join();
+        assertEquals(1, batch.size());
+        assertSame(task, batch.get(0));
+    }
+
+    @Test
+    public void testSingleTakeAfterBatch() throws Exception {
+        SiteTasker first = new NoopTask();
+        SiteTasker second = new NoopTask();
+        m_queue.offer(first);
+        m_queue.offer(second);
+
+        List<SiteTasker> batch = new ArrayList<>();
+        m_queue.takeBatch(batch, 1);
+        assertSame(first, batch.get(0));
+        assertSame(second, m_queue.take());
+        assertTrue(m_queue.isEmpty());
+    }
+
+    @Test
+    public void testIdleStrategyProperty() {
+        assertEquals(SiteTaskerQueue.IdleStrategy.PARK, SiteTaskerQueue.idleStrategy(null));
+        assertEquals(SiteTaskerQueue.IdleStrategy.SPIN, SiteTaskerQueue.idleStrategy("SPIN"));
+        assertEquals(SiteTaskerQueue.IdleStrategy.YIELD, SiteTaskerQueue.idleStrategy(" yield "));
+        // A mistyped value must not fail the initialization of every site
+        assertEquals(SiteTaskerQueue.IdleStrategy.PARK, SiteTaskerQueue.idleStrategy("SPINN"));
+        assertEquals(SiteTaskerQueue.IdleStrategy.PARK, SiteTaskerQueue.idleStrategy(""));
+    }
+}
@@ -0,0 +1,160 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.jni;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSharedMemoryChannel {
+
+    private static final int CAPACITY = 4096;
+
+    private SocketChannel m_javaSocket;
+    private SocketChannel m_eeSocket;
+    private SharedMemoryChannel m_java;
+    private SharedMemoryChannel m_ee;
+    private final ExecutorService m_es = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void setUp() throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("localhost", 0));
+            m_javaSocket = SocketChannel.open(server.getLocalAddress());
+            m_eeSocket = server.accept();
+        }
+        // as ExecutionEngineIPC and voltdbipc do, or wakeups wait for delayed acks
+        m_javaSocket.socket().setTcpNoDelay(true);
+        m_eeSocket.socket().setTcpNoDelay(true);
+        m_java = SharedMemoryChannel.create(m_javaSocket, CAPACITY);
+        m_ee = SharedMemoryChannel.attach(new File(m_java.getPath()), m_eeSocket);
+        m_java.unlink();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        m_es.shutdownNow();
+        m_javaSocket.close();
+        m_eeSocket.close();
+        m_java.close();
+        m_ee.close();
+    }
+
+    private static void readFully(SharedMemoryChannel channel, ByteBuffer buf) throws Exception {
+        while (buf.hasRemaining()) {
+            assertFalse(channel.read(buf) == -1);
+        }
+        buf.flip();
+    }
+
+    @Test
+    public void testFileIsOnlyAccessibleByItsOwner() throws Exception {
+        SharedMemoryChannel channel = SharedMemoryChannel.create(m_javaSocket, CAPACITY);
+        try {
+            assertEquals("rw-------", PosixFilePermissions.toString(
+                    Files.getPosixFilePermissions(new File(channel.getPath()).toPath())));
+        } finally {
+            channel.unlink();
+            channel.close();
+        }
+    }
+
+    @Test
+    public void testRequestResponse() throws Exception {
+        assertFalse(new File(m_java.getPath()).exists());
+        Future<?> ee = m_es.submit(() -> {
+            // Echo back each request with its first byte incremented
+            for (int i = 0; i < 1000; i++) {
+                ByteBuffer length = ByteBuffer.allocate(4);
+                readFully(m_ee, length);
+                ByteBuffer body = ByteBuffer.allocate(length.getInt());
+                readFully(m_ee, body);
+                body.put(0, (byte) (body.get(0) + 1));
+                length.rewind();
+                m_ee.write(length);
+                m_ee.write(body);
+            }
+            return null;
+        });
+
+        Random r = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            // Sometimes larger than the ring, so both directions have to wait for space
+            byte request[] = new byte[1 + r.nextInt(3 * CAPACITY)];
+            r.nextBytes(request);
+            ByteBuffer buf = ByteBuffer.allocate(4 + request.length);
+            buf.putInt(request.length).put(request).flip();
+            m_java.write(buf);
+
+            ByteBuffer length = ByteBuffer.allocate(4);
+            readFully(m_java, length);
+            assertEquals(request.length, length.getInt());
+            ByteBuffer response = ByteBuffer.allocate(request.length);
+            readFully(m_java, response);
+            request[0]++;
+            assertArrayEquals(request, response.array());
+        }
+        ee.get();
+    }
+
+    @Test
+    public void testWakeupAfterBlocking() throws Exception {
+        Future<Integer> ee = m_es.submit(() -> {
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            readFully(m_ee, buf);
+            return (int) buf.getLong();
+        });
+        // Long enough for the reader to give up spinning and block on the socket
+        Thread.sleep(200);
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putLong(42).flip();
+        m_java.write(buf);
+        assertEquals(42, ee.get().intValue());
+    }
+
+    @Test
+    public void testPeerCloseEndsRead() throws Exception {
+        Future<Integer> ee = m_es.submit(() -> m_ee.read(ByteBuffer.allocate(1)));
+        Thread.sleep(200);
+        m_javaSocket.close();
+        assertEquals(-1, ee.get().intValue());
+    }
+}
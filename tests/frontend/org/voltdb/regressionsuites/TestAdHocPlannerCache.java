@@ -32,7 +32,6 @@ import org.voltdb.VoltType;
 import org.voltdb.client.Client;
 import org.voltdb.client.ProcCallException;
 import org.voltdb.compiler.VoltProjectBuilder;
-import org.voltdb.jni.ExecutionEngine;
 import org.voltdb.sysprocs.AdHocNTBase;
 
 public class TestAdHocPlannerCache extends RegressionSuite {
@@ -130,8 +129,8 @@ public class TestAdHocPlannerCache extends RegressionSuite {
     private void subtestENG8424(Client client) throws IOException, ProcCallException {
         System.out.println("subtestENG8424...");
         VoltTable vt;
-        long l1Before = ExecutionEngine.EE_PLAN_CACHE_SIZE + 1;
-        long l1After = ExecutionEngine.EE_PLAN_CACHE_SIZE + 1;
+        long l1Before = -1;
+        long l1After = -1;
 
         vt = client.callProcedure("@Statistics", "PLANNER", 0).getResults()[0];
         assertTrue(vt.getRowCount() > 0);
@@ -146,7 +145,7 @@ public class TestAdHocPlannerCache extends RegressionSuite {
             l1Before = vt.getLong("CACHE1_LEVEL");
             break;
         }
-        assertTrue(l1Before <= ExecutionEngine.EE_PLAN_CACHE_SIZE);
+        assertTrue(l1Before >= 0);
 
         client.callProcedure("@AdHoc", "select * from R1 as ENG8424;");
         ++m_cache1_level;
@@ -165,7 +164,7 @@ public class TestAdHocPlannerCache extends RegressionSuite {
             l1After = vt.getLong("CACHE1_LEVEL");
             break;
         }
-        assertTrue(l1After <= ExecutionEngine.EE_PLAN_CACHE_SIZE);
+        assertTrue(l1After >= 0);
 
         // Assuming the max size of cache has not been reached
         assertEquals(l1Before + 1, l1After);
@@ -304,4 +304,36 @@ public class TestTableSaveFile extends TestCase {
             savefile.close();
         }
     }
+
+    public void testRelevantPartitionChunksInOrder() throws Exception {
+        System.out.println("Running testRelevantPartitionChunksInOrder");
+        Pair<VoltTable, File> generated = generateTestTable(20000);
+        File f = generated.getSecond();
+
+        // Chunks of the other partitions are skipped while they are decompressed ahead
+        FileInputStream fis = new FileInputStream(f);
+        TableSaveFile savefile = new TableSaveFile(fis, 4, new Integer[] { 1, 3, 7, 19 });
+        try {
+            savefile.startReadAhead();
+            int[] expectedPartitionIds = { 1, 3, 7, 19 };
+            int chunks = 0;
+            while (savefile.hasMoreChunks()) {
+                final BBContainer c = savefile.getNextChunk();
+                if (c == null) {
+                    break;
+                }
+                try {
+                    assertEquals(expectedPartitionIds[chunks++], ((TableSaveFile.Container) c).partitionId);
+                    VoltTable test_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), false);
+                    assertEquals(1000, test_table.getRowCount());
+                } finally {
+                    c.discard();
+                }
+            }
+            assertEquals(expectedPartitionIds.length, chunks);
+            assertTrue(savefile.getCorruptedPartitionIds().isEmpty());
+        } finally {
+            savefile.close();
+        }
+    }
 }
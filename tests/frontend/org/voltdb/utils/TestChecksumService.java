@@ -0,0 +1,76 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
+import org.junit.Test;
+
+public class TestChecksumService {
+
+    @Test
+    public void testKnownValue() {
+        byte[] bytes = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0xE3069283, ChecksumService.crc32c(bytes, 0, bytes.length));
+        assertEquals(0xE3069283, ChecksumService.crc32c(ByteBuffer.wrap(bytes)));
+
+        Checksum checksum = ChecksumService.newCrc32c();
+        checksum.update(bytes, 0, 4);
+        checksum.update(bytes, 4, bytes.length - 4);
+        assertEquals(0xE3069283, (int) checksum.getValue());
+    }
+
+    @Test
+    public void testBuffers() {
+        Random random = new Random(42);
+        for (int size : new int[] { 0, 1, 7, 100, 4096, 1024 * 1024 + 3 }) {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            PureJavaCrc32C reference = new PureJavaCrc32C();
+            reference.update(bytes, 0, size);
+            int expected = (int) reference.getValue();
+
+            ByteBuffer heap = ByteBuffer.wrap(bytes);
+            ByteBuffer direct = ByteBuffer.allocateDirect(size + 8);
+            direct.position(8);
+            direct.put(bytes);
+            direct.position(8);
+
+            assertEquals(expected, ChecksumService.crc32c(bytes, 0, size));
+            assertEquals(expected, ChecksumService.crc32c(heap));
+            assertEquals(expected, ChecksumService.crc32c(direct));
+            assertEquals(expected, ChecksumService.crc32c(direct, 8, size));
+            // Positions are left alone
+            assertEquals(0, heap.position());
+            assertEquals(8, direct.position());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestCompressionCodec {
+
+    private static ByteBuffer getCompressibleBuffer(int size) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(size);
+        Random r = new Random(42);
+        while (buf.remaining() >= 8) {
+            buf.putLong(r.nextInt(16));
+        }
+        buf.clear();
+        return buf;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            for (int size : new int[] { 0, 1, 100, 1024 * 1024 }) {
+                ByteBuffer input = getCompressibleBuffer(size);
+                // Compress to and decompress from an offset to make sure positions are honored
+                ByteBuffer compressed = ByteBuffer.allocateDirect(16 + codec.maxCompressedLength(size));
+                compressed.position(16);
+                int compressedSize = codec.compress(input, compressed);
+                assertEquals(16, compressed.position());
+                assertEquals(16 + compressedSize, compressed.limit());
+                assertEquals(0, input.position());
+                if (size == 1024 * 1024) {
+                    assertTrue(codec + " did not compress", compressedSize < size / 2);
+                }
+                assertTrue(CompressionService.maxCompressedLength(size) >= codec.maxCompressedLength(size));
+
+                assertEquals(size, codec.uncompressedLength(compressed));
+                ByteBuffer output = ByteBuffer.allocateDirect(8 + size);
+                output.position(8);
+                assertEquals(size, codec.decompress(compressed, output));
+                assertEquals(8, output.position());
+                assertEquals(8 + size, output.limit());
+                assertEquals(codec.toString(), input, output);
+            }
+        }
+    }
+
+    @Test
+    public void testCorruptData() throws Exception {
+        for (CompressionCodec codec : new CompressionCodec[] { CompressionCodec.LZ4, CompressionCodec.LZ4HC }) {
+            ByteBuffer input = getCompressibleBuffer(4096);
+            ByteBuffer compressed = ByteBuffer.allocateDirect(codec.maxCompressedLength(4096));
+            codec.compress(input, compressed);
+            compressed.limit(compressed.limit() / 2);
+            try {
+                codec.decompress(compressed, ByteBuffer.allocateDirect(4096));
+                fail(codec + " decompressed truncated data");
+            } catch (IOException expected) {}
+
+            // Output too small for the recorded length
+            compressed = ByteBuffer.allocateDirect(codec.maxCompressedLength(4096));
+            codec.compress(input, compressed);
+            try {
+                codec.decompress(compressed, ByteBuffer.allocateDirect(100));
+                fail(codec + " decompressed into too small a buffer");
+            } catch (IOException expected) {}
+        }
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            assertSame(codec, CompressionCodec.fromId(codec.getId()));
+            assertSame(codec, CompressionCodec.fromName(codec.name().toLowerCase()));
+        }
+        assertEquals(0, CompressionCodec.SNAPPY.getId());
+        try {
+            CompressionCodec.fromId(CompressionCodec.values().length);
+            fail();
+        } catch (IOException expected) {}
+        try {
+            CompressionCodec.fromName("zip");
+            fail();
+        } catch (IllegalArgumentException expected) {}
+
+        System.setProperty("TEST_COMPRESSION_CODEC", "lz4hc");
+        assertSame(CompressionCodec.LZ4HC, CompressionCodec.fromProperty("TEST_COMPRESSION_CODEC", CompressionCodec.SNAPPY));
+        System.setProperty("TEST_COMPRESSION_CODEC", "unknown");
+        assertSame(CompressionCodec.LZ4, CompressionCodec.fromProperty("TEST_COMPRESSION_CODEC", CompressionCodec.LZ4));
+        System.clearProperty("TEST_COMPRESSION_CODEC");
+        assertSame(CompressionCodec.SNAPPY, CompressionCodec.fromProperty("TEST_COMPRESSION_CODEC", CompressionCodec.SNAPPY));
+    }
+}
@@ -32,6 +32,8 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -45,6 +47,10 @@ import java.util.TimerTask;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
 
 import org.junit.After;
 import org.junit.Before;
@@ -309,6 +315,85 @@ public class TestPersistentBinaryDeque {
         }
     }
 
+    @Test
+    public void testMixedCompressionCodecs() throws Exception {
+        // Each entry records its codec, so a deque can be reopened with a different codec and still read everything
+        CompressionCodec[] codecs = CompressionCodec.values();
+        int perCodec = 3;
+        for (int c = 0; c < codecs.length; c++) {
+            m_pbd.close();
+            m_pbd = PersistentBinaryDeque.builder(TEST_NONCE, TEST_DIR, logger).compression(true)
+                    .compressionCodec(codecs[c]).initialExtraHeader(m_metadata, SERIALIZER).build();
+            for (int ii = 0; ii < perCodec; ii++) {
+                m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(c * perCodec + ii)));
+            }
+        }
+
+        BinaryDequeReader<ExtraHeaderMetadata> reader = m_pbd.openForRead(CURSOR_ID);
+        for (int ii = 0; ii < codecs.length * perCodec; ii++) {
+            BBContainer cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            assertNotNull(cont);
+            try {
+                assertEquals(getFilledBuffer(ii), cont.b());
+            } finally {
+                cont.discard();
+            }
+        }
+        assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+    }
+
+    @Test (timeout = 60_000)
+    public void testConcurrentOfferSyncAndPoll() throws Exception {
+        // Syncs run without the deque lock, from both the group commit schedule and explicit calls
+        m_pbd.close();
+        m_pbd = PersistentBinaryDeque.builder(TEST_NONCE, TEST_DIR, logger).compression(true)
+                .syncInterval(1, TimeUnit.MILLISECONDS).initialExtraHeader(m_metadata, SERIALIZER).build();
+        final int count = SEGMENT_FILL_COUNT * 3;
+        BinaryDequeReader<ExtraHeaderMetadata> reader = m_pbd.openForRead(CURSOR_ID);
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread syncer = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    m_pbd.sync();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        syncer.start();
+
+        int read = 0;
+        try {
+            for (int ii = 0; ii < count; ii++) {
+                m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(ii)));
+                BBContainer cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                if (cont != null) {
+                    try {
+                        assertEquals(getFilledBuffer(read++), cont.b());
+                    } finally {
+                        cont.discard();
+                    }
+                }
+            }
+        } finally {
+            done.set(true);
+            syncer.join();
+        }
+        assertNull(failure.get());
+
+        BBContainer cont;
+        while ((cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY)) != null) {
+            try {
+                assertEquals(getFilledBuffer(read++), cont.b());
+            } finally {
+                cont.discard();
+            }
+        }
+        assertEquals(count, read);
+    }
+
     @Test
     public void testReopenReader() throws Exception {
         System.out.println("Running testReopenReader");
@@ -1450,6 +1535,81 @@ public class TestPersistentBinaryDeque {
         }
     }
 
+    @Test
+    public void testReadVersion3Segment() throws Exception {
+        for (int i = 0; i < 10; ++i) {
+            m_pbd.offer(DBBPool.wrapBB(getFilledSmallBuffer(i)));
+        }
+        m_pbd.sync();
+        m_pbd.close();
+
+        List<File> listing = getSortedDirectoryListing();
+        assertEquals(1, listing.size());
+        rewriteAsVersion3(listing.get(0));
+        // Make recovery and the truncator validate every checksum in the segment
+        PBDSegment.setFinal(listing.get(0), false);
+
+        m_pbd = PersistentBinaryDeque.builder(TEST_NONCE, TEST_DIR, logger).compression(true)
+                .initialExtraHeader(m_metadata, SERIALIZER).build();
+        m_pbd.parseAndTruncate(new BinaryDequeTruncator() {
+            @Override
+            public TruncatorResponse parse(BBContainer bbc) {
+                return null;
+            }
+        });
+        assertEquals(10, m_pbd.getBufferCountAndSize().getFirst().intValue());
+
+        // New entries go into a current version segment after the version 3 one
+        m_pbd.offer(DBBPool.wrapBB(getFilledSmallBuffer(10)));
+
+        BinaryDequeReader<ExtraHeaderMetadata> reader = m_pbd.openForRead(CURSOR_ID);
+        for (int i = 0; i <= 10; ++i) {
+            pollOnceAndVerify(reader, getFilledSmallBuffer(i));
+        }
+        pollOnceAndVerify(reader, null);
+    }
+
+    /**
+     * Rewrite the checksums of a closed segment with CRC32 and mark it as version 3, the last version before CRC32C
+     */
+    private static void rewriteAsVersion3(File file) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buf = ByteBuffer.allocate((int) fc.size());
+            PBDUtils.readBufferFully(fc, buf, 0);
+        }
+        CRC32 crc = new CRC32();
+        buf.putInt(PBDSegment.HEADER_VERSION_OFFSET, 3);
+
+        int extraHeaderSize = buf.getInt(PBDSegment.HEADER_EXTRA_HEADER_SIZE_OFFSET);
+        ByteBuffer extraHeader = (ByteBuffer) buf.duplicate().position(PBDSegment.HEADER_EXTRA_HEADER_OFFSET)
+                .limit(PBDSegment.HEADER_EXTRA_HEADER_OFFSET + extraHeaderSize);
+        crc.update(extraHeader);
+        buf.putInt(PBDSegment.HEADER_EXTRA_HEADER_CRC_OFFSET, (int) crc.getValue());
+
+        crc.reset();
+        crc.update(buf.array(), PBDSegment.HEADER_VERSION_OFFSET,
+                PBDSegment.SEGMENT_HEADER_BYTES - PBDSegment.HEADER_VERSION_OFFSET);
+        buf.putInt(PBDSegment.HEADER_CRC_OFFSET, (int) crc.getValue());
+
+        int position = PBDSegment.HEADER_EXTRA_HEADER_OFFSET + extraHeaderSize;
+        while (position < buf.limit()) {
+            int length = buf.getInt(position + PBDSegment.ENTRY_HEADER_TOTAL_BYTES_OFFSET);
+            int entryId = buf.getInt(position + PBDSegment.ENTRY_HEADER_ENTRY_ID_OFFSET);
+            char flags = buf.getChar(position + PBDSegment.ENTRY_HEADER_FLAG_OFFSET);
+            int dataStart = position + PBDSegment.ENTRY_HEADER_BYTES;
+            ByteBuffer data = (ByteBuffer) buf.duplicate().position(dataStart).limit(dataStart + length);
+            buf.putInt(position + PBDSegment.ENTRY_HEADER_CRC_OFFSET,
+                    PBDUtils.calculateEntryCrc(crc, data, entryId, flags));
+            position = dataStart + length;
+        }
+
+        buf.clear();
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            PBDUtils.writeBuffer(fc, buf, 0);
+        }
+    }
+
     @Test
     public void testCloseLastReader() throws Exception {
         BinaryDequeReader<ExtraHeaderMetadata> reader = m_pbd.openForRead(CURSOR_ID);
@@ -0,0 +1,99 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voltdb.types.TimestampType;
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Building a {@link VoltTable} row by row and serializing it for the wire.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoltTableBenchmark {
+    private static final ColumnInfo[] COLUMNS = new ColumnInfo[] {
+            new ColumnInfo("ID", VoltType.BIGINT),
+            new ColumnInfo("NAME", VoltType.STRING),
+            new ColumnInfo("VALUE", VoltType.FLOAT),
+            new ColumnInfo("TS", VoltType.TIMESTAMP)
+    };
+
+    @Param({ "10", "1000" })
+    int rows;
+
+    private VoltTable m_table;
+    private ByteBuffer m_buffer;
+
+    @Setup
+    public void setup() {
+        m_table = build();
+        m_buffer = ByteBuffer.allocate(m_table.getSerializedSize());
+    }
+
+    private VoltTable build() {
+        VoltTable table = new VoltTable(COLUMNS);
+        for (int i = 0; i < rows; i++) {
+            table.addRow(i, "name" + i, i * 1.5, new TimestampType(i));
+        }
+        return table;
+    }
+
+    @Benchmark
+    public VoltTable buildTable() {
+        return build();
+    }
+
+    @Benchmark
+    public ByteBuffer flattenTable() {
+        m_buffer.clear();
+        m_table.flattenToBuffer(m_buffer);
+        return m_buffer;
+    }
+
+    @Benchmark
+    public VoltTable roundTripTable() {
+        m_buffer.clear();
+        m_table.flattenToBuffer(m_buffer);
+        m_buffer.flip();
+        return PrivateVoltTableFactory.createVoltTableFromSharedBuffer(m_buffer);
+    }
+}
@@ -0,0 +1,107 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StarvationTracker;
+import org.voltdb.rejoin.TaskLog;
+
+/**
+ * Cost of handing a task to a site through its {@link SiteTaskerQueue}, including the starvation
+ * and queue depth tracking done on every offer and take.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SiteTaskerQueueBenchmark {
+    private static final int BATCH = 64;
+
+    private static final SiteTasker TASK = new SiteTasker() {
+        @Override
+        public void run(SiteProcedureConnection siteConnection) {}
+
+        @Override
+        public void runForRejoin(SiteProcedureConnection siteConnection, TaskLog rejoinTaskLog)
+                throws IOException {}
+    };
+
+    private SiteTaskerQueue m_queue;
+    private final List<SiteTasker> m_batch = new ArrayList<>(BATCH);
+
+    @Setup
+    public void setup() {
+        m_queue = new SiteTaskerQueue(0);
+        m_queue.setStarvationTracker(new StarvationTracker(0));
+        m_queue.setupQueueDepthTracker(0);
+    }
+
+    @Benchmark
+    public SiteTasker offerTake() throws InterruptedException {
+        m_queue.offer(TASK);
+        return m_queue.take();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public SiteTasker offerTakeBatch() throws InterruptedException {
+        for (int i = 0; i < BATCH; i++) {
+            m_queue.offer(TASK);
+        }
+        SiteTasker task = null;
+        for (int i = 0; i < BATCH; i++) {
+            task = m_queue.take();
+        }
+        return task;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int offerTakeBatchDrain() throws InterruptedException {
+        for (int i = 0; i < BATCH; i++) {
+            m_queue.offer(TASK);
+        }
+        m_batch.clear();
+        m_queue.takeBatch(m_batch, BATCH);
+        return m_batch.size();
+    }
+}
@@ -0,0 +1,89 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compressing and decompressing buffers with {@link CompressionService}. The input is partly random
+ * and partly repetitive so that it compresses roughly like table data.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionServiceBenchmark {
+    @Param({ "4096", "1048576" })
+    int size;
+
+    private ByteBuffer m_input;
+    private ByteBuffer m_compressed;
+    private ByteBuffer m_output;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(0);
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        for (int i = size / 2; i < size; i++) {
+            data[i] = (byte) (i % 16);
+        }
+        m_input = ByteBuffer.allocateDirect(size);
+        m_input.put(data).flip();
+        m_compressed = ByteBuffer.allocateDirect(CompressionService.maxCompressedLength(size));
+        m_output = ByteBuffer.allocateDirect(size);
+        CompressionService.compressBuffer(m_input.duplicate(), m_compressed);
+    }
+
+    @Benchmark
+    public int compress() throws IOException {
+        m_compressed.clear();
+        return CompressionService.compressBuffer(m_input.duplicate(), m_compressed);
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException {
+        m_compressed.clear();
+        CompressionService.compressBuffer(m_input.duplicate(), m_compressed);
+        m_output.clear();
+        return CompressionService.decompressBuffer(m_compressed, m_output);
+    }
+}
@@ -0,0 +1,105 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2020 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+
+/**
+ * Appending buffers to a {@link PersistentBinaryDeque} and reading them back through a cursor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistentBinaryDequeBenchmark {
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    @Param({ "1024", "65536" })
+    int bufferSize;
+
+    @Param({ "false", "true" })
+    boolean compression;
+
+    private File m_dir;
+    private PersistentBinaryDeque<Void> m_pbd;
+    private BinaryDequeReader<Void> m_reader;
+    private ByteBuffer m_data;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        m_dir = Files.createTempDirectory("pbd-bench").toFile();
+        m_pbd = PersistentBinaryDeque.builder("bench", m_dir, LOG).compression(compression).build();
+        m_reader = m_pbd.openForRead("reader");
+        m_data = ByteBuffer.allocateDirect(bufferSize);
+        for (int i = 0; i < bufferSize / 8; i++) {
+            m_data.putLong(i % 64);
+        }
+        m_data.flip();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        m_pbd.close();
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    @Benchmark
+    public int append() throws IOException {
+        return m_pbd.offer(DBBPool.dummyWrapBB(m_data.duplicate()));
+    }
+
+    @Benchmark
+    public int appendAndRead() throws IOException {
+        int written = m_pbd.offer(DBBPool.dummyWrapBB(m_data.duplicate()));
+        BBContainer cont = m_reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+        if (cont != null) {
+            written += cont.b().remaining();
+            cont.discard();
+        }
+        return written;
+    }
+}